@@ -24,8 +24,15 @@
 
 package org.spongycastle.apache.bzip2;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.IOException;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  * An output stream that compresses into the BZip2 format (with the file
@@ -36,6 +43,11 @@ import java.io.IOException;
  * TODO:    Update to BZip2 1.0.1
  * <b>NB:</b> note this class has been modified to add a leading BZ to the
  * start of the BZIP2 stream to make it compatible with other PGP programs.
+ * <p>
+ * If an Executor is passed in, each block is compressed as a separate
+ * task once it has been filled, so several blocks can be compressed at
+ * once. The compressed blocks are written out in order, giving the same
+ * stream as compressing on the calling thread.
  */
 public class CBZip2OutputStream extends OutputStream implements BZip2Constants {
     protected static final int SETMASK = (1 << 21);
@@ -277,12 +289,47 @@ public class CBZip2OutputStream extends OutputStream implements BZip2Constants {
     private int currentChar = -1;
     private int runLength = 0;
 
+    /*
+     * Used when compressing blocks in parallel. The idle compressors
+     * are other instances of this class, each holding the structures
+     * needed to compress a single block.
+     */
+    private Executor executor;
+    private int maxBlocksInProgress;
+    private Vector idleCompressors;
+    private Vector blocksInProgress;
+    private ByteArrayOutputStream blockOut;
+
     public CBZip2OutputStream(OutputStream inStream) throws IOException {
         this(inStream, 9);
     }
 
     public CBZip2OutputStream(OutputStream inStream, int inBlockSize)
         throws IOException {
+        this(inStream, inBlockSize, null, 1);
+    }
+
+    /**
+     * Create a stream that compresses blocks using the passed in Executor.
+     * Each block in progress holds its own sorting structures, about
+     * 1.4MB per 100k of block size, so maxBlocksInProgress is normally
+     * set to the number of threads available to the executor.
+     *
+     * @param inStream the stream to write the compressed data to.
+     * @param inBlockSize the block size, in units of 100k (1 to 9).
+     * @param executor the executor to compress blocks on, null to
+     * compress blocks on the calling thread.
+     * @param maxBlocksInProgress the maximum number of blocks being
+     * compressed at any one time.
+     */
+    public CBZip2OutputStream(OutputStream inStream, int inBlockSize,
+                              Executor executor, int maxBlocksInProgress)
+        throws IOException {
+        if (maxBlocksInProgress < 1) {
+            throw new IllegalArgumentException(
+                "maxBlocksInProgress must be at least 1");
+        }
+
         block = null;
         quadrant = null;
         zptr = null;
@@ -301,11 +348,40 @@ public class CBZip2OutputStream extends OutputStream implements BZip2Constants {
             inBlockSize = 1;
         }
         blockSize100k = inBlockSize;
-        allocateCompressStructures();
+
+        if (executor != null) {
+            this.executor = executor;
+            this.maxBlocksInProgress = maxBlocksInProgress;
+            this.idleCompressors = new Vector();
+            this.blocksInProgress = new Vector();
+
+            // the sorting structures live in the block compressors
+            block = new char[baseBlockSize * blockSize100k + 1
+                             + NUM_OVERSHOOT_BYTES];
+        } else {
+            allocateCompressStructures();
+        }
+
         initialize();
         initBlock();
     }
 
+    /**
+     * Create a compressor for single blocks of a stream, see
+     * compressBlock().
+     */
+    private CBZip2OutputStream(int inBlockSize) {
+        workFactor = 50;
+        blockSize100k = inBlockSize;
+        allocateCompressStructures();
+
+        blockOut = new ByteArrayOutputStream();
+
+        // nothing to finish on close
+        finished = true;
+        closed = true;
+    }
+
     /**
      *
      * modified by Oliver Merkel, 010128
@@ -332,6 +408,28 @@ public class CBZip2OutputStream extends OutputStream implements BZip2Constants {
         }
     }
 
+    public void write(byte[] buf, int off, int len) throws IOException {
+        for (int end = off + len; off < end; off++) {
+            int b = buf[off] & 0xff;
+            if (currentChar == b) {
+                runLength++;
+                if (runLength > 254) {
+                    writeRun();
+                    currentChar = -1;
+                    runLength = 0;
+                }
+            } else {
+                if (currentChar != -1) {
+                    writeRun();
+                    runLength = 1;
+                } else {
+                    runLength++;
+                }
+                currentChar = b;
+            }
+        }
+    }
+
     private void writeRun() throws IOException {
         if (last < allowableBlockSize) {
             inUse[currentChar] = true;
@@ -407,6 +505,11 @@ public class CBZip2OutputStream extends OutputStream implements BZip2Constants {
         }
         currentChar = -1;
         endBlock();
+        if (executor != null) {
+            while (!blocksInProgress.isEmpty()) {
+                writeCompressedBlock();
+            }
+        }
         endCompression();
         finished = true;
         flush();
@@ -453,6 +556,100 @@ public class CBZip2OutputStream extends OutputStream implements BZip2Constants {
         combinedCRC = (combinedCRC << 1) | (combinedCRC >>> 31);
         combinedCRC ^= blockCRC;
 
+        if (executor != null) {
+            submitBlock();
+        } else {
+            compressBlock();
+        }
+    }
+
+    /*
+      Hand the current block over to an idle compressor and queue it
+      on the executor, first waiting for the oldest block in progress
+      if the limit has been reached.
+    */
+    private void submitBlock() throws IOException {
+        if (blocksInProgress.size() >= maxBlocksInProgress) {
+            writeCompressedBlock();
+        }
+
+        final CBZip2OutputStream compressor;
+        if (idleCompressors.isEmpty()) {
+            compressor = new CBZip2OutputStream(blockSize100k);
+        } else {
+            compressor = (CBZip2OutputStream) idleCompressors.lastElement();
+            idleCompressors.removeElementAt(idleCompressors.size() - 1);
+        }
+
+        /* swap blocks, so the next block is read into the compressor's */
+        char[] tmp = compressor.block;
+        compressor.block = block;
+        block = tmp;
+
+        System.arraycopy(inUse, 0, compressor.inUse, 0, inUse.length);
+        compressor.last = last;
+        compressor.blockCRC = blockCRC;
+
+        FutureTask task = new FutureTask(new Callable() {
+            public Object call() throws IOException {
+                compressor.blockOut.reset();
+                compressor.bsSetStream(compressor.blockOut);
+                compressor.compressBlock();
+
+                /* leave only the final part byte in bsBuff */
+                while (compressor.bsLive >= 8) {
+                    compressor.blockOut.write(compressor.bsBuff >> 24);
+                    compressor.bsBuff <<= 8;
+                    compressor.bsLive -= 8;
+                }
+
+                return compressor;
+            }
+        });
+
+        blocksInProgress.addElement(task);
+        executor.execute(task);
+    }
+
+    /*
+      Wait for the oldest block in progress and append its bits to
+      the stream.
+    */
+    private void writeCompressedBlock() throws IOException {
+        FutureTask task = (FutureTask) blocksInProgress.firstElement();
+        blocksInProgress.removeElementAt(0);
+
+        CBZip2OutputStream compressor;
+        try {
+            compressor = (CBZip2OutputStream) task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(
+                "interrupted waiting for block compression");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("block compression failed: " + cause);
+        }
+
+        byte[] bytes = compressor.blockOut.toByteArray();
+        for (int i = 0; i < bytes.length; i++) {
+            bsW(8, bytes[i] & 0xff);
+        }
+        if (compressor.bsLive > 0) {
+            bsW(compressor.bsLive,
+                compressor.bsBuff >>> (32 - compressor.bsLive));
+        }
+
+        idleCompressors.addElement(compressor);
+    }
+
+    private void compressBlock() throws IOException {
         /* sort the block and establish posn of original string */
         doReversibleTransformation();
 
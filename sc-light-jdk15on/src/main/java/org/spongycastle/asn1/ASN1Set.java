@@ -410,41 +410,90 @@ abstract public class ASN1Set
             isSorted = true;
             if (set.size() > 1)
             {
-                boolean    swapped = true;
-                int        lastSwap = set.size() - 1;
+                int      count = set.size();
+                Object[] elements = new Object[count];
+                byte[][] encodings = new byte[count][];
+
+                /*
+                 * encode each element once only, then sort the elements by their encodings.
+                 */
+                for (int i = 0; i != count; i++)
+                {
+                    elements[i] = set.elementAt(i);
+                    encodings[i] = getEncoded((ASN1Encodable)elements[i]);
+                }
 
-                while (swapped)
+                mergeSort(encodings, elements, new byte[count][], new Object[count], 0, count);
+
+                for (int i = 0; i != count; i++)
                 {
-                    int    index = 0;
-                    int    swapIndex = 0;
-                    byte[] a = getEncoded((ASN1Encodable)set.elementAt(0));
+                    set.setElementAt(elements[i], i);
+                }
+            }
+        }
+    }
 
-                    swapped = false;
+    /**
+     * stable merge sort of elements[from..to) by their encodings, using the scratch arrays
+     * for merging.
+     */
+    private void mergeSort(
+        byte[][] encodings,
+        Object[] elements,
+        byte[][] tmpEncodings,
+        Object[] tmpElements,
+        int      from,
+        int      to)
+    {
+        if (to - from < 8)
+        {
+            // insertion sort for short runs
+            for (int i = from + 1; i < to; i++)
+            {
+                byte[] enc = encodings[i];
+                Object elem = elements[i];
+                int    j = i;
 
-                    while (index != lastSwap)
-                    {
-                        byte[] b = getEncoded((ASN1Encodable)set.elementAt(index + 1));
+                while (j > from && !lessThanOrEqual(encodings[j - 1], enc))
+                {
+                    encodings[j] = encodings[j - 1];
+                    elements[j] = elements[j - 1];
+                    j--;
+                }
 
-                        if (lessThanOrEqual(a, b))
-                        {
-                            a = b;
-                        }
-                        else
-                        {
-                            Object  o = set.elementAt(index);
+                encodings[j] = enc;
+                elements[j] = elem;
+            }
+            return;
+        }
 
-                            set.setElementAt(set.elementAt(index + 1), index);
-                            set.setElementAt(o, index + 1);
+        int mid = (from + to) >>> 1;
 
-                            swapped = true;
-                            swapIndex = index;
-                        }
+        mergeSort(encodings, elements, tmpEncodings, tmpElements, from, mid);
+        mergeSort(encodings, elements, tmpEncodings, tmpElements, mid, to);
 
-                        index++;
-                    }
+        // already in order - typical for sets that were sorted when created
+        if (lessThanOrEqual(encodings[mid - 1], encodings[mid]))
+        {
+            return;
+        }
 
-                    lastSwap = swapIndex;
-                }
+        System.arraycopy(encodings, from, tmpEncodings, from, to - from);
+        System.arraycopy(elements, from, tmpElements, from, to - from);
+
+        int left = from;
+        int right = mid;
+        for (int i = from; i != to; i++)
+        {
+            if (right == to || (left < mid && lessThanOrEqual(tmpEncodings[left], tmpEncodings[right])))
+            {
+                encodings[i] = tmpEncodings[left];
+                elements[i] = tmpElements[left++];
+            }
+            else
+            {
+                encodings[i] = tmpEncodings[right];
+                elements[i] = tmpElements[right++];
             }
         }
     }
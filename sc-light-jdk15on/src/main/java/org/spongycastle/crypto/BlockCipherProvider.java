@@ -0,0 +1,15 @@
+package org.spongycastle.crypto;
+
+/**
+ * A source of new instances of a block cipher, for classes which need a separate
+ * instance for each thread they use.
+ */
+public interface BlockCipherProvider
+{
+    /**
+     * Return a new, uninitialised, instance of the cipher.
+     *
+     * @return a new block cipher.
+     */
+    public BlockCipher get();
+}
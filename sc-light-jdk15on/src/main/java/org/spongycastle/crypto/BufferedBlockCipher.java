@@ -1,5 +1,6 @@
 package org.spongycastle.crypto;
 
+import java.nio.ByteBuffer;
 
 /**
  * A wrapper class that allows block ciphers to be used to process data in
@@ -11,6 +12,9 @@ package org.spongycastle.crypto;
  */
 public class BufferedBlockCipher
 {
+    // the size of the pieces direct ByteBuffers are copied through the cipher in
+    private static final int BUFFER_CHUNK_SIZE = 4096;
+
     protected byte[]        buf;
     protected int           bufOff;
 
@@ -218,12 +222,15 @@ public class BufferedBlockCipher
             len -= gapLen;
             inOff += gapLen;
 
-            while (len > buf.length)
+            if (len > buf.length)
             {
-                resultLen += cipher.processBlock(in, inOff, out, outOff + resultLen);
+                // everything but the last buffer's worth goes through in one call
+                int blocks = (len - buf.length + blockSize - 1) / blockSize;
+
+                resultLen += DefaultMultiBlockCipher.processBlocks(cipher, in, inOff, blocks, out, outOff + resultLen);
 
-                len -= blockSize;
-                inOff += blockSize;
+                len -= blocks * blockSize;
+                inOff += blocks * blockSize;
             }
         }
 
@@ -240,6 +247,59 @@ public class BufferedBlockCipher
         return resultLen;
     }
 
+    /**
+     * process the remaining bytes of in, writing any output produced to out. The
+     * position of in is advanced to its limit, and that of out by the number of bytes
+     * produced. Heap buffers are processed in place; direct ones are copied through the
+     * cipher a piece at a time.
+     *
+     * @param in the buffer containing the input data.
+     * @param out the buffer for any output that might be produced.
+     * @return the number of output bytes written to out.
+     * @exception DataLengthException if there isn't enough space in out.
+     * @exception IllegalStateException if the cipher isn't initialised.
+     */
+    public int processBytes(
+        ByteBuffer  in,
+        ByteBuffer  out)
+        throws DataLengthException, IllegalStateException
+    {
+        int len = in.remaining();
+
+        if (getUpdateOutputSize(len) > out.remaining())
+        {
+            throw new DataLengthException("output buffer too short");
+        }
+
+        if (in.hasArray() && out.hasArray())
+        {
+            int resultLen = processBytes(in.array(), in.arrayOffset() + in.position(), len, out.array(), out.arrayOffset() + out.position());
+
+            in.position(in.position() + len);
+            out.position(out.position() + resultLen);
+
+            return resultLen;
+        }
+
+        byte[] inChunk = new byte[Math.min(len, BUFFER_CHUNK_SIZE)];
+        byte[] outChunk = new byte[inChunk.length + buf.length];
+        int resultLen = 0;
+
+        while (in.hasRemaining())
+        {
+            int chunkLen = Math.min(in.remaining(), inChunk.length);
+
+            in.get(inChunk, 0, chunkLen);
+
+            int outLen = processBytes(inChunk, 0, chunkLen, outChunk, 0);
+
+            out.put(outChunk, 0, outLen);
+            resultLen += outLen;
+        }
+
+        return resultLen;
+    }
+
     /**
      * Process the last block in the buffer.
      *
@@ -289,6 +349,47 @@ public class BufferedBlockCipher
         }
     }
 
+    /**
+     * Process the last block in the buffer, writing the output to out and advancing
+     * its position by the number of bytes produced.
+     *
+     * @param out the buffer the block currently being held is copied into.
+     * @return the number of output bytes written to out.
+     * @exception DataLengthException if there is insufficient space in out for
+     * the output, or the input is not block size aligned and should be.
+     * @exception IllegalStateException if the underlying cipher is not
+     * initialised.
+     * @exception InvalidCipherTextException if padding is expected and not found.
+     */
+    public int doFinal(
+        ByteBuffer  out)
+        throws DataLengthException, IllegalStateException, InvalidCipherTextException
+    {
+        int len = getOutputSize(0);
+
+        if (len > out.remaining())
+        {
+            throw new DataLengthException("output buffer too short for doFinal()");
+        }
+
+        int resultLen;
+
+        if (out.hasArray())
+        {
+            resultLen = doFinal(out.array(), out.arrayOffset() + out.position());
+            out.position(out.position() + resultLen);
+        }
+        else
+        {
+            byte[] tmp = new byte[len];
+
+            resultLen = doFinal(tmp, 0);
+            out.put(tmp, 0, resultLen);
+        }
+
+        return resultLen;
+    }
+
     /**
      * Reset the buffer and cipher. After resetting the object is in the same
      * state as it was after the last init (if there was one).
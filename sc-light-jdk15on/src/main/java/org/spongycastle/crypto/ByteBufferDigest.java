@@ -0,0 +1,20 @@
+package org.spongycastle.crypto;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Digests which can take their input directly from a ByteBuffer, heap or direct,
+ * implement this interface as well as Digest. Callers which do not know the type of the
+ * digest they have should use {@link org.spongycastle.crypto.util.ByteBuffers#update(Digest, ByteBuffer)}.
+ */
+public interface ByteBufferDigest
+    extends Digest
+{
+    /**
+     * update the message digest with the remaining bytes of in, leaving its position
+     * at its limit.
+     *
+     * @param in the buffer containing the data.
+     */
+    public void update(ByteBuffer in);
+}
@@ -0,0 +1,21 @@
+package org.spongycastle.crypto;
+
+import java.nio.ByteBuffer;
+
+/**
+ * MACs which can take their input directly from a ByteBuffer, heap or direct, implement
+ * this interface as well as Mac. Callers which do not know the type of the MAC they have
+ * should use {@link org.spongycastle.crypto.util.ByteBuffers#update(Mac, ByteBuffer)}.
+ */
+public interface ByteBufferMac
+    extends Mac
+{
+    /**
+     * add the remaining bytes of in to the MAC, leaving its position at its limit.
+     *
+     * @param in the buffer containing the data.
+     * @exception IllegalStateException if the MAC is not initialised.
+     */
+    public void update(ByteBuffer in)
+        throws IllegalStateException;
+}
@@ -0,0 +1,25 @@
+package org.spongycastle.crypto;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stream ciphers which can work directly on ByteBuffers, heap or direct, implement this
+ * interface as well as StreamCipher. Callers which do not know the type of the cipher
+ * they have should use
+ * {@link org.spongycastle.crypto.util.ByteBuffers#processBytes(StreamCipher, ByteBuffer, ByteBuffer)}.
+ */
+public interface ByteBufferStreamCipher
+    extends StreamCipher
+{
+    /**
+     * process the remaining bytes of in, writing the result to out. The positions of
+     * both buffers are advanced by the number of bytes processed. The buffers may share
+     * their content provided in and out start at the same place in it.
+     *
+     * @param in the buffer containing the input data.
+     * @param out the buffer the output data is written to.
+     * @exception DataLengthException if out has less space remaining than in has data.
+     */
+    public void processBytes(ByteBuffer in, ByteBuffer out)
+        throws DataLengthException;
+}
@@ -0,0 +1,57 @@
+package org.spongycastle.crypto;
+
+/**
+ * Base class for block ciphers which want to offer the MultiBlockCipher interface
+ * without a specialised implementation of it, and a home for the default loop used
+ * when a cipher offers nothing better.
+ */
+public abstract class DefaultMultiBlockCipher
+    implements MultiBlockCipher
+{
+    protected DefaultMultiBlockCipher()
+    {
+    }
+
+    public int processBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        return processEachBlock(this, in, inOff, blockCount, out, outOff);
+    }
+
+    /**
+     * Process blockCount consecutive blocks using cipher, in a single call if it is a
+     * MultiBlockCipher, otherwise one block at a time.
+     *
+     * @param cipher the cipher to use.
+     * @param in the array containing the input data.
+     * @param inOff offset into the in array the data starts at.
+     * @param blockCount the number of blocks to process.
+     * @param out the array the output data will be copied into.
+     * @param outOff the offset into the out array the output will start at.
+     * @return the number of bytes processed and produced.
+     */
+    public static int processBlocks(BlockCipher cipher, byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        if (cipher instanceof MultiBlockCipher)
+        {
+            return ((MultiBlockCipher)cipher).processBlocks(in, inOff, blockCount, out, outOff);
+        }
+
+        return processEachBlock(cipher, in, inOff, blockCount, out, outOff);
+    }
+
+    private static int processEachBlock(BlockCipher cipher, byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+    {
+        int blockSize = cipher.getBlockSize();
+        int resultLen = 0;
+
+        for (int i = 0; i != blockCount; i++)
+        {
+            resultLen += cipher.processBlock(in, inOff, out, outOff + resultLen);
+            inOff += blockSize;
+        }
+
+        return resultLen;
+    }
+}
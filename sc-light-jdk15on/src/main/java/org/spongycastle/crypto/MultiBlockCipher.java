@@ -0,0 +1,30 @@
+package org.spongycastle.crypto;
+
+/**
+ * Block ciphers which can process a run of consecutive blocks in a single call should
+ * implement this interface as well as BlockCipher. Callers which do not know the type of
+ * the cipher they have should use {@link DefaultMultiBlockCipher#processBlocks} which falls
+ * back to processing one block at a time.
+ */
+public interface MultiBlockCipher
+    extends BlockCipher
+{
+    /**
+     * Process blockCount blocks of input from the array in and write them to the out
+     * array. The result is the same as calling processBlock() blockCount times, with the
+     * offsets advancing by the block size each time. The in and out arrays may be the same
+     * array provided inOff and outOff are equal.
+     *
+     * @param in the array containing the input data.
+     * @param inOff offset into the in array the data starts at.
+     * @param blockCount the number of blocks to process.
+     * @param out the array the output data will be copied into.
+     * @param outOff the offset into the out array the output will start at.
+     * @exception DataLengthException if there isn't enough data in in, or
+     * space in out.
+     * @exception IllegalStateException if the cipher isn't initialised.
+     * @return the number of bytes processed and produced.
+     */
+    public int processBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException;
+}
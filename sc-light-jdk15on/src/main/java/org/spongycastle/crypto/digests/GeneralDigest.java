@@ -1,13 +1,17 @@
 package org.spongycastle.crypto.digests;
 
+import java.nio.ByteBuffer;
+
+import org.spongycastle.crypto.ByteBufferDigest;
 import org.spongycastle.crypto.ExtendedDigest;
+import org.spongycastle.util.Memoable;
 
 /**
  * base implementation of MD4 family style digest as outlined in
  * "Handbook of Applied Cryptography", pages 344 - 347.
  */
 public abstract class GeneralDigest
-    implements ExtendedDigest
+    implements ExtendedDigest, ByteBufferDigest, Memoable
 {
     private static final int BYTE_LENGTH = 64;
     private byte[]  xBuf;
@@ -32,6 +36,16 @@ public abstract class GeneralDigest
     protected GeneralDigest(GeneralDigest t)
     {
         xBuf = new byte[t.xBuf.length];
+
+        copyIn(t);
+    }
+
+    /**
+     * Copy the buffered input and byte count of another digest into this one, as part of
+     * restoring a saved state.
+     */
+    protected void copyIn(GeneralDigest t)
+    {
         System.arraycopy(t.xBuf, 0, xBuf, 0, t.xBuf.length);
 
         xBufOff = t.xBufOff;
@@ -92,6 +106,46 @@ public abstract class GeneralDigest
         }
     }
 
+    public void update(
+        ByteBuffer  in)
+    {
+        if (in.hasArray())
+        {
+            int len = in.remaining();
+
+            update(in.array(), in.arrayOffset() + in.position(), len);
+            in.position(in.position() + len);
+            return;
+        }
+
+        //
+        // fill the current word
+        //
+        while ((xBufOff != 0) && in.hasRemaining())
+        {
+            update(in.get());
+        }
+
+        //
+        // process whole words, a word at a time from the buffer.
+        //
+        while (in.remaining() > xBuf.length)
+        {
+            in.get(xBuf, 0, xBuf.length);
+            processWord(xBuf, 0);
+
+            byteCount += xBuf.length;
+        }
+
+        //
+        // load in the remainder.
+        //
+        while (in.hasRemaining())
+        {
+            update(in.get());
+        }
+    }
+
     public void finish()
     {
         long    bitLength = (byteCount << 3);
@@ -1,13 +1,17 @@
 package org.spongycastle.crypto.digests;
 
+import java.nio.ByteBuffer;
+
+import org.spongycastle.crypto.ByteBufferDigest;
 import org.spongycastle.crypto.ExtendedDigest;
 import org.spongycastle.crypto.util.Pack;
+import org.spongycastle.util.Memoable;
 
 /**
  * Base class for SHA-384 and SHA-512.
  */
 public abstract class LongDigest
-    implements ExtendedDigest
+    implements ExtendedDigest, ByteBufferDigest, Memoable
 {
     private static final int BYTE_LENGTH = 128;
     
@@ -41,6 +45,16 @@ public abstract class LongDigest
     protected LongDigest(LongDigest t)
     {
         xBuf = new byte[t.xBuf.length];
+
+        copyIn(t);
+    }
+
+    /**
+     * Copy the complete state of another digest into this one, as part of restoring a
+     * saved state.
+     */
+    protected void copyIn(LongDigest t)
+    {
         System.arraycopy(t.xBuf, 0, xBuf, 0, t.xBuf.length);
 
         xBufOff = t.xBufOff;
@@ -114,6 +128,46 @@ public abstract class LongDigest
         }
     }
 
+    public void update(
+        ByteBuffer  in)
+    {
+        if (in.hasArray())
+        {
+            int len = in.remaining();
+
+            update(in.array(), in.arrayOffset() + in.position(), len);
+            in.position(in.position() + len);
+            return;
+        }
+
+        //
+        // fill the current word
+        //
+        while ((xBufOff != 0) && in.hasRemaining())
+        {
+            update(in.get());
+        }
+
+        //
+        // process whole words, a word at a time from the buffer.
+        //
+        while (in.remaining() > xBuf.length)
+        {
+            in.get(xBuf, 0, xBuf.length);
+            processWord(xBuf, 0);
+
+            byteCount1 += xBuf.length;
+        }
+
+        //
+        // load in the remainder.
+        //
+        while (in.hasRemaining())
+        {
+            update(in.get());
+        }
+    }
+
     public void finish()
     {
         adjustByteCounts();
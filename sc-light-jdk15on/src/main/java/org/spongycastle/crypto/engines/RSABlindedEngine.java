@@ -22,6 +22,28 @@ public class RSABlindedEngine
     private RSACoreEngine    core = new RSACoreEngine();
     private RSAKeyParameters key;
     private SecureRandom     random;
+    private RSABlindingFactorPool blindingFactors;
+
+    /**
+     * Create an engine that generates a fresh blinding factor for every private key
+     * operation.
+     */
+    public RSABlindedEngine()
+    {
+        this(null);
+    }
+
+    /**
+     * Create an engine that takes its blinding factors from a pool of precomputed ones,
+     * avoiding an exponentiation and an inversion per operation. The engine must then be
+     * initialised for private key operations with the key the pool was created for.
+     *
+     * @param blindingFactors the pool of blinding factors for the private key.
+     */
+    public RSABlindedEngine(RSABlindingFactorPool blindingFactors)
+    {
+        this.blindingFactors = blindingFactors;
+    }
 
     /**
      * initialise the RSA engine.
@@ -47,6 +69,12 @@ public class RSABlindedEngine
             key = (RSAKeyParameters)param;
             random = new SecureRandom();
         }
+
+        if (blindingFactors != null && key instanceof RSAPrivateCrtKeyParameters
+            && !blindingFactors.isFor((RSAPrivateCrtKeyParameters)key))
+        {
+            throw new IllegalArgumentException("key does not match blinding factor pool");
+        }
     }
 
     /**
@@ -100,7 +128,11 @@ public class RSABlindedEngine
             RSAPrivateCrtKeyParameters k = (RSAPrivateCrtKeyParameters)key;
 
             BigInteger e = k.getPublicExponent();
-            if (e != null)   // can't do blinding without a public exponent
+            if (blindingFactors != null)
+            {
+                result = blindedProcessBlock(input);
+            }
+            else if (e != null)   // can't do blinding without a public exponent
             {
                 BigInteger m = k.getModulus();
                 BigInteger r = BigIntegers.createRandomInRange(ONE, m.subtract(ONE), random);
@@ -123,4 +155,22 @@ public class RSABlindedEngine
 
         return core.convertOutput(result);
     }
+
+    private BigInteger blindedProcessBlock(BigInteger input)
+    {
+        BigInteger m = blindingFactors.getModulus();
+        RSABlindingFactorPool.Factors factors = blindingFactors.acquire();
+
+        try
+        {
+            BigInteger blindedInput = factors.blind.multiply(input).mod(m);
+            BigInteger blindedResult = core.processBlock(blindedInput);
+
+            return blindedResult.multiply(factors.unblind).mod(m);
+        }
+        finally
+        {
+            blindingFactors.release(factors);
+        }
+    }
 }
@@ -0,0 +1,142 @@
+package org.spongycastle.crypto.engines;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Vector;
+
+import org.spongycastle.crypto.params.RSAPrivateCrtKeyParameters;
+import org.spongycastle.util.BigIntegers;
+
+/**
+ * A store of precomputed blinding factors for a single RSA private key, for use with
+ * {@link RSABlindedEngine}.
+ * <p>
+ * Creating a blinding factor pair (r^e, r^-1) for every operation costs a public key
+ * exponentiation and a modular inversion. Instead, as suggested by Kocher, a pair is
+ * updated between operations by squaring both halves, which yields the pair for r^2 at the
+ * cost of two modular multiplications. A pair is discarded and replaced by a freshly
+ * generated one after a fixed number of uses.
+ * <p>
+ * The pool is thread safe. Each operation takes exclusive use of a pair, so any number of
+ * engines on different threads may share one pool; a pool used by only a single engine
+ * simply holds one pair for that key.
+ */
+public class RSABlindingFactorPool
+{
+    private static final BigInteger ONE = BigInteger.valueOf(1);
+
+    /*
+     * Matches the refresh interval OpenSSL uses for its blinding factors.
+     */
+    private static final int DEFAULT_MAX_USES = 32;
+
+    private final BigInteger modulus;
+    private final BigInteger exponent;
+    private final SecureRandom random;
+    private final int maxUses;
+
+    private final Vector available = new Vector();
+
+    /**
+     * Base constructor.
+     *
+     * @param key the private key the blinding factors are for.
+     * @param random source of randomness for new blinding factors.
+     */
+    public RSABlindingFactorPool(RSAPrivateCrtKeyParameters key, SecureRandom random)
+    {
+        this(key, random, DEFAULT_MAX_USES);
+    }
+
+    /**
+     * Constructor allowing the refresh interval to be set.
+     *
+     * @param key the private key the blinding factors are for.
+     * @param random source of randomness for new blinding factors.
+     * @param maxUses the number of operations a blinding factor pair is used for before it is
+     * replaced with a freshly generated one.
+     */
+    public RSABlindingFactorPool(RSAPrivateCrtKeyParameters key, SecureRandom random, int maxUses)
+    {
+        if (key.getPublicExponent() == null)
+        {
+            throw new IllegalArgumentException("blinding requires the public exponent");
+        }
+        if (maxUses < 1)
+        {
+            throw new IllegalArgumentException("maxUses must be at least 1");
+        }
+
+        this.modulus = key.getModulus();
+        this.exponent = key.getPublicExponent();
+        this.random = (random != null) ? random : new SecureRandom();
+        this.maxUses = maxUses;
+    }
+
+    /**
+     * Return true if this pool holds blinding factors for the passed in key.
+     */
+    boolean isFor(RSAPrivateCrtKeyParameters key)
+    {
+        return modulus.equals(key.getModulus()) && exponent.equals(key.getPublicExponent());
+    }
+
+    BigInteger getModulus()
+    {
+        return modulus;
+    }
+
+    /**
+     * Take exclusive use of a blinding factor pair, creating a new one if none is free.
+     */
+    Factors acquire()
+    {
+        synchronized (available)
+        {
+            int count = available.size();
+            if (count > 0)
+            {
+                Factors factors = (Factors)available.elementAt(count - 1);
+                available.removeElementAt(count - 1);
+                return factors;
+            }
+        }
+
+        BigInteger r = BigIntegers.createRandomInRange(ONE, modulus.subtract(ONE), random);
+
+        return new Factors(r.modPow(exponent, modulus), r.modInverse(modulus));
+    }
+
+    /**
+     * Return a pair after use. The pair is advanced to the next one before anyone else can
+     * see it, so the same blinding is never used twice.
+     */
+    void release(Factors factors)
+    {
+        if (++factors.uses >= maxUses)
+        {
+            return;
+        }
+
+        factors.blind = factors.blind.multiply(factors.blind).mod(modulus);
+        factors.unblind = factors.unblind.multiply(factors.unblind).mod(modulus);
+
+        synchronized (available)
+        {
+            available.addElement(factors);
+        }
+    }
+
+    static class Factors
+    {
+        BigInteger blind;     // r^e mod n
+        BigInteger unblind;   // r^-1 mod n
+        int uses;
+
+        Factors(BigInteger blind, BigInteger unblind)
+        {
+            this.blind = blind;
+            this.unblind = unblind;
+        }
+    }
+}
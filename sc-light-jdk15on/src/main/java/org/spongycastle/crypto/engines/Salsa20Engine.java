@@ -1,9 +1,11 @@
 package org.spongycastle.crypto.engines;
 
+import java.nio.ByteBuffer;
+
+import org.spongycastle.crypto.ByteBufferStreamCipher;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.DataLengthException;
 import org.spongycastle.crypto.MaxBytesExceededException;
-import org.spongycastle.crypto.StreamCipher;
 import org.spongycastle.crypto.params.KeyParameter;
 import org.spongycastle.crypto.params.ParametersWithIV;
 import org.spongycastle.crypto.util.Pack;
@@ -14,7 +16,7 @@ import org.spongycastle.util.Strings;
  */
 
 public class Salsa20Engine
-    implements StreamCipher
+    implements ByteBufferStreamCipher
 {
     /** Constants */
     private final static int STATE_SIZE = 16; // 16, 32 bit ints = 64 bytes
@@ -157,6 +159,53 @@ public class Salsa20Engine
         }
     }
 
+    public void processBytes(
+        ByteBuffer  in,
+        ByteBuffer  out)
+    {
+        int len = in.remaining();
+
+        if (out.remaining() < len)
+        {
+            throw new DataLengthException("output buffer too short");
+        }
+
+        if (in.hasArray() && out.hasArray())
+        {
+            processBytes(in.array(), in.arrayOffset() + in.position(), len, out.array(), out.arrayOffset() + out.position());
+
+            in.position(in.position() + len);
+            out.position(out.position() + len);
+            return;
+        }
+
+        if (!initialised)
+        {
+            throw new IllegalStateException(getAlgorithmName()+" not initialised");
+        }
+
+        if (limitExceeded(len))
+        {
+            throw new MaxBytesExceededException("2^70 byte limit per IV would be exceeded; Change IV");
+        }
+
+        for (int i = 0; i < len; i++)
+        {
+            if (index == 0)
+            {
+                generateKeyStream(keyStream);
+
+                if (++engineState[8] == 0)
+                {
+                    ++engineState[9];
+                }
+            }
+
+            out.put((byte)(keyStream[index]^in.get()));
+            index = (index + 1) & 63;
+        }
+    }
+
     public void reset()
     {
         setKey(workingKey, workingIV);
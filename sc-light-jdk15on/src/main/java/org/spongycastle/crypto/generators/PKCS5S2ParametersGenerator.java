@@ -64,9 +64,9 @@ public class PKCS5S2ParametersGenerator
             throw new IllegalArgumentException("iteration count must be at least 1.");
         }
         
+        // doFinal() leaves the mac ready for reuse with the same key
         for (int count = 1; count < c; count++)
         {
-            hMac.init(param);
             hMac.update(state, 0, state.length);
             hMac.doFinal(state, 0);
 
@@ -1,5 +1,10 @@
 package org.spongycastle.crypto.generators;
 
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
 import org.spongycastle.crypto.PBEParametersGenerator;
 import org.spongycastle.crypto.digests.SHA256Digest;
 import org.spongycastle.crypto.engines.Salsa20Engine;
@@ -9,13 +14,150 @@ import org.spongycastle.util.Arrays;
 
 public class SCrypt
 {
+    /**
+     * Working memory for generate() which can be kept and reused between calls, rather
+     * than allocated by each one. A scratch area holds space for a number of lanes (the
+     * p parameter of scrypt) to be worked on at once, each taking 128 * N * r bytes. The
+     * memory is cleared after each use. A scratch area can only be used by one call to
+     * generate() at a time; a call made while another is using it will wait.
+     */
+    public static class Scratch
+    {
+        private final int N;
+        private final int r;
+        private final Lane[] lanes;
+
+        /**
+         * Create a scratch area.
+         *
+         * @param N the largest cost parameter it will be used with.
+         * @param r the largest block size parameter it will be used with.
+         * @param lanes the number of lanes to work on at once, at most the p parameter.
+         */
+        public Scratch(int N, int r, int lanes)
+        {
+            if (N < 1 || r < 1 || lanes < 1)
+            {
+                throw new IllegalArgumentException("N, r and lanes must be positive");
+            }
+
+            this.N = N;
+            this.r = r;
+            this.lanes = new Lane[lanes];
+
+            for (int i = 0; i < lanes; ++i)
+            {
+                this.lanes[i] = new Lane(N, r * 32);
+            }
+        }
+    }
+
+    private static class Lane
+    {
+        // the most words an array can safely be allocated with
+        private static final long MAX_ROW_WORDS = Integer.MAX_VALUE - 8;
+
+        /*
+         * V holds N blocks of BCount words, 1 << VShift blocks to a row. Normally this is a
+         * single row, but when N * BCount is too large for one array it is split up.
+         */
+        final int[][] V;
+        final int VShift;
+        final int[] X;
+        final int[] blockX1 = new int[16];
+        final int[] blockX2 = new int[16];
+        final int[] blockY;
+
+        Lane(int N, int BCount)
+        {
+            int shift = 0;
+            while ((2L << shift) <= N && (2L << shift) * BCount <= MAX_ROW_WORDS)
+            {
+                ++shift;
+            }
+
+            int rowBlocks = 1 << shift;
+            int rows = (int)(((long)N + rowBlocks - 1) >>> shift);
+
+            this.V = new int[rows][];
+            this.VShift = shift;
+
+            for (int i = 0; i < rows; ++i)
+            {
+                V[i] = new int[Math.min(rowBlocks, N - (i << shift)) * BCount];
+            }
+
+            this.X = new int[BCount];
+            this.blockY = new int[BCount];
+        }
+
+        /**
+         * Return the row of V holding block j.
+         */
+        int[] row(int j)
+        {
+            return V[j >>> VShift];
+        }
+
+        /**
+         * Return the offset of block j in its row.
+         */
+        int offset(int j, int BCount)
+        {
+            return (j & ((1 << VShift) - 1)) * BCount;
+        }
+
+        /**
+         * Clear the first N blocks of V.
+         */
+        void clearV(int N, int BCount)
+        {
+            for (int i = 0; i < V.length && (i << VShift) < N; ++i)
+            {
+                int blocks = Math.min(1 << VShift, N - (i << VShift));
+
+                java.util.Arrays.fill(V[i], 0, blocks * BCount, 0);
+            }
+        }
+    }
+
     // TODO Validate arguments
     public static byte[] generate(byte[] P, byte[] S, int N, int r, int p, int dkLen)
     {
-        return MFcrypt(P, S, N, r, p, dkLen);
+        return generate(P, S, N, r, p, dkLen, null, null);
     }
 
-    private static byte[] MFcrypt(byte[] P, byte[] S, int N, int r, int p, int dkLen)
+    /**
+     * Generate a key, working on the p lanes of scrypt in parallel on the passed in
+     * Executor. Each lane being worked on at once needs its own 128 * N * r bytes of
+     * memory.
+     *
+     * @param executor the executor to run the lanes on, or null to run them in turn on the
+     * calling thread.
+     * @param scratch working memory to reuse, or null to allocate it for this call. If
+     * given, it limits the number of lanes worked on at once to the number it has space for.
+     */
+    public static byte[] generate(byte[] P, byte[] S, int N, int r, int p, int dkLen, Executor executor, Scratch scratch)
+    {
+        if (scratch == null)
+        {
+            int lanes = (executor == null) ? 1 : p;
+
+            return MFcrypt(P, S, N, r, p, dkLen, executor, new Scratch(N, r, lanes).lanes);
+        }
+
+        if (scratch.N < N || scratch.r < r)
+        {
+            throw new IllegalArgumentException("scratch area too small for N and r");
+        }
+
+        synchronized (scratch)
+        {
+            return MFcrypt(P, S, N, r, p, dkLen, executor, scratch.lanes);
+        }
+    }
+
+    private static byte[] MFcrypt(byte[] P, byte[] S, int N, int r, int p, int dkLen, Executor executor, Lane[] lanes)
     {
         int MFLenBytes = r * 128;
         byte[] bytes = SingleIterationPBKDF2(P, S, p * MFLenBytes);
@@ -30,10 +172,18 @@ public class SCrypt
             Pack.littleEndianToInt(bytes, 0, B);
 
             int MFLenWords = MFLenBytes >>> 2;
-            for (int BOff = 0; BOff < BLen; BOff += MFLenWords)
+            int tasks = (executor == null) ? 1 : Math.min(p, lanes.length);
+
+            if (tasks == 1)
             {
-                // TODO These can be done in parallel threads
-                SMix(B, BOff, N, r);
+                for (int BOff = 0; BOff < BLen; BOff += MFLenWords)
+                {
+                    SMix(B, BOff, N, r, lanes[0]);
+                }
+            }
+            else
+            {
+                SMixParallel(B, N, r, p, executor, tasks, lanes);
             }
 
             Pack.intToLittleEndian(B, bytes, 0);
@@ -47,6 +197,57 @@ public class SCrypt
         }
     }
 
+    /**
+     * Run the p lanes as the given number of tasks, task t taking lanes t, t + tasks, ...
+     * with lane area t.
+     */
+    private static void SMixParallel(final int[] B, final int N, final int r, final int p, Executor executor, final int tasks, final Lane[] lanes)
+    {
+        final int MFLenWords = r * 32;
+
+        Vector futures = new Vector();
+        for (int t = 0; t < tasks; ++t)
+        {
+            final int first = t;
+
+            FutureTask task = new FutureTask(new Runnable()
+            {
+                public void run()
+                {
+                    for (int i = first; i < p; i += tasks)
+                    {
+                        SMix(B, i * MFLenWords, N, r, lanes[first]);
+                    }
+                }
+            }, null);
+
+            executor.execute(task);
+            futures.addElement(task);
+        }
+
+        for (int t = 0; t != futures.size(); t++)
+        {
+            try
+            {
+                ((FutureTask)futures.elementAt(t)).get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for scrypt");
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                {
+                    throw (RuntimeException)cause;
+                }
+                throw new IllegalStateException("scrypt failed: " + cause);
+            }
+        }
+    }
+
     private static byte[] SingleIterationPBKDF2(byte[] P, byte[] S, int dkLen)
     {
         PBEParametersGenerator pGen = new PKCS5S2ParametersGenerator(new SHA256Digest());
@@ -55,16 +256,15 @@ public class SCrypt
         return key.getKey();
     }
 
-    private static void SMix(int[] B, int BOff, int N, int r)
+    private static void SMix(int[] B, int BOff, int N, int r, Lane lane)
     {
         int BCount = r * 32;
 
-        int[] blockX1 = new int[16];
-        int[] blockX2 = new int[16];
-        int[] blockY = new int[BCount];
+        int[] blockX1 = lane.blockX1;
+        int[] blockX2 = lane.blockX2;
+        int[] blockY = lane.blockY;
 
-        int[] X = new int[BCount];
-        int[][] V = new int[N][];
+        int[] X = lane.X;
 
         try
         {
@@ -72,7 +272,7 @@ public class SCrypt
 
             for (int i = 0; i < N; ++i)
             {
-                V[i] = Arrays.clone(X);
+                System.arraycopy(X, 0, lane.row(i), lane.offset(i, BCount), BCount);
                 BlockMix(X, blockX1, blockX2, blockY, r);
             }
 
@@ -80,7 +280,7 @@ public class SCrypt
             for (int i = 0; i < N; ++i)
             {
                 int j = X[BCount - 16] & mask;
-                Xor(X, V[j], 0, X);
+                Xor(X, lane.row(j), lane.offset(j, BCount), X, BCount);
                 BlockMix(X, blockX1, blockX2, blockY, r);
             }
 
@@ -88,20 +288,25 @@ public class SCrypt
         }
         finally
         {
-            ClearAll(V);
-            ClearAll(new int[][]{ X, blockX1, blockX2, blockY });
+            lane.clearV(N, BCount);
+            Clear(X, BCount);
+            Clear(blockX1);
+            Clear(blockX2);
+            Clear(blockY, BCount);
         }
     }
 
     private static void BlockMix(int[] B, int[] X1, int[] X2, int[] Y, int r)
     {
-        System.arraycopy(B, B.length - 16, X1, 0, 16);
+        int BCount = r * 32;
+
+        System.arraycopy(B, BCount - 16, X1, 0, 16);
 
-        int BOff = 0, YOff = 0, halfLen = B.length >>> 1;
+        int BOff = 0, YOff = 0, halfLen = BCount >>> 1;
 
         for (int i = 2 * r; i > 0; --i)
         {
-            Xor(X1, B, BOff, X2);
+            Xor(X1, B, BOff, X2, 16);
 
             Salsa20Engine.salsaCore(8, X2, X1);
             System.arraycopy(X1, 0, Y, YOff, 16);
@@ -110,12 +315,12 @@ public class SCrypt
             BOff += 16;
         }
 
-        System.arraycopy(Y, 0, B, 0, Y.length);
+        System.arraycopy(Y, 0, B, 0, BCount);
     }
 
-    private static void Xor(int[] a, int[] b, int bOff, int[] output)
+    private static void Xor(int[] a, int[] b, int bOff, int[] output, int len)
     {
-        for (int i = output.length - 1; i >= 0; --i)
+        for (int i = len - 1; i >= 0; --i)
         {
             output[i] = a[i] ^ b[bOff + i];
         }
@@ -137,11 +342,8 @@ public class SCrypt
         }
     }
 
-    private static void ClearAll(int[][] arrays)
+    private static void Clear(int[] array, int len)
     {
-        for (int i = 0; i < arrays.length; ++i)
-        {
-            Clear(arrays[i]);
-        }
+        java.util.Arrays.fill(array, 0, len, 0);
     }
 }
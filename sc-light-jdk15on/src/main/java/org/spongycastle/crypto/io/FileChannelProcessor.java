@@ -0,0 +1,240 @@
+package org.spongycastle.crypto.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.InvalidCipherTextException;
+import org.spongycastle.crypto.Mac;
+import org.spongycastle.crypto.util.ByteBuffers;
+
+/**
+ * Digest, MAC, encrypt or decrypt the contents of a FileChannel in large chunks.
+ * <p>
+ * Each chunk of the file is read into a single direct buffer, which is passed straight to
+ * digests and MACs able to take a ByteBuffer, and copied once into an array for anything
+ * else. An instance reuses its buffers, so it should only be used by one thread at a time.
+ */
+public class FileChannelProcessor
+{
+    /**
+     * The default size of the chunks a file is processed in.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private final int chunkSize;
+
+    private byte[] inBuf;
+    private byte[] outBuf;
+    private ByteBuffer readBuf;
+
+    /**
+     * Create a processor which reads chunks of DEFAULT_CHUNK_SIZE bytes.
+     */
+    public FileChannelProcessor()
+    {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a processor with a given chunk size.
+     *
+     * @param chunkSize the number of bytes in each chunk.
+     */
+    public FileChannelProcessor(int chunkSize)
+    {
+        if (chunkSize < 1)
+        {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Update digest with the whole of channel.
+     */
+    public void update(Digest digest, FileChannel channel)
+        throws IOException
+    {
+        update(digest, channel, 0, channel.size());
+    }
+
+    /**
+     * Update digest with length bytes of channel starting at position. The position of
+     * the channel is not changed.
+     *
+     * @param digest the digest to update.
+     * @param channel the channel to read.
+     * @param position the offset in the channel of the first byte.
+     * @param length the number of bytes to read.
+     * @throws IOException if the channel cannot be read, or holds less data than asked for.
+     */
+    public void update(Digest digest, FileChannel channel, long position, long length)
+        throws IOException
+    {
+        checkRegion(channel, position, length);
+
+        for (long done = 0; done < length;)
+        {
+            done += readChunk(channel, position + done, length - done);
+
+            ByteBuffers.update(digest, readBuf);
+        }
+    }
+
+    /**
+     * Update mac with the whole of channel.
+     */
+    public void update(Mac mac, FileChannel channel)
+        throws IOException
+    {
+        update(mac, channel, 0, channel.size());
+    }
+
+    /**
+     * Update mac with length bytes of channel starting at position. The position of the
+     * channel is not changed.
+     *
+     * @param mac the MAC to update.
+     * @param channel the channel to read.
+     * @param position the offset in the channel of the first byte.
+     * @param length the number of bytes to read.
+     * @throws IOException if the channel cannot be read, or holds less data than asked for.
+     */
+    public void update(Mac mac, FileChannel channel, long position, long length)
+        throws IOException
+    {
+        checkRegion(channel, position, length);
+
+        for (long done = 0; done < length;)
+        {
+            done += readChunk(channel, position + done, length - done);
+
+            ByteBuffers.update(mac, readBuf);
+        }
+    }
+
+    /**
+     * Pass the whole of in through cipher, including the final block, writing the result
+     * to out.
+     */
+    public long process(BufferedBlockCipher cipher, FileChannel in, WritableByteChannel out)
+        throws IOException, InvalidCipherTextException
+    {
+        return process(cipher, in, 0, in.size(), out);
+    }
+
+    /**
+     * Pass length bytes of in starting at position through cipher, and then call doFinal()
+     * on it, writing the result to out. The position of in is not changed.
+     *
+     * @param cipher the initialised cipher to use.
+     * @param in the channel to read.
+     * @param position the offset in the channel of the first byte.
+     * @param length the number of bytes to read.
+     * @param out the channel the output is written to.
+     * @return the number of bytes written to out.
+     * @throws IOException if a channel cannot be read or written, or in holds less data
+     * than asked for.
+     * @throws InvalidCipherTextException if padding is expected and not found.
+     */
+    public long process(BufferedBlockCipher cipher, FileChannel in, long position, long length, WritableByteChannel out)
+        throws IOException, InvalidCipherTextException
+    {
+        checkRegion(in, position, length);
+
+        long written = 0;
+
+        for (long done = 0; done < length;)
+        {
+            int len = readChunk(in, position + done, length - done);
+            byte[] buf = getOutBuf(cipher.getUpdateOutputSize(len));
+
+            if (inBuf == null)
+            {
+                inBuf = new byte[chunkSize];
+            }
+            readBuf.get(inBuf, 0, len);
+
+            written += write(out, buf, cipher.processBytes(inBuf, 0, len, buf, 0));
+            done += len;
+        }
+
+        byte[] buf = getOutBuf(cipher.getOutputSize(0));
+
+        written += write(out, buf, cipher.doFinal(buf, 0));
+
+        return written;
+    }
+
+    private void checkRegion(FileChannel channel, long position, long length)
+        throws IOException
+    {
+        if (position < 0 || length < 0)
+        {
+            throw new IllegalArgumentException("position and length cannot be negative");
+        }
+        if (position + length > channel.size())
+        {
+            throw new EOFException("region extends past the end of the channel");
+        }
+    }
+
+    /**
+     * Read the next chunk of at most remaining bytes starting at position into readBuf,
+     * leaving it ready to be read from.
+     */
+    private int readChunk(FileChannel channel, long position, long remaining)
+        throws IOException
+    {
+        int len = (int)Math.min(chunkSize, remaining);
+
+        if (readBuf == null)
+        {
+            readBuf = ByteBuffer.allocateDirect(chunkSize);
+        }
+
+        readBuf.clear();
+        readBuf.limit(len);
+
+        while (readBuf.hasRemaining())
+        {
+            if (channel.read(readBuf, position + readBuf.position()) < 0)
+            {
+                throw new EOFException("unexpected end of channel");
+            }
+        }
+
+        readBuf.flip();
+
+        return len;
+    }
+
+    private byte[] getOutBuf(int size)
+    {
+        if (outBuf == null || outBuf.length < size)
+        {
+            outBuf = new byte[size];
+        }
+
+        return outBuf;
+    }
+
+    private static int write(WritableByteChannel out, byte[] buf, int len)
+        throws IOException
+    {
+        ByteBuffer b = ByteBuffer.wrap(buf, 0, len);
+
+        while (b.hasRemaining())
+        {
+            out.write(b);
+        }
+
+        return len;
+    }
+}
@@ -1,12 +1,15 @@
 package org.spongycastle.crypto.macs;
 
+import java.nio.ByteBuffer;
 import java.util.Hashtable;
 
+import org.spongycastle.crypto.ByteBufferMac;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.Digest;
 import org.spongycastle.crypto.ExtendedDigest;
-import org.spongycastle.crypto.Mac;
 import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.util.ByteBuffers;
+import org.spongycastle.util.Memoable;
 
 /**
  * HMAC implementation based on RFC2104
@@ -14,7 +17,7 @@ import org.spongycastle.crypto.params.KeyParameter;
  * H(K XOR opad, H(K XOR ipad, text))
  */
 public class HMac
-    implements Mac
+    implements ByteBufferMac
 {
     private final static byte IPAD = (byte)0x36;
     private final static byte OPAD = (byte)0x5C;
@@ -26,6 +29,12 @@ public class HMac
     private byte[] inputPad;
     private byte[] outputPad;
 
+    /*
+     * Digest states after absorbing the padded keys, if the digest supports saving them.
+     */
+    private Memoable ipadState;
+    private Memoable opadState;
+
     private static Hashtable blockLengths;
     
     static
@@ -142,7 +151,19 @@ public class HMac
             outputPad[i] ^= OPAD;
         }
 
-        digest.update(inputPad, 0, inputPad.length);
+        if (digest instanceof Memoable)
+        {
+            digest.update(outputPad, 0, outputPad.length);
+            opadState = ((Memoable)digest).copy();
+
+            digest.reset();
+            digest.update(inputPad, 0, inputPad.length);
+            ipadState = ((Memoable)digest).copy();
+        }
+        else
+        {
+            digest.update(inputPad, 0, inputPad.length);
+        }
     }
 
     public int getMacSize()
@@ -164,6 +185,12 @@ public class HMac
         digest.update(in, inOff, len);
     }
 
+    public void update(
+        ByteBuffer in)
+    {
+        ByteBuffers.update(digest, in);
+    }
+
     public int doFinal(
         byte[] out,
         int outOff)
@@ -171,7 +198,14 @@ public class HMac
         byte[] tmp = new byte[digestSize];
         digest.doFinal(tmp, 0);
 
-        digest.update(outputPad, 0, outputPad.length);
+        if (opadState != null)
+        {
+            ((Memoable)digest).reset(opadState);
+        }
+        else
+        {
+            digest.update(outputPad, 0, outputPad.length);
+        }
         digest.update(tmp, 0, tmp.length);
 
         int     len = digest.doFinal(out, outOff);
@@ -186,6 +220,15 @@ public class HMac
      */
     public void reset()
     {
+        if (ipadState != null)
+        {
+            /*
+             * restore the digest to its state after the inner padded key.
+             */
+            ((Memoable)digest).reset(ipadState);
+            return;
+        }
+
         /*
          * reset the underlying digest.
          */
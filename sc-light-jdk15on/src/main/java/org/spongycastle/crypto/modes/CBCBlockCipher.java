@@ -3,6 +3,8 @@ package org.spongycastle.crypto.modes;
 import org.spongycastle.crypto.BlockCipher;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.DataLengthException;
+import org.spongycastle.crypto.DefaultMultiBlockCipher;
+import org.spongycastle.crypto.MultiBlockCipher;
 import org.spongycastle.crypto.params.ParametersWithIV;
 import org.spongycastle.util.Arrays;
 
@@ -10,11 +12,16 @@ import org.spongycastle.util.Arrays;
  * implements Cipher-Block-Chaining (CBC) mode on top of a simple cipher.
  */
 public class CBCBlockCipher
-    implements BlockCipher
+    implements MultiBlockCipher
 {
+    // the number of blocks decrypted together by processBlocks()
+    private static final int BATCH_BLOCKS = 32;
+
     private byte[]          IV;
     private byte[]          cbcV;
     private byte[]          cbcNextV;
+    private byte[]          chainBuf;
+    private byte[]          plainBuf;
 
     private int             blockSize;
     private BlockCipher     cipher = null;
@@ -148,6 +155,44 @@ public class CBCBlockCipher
         return (encrypting) ? encryptBlock(in, inOff, out, outOff) : decryptBlock(in, inOff, out, outOff);
     }
 
+    /**
+     * Process a run of blocks. Decryption of each block does not depend on the result
+     * for the one before it, so the blocks are passed to the underlying cipher together;
+     * encryption has to be done one block at a time.
+     *
+     * @param in the array containing the input data.
+     * @param inOff offset into the in array the data starts at.
+     * @param blockCount the number of blocks to process.
+     * @param out the array the output data will be copied into.
+     * @param outOff the offset into the out array the output will start at.
+     * @exception DataLengthException if there isn't enough data in in, or
+     * space in out.
+     * @exception IllegalStateException if the cipher isn't initialised.
+     * @return the number of bytes processed and produced.
+     */
+    public int processBlocks(
+        byte[]      in,
+        int         inOff,
+        int         blockCount,
+        byte[]      out,
+        int         outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        if (encrypting)
+        {
+            int resultLen = 0;
+
+            for (int i = 0; i != blockCount; i++)
+            {
+                resultLen += encryptBlock(in, inOff + resultLen, out, outOff + resultLen);
+            }
+
+            return resultLen;
+        }
+
+        return decryptBlocks(in, inOff, blockCount, out, outOff);
+    }
+
     /**
      * reset the chaining vector back to the IV and reset the underlying
      * cipher.
@@ -250,4 +295,60 @@ public class CBCBlockCipher
 
         return length;
     }
+
+    /**
+     * Do the chaining step for CBC mode decryption of a run of blocks.
+     */
+    private int decryptBlocks(
+        byte[]      in,
+        int         inOff,
+        int         blockCount,
+        byte[]      out,
+        int         outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        int len = blockCount * blockSize;
+
+        if ((inOff + len) > in.length)
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+
+        if ((outOff + len) > out.length)
+        {
+            throw new DataLengthException("output buffer too short");
+        }
+
+        if (plainBuf == null)
+        {
+            chainBuf = new byte[(BATCH_BLOCKS + 1) * blockSize];
+            plainBuf = new byte[BATCH_BLOCKS * blockSize];
+        }
+
+        for (int done = 0; done < len;)
+        {
+            int chunk = Math.min(len - done, plainBuf.length);
+
+            /*
+             * chainBuf holds the cbcV followed by the ciphertext, so block i of the
+             * output is the decryption of chainBuf block i + 1 XORed with chainBuf
+             * block i - copying the ciphertext first means out may overwrite in.
+             */
+            System.arraycopy(cbcV, 0, chainBuf, 0, blockSize);
+            System.arraycopy(in, inOff + done, chainBuf, blockSize, chunk);
+
+            DefaultMultiBlockCipher.processBlocks(cipher, chainBuf, blockSize, chunk / blockSize, plainBuf, 0);
+
+            for (int i = 0; i < chunk; i++)
+            {
+                out[outOff + done + i] = (byte)(plainBuf[i] ^ chainBuf[i]);
+            }
+
+            System.arraycopy(chainBuf, chunk, cbcV, 0, blockSize);
+
+            done += chunk;
+        }
+
+        return len;
+    }
 }
@@ -40,6 +40,7 @@ public class GCMBlockCipher
     private byte[]      macBlock;
     private byte[]      S;
     private byte[]      counter;
+    private byte[]      keyStream = new byte[BLOCK_SIZE];
     private int         bufOff;
     private long        totalLength;
 
@@ -133,16 +134,20 @@ public class GCMBlockCipher
         if (keyParam != null)
         {
             cipher.init(true, keyParam);
+
+            this.H = new byte[BLOCK_SIZE];
+            cipher.processBlock(ZEROES, 0, H, 0);
+            multiplier.init(H);
+        }
+        else if (this.H == null)
+        {
+            throw new IllegalArgumentException("Key must be specified in initial init");
         }
 
         // TODO This should be configurable by init parameters
         // (but must be 16 if nonce length not 12) (BLOCK_SIZE?)
 //        this.tagLength = 16;
 
-        this.H = new byte[BLOCK_SIZE];
-        cipher.processBlock(ZEROES, 0, H, 0);
-        multiplier.init(H);
-
         this.initS = gHASH(A);
 
         if (nonce.length == 12)
@@ -197,25 +202,38 @@ public class GCMBlockCipher
     {
         int resultLen = 0;
 
-        for (int i = 0; i != len; i++)
-        {
-//            resultLen += process(in[inOff + i], out, outOff + resultLen);
-            bufBlock[bufOff++] = in[inOff + i];
+        // when decrypting, the last macSize bytes seen may be the tag
+        int reserve = bufBlock.length - BLOCK_SIZE;
 
-            if (bufOff == bufBlock.length)
+        while (bufOff + len >= BLOCK_SIZE + reserve)
+        {
+            if (bufOff == 0)
+            {
+                // whole block straight from the input
+                gCTRBlock(in, inOff, BLOCK_SIZE, out, outOff + resultLen);
+                inOff += BLOCK_SIZE;
+                len -= BLOCK_SIZE;
+            }
+            else
             {
-                gCTRBlock(bufBlock, BLOCK_SIZE, out, outOff + resultLen);
-                if (!forEncryption)
-                {
-                    System.arraycopy(bufBlock, BLOCK_SIZE, bufBlock, 0, macSize);
-                }
-//              bufOff = 0;
-                bufOff = bufBlock.length - BLOCK_SIZE;
-//              return bufBlock.Length;
-                resultLen += BLOCK_SIZE;
+                // fill the buffer first, so the output never gets ahead of the input
+                // consumed if the two share an array
+                int count = bufBlock.length - bufOff;
+                System.arraycopy(in, inOff, bufBlock, bufOff, count);
+                inOff += count;
+                len -= count;
+
+                gCTRBlock(bufBlock, 0, BLOCK_SIZE, out, outOff + resultLen);
+                System.arraycopy(bufBlock, BLOCK_SIZE, bufBlock, 0, reserve);
+                bufOff = reserve;
             }
+
+            resultLen += BLOCK_SIZE;
         }
 
+        System.arraycopy(in, inOff, bufBlock, bufOff, len);
+        bufOff += len;
+
         return resultLen;
     }
 
@@ -226,7 +244,7 @@ public class GCMBlockCipher
 
         if (bufOff == bufBlock.length)
         {
-            gCTRBlock(bufBlock, BLOCK_SIZE, out, outOff);
+            gCTRBlock(bufBlock, 0, BLOCK_SIZE, out, outOff);
             if (!forEncryption)
             {
                 System.arraycopy(bufBlock, BLOCK_SIZE, bufBlock, 0, macSize);
@@ -255,9 +273,7 @@ public class GCMBlockCipher
 
         if (extra > 0)
         {
-            byte[] tmp = new byte[BLOCK_SIZE];
-            System.arraycopy(bufBlock, 0, tmp, 0, extra);
-            gCTRBlock(tmp, extra, out, outOff);
+            gCTRBlock(bufBlock, 0, extra, out, outOff);
         }
 
         // Final gHASH
@@ -328,7 +344,11 @@ public class GCMBlockCipher
         cipher.reset();
     }
 
-    private void gCTRBlock(byte[] buf, int bufCount, byte[] out, int outOff)
+    /*
+     * Process bufCount bytes from buf, a whole block except perhaps at the end. Only the
+     * bytes processed are added into the hash, as the rest of the block is zero padding.
+     */
+    private void gCTRBlock(byte[] buf, int bufOff, int bufCount, byte[] out, int outOff)
     {
 //        inc(counter);
         for (int i = 15; i >= 12; --i)
@@ -342,28 +362,27 @@ public class GCMBlockCipher
             }
         }
 
-        byte[] tmp = new byte[BLOCK_SIZE];
-        cipher.processBlock(counter, 0, tmp, 0);
+        cipher.processBlock(counter, 0, keyStream, 0);
 
-        byte[] hashBytes;
         if (forEncryption)
         {
-            System.arraycopy(ZEROES, bufCount, tmp, bufCount, BLOCK_SIZE - bufCount);
-            hashBytes = tmp;
+            for (int i = 0; i < bufCount; ++i)
+            {
+                byte c = (byte)(keyStream[i] ^ buf[bufOff + i]);
+                out[outOff + i] = c;
+                S[i] ^= c;
+            }
         }
         else
         {
-            hashBytes = buf;
-        }
-
-        for (int i = bufCount - 1; i >= 0; --i)
-        {
-            tmp[i] ^= buf[i];
-            out[outOff + i] = tmp[i];
+            for (int i = 0; i < bufCount; ++i)
+            {
+                byte c = buf[bufOff + i];
+                S[i] ^= c;
+                out[outOff + i] = (byte)(keyStream[i] ^ c);
+            }
         }
 
-//        gHASHBlock(hashBytes);
-        xor(S, hashBytes);
         multiplier.multiplyH(S);
 
         totalLength += bufCount;
@@ -375,10 +394,11 @@ public class GCMBlockCipher
 
         for (int pos = 0; pos < b.length; pos += 16)
         {
-            byte[] X = new byte[16];
             int num = Math.min(b.length - pos, 16);
-            System.arraycopy(b, pos, X, 0, num);
-            xor(Y, X);
+            for (int i = 0; i < num; ++i)
+            {
+                Y[i] ^= b[pos + i];
+            }
             multiplier.multiplyH(Y);
         }
 
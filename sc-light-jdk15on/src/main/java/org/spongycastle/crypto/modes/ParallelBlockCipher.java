@@ -0,0 +1,281 @@
+package org.spongycastle.crypto.modes;
+
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.BlockCipherProvider;
+import org.spongycastle.crypto.CipherParameters;
+import org.spongycastle.crypto.DataLengthException;
+import org.spongycastle.crypto.DefaultMultiBlockCipher;
+import org.spongycastle.crypto.MultiBlockCipher;
+import org.spongycastle.crypto.params.ParametersWithIV;
+import org.spongycastle.util.Arrays;
+
+/**
+ * Base class for modes where a long run of blocks can be split into chunks which are
+ * processed independently, given the IV each chunk starts with. Runs of more than one
+ * chunk passed to processBlocks() are processed as separate tasks on an Executor, each
+ * with its own instance of the mode and cipher; the output is the same as processing
+ * the whole run in order with a single instance.
+ */
+public abstract class ParallelBlockCipher
+    implements MultiBlockCipher
+{
+    /**
+     * The default number of blocks in a chunk (64KB of a cipher with a 128 bit block).
+     */
+    public static final int DEFAULT_CHUNK_BLOCKS = 4096;
+
+    private final BlockCipherProvider provider;
+    private final Executor executor;
+    private final int chunkBlocks;
+
+    protected final int blockSize;
+
+    // idle instances of the mode, keyed for the current direction, for tasks to use
+    private final Vector modes = new Vector();
+
+    private CipherParameters key;
+    private BlockCipher current;
+    private byte[] IV;
+    private byte[] chainIV;
+
+    protected boolean forEncryption;
+
+    /**
+     * Base constructor.
+     *
+     * @param provider the source of instances of the underlying block cipher.
+     * @param executor the executor to process chunks on.
+     * @param chunkBlocks the number of blocks in each chunk.
+     */
+    protected ParallelBlockCipher(BlockCipherProvider provider, Executor executor, int chunkBlocks)
+    {
+        if (executor == null)
+        {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+        if (chunkBlocks < 1)
+        {
+            throw new IllegalArgumentException("chunkBlocks must be at least 1");
+        }
+
+        this.provider = provider;
+        this.executor = executor;
+        this.chunkBlocks = chunkBlocks;
+        this.blockSize = provider.get().getBlockSize();
+    }
+
+    /**
+     * Create an instance of the mode on top of engine.
+     */
+    protected abstract BlockCipher createMode(BlockCipher engine);
+
+    /**
+     * Return true if, in the current direction, runs of blocks can be split into chunks.
+     */
+    protected abstract boolean canSplit();
+
+    /**
+     * Return the IV for a chunk starting blockOffset blocks into the input of a call to
+     * processBlocks(), where iv is the IV at the start of the call. This is only called
+     * before any output for the call is written, and only if canSplit() is true.
+     *
+     * @param iv the IV at the start of the call.
+     * @param in the input passed to processBlocks().
+     * @param inOff the offset passed to processBlocks().
+     * @param blockOffset the number of blocks before the chunk, from 0 up to and including
+     * the number of blocks in the call.
+     * @return the IV the chunk starts with.
+     */
+    protected abstract byte[] chunkIV(byte[] iv, byte[] in, int inOff, int blockOffset);
+
+    public void init(
+        boolean             forEncryption,
+        CipherParameters    params)
+        throws IllegalArgumentException
+    {
+        if (!(params instanceof ParametersWithIV))
+        {
+            throw new IllegalArgumentException(getAlgorithmName() + " requires ParametersWithIV");
+        }
+
+        ParametersWithIV ivParam = (ParametersWithIV)params;
+        byte[] iv = ivParam.getIV();
+
+        if (iv.length != blockSize)
+        {
+            throw new IllegalArgumentException("initialisation vector must be the same length as block size");
+        }
+
+        // if null it's an IV changed only.
+        if (ivParam.getParameters() != null)
+        {
+            key = ivParam.getParameters();
+        }
+        else if (key == null)
+        {
+            throw new IllegalArgumentException("no key set for " + getAlgorithmName());
+        }
+
+        if (ivParam.getParameters() != null || current == null || forEncryption != this.forEncryption)
+        {
+            this.forEncryption = forEncryption;
+
+            modes.removeAllElements();
+            current = createMode(provider.get());
+            current.init(forEncryption, new ParametersWithIV(key, iv));
+        }
+
+        this.IV = Arrays.clone(iv);
+
+        reset();
+    }
+
+    public String getAlgorithmName()
+    {
+        return createMode(provider.get()).getAlgorithmName();
+    }
+
+    public int getBlockSize()
+    {
+        return blockSize;
+    }
+
+    public int processBlock(byte[] in, int inOff, byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        return processBlocks(in, inOff, 1, out, outOff);
+    }
+
+    public int processBlocks(final byte[] in, final int inOff, int blockCount, final byte[] out, final int outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        if (current == null)
+        {
+            throw new IllegalStateException(getAlgorithmName() + " not initialised");
+        }
+
+        int len = blockCount * blockSize;
+
+        if ((inOff + len) > in.length)
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+
+        if ((outOff + len) > out.length)
+        {
+            throw new DataLengthException("output buffer too short");
+        }
+
+        if (!canSplit())
+        {
+            return DefaultMultiBlockCipher.processBlocks(current, in, inOff, blockCount, out, outOff);
+        }
+
+        // taken before any output is written, as out may be the same array as in
+        byte[] endIV = chunkIV(chainIV, in, inOff, blockCount);
+
+        if (blockCount <= chunkBlocks)
+        {
+            DefaultMultiBlockCipher.processBlocks(current, in, inOff, blockCount, out, outOff);
+            chainIV = endIV;
+
+            return len;
+        }
+
+        Vector tasks = new Vector();
+        for (int start = 0; start < blockCount; start += chunkBlocks)
+        {
+            final byte[] iv = chunkIV(chainIV, in, inOff, start);
+            final int off = start * blockSize;
+            final int count = Math.min(chunkBlocks, blockCount - start);
+
+            tasks.addElement(new FutureTask(new Runnable()
+            {
+                public void run()
+                {
+                    processChunk(iv, in, inOff + off, count, out, outOff + off);
+                }
+            }, null));
+        }
+
+        for (int i = 0; i != tasks.size(); i++)
+        {
+            executor.execute((FutureTask)tasks.elementAt(i));
+        }
+
+        for (int i = 0; i != tasks.size(); i++)
+        {
+            try
+            {
+                ((FutureTask)tasks.elementAt(i)).get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for " + getAlgorithmName());
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                {
+                    throw (RuntimeException)cause;
+                }
+                throw new IllegalStateException(getAlgorithmName() + " failed: " + cause);
+            }
+        }
+
+        chainIV = endIV;
+        current.init(forEncryption, new ParametersWithIV(null, chainIV));
+
+        return len;
+    }
+
+    private void processChunk(byte[] iv, byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+    {
+        BlockCipher mode = null;
+
+        synchronized (modes)
+        {
+            if (!modes.isEmpty())
+            {
+                mode = (BlockCipher)modes.lastElement();
+                modes.removeElementAt(modes.size() - 1);
+            }
+        }
+
+        if (mode == null)
+        {
+            mode = createMode(provider.get());
+            mode.init(forEncryption, new ParametersWithIV(key, iv));
+        }
+        else
+        {
+            mode.init(forEncryption, new ParametersWithIV(null, iv));
+        }
+
+        DefaultMultiBlockCipher.processBlocks(mode, in, inOff, blockCount, out, outOff);
+
+        synchronized (modes)
+        {
+            modes.addElement(mode);
+        }
+    }
+
+    /**
+     * reset the mode back to the IV it was initialised with.
+     */
+    public void reset()
+    {
+        if (current != null)
+        {
+            current.init(forEncryption, new ParametersWithIV(null, IV));
+            chainIV = Arrays.clone(IV);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.spongycastle.crypto.modes;
+
+import java.util.concurrent.Executor;
+
+import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.BlockCipherProvider;
+
+/**
+ * Implements Cipher-Block-Chaining (CBC) mode with long runs of blocks split into chunks
+ * which are decrypted concurrently, each chunk taking the ciphertext block before it as
+ * its IV. Encryption cannot be split this way and is done on the calling thread. The
+ * output is the same as that of a CBCBlockCipher.
+ */
+public class ParallelCBCBlockCipher
+    extends ParallelBlockCipher
+{
+    /**
+     * Basic constructor, using chunks of DEFAULT_CHUNK_BLOCKS blocks.
+     *
+     * @param provider the source of instances of the block cipher to be used.
+     * @param executor the executor to process chunks on.
+     */
+    public ParallelCBCBlockCipher(BlockCipherProvider provider, Executor executor)
+    {
+        this(provider, executor, DEFAULT_CHUNK_BLOCKS);
+    }
+
+    /**
+     * Constructor allowing the chunk size to be specified.
+     *
+     * @param provider the source of instances of the block cipher to be used.
+     * @param executor the executor to process chunks on.
+     * @param chunkBlocks the number of blocks in each chunk.
+     */
+    public ParallelCBCBlockCipher(BlockCipherProvider provider, Executor executor, int chunkBlocks)
+    {
+        super(provider, executor, chunkBlocks);
+    }
+
+    protected BlockCipher createMode(BlockCipher engine)
+    {
+        return new CBCBlockCipher(engine);
+    }
+
+    protected boolean canSplit()
+    {
+        return !forEncryption;
+    }
+
+    protected byte[] chunkIV(byte[] iv, byte[] in, int inOff, int blockOffset)
+    {
+        if (blockOffset == 0)
+        {
+            return iv;
+        }
+
+        byte[] chunkIV = new byte[blockSize];
+
+        System.arraycopy(in, inOff + (blockOffset - 1) * blockSize, chunkIV, 0, blockSize);
+
+        return chunkIV;
+    }
+}
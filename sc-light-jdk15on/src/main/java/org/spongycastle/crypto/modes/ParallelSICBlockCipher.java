@@ -0,0 +1,66 @@
+package org.spongycastle.crypto.modes;
+
+import java.util.concurrent.Executor;
+
+import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.BlockCipherProvider;
+
+/**
+ * Implements the Segmented Integer Counter (SIC) mode, also known as CTR mode, with
+ * long runs of blocks split into chunks which are encrypted concurrently. The counter
+ * for each chunk is the initial counter plus the number of blocks before the chunk, so
+ * the output is the same as that of a SICBlockCipher.
+ */
+public class ParallelSICBlockCipher
+    extends ParallelBlockCipher
+{
+    /**
+     * Basic constructor, using chunks of DEFAULT_CHUNK_BLOCKS blocks.
+     *
+     * @param provider the source of instances of the block cipher to be used.
+     * @param executor the executor to process chunks on.
+     */
+    public ParallelSICBlockCipher(BlockCipherProvider provider, Executor executor)
+    {
+        this(provider, executor, DEFAULT_CHUNK_BLOCKS);
+    }
+
+    /**
+     * Constructor allowing the chunk size to be specified.
+     *
+     * @param provider the source of instances of the block cipher to be used.
+     * @param executor the executor to process chunks on.
+     * @param chunkBlocks the number of blocks in each chunk.
+     */
+    public ParallelSICBlockCipher(BlockCipherProvider provider, Executor executor, int chunkBlocks)
+    {
+        super(provider, executor, chunkBlocks);
+    }
+
+    protected BlockCipher createMode(BlockCipher engine)
+    {
+        return new SICBlockCipher(engine);
+    }
+
+    protected boolean canSplit()
+    {
+        return true;
+    }
+
+    protected byte[] chunkIV(byte[] iv, byte[] in, int inOff, int blockOffset)
+    {
+        byte[] counter = new byte[iv.length];
+        int    carry = blockOffset;
+
+        // add as a big endian integer, wrapping round like the counter in SICBlockCipher
+        for (int i = counter.length - 1; i >= 0; i--)
+        {
+            int    x = (iv[i] & 0xff) + (carry & 0xff);
+
+            counter[i] = (byte)x;
+            carry = (carry >>> 8) + (x >>> 8);
+        }
+
+        return counter;
+    }
+}
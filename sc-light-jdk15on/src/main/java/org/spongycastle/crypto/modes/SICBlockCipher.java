@@ -3,20 +3,27 @@ package org.spongycastle.crypto.modes;
 import org.spongycastle.crypto.BlockCipher;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.DataLengthException;
+import org.spongycastle.crypto.DefaultMultiBlockCipher;
+import org.spongycastle.crypto.MultiBlockCipher;
 import org.spongycastle.crypto.params.ParametersWithIV;
 
 /**
  * Implements the Segmented Integer Counter (SIC) mode on top of a simple
  * block cipher. This mode is also known as CTR mode.
  */
-public class SICBlockCipher implements BlockCipher
+public class SICBlockCipher implements MultiBlockCipher
 {
+    // the number of counter blocks encrypted together by processBlocks()
+    private static final int BATCH_BLOCKS = 32;
+
     private final BlockCipher     cipher;
     private final int             blockSize;
     
     private byte[]          IV;
     private byte[]          counter;
     private byte[]          counterOut;
+    private byte[]          counterBlocks;
+    private byte[]          keyStream;
 
 
     /**
@@ -31,6 +38,8 @@ public class SICBlockCipher implements BlockCipher
         this.IV = new byte[blockSize];
         this.counter = new byte[blockSize];
         this.counterOut = new byte[blockSize];
+        this.counterBlocks = new byte[BATCH_BLOCKS * blockSize];
+        this.keyStream = new byte[BATCH_BLOCKS * blockSize];
     }
 
 
@@ -94,6 +103,54 @@ public class SICBlockCipher implements BlockCipher
           out[outOff + i] = (byte)(counterOut[i] ^ in[inOff + i]);
         }
 
+        incrementCounter();
+
+        return counter.length;
+    }
+
+    public int processBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+          throws DataLengthException, IllegalStateException
+    {
+        int len = blockCount * blockSize;
+
+        if ((inOff + len) > in.length)
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+
+        if ((outOff + len) > out.length)
+        {
+            throw new DataLengthException("output buffer too short");
+        }
+
+        for (int done = 0; done < len;)
+        {
+            int chunk = Math.min(len - done, counterBlocks.length);
+
+            //
+            // lay out the counter values for the run and encrypt them together
+            //
+            for (int off = 0; off < chunk; off += blockSize)
+            {
+                System.arraycopy(counter, 0, counterBlocks, off, blockSize);
+                incrementCounter();
+            }
+
+            DefaultMultiBlockCipher.processBlocks(cipher, counterBlocks, 0, chunk / blockSize, keyStream, 0);
+
+            for (int i = 0; i < chunk; i++)
+            {
+                out[outOff + done + i] = (byte)(keyStream[i] ^ in[inOff + done + i]);
+            }
+
+            done += chunk;
+        }
+
+        return len;
+    }
+
+    private void incrementCounter()
+    {
         int    carry = 1;
         
         for (int i = counter.length - 1; i >= 0; i--)
@@ -111,8 +168,6 @@ public class SICBlockCipher implements BlockCipher
             
             counter[i] = (byte)x;
         }
-
-        return counter.length;
     }
 
 
@@ -77,23 +77,26 @@ public class Tables8kGCMMultiplier implements GCMMultiplier
     {
 //      assert x.Length == 16;
 
-        int[] z = new int[4];
+        int z0 = 0, z1 = 0, z2 = 0, z3 = 0;
         for (int i = 15; i >= 0; --i)
         {
 //            GCMUtil.xor(z, M[i + i][x[i] & 0x0f]);
             int[] m = M[i + i][x[i] & 0x0f];
-            z[0] ^= m[0];
-            z[1] ^= m[1];
-            z[2] ^= m[2];
-            z[3] ^= m[3];
+            z0 ^= m[0];
+            z1 ^= m[1];
+            z2 ^= m[2];
+            z3 ^= m[3];
 //            GCMUtil.xor(z, M[i + i + 1][(x[i] & 0xf0) >>> 4]);
             m = M[i + i + 1][(x[i] & 0xf0) >>> 4];
-            z[0] ^= m[0];
-            z[1] ^= m[1];
-            z[2] ^= m[2];
-            z[3] ^= m[3];
+            z0 ^= m[0];
+            z1 ^= m[1];
+            z2 ^= m[2];
+            z3 ^= m[3];
         }
 
-        Pack.intToBigEndian(z, x, 0);
+        Pack.intToBigEndian(z0, x, 0);
+        Pack.intToBigEndian(z1, x, 4);
+        Pack.intToBigEndian(z2, x, 8);
+        Pack.intToBigEndian(z3, x, 12);
     }
 }
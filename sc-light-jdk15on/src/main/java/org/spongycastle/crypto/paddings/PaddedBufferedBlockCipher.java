@@ -4,6 +4,7 @@ import org.spongycastle.crypto.BlockCipher;
 import org.spongycastle.crypto.BufferedBlockCipher;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.DataLengthException;
+import org.spongycastle.crypto.DefaultMultiBlockCipher;
 import org.spongycastle.crypto.InvalidCipherTextException;
 import org.spongycastle.crypto.params.ParametersWithRandom;
 
@@ -208,12 +209,15 @@ public class PaddedBufferedBlockCipher
             len -= gapLen;
             inOff += gapLen;
 
-            while (len > buf.length)
+            if (len > buf.length)
             {
-                resultLen += cipher.processBlock(in, inOff, out, outOff + resultLen);
+                // everything but the last buffer's worth goes through in one call
+                int blocks = (len - buf.length + blockSize - 1) / blockSize;
 
-                len -= blockSize;
-                inOff += blockSize;
+                resultLen += DefaultMultiBlockCipher.processBlocks(cipher, in, inOff, blocks, out, outOff + resultLen);
+
+                len -= blocks * blockSize;
+                inOff += blocks * blockSize;
             }
         }
 
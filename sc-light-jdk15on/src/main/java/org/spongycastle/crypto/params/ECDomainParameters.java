@@ -5,10 +5,17 @@ import java.math.BigInteger;
 import org.spongycastle.math.ec.ECConstants;
 import org.spongycastle.math.ec.ECCurve;
 import org.spongycastle.math.ec.ECPoint;
+import org.spongycastle.math.ec.FixedPointComb;
 
 public class ECDomainParameters
     implements ECConstants
 {
+    /**
+     * The width of the table of multiples of G used by default, see
+     * {@link FixedPointComb}; a table of 2^6 points.
+     */
+    public static final int DEFAULT_COMB_WIDTH = 6;
+
     ECCurve     curve;
     byte[]      seed;
     ECPoint     G;
@@ -20,11 +27,7 @@ public class ECDomainParameters
         ECPoint     G,
         BigInteger  n)
     {
-        this.curve = curve;
-        this.G = G;
-        this.n = n;
-        this.h = ONE;
-        this.seed = null;
+        this(curve, G, n, ONE, null);
     }
 
     public ECDomainParameters(
@@ -33,11 +36,7 @@ public class ECDomainParameters
         BigInteger  n,
         BigInteger  h)
     {
-        this.curve = curve;
-        this.G = G;
-        this.n = n;
-        this.h = h;
-        this.seed = null;
+        this(curve, G, n, h, null);
     }
 
     public ECDomainParameters(
@@ -46,12 +45,42 @@ public class ECDomainParameters
         BigInteger  n,
         BigInteger  h,
         byte[]      seed)
+    {
+        this(curve, G, n, h, seed, DEFAULT_COMB_WIDTH);
+    }
+
+    /**
+     * Constructor allowing the size of the precomputed table used for multiplying G to
+     * be set. Multiplications of G by values less than n, as done for key generation and
+     * signing, use a table of 2^combWidth multiples of G which is built when first needed.
+     * <p>
+     * The table is attached to the G passed in, not a copy of it, so it is shared with
+     * every other user of the same ECPoint instance, such as other parameters for a named
+     * curve. A table already on G that is at least as wide is kept. A combWidth of 0 leaves
+     * G as it is, so a table another user has attached is still used; to take the table off
+     * G everywhere, call {@link FixedPointComb#remove(ECPoint)}.
+     * </p>
+     * @param combWidth the table width, from 1 to FixedPointComb.MAX_WIDTH, or 0 not to
+     * build a table.
+     */
+    public ECDomainParameters(
+        ECCurve     curve,
+        ECPoint     G,
+        BigInteger  n,
+        BigInteger  h,
+        byte[]      seed,
+        int         combWidth)
     {
         this.curve = curve;
         this.G = G;
         this.n = n;
         this.h = h;
         this.seed = seed;
+
+        if (G != null && n != null && combWidth != 0)
+        {
+            FixedPointComb.precompute(G, n.bitLength(), combWidth);
+        }
     }
 
     public ECCurve getCurve()
@@ -0,0 +1,312 @@
+package org.spongycastle.crypto.signers;
+
+import java.math.BigInteger;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.spongycastle.crypto.params.ECDomainParameters;
+import org.spongycastle.crypto.params.ECPublicKeyParameters;
+import org.spongycastle.math.ec.ECAlgorithms;
+import org.spongycastle.math.ec.ECConstants;
+import org.spongycastle.math.ec.ECCurve;
+import org.spongycastle.math.ec.ECPoint;
+
+/**
+ * Verification of a batch of EC-DSA signatures (X9.62), each with its own message and
+ * public key.
+ * <p>
+ * Each signature gets the same result as it would from {@link ECDSASigner#verifySignature},
+ * but the batch shares work between signatures with the same domain parameters: the
+ * inverses of their s values are found with a single modular inversion, and the points
+ * computed for them are converted to affine co-ordinates with a single field inversion
+ * (Montgomery's trick in both cases). If an Executor is given, a large batch is also split
+ * into parts verified concurrently.
+ */
+public class ECDSABatchVerifier
+    implements ECConstants
+{
+    private final Executor executor;
+    private final int chunkSize;
+
+    private final Vector entries = new Vector();
+
+    /**
+     * Create a verifier that does all its work on the calling thread.
+     */
+    public ECDSABatchVerifier()
+    {
+        this.executor = null;
+        this.chunkSize = 0;
+    }
+
+    /**
+     * Create a verifier that splits batches larger than chunkSize into parts of chunkSize
+     * signatures, each verified as a separate task on the passed in Executor.
+     *
+     * @param executor the executor to run the parts of a batch on.
+     * @param chunkSize the number of signatures in each part.
+     */
+    public ECDSABatchVerifier(Executor executor, int chunkSize)
+    {
+        if (executor == null)
+        {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+        if (chunkSize < 1)
+        {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Add a signature to the batch.
+     *
+     * @param message the message, normally a hash, as it would be passed to
+     * ECDSASigner.verifySignature().
+     * @param r the r value of the signature.
+     * @param s the s value of the signature.
+     * @param key the public key to verify the signature with.
+     * @return the index of this signature's result in the array returned by verify().
+     */
+    public int add(byte[] message, BigInteger r, BigInteger s, ECPublicKeyParameters key)
+    {
+        entries.addElement(new Entry(message, r, s, key));
+
+        return entries.size() - 1;
+    }
+
+    /**
+     * Return the number of signatures in the batch.
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Remove all the signatures from the batch.
+     */
+    public void reset()
+    {
+        entries.removeAllElements();
+    }
+
+    /**
+     * Verify the signatures added since the last reset.
+     *
+     * @return an array holding, for each signature in the order added, true if it is
+     * valid, false otherwise.
+     */
+    public boolean[] verify()
+    {
+        final Entry[] batch = new Entry[entries.size()];
+        entries.copyInto(batch);
+
+        final boolean[] results = new boolean[batch.length];
+
+        if (executor == null || batch.length <= chunkSize)
+        {
+            verify(batch, 0, batch.length, results);
+
+            return results;
+        }
+
+        Vector tasks = new Vector();
+        for (int start = 0; start < batch.length; start += chunkSize)
+        {
+            final int from = start;
+            final int to = Math.min(start + chunkSize, batch.length);
+
+            FutureTask task = new FutureTask(new Runnable()
+            {
+                public void run()
+                {
+                    verify(batch, from, to, results);
+                }
+            }, null);
+
+            executor.execute(task);
+            tasks.addElement(task);
+        }
+
+        for (int i = 0; i != tasks.size(); i++)
+        {
+            try
+            {
+                ((FutureTask)tasks.elementAt(i)).get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted waiting for batch verification");
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                {
+                    throw (RuntimeException)cause;
+                }
+                throw new IllegalStateException("batch verification failed: " + cause);
+            }
+        }
+
+        return results;
+    }
+
+    private static void verify(Entry[] batch, int from, int to, boolean[] results)
+    {
+        // only signatures under the same domain parameters can share inversions
+        Hashtable groups = new Hashtable();
+
+        for (int i = from; i < to; i++)
+        {
+            Entry entry = batch[i];
+            BigInteger n = entry.key.getParameters().getN();
+
+            // r and s in the range [1,n-1]
+            if (entry.r.compareTo(ONE) < 0 || entry.r.compareTo(n) >= 0
+                || entry.s.compareTo(ONE) < 0 || entry.s.compareTo(n) >= 0)
+            {
+                results[i] = false;
+                continue;
+            }
+
+            DomainKey domain = new DomainKey(entry.key.getParameters());
+            Vector group = (Vector)groups.get(domain);
+            if (group == null)
+            {
+                group = new Vector();
+                groups.put(domain, group);
+            }
+            group.addElement(new Integer(i));
+        }
+
+        for (Enumeration en = groups.elements(); en.hasMoreElements();)
+        {
+            verifyGroup(batch, (Vector)en.nextElement(), results);
+        }
+    }
+
+    private static void verifyGroup(Entry[] batch, Vector group, boolean[] results)
+    {
+        int count = group.size();
+        int[] indices = new int[count];
+        BigInteger[] s = new BigInteger[count];
+
+        for (int j = 0; j != count; j++)
+        {
+            indices[j] = ((Integer)group.elementAt(j)).intValue();
+            s[j] = batch[indices[j]].s;
+        }
+
+        BigInteger n = batch[indices[0]].key.getParameters().getN();
+        BigInteger[] c = invertAll(s, n);
+
+        ECPoint[] gs = new ECPoint[count];
+        ECPoint[] qs = new ECPoint[count];
+        BigInteger[] u1 = new BigInteger[count];
+        BigInteger[] u2 = new BigInteger[count];
+
+        for (int j = 0; j != count; j++)
+        {
+            Entry entry = batch[indices[j]];
+            BigInteger e = ECDSASigner.calculateE(n, entry.message);
+
+            u1[j] = e.multiply(c[j]).mod(n);
+            u2[j] = entry.r.multiply(c[j]).mod(n);
+            gs[j] = entry.key.getParameters().getG();
+            qs[j] = entry.key.getQ();
+        }
+
+        ECPoint[] points = ECAlgorithms.sumOfTwoMultiplies(gs, u1, qs, u2);
+
+        for (int j = 0; j != count; j++)
+        {
+            ECPoint point = points[j];
+
+            results[indices[j]] = !point.isInfinity()
+                && point.getX().toBigInteger().mod(n).equals(batch[indices[j]].r);
+        }
+    }
+
+    /**
+     * Montgomery's trick: invert each of the values modulo n using a single modular
+     * inversion and 3(k - 1) multiplications.
+     */
+    private static BigInteger[] invertAll(BigInteger[] values, BigInteger n)
+    {
+        int count = values.length;
+        BigInteger[] products = new BigInteger[count];
+
+        products[0] = values[0];
+        for (int j = 1; j < count; j++)
+        {
+            products[j] = products[j - 1].multiply(values[j]).mod(n);
+        }
+
+        BigInteger[] inverses = new BigInteger[count];
+        BigInteger u = products[count - 1].modInverse(n);
+
+        for (int j = count - 1; j > 0; j--)
+        {
+            inverses[j] = u.multiply(products[j - 1]).mod(n);
+            u = u.multiply(values[j]).mod(n);
+        }
+        inverses[0] = u;
+
+        return inverses;
+    }
+
+    private static class Entry
+    {
+        final byte[] message;
+        final BigInteger r;
+        final BigInteger s;
+        final ECPublicKeyParameters key;
+
+        Entry(byte[] message, BigInteger r, BigInteger s, ECPublicKeyParameters key)
+        {
+            this.message = message;
+            this.r = r;
+            this.s = s;
+            this.key = key;
+        }
+    }
+
+    private static class DomainKey
+    {
+        private final ECCurve curve;
+        private final BigInteger n;
+
+        DomainKey(ECDomainParameters params)
+        {
+            this.curve = params.getCurve();
+            this.n = params.getN();
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof DomainKey))
+            {
+                return false;
+            }
+
+            DomainKey other = (DomainKey)o;
+
+            return curve.equals(other.curve) && n.equals(other.n);
+        }
+
+        public int hashCode()
+        {
+            return curve.hashCode() ^ n.hashCode();
+        }
+    }
+}
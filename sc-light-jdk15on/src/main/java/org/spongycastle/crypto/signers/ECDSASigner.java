@@ -142,7 +142,7 @@ public class ECDSASigner
         return v.equals(r);
     }
 
-    private BigInteger calculateE(BigInteger n, byte[] message)
+    static BigInteger calculateE(BigInteger n, byte[] message)
     {
         int log2n = n.bitLength();
         int messageBitLength = message.length * 8;
@@ -10,7 +10,10 @@ import org.spongycastle.crypto.digests.SHA256Digest;
 import org.spongycastle.crypto.digests.SHA384Digest;
 import org.spongycastle.crypto.engines.AESFastEngine;
 import org.spongycastle.crypto.engines.DESedeEngine;
+import org.spongycastle.crypto.modes.AEADBlockCipher;
 import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.modes.GCMBlockCipher;
+import org.spongycastle.crypto.modes.gcm.Tables8kGCMMultiplier;
 
 public class DefaultTlsCipherFactory implements TlsCipherFactory
 {
@@ -24,6 +27,12 @@ public class DefaultTlsCipherFactory implements TlsCipherFactory
                 return createAESCipher(context, 16, digestAlgorithm);
             case EncryptionAlgorithm.AES_256_CBC:
                 return createAESCipher(context, 32, digestAlgorithm);
+            case EncryptionAlgorithm.AES_128_GCM:
+                // NOTE: digestAlgorithm is not used, the AEAD tag replaces the record MAC
+                return createAESGCMCipher(context, 16, 16);
+            case EncryptionAlgorithm.AES_256_GCM:
+                // NOTE: digestAlgorithm is not used, the AEAD tag replaces the record MAC
+                return createAESGCMCipher(context, 32, 16);
             default:
                 throw new TlsFatalAlert(AlertDescription.internal_error);
         }
@@ -35,6 +44,12 @@ public class DefaultTlsCipherFactory implements TlsCipherFactory
             createAESBlockCipher(), createDigest(digestAlgorithm), createDigest(digestAlgorithm), cipherKeySize);
     }
 
+    protected TlsCipher createAESGCMCipher(TlsClientContext context, int cipherKeySize, int macSize) throws IOException
+    {
+        return new TlsAEADCipher(context, createAESGCMBlockCipher(),
+            createAESGCMBlockCipher(), cipherKeySize, macSize);
+    }
+
     protected TlsCipher createDESedeCipher(TlsClientContext context, int cipherKeySize, int digestAlgorithm) throws IOException
     {
         return new TlsBlockCipher(context, createDESedeBlockCipher(),
@@ -46,6 +61,11 @@ public class DefaultTlsCipherFactory implements TlsCipherFactory
         return new CBCBlockCipher(new AESFastEngine());
     }
 
+    protected AEADBlockCipher createAESGCMBlockCipher()
+    {
+        return new GCMBlockCipher(new AESFastEngine(), new Tables8kGCMMultiplier());
+    }
+
     protected BlockCipher createDESedeBlockCipher()
     {
         return new CBCBlockCipher(new DESedeEngine());
@@ -0,0 +1,157 @@
+package org.spongycastle.crypto.tls;
+
+import java.util.Hashtable;
+
+/**
+ * A bounded in-memory session cache. Sessions expire a fixed time after they were
+ * established, and once the cache is full the least recently used session is evicted.
+ */
+public class DefaultTlsSessionCache
+    implements TlsSessionCache
+{
+    /*
+     * RFC 5246 F.1.4. An upper limit of 24 hours is suggested for session ID lifetimes.
+     */
+    private static final long DEFAULT_TIMEOUT = 24L * 60 * 60 * 1000;
+    private static final int DEFAULT_MAX_SIZE = 100;
+
+    private final int maxSize;
+    private final long timeout;
+
+    private final Hashtable entries = new Hashtable();
+
+    /*
+     * Doubly linked list of entries, most recently used first.
+     */
+    private final Entry head = new Entry(null, null);
+
+    public DefaultTlsSessionCache()
+    {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param maxSize the maximum number of sessions to hold.
+     * @param timeout the lifetime of a session in milliseconds.
+     */
+    public DefaultTlsSessionCache(int maxSize, long timeout)
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("'maxSize' must be at least 1");
+        }
+        if (timeout <= 0)
+        {
+            throw new IllegalArgumentException("'timeout' must be positive");
+        }
+
+        this.maxSize = maxSize;
+        this.timeout = timeout;
+
+        head.next = head;
+        head.prev = head;
+    }
+
+    public synchronized TlsSession getSession(String serverIdentity)
+    {
+        Entry entry = (Entry)entries.get(serverIdentity);
+        if (entry == null)
+        {
+            return null;
+        }
+
+        if (isExpired(entry.session))
+        {
+            remove(entry);
+            return null;
+        }
+
+        unlink(entry);
+        linkFirst(entry);
+
+        return entry.session;
+    }
+
+    public synchronized void putSession(String serverIdentity, TlsSession session)
+    {
+        if (serverIdentity == null || session == null)
+        {
+            throw new IllegalArgumentException("'serverIdentity' and 'session' cannot be null");
+        }
+
+        Entry entry = (Entry)entries.get(serverIdentity);
+        if (entry != null)
+        {
+            remove(entry);
+        }
+
+        while (entries.size() >= maxSize)
+        {
+            remove(head.prev);
+        }
+
+        entry = new Entry(serverIdentity, session);
+        entries.put(serverIdentity, entry);
+        linkFirst(entry);
+    }
+
+    public synchronized void removeSession(String serverIdentity)
+    {
+        Entry entry = (Entry)entries.get(serverIdentity);
+        if (entry != null)
+        {
+            remove(entry);
+        }
+    }
+
+    /**
+     * @return the number of sessions currently held, including any that have expired but not
+     *         yet been looked up.
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    private boolean isExpired(TlsSession session)
+    {
+        return System.currentTimeMillis() - session.getCreationTime() >= timeout;
+    }
+
+    private void remove(Entry entry)
+    {
+        entries.remove(entry.serverIdentity);
+        unlink(entry);
+    }
+
+    private void linkFirst(Entry entry)
+    {
+        entry.prev = head;
+        entry.next = head.next;
+        head.next.prev = entry;
+        head.next = entry;
+    }
+
+    private static void unlink(Entry entry)
+    {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    private static class Entry
+    {
+        final String serverIdentity;
+        final TlsSession session;
+
+        Entry prev;
+        Entry next;
+
+        Entry(String serverIdentity, TlsSession session)
+        {
+            this.serverIdentity = serverIdentity;
+            this.session = session;
+        }
+    }
+}
@@ -8,7 +8,7 @@ import org.spongycastle.crypto.params.DSAPrivateKeyParameters;
 import org.spongycastle.crypto.params.ECPrivateKeyParameters;
 import org.spongycastle.crypto.params.RSAKeyParameters;
 
-public class DefaultTlsSignerCredentials implements TlsSignerCredentials
+public class DefaultTlsSignerCredentials implements TlsSignatureAndHashCredentials
 {
     protected TlsClientContext context;
     protected Certificate clientCert;
@@ -76,4 +76,28 @@ public class DefaultTlsSignerCredentials implements TlsSignerCredentials
             throw new TlsFatalAlert(AlertDescription.internal_error);
         }
     }
+
+    public short getSignatureAlgorithm()
+    {
+        return clientSigner.getSignatureAlgorithm();
+    }
+
+    public byte[] generateCertificateSignature(SignatureAndHashAlgorithm algorithm, byte[] hash)
+        throws IOException
+    {
+        if (algorithm.getSignature() != clientSigner.getSignatureAlgorithm())
+        {
+            throw new IllegalArgumentException("'algorithm' does not match the private key");
+        }
+
+        try
+        {
+            return clientSigner.calculateRawSignature(context.getSecureRandom(), clientPrivateKey,
+                algorithm.getHash(), hash);
+        }
+        catch (CryptoException e)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+    }
 }
@@ -0,0 +1,25 @@
+package org.spongycastle.crypto.tls;
+
+public class PRFAlgorithm
+{
+    /*
+     * Note that the values here are implementation-specific and arbitrary.
+     * It is recommended not to depend on the particular values (e.g. serialization).
+     */
+
+    /*
+     * Placeholder to refer to the legacy TLS algorithm (MD5/SHA-1 combination)
+     */
+    public static final int tls_prf_legacy = 0;
+
+    /*
+     * RFC 5246 5: New cipher suites MUST explicitly specify a PRF and, in general, SHOULD
+     * use the TLS PRF with SHA-256 or a stronger standard hash function.
+     */
+    public static final int tls_prf_sha256 = 1;
+
+    /*
+     * RFC 5289 3.2: The cipher suites ending with _SHA384 use the TLS PRF with SHA-384.
+     */
+    public static final int tls_prf_sha384 = 2;
+}
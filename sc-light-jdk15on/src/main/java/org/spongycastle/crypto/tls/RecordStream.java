@@ -12,6 +12,8 @@ import org.spongycastle.crypto.Digest;
  */
 class RecordStream
 {
+    private static final int RECORD_HEADER_LENGTH = 5;
+
     private TlsProtocolHandler handler;
     private InputStream is;
     private OutputStream os;
@@ -19,10 +21,22 @@ class RecordStream
     private TlsCompression writeCompression = null;
     private TlsCipher readCipher = null;
     private TlsCipher writeCipher = null;
+    private TlsCompression pendingCompression = null;
+    private TlsCipher pendingCipher = null;
     private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 
+    /*
+     * Record buffers, reused across records and grown on demand.
+     */
+    private byte[] readBuffer = new byte[0];
+    private byte[] writeBuffer = new byte[0];
+
     private TlsClientContext context = null;
     private CombinedHash hash = null;
+    private ByteArrayOutputStream handshakeMessages = null;
+
+    private ProtocolVersion readVersion = null;
+    private ProtocolVersion writeVersion = ProtocolVersion.TLSv10;
     
     RecordStream(TlsProtocolHandler handler, InputStream is, OutputStream os)
     {
@@ -39,52 +53,84 @@ class RecordStream
     {
         this.context = context;
         this.hash = new CombinedHash(context);
+
+        if (context.getClientVersion().getFullVersion() >= ProtocolVersion.TLSv12.getFullVersion())
+        {
+            this.handshakeMessages = new ByteArrayOutputStream();
+        }
     }
 
-    void clientCipherSpecDecided(TlsCompression tlsCompression, TlsCipher tlsCipher)
+    /**
+     * Set the compression and cipher to switch to on the next change cipher spec in each
+     * direction. In an abbreviated handshake the server's change cipher spec comes first.
+     */
+    void setPendingConnectionState(TlsCompression tlsCompression, TlsCipher tlsCipher)
     {
-        this.writeCompression = tlsCompression;
-        this.writeCipher = tlsCipher;
+        this.pendingCompression = tlsCompression;
+        this.pendingCipher = tlsCipher;
     }
 
-    void serverClientSpecReceived()
+    void sentWriteCipherSpec()
     {
-        this.readCompression = this.writeCompression;
-        this.readCipher = this.writeCipher;
+        this.writeCompression = this.pendingCompression;
+        this.writeCipher = this.pendingCipher;
+    }
+
+    void receivedReadCipherSpec()
+    {
+        this.readCompression = this.pendingCompression;
+        this.readCipher = this.pendingCipher;
     }
 
     public void readData() throws IOException
     {
         short type = TlsUtils.readUint8(is);
 
-        // TODO In light of versioning and SSLv3, what should we expect here?
-        ProtocolVersion expectedVersion = ProtocolVersion.TLSv10; //context.getServerVersion();
-        if (!expectedVersion.equals(TlsUtils.readVersion(is)))
+        /*
+         * Until the server hello has been processed we only know the record must be some
+         * version of SSL/TLS; afterwards it must match the negotiated version.
+         */
+        ProtocolVersion version = TlsUtils.readVersion(is);
+        if (readVersion == null)
+        {
+            // TODO In light of versioning and SSLv3, what should we expect here?
+            if (version.getMajorVersion() != 3)
+            {
+                throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+            }
+        }
+        else if (!readVersion.equals(version))
         {
             throw new TlsFatalAlert(AlertDescription.illegal_parameter);
         }
 
         int size = TlsUtils.readUint16(is);
-        byte[] buf = decodeAndVerify(type, is, size);
-        handler.processData(type, buf, 0, buf.length);
-    }
+        byte[] buf = getReadBuffer(size);
+        TlsUtils.readFully(buf, 0, size, is);
 
-    protected byte[] decodeAndVerify(short type, InputStream is, int len) throws IOException
-    {
-        byte[] buf = new byte[len];
-        TlsUtils.readFully(buf, is);
-        byte[] decoded = readCipher.decodeCiphertext(type, buf, 0, buf.length);
+        int len;
+        if (readCipher instanceof TlsInPlaceCipher)
+        {
+            len = ((TlsInPlaceCipher)readCipher).decodeCiphertextInPlace(type, buf, 0, size);
+        }
+        else
+        {
+            buf = readCipher.decodeCiphertext(type, buf, 0, size);
+            len = buf.length;
+        }
 
         OutputStream cOut = readCompression.decompress(buffer);
 
         if (cOut == buffer)
         {
-            return decoded;
+            handler.processData(type, buf, 0, len);
+            return;
         }
 
-        cOut.write(decoded, 0, decoded.length);
+        cOut.write(buf, 0, len);
         cOut.flush();
-        return getBufferContents();
+        byte[] decompressed = getBufferContents();
+        handler.processData(type, decompressed, 0, decompressed.length);
     }
 
     protected void writeMessage(short type, byte[] message, int offset, int len) throws IOException
@@ -96,33 +142,71 @@ class RecordStream
 
         OutputStream cOut = writeCompression.compress(buffer);
 
-        byte[] ciphertext;
-        if (cOut == buffer)
+        if (cOut != buffer)
         {
-            ciphertext = writeCipher.encodePlaintext(type, message, offset, len);
+            cOut.write(message, offset, len);
+            cOut.flush();
+            message = getBufferContents();
+            offset = 0;
+            len = message.length;
+        }
+
+        byte[] record;
+        int ciphertextLength;
+        if (writeCipher instanceof TlsInPlaceCipher)
+        {
+            /*
+             * The plaintext is copied once, directly behind the space reserved for the record
+             * header, and the cipher encodes it in place.
+             */
+            TlsInPlaceCipher inPlaceCipher = (TlsInPlaceCipher)writeCipher;
+
+            record = getWriteBuffer(RECORD_HEADER_LENGTH + inPlaceCipher.getCiphertextLimit(len));
+            System.arraycopy(message, offset, record, RECORD_HEADER_LENGTH, len);
+            ciphertextLength = inPlaceCipher.encodePlaintextInPlace(type, record, RECORD_HEADER_LENGTH, len);
         }
         else
         {
-            cOut.write(message, offset, len);
-            cOut.flush();
-            byte[] compressed = getBufferContents();
-            ciphertext = writeCipher.encodePlaintext(type, compressed, 0, compressed.length);
-        }
-
-        byte[] writeMessage = new byte[ciphertext.length + 5];
-        TlsUtils.writeUint8(type, writeMessage, 0);
-        // TODO In light of versioning, what should we send here?
-//        TlsUtils.writeVersion(context.getServerVersion(), writeMessage, 1);
-        TlsUtils.writeVersion(ProtocolVersion.TLSv10, writeMessage, 1);
-        TlsUtils.writeUint16(ciphertext.length, writeMessage, 3);
-        System.arraycopy(ciphertext, 0, writeMessage, 5, ciphertext.length);
-        os.write(writeMessage);
+            byte[] ciphertext = writeCipher.encodePlaintext(type, message, offset, len);
+
+            ciphertextLength = ciphertext.length;
+            record = getWriteBuffer(RECORD_HEADER_LENGTH + ciphertextLength);
+            System.arraycopy(ciphertext, 0, record, RECORD_HEADER_LENGTH, ciphertextLength);
+        }
+
+        TlsUtils.writeUint8(type, record, 0);
+        TlsUtils.writeVersion(writeVersion, record, 1);
+        TlsUtils.writeUint16(ciphertextLength, record, 3);
+        os.write(record, 0, RECORD_HEADER_LENGTH + ciphertextLength);
         os.flush();
     }
 
+    /**
+     * Called once the server version is known, after which all records are sent with, and
+     * must be received with, that version.
+     */
+    void setServerVersion(ProtocolVersion serverVersion)
+    {
+        this.readVersion = serverVersion;
+        this.writeVersion = serverVersion;
+    }
+
     void updateHandshakeData(byte[] message, int offset, int len)
     {
         hash.update(message, offset, len);
+
+        if (handshakeMessages != null)
+        {
+            handshakeMessages.write(message, offset, len);
+        }
+    }
+
+    /**
+     * Called once the handshake is finished and no further handshake hashes are needed.
+     */
+    void handshakeComplete()
+    {
+        this.handshakeMessages = null;
     }
 
     /**
@@ -130,6 +214,15 @@ class RecordStream
      */
     byte[] getCurrentHash(byte[] sender)
     {
+        if (TlsUtils.isTLSv12(context))
+        {
+            /*
+             * RFC 5246 7.4.9. The handshake hash uses the hash function of the negotiated PRF,
+             * which isn't known until the server hello, hence the buffered messages.
+             */
+            return getHandshakeHash(TlsUtils.createPRFHash(context.getSecurityParameters().getPrfAlgorithm()));
+        }
+
         Digest d = new CombinedHash(hash);
 
         boolean isTls = context.getServerVersion().getFullVersion() >= ProtocolVersion.TLSv10.getFullVersion();
@@ -145,6 +238,17 @@ class RecordStream
         return doFinal(d);
     }
 
+    /**
+     * Hash the handshake messages so far with the given digest. Only available under TLS 1.2,
+     * where the messages are buffered because the hash to use is not known in advance.
+     */
+    byte[] getHandshakeHash(Digest d)
+    {
+        byte[] messages = handshakeMessages.toByteArray();
+        d.update(messages, 0, messages.length);
+        return doFinal(d);
+    }
+
     protected void close() throws IOException
     {
         IOException e = null;
@@ -175,6 +279,24 @@ class RecordStream
         os.flush();
     }
 
+    private byte[] getReadBuffer(int len)
+    {
+        if (readBuffer.length < len)
+        {
+            readBuffer = new byte[len];
+        }
+        return readBuffer;
+    }
+
+    private byte[] getWriteBuffer(int len)
+    {
+        if (writeBuffer.length < len)
+        {
+            writeBuffer = new byte[len];
+        }
+        return writeBuffer;
+    }
+
     private byte[] getBufferContents()
     {
         byte[] contents = buffer.toByteArray();
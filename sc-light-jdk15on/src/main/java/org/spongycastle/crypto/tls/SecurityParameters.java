@@ -1,10 +1,14 @@
 package org.spongycastle.crypto.tls;
 
+import java.util.Vector;
+
 public class SecurityParameters
 {
     byte[] clientRandom = null;
     byte[] serverRandom = null;
     byte[] masterSecret = null;
+    int prfAlgorithm = PRFAlgorithm.tls_prf_legacy;
+    Vector supportedSignatureAlgorithms = null;
 
     public byte[] getClientRandom()
     {
@@ -20,4 +24,21 @@ public class SecurityParameters
     {
         return masterSecret;
     }
+
+    /**
+     * @return the {@link PRFAlgorithm} in use for this connection.
+     */
+    public int getPrfAlgorithm()
+    {
+        return prfAlgorithm;
+    }
+
+    /**
+     * @return Vector of {@link SignatureAndHashAlgorithm} offered in the client hello's
+     *         signature_algorithms extension, or null if TLS 1.2 was not offered.
+     */
+    public Vector getSupportedSignatureAlgorithms()
+    {
+        return supportedSignatureAlgorithms;
+    }
 }
@@ -0,0 +1,185 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.IOException;
+
+import org.spongycastle.crypto.InvalidCipherTextException;
+import org.spongycastle.crypto.modes.AEADBlockCipher;
+import org.spongycastle.crypto.params.AEADParameters;
+import org.spongycastle.crypto.params.KeyParameter;
+
+/**
+ * A generic TLS 1.2 AEAD cipher (RFC 5246 6.2.3.3), e.g. AES-GCM as described in RFC 5288.
+ * The record MAC is replaced by the authentication tag of the AEAD mode, so no separate MAC
+ * pass or padding is needed.
+ */
+public class TlsAEADCipher implements TlsInPlaceCipher
+{
+    /*
+     * RFC 5288 3. The "fixed" part of the nonce is the 4 byte implicit client/server IV from
+     * the key block, the "explicit" part is 8 bytes carried in each record.
+     */
+    private static final int FIXED_IV_LENGTH = 4;
+    private static final int NONCE_EXPLICIT_LENGTH = 8;
+
+    protected TlsClientContext context;
+    protected int macSize;
+
+    protected AEADBlockCipher encryptCipher;
+    protected AEADBlockCipher decryptCipher;
+
+    protected byte[] encryptImplicitNonce;
+    protected byte[] decryptImplicitNonce;
+
+    private long writeSeqNo = 0;
+    private long readSeqNo = 0;
+
+    public TlsAEADCipher(TlsClientContext context, AEADBlockCipher encryptCipher,
+        AEADBlockCipher decryptCipher, int cipherKeySize, int macSize) throws IOException
+    {
+        if (!TlsUtils.isTLSv12(context))
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        this.context = context;
+        this.macSize = macSize;
+        this.encryptCipher = encryptCipher;
+        this.decryptCipher = decryptCipher;
+
+        int key_block_size = (2 * cipherKeySize) + (2 * FIXED_IV_LENGTH);
+
+        byte[] key_block = TlsUtils.calculateKeyBlock(context, key_block_size);
+
+        int offset = 0;
+
+        KeyParameter client_write_key = new KeyParameter(key_block, offset, cipherKeySize);
+        offset += cipherKeySize;
+        KeyParameter server_write_key = new KeyParameter(key_block, offset, cipherKeySize);
+        offset += cipherKeySize;
+
+        this.encryptImplicitNonce = new byte[FIXED_IV_LENGTH];
+        System.arraycopy(key_block, offset, encryptImplicitNonce, 0, FIXED_IV_LENGTH);
+        offset += FIXED_IV_LENGTH;
+        this.decryptImplicitNonce = new byte[FIXED_IV_LENGTH];
+        System.arraycopy(key_block, offset, decryptImplicitNonce, 0, FIXED_IV_LENGTH);
+
+        /*
+         * Key the ciphers once; each record then re-initialises them with a null key and its
+         * own nonce and additional data.
+         */
+        byte[] dummyNonce = new byte[FIXED_IV_LENGTH + NONCE_EXPLICIT_LENGTH];
+
+        this.encryptCipher.init(true, new AEADParameters(client_write_key, 8 * macSize, dummyNonce, null));
+        this.decryptCipher.init(false, new AEADParameters(server_write_key, 8 * macSize, dummyNonce, null));
+    }
+
+    public byte[] encodePlaintext(short type, byte[] plaintext, int offset, int len) throws IOException
+    {
+        byte[] output = new byte[getCiphertextLimit(len)];
+        System.arraycopy(plaintext, offset, output, 0, len);
+        encodePlaintextInPlace(type, output, 0, len);
+        return output;
+    }
+
+    public byte[] decodeCiphertext(short type, byte[] ciphertext, int offset, int len) throws IOException
+    {
+        byte[] input = new byte[len];
+        System.arraycopy(ciphertext, offset, input, 0, len);
+        int plaintextLength = decodeCiphertextInPlace(type, input, 0, len);
+        byte[] output = new byte[plaintextLength];
+        System.arraycopy(input, 0, output, 0, plaintextLength);
+        return output;
+    }
+
+    public int getCiphertextLimit(int plaintextLength)
+    {
+        return NONCE_EXPLICIT_LENGTH + plaintextLength + macSize;
+    }
+
+    public int encodePlaintextInPlace(short type, byte[] buf, int offset, int len) throws IOException
+    {
+        long seqNo = writeSeqNo++;
+
+        /*
+         * The explicit nonce must be unique per record under a given key; the sequence number
+         * meets that requirement.
+         */
+        byte[] nonce = new byte[FIXED_IV_LENGTH + NONCE_EXPLICIT_LENGTH];
+        System.arraycopy(encryptImplicitNonce, 0, nonce, 0, FIXED_IV_LENGTH);
+        TlsUtils.writeUint64(seqNo, nonce, FIXED_IV_LENGTH);
+
+        // Make room for the explicit nonce in front of the ciphertext
+        System.arraycopy(buf, offset, buf, offset + NONCE_EXPLICIT_LENGTH, len);
+        System.arraycopy(nonce, FIXED_IV_LENGTH, buf, offset, NONCE_EXPLICIT_LENGTH);
+
+        int ciphertextOffset = offset + NONCE_EXPLICIT_LENGTH;
+
+        encryptCipher.init(true, new AEADParameters(null, 8 * macSize, nonce,
+            getAdditionalData(seqNo, type, len)));
+
+        int outputLength = encryptCipher.processBytes(buf, ciphertextOffset, len, buf, ciphertextOffset);
+        try
+        {
+            outputLength += encryptCipher.doFinal(buf, ciphertextOffset + outputLength);
+        }
+        catch (InvalidCipherTextException e)
+        {
+            // This should never happen when encrypting
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        return NONCE_EXPLICIT_LENGTH + outputLength;
+    }
+
+    public int decodeCiphertextInPlace(short type, byte[] buf, int offset, int len) throws IOException
+    {
+        if (len < NONCE_EXPLICIT_LENGTH + macSize)
+        {
+            throw new TlsFatalAlert(AlertDescription.decode_error);
+        }
+
+        long seqNo = readSeqNo++;
+
+        byte[] nonce = new byte[FIXED_IV_LENGTH + NONCE_EXPLICIT_LENGTH];
+        System.arraycopy(decryptImplicitNonce, 0, nonce, 0, FIXED_IV_LENGTH);
+        System.arraycopy(buf, offset, nonce, FIXED_IV_LENGTH, NONCE_EXPLICIT_LENGTH);
+
+        int ciphertextOffset = offset + NONCE_EXPLICIT_LENGTH;
+        int ciphertextLength = len - NONCE_EXPLICIT_LENGTH;
+        int plaintextLength = ciphertextLength - macSize;
+
+        decryptCipher.init(false, new AEADParameters(null, 8 * macSize, nonce,
+            getAdditionalData(seqNo, type, plaintextLength)));
+
+        /*
+         * The plaintext is written back starting at offset, i.e. behind the input still to be
+         * read, so decrypting within the one buffer is safe.
+         */
+        int outputLength = decryptCipher.processBytes(buf, ciphertextOffset, ciphertextLength, buf, offset);
+        try
+        {
+            outputLength += decryptCipher.doFinal(buf, offset + outputLength);
+        }
+        catch (InvalidCipherTextException e)
+        {
+            throw new TlsFatalAlert(AlertDescription.bad_record_mac);
+        }
+
+        return outputLength;
+    }
+
+    protected byte[] getAdditionalData(long seqNo, short type, int len) throws IOException
+    {
+        /*
+         * additional_data = seq_num + TLSCompressed.type + TLSCompressed.version +
+         * TLSCompressed.length
+         */
+        byte[] additional_data = new byte[13];
+        TlsUtils.writeUint64(seqNo, additional_data, 0);
+        TlsUtils.writeUint8(type, additional_data, 8);
+        TlsUtils.writeVersion(context.getServerVersion(), additional_data, 9);
+        TlsUtils.writeUint16(len, additional_data, 11);
+
+        return additional_data;
+    }
+}
@@ -7,13 +7,12 @@ import org.spongycastle.crypto.BlockCipher;
 import org.spongycastle.crypto.Digest;
 import org.spongycastle.crypto.params.KeyParameter;
 import org.spongycastle.crypto.params.ParametersWithIV;
-import org.spongycastle.util.Arrays;
 
 /**
  * A generic TLS 1.0 / SSLv3 block cipher.
  * This can be used for AES or 3DES for example.
  */
-public class TlsBlockCipher implements TlsCipher
+public class TlsBlockCipher implements TlsInPlaceCipher
 {
     protected TlsClientContext context;
 
@@ -23,6 +22,9 @@ public class TlsBlockCipher implements TlsCipher
     protected TlsMac writeMac;
     protected TlsMac readMac;
 
+    private byte[] calculatedMac;
+    private boolean useExplicitIV;
+
 	public TlsMac getWriteMac()
 	{
 		return writeMac;
@@ -39,6 +41,7 @@ public class TlsBlockCipher implements TlsCipher
         this.context = context;
         this.encryptCipher = encryptCipher;
         this.decryptCipher = decryptCipher;
+        this.useExplicitIV = TlsUtils.isTLSv11(context);
 
         int key_block_size = (2 * cipherKeySize) + writeDigest.getDigestSize()
             + readDigest.getDigestSize() + encryptCipher.getBlockSize()
@@ -54,6 +57,8 @@ public class TlsBlockCipher implements TlsCipher
         readMac = new TlsMac(context, readDigest, key_block, offset, readDigest.getDigestSize());
         offset += readDigest.getDigestSize();
 
+        calculatedMac = new byte[readMac.getSize()];
+
         // Init Ciphers
         this.initCipher(true, encryptCipher, key_block, cipherKeySize, offset, offset
             + (cipherKeySize * 2));
@@ -73,6 +78,35 @@ public class TlsBlockCipher implements TlsCipher
     }
 
     public byte[] encodePlaintext(short type, byte[] plaintext, int offset, int len)
+    {
+        int explicitIVLength = useExplicitIV ? encryptCipher.getBlockSize() : 0;
+        int paddingSize = choosePaddingSize(len);
+        int totalsize = explicitIVLength + len + writeMac.getSize() + paddingSize + 1;
+        byte[] outbuf = new byte[totalsize];
+        System.arraycopy(plaintext, offset, outbuf, explicitIVLength, len);
+        encode(type, outbuf, 0, len, paddingSize);
+        return outbuf;
+    }
+
+    public int getCiphertextLimit(int plaintextLength)
+    {
+        /*
+         * The padding is at most 255 bytes, plus the padding length byte itself.
+         */
+        int explicitIVLength = useExplicitIV ? encryptCipher.getBlockSize() : 0;
+        return explicitIVLength + plaintextLength + writeMac.getSize() + 256;
+    }
+
+    public int encodePlaintextInPlace(short type, byte[] buf, int offset, int len)
+    {
+        if (useExplicitIV)
+        {
+            System.arraycopy(buf, offset, buf, offset + encryptCipher.getBlockSize(), len);
+        }
+        return encode(type, buf, offset, len, choosePaddingSize(len));
+    }
+
+    protected int choosePaddingSize(int len)
     {
         int blocksize = encryptCipher.getBlockSize();
         int minPaddingSize = blocksize - ((len + writeMac.getSize() + 1) % blocksize);
@@ -88,30 +122,66 @@ public class TlsBlockCipher implements TlsCipher
             paddingSize += (actualExtraPadBlocks * blocksize);
         }
 
-        int totalsize = len + writeMac.getSize() + paddingSize + 1;
-        byte[] outbuf = new byte[totalsize];
-        System.arraycopy(plaintext, offset, outbuf, 0, len);
-        byte[] mac = writeMac.calculateMac(type, plaintext, offset, len);
-        System.arraycopy(mac, 0, outbuf, len, mac.length);
-        int paddoffset = len + mac.length;
+        return paddingSize;
+    }
+
+    /**
+     * Encode a record whose plaintext is at buf[offset..offset + len), or immediately after
+     * the explicit IV block if one is in use.
+     */
+    private int encode(short type, byte[] buf, int offset, int len, int paddingSize)
+    {
+        int blocksize = encryptCipher.getBlockSize();
+        int plaintextOffset = offset;
+
+        if (useExplicitIV)
+        {
+            /*
+             * RFC 4346 6.2.3.2 (2)(b). A random block is prepended to the plaintext; once
+             * encrypted in the running CBC chain it serves as the IV for the rest of the record.
+             */
+            byte[] explicitIV = new byte[blocksize];
+            context.getSecureRandom().nextBytes(explicitIV);
+            System.arraycopy(explicitIV, 0, buf, offset, blocksize);
+            plaintextOffset += blocksize;
+        }
+
+        int macSize = writeMac.calculateMac(type, buf, plaintextOffset, len, buf, plaintextOffset + len);
+        int paddoffset = plaintextOffset + len + macSize;
         for (int i = 0; i <= paddingSize; i++)
         {
-            outbuf[i + paddoffset] = (byte)paddingSize;
+            buf[i + paddoffset] = (byte)paddingSize;
         }
+        int totalsize = (plaintextOffset - offset) + len + macSize + paddingSize + 1;
         for (int i = 0; i < totalsize; i += blocksize)
         {
-            encryptCipher.processBlock(outbuf, i, outbuf, i);
+            encryptCipher.processBlock(buf, offset + i, buf, offset + i);
         }
-        return outbuf;
+        return totalsize;
     }
 
     public byte[] decodeCiphertext(short type, byte[] ciphertext, int offset, int len)
         throws IOException
     {
-        // TODO TLS 1.1 (RFC 4346) introduces an explicit IV
+        int plaintextlength = decodeCiphertextInPlace(type, ciphertext, offset, len);
+
+        byte[] plaintext = new byte[plaintextlength];
+        System.arraycopy(ciphertext, offset, plaintext, 0, plaintextlength);
+        return plaintext;
+    }
 
-        int minLength = readMac.getSize() + 1;
+    public int decodeCiphertextInPlace(short type, byte[] ciphertext, int offset, int len)
+        throws IOException
+    {
         int blocksize = decryptCipher.getBlockSize();
+
+        /*
+         * TLS 1.1 (RFC 4346) introduces an explicit IV. Decrypting it in the running CBC chain
+         * yields garbage, which is simply discarded along with it.
+         */
+        int explicitIVLength = useExplicitIV ? blocksize : 0;
+
+        int minLength = explicitIVLength + readMac.getSize() + 1;
         boolean decrypterror = false;
 
         /*
@@ -185,17 +255,21 @@ public class TlsBlockCipher implements TlsCipher
          * the mac to give an attacker no kind of timing profile he can use to find out if
          * mac verification failed or padding verification failed.
          */
+        int plaintextoffset = offset + explicitIVLength;
         int plaintextlength = len - minLength - paddingsize;
-        byte[] calculatedMac = readMac.calculateMac(type, ciphertext, offset, plaintextlength);
+        int macSize = readMac.calculateMac(type, ciphertext, plaintextoffset, plaintextlength, calculatedMac, 0);
 
         /*
          * Check all bytes in the mac (constant-time comparison).
          */
-        byte[] decryptedMac = new byte[calculatedMac.length];
-        System.arraycopy(ciphertext, offset + plaintextlength, decryptedMac, 0,
-            calculatedMac.length);
+        int macOffset = plaintextoffset + plaintextlength;
+        byte diff = 0;
+        for (int i = 0; i < macSize; ++i)
+        {
+            diff |= (calculatedMac[i] ^ ciphertext[macOffset + i]);
+        }
 
-        if (!Arrays.constantTimeAreEqual(calculatedMac, decryptedMac))
+        if (diff != 0)
         {
             decrypterror = true;
         }
@@ -208,9 +282,12 @@ public class TlsBlockCipher implements TlsCipher
             throw new TlsFatalAlert(AlertDescription.bad_record_mac);
         }
 
-        byte[] plaintext = new byte[plaintextlength];
-        System.arraycopy(ciphertext, offset, plaintext, 0, plaintextlength);
-        return plaintext;
+        if (useExplicitIV)
+        {
+            System.arraycopy(ciphertext, plaintextoffset, ciphertext, offset, plaintextlength);
+        }
+
+        return plaintextlength;
     }
 
     protected int chooseExtraPadBlocks(SecureRandom r, int max)
@@ -0,0 +1,360 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+
+/**
+ * A non-blocking, buffer oriented front end for the TLS client protocol, in the style of
+ * SSLEngine. No I/O is performed by this class: network data received from the peer is
+ * passed in to {@link #unwrap(ByteBuffer, ByteBuffer)}, and network data to be sent to
+ * the peer is collected with {@link #wrap(ByteBuffer, ByteBuffer)}.
+ * <p/>
+ * A typical handshake loop calls {@link #beginHandshake()}, then alternates between
+ * flushing {@link #wrap(ByteBuffer, ByteBuffer)} output to the network and passing
+ * whatever arrives back to {@link #unwrap(ByteBuffer, ByteBuffer)}, until
+ * {@link #isHandshakeComplete()} returns true. If either call throws an exception, any
+ * alert generated is still available through {@link #wrap(ByteBuffer, ByteBuffer)}.
+ */
+public class TlsClientEngine
+{
+    /*
+     * Size of a TLS record header: type(1) + version(2) + length(2).
+     */
+    private static final int RECORD_HEADER_LENGTH = 5;
+
+    /*
+     * We are only allowed to write fragments up to 2^14 bytes.
+     */
+    private static final int MAX_FRAGMENT_LENGTH = 1 << 14;
+
+    /*
+     * A TLSCiphertext fragment may be at most 2^14 + 2048 bytes.
+     */
+    private static final int MAX_CIPHERTEXT_LENGTH = MAX_FRAGMENT_LENGTH + 2048;
+
+    private final ByteQueue inboundQueue = new ByteQueue();
+    private final ByteQueue outboundQueue = new ByteQueue();
+
+    private final TlsClient tlsClient;
+    private final TlsProtocolHandler handler;
+
+    private byte[] copyBuf = new byte[0];
+    private boolean started = false;
+
+    public TlsClientEngine(TlsClient tlsClient)
+    {
+        this(tlsClient, new SecureRandom());
+    }
+
+    public TlsClientEngine(TlsClient tlsClient, SecureRandom random)
+    {
+        if (tlsClient == null)
+        {
+            throw new IllegalArgumentException("'tlsClient' cannot be null");
+        }
+
+        this.tlsClient = tlsClient;
+        this.handler = new TlsProtocolHandler(new QueueInputStream(inboundQueue),
+            new QueueOutputStream(outboundQueue), random);
+    }
+
+    /**
+     * Enable session resumption through the given cache. Must be called before
+     * {@link #beginHandshake()}.
+     *
+     * @param sessionCache the cache to use.
+     * @param serverIdentity the key for the server in the cache, e.g. "host:port".
+     */
+    public void setSessionCache(TlsSessionCache sessionCache, String serverIdentity)
+    {
+        handler.setSessionCache(sessionCache, serverIdentity);
+    }
+
+    /**
+     * Start the handshake. The client hello is queued for the next call to
+     * {@link #wrap(ByteBuffer, ByteBuffer)}.
+     *
+     * @throws IOException if the client hello could not be produced.
+     */
+    public void beginHandshake() throws IOException
+    {
+        if (started)
+        {
+            throw new IllegalStateException("beginHandshake can only be called once");
+        }
+
+        started = true;
+        handler.beginHandshake(tlsClient);
+    }
+
+    /**
+     * @return true once the handshake is finished and application data can be exchanged.
+     */
+    public boolean isHandshakeComplete()
+    {
+        return handler.isHandshakeComplete();
+    }
+
+    /**
+     * @return true if the handshake resumed a cached session.
+     */
+    public boolean isSessionResumed()
+    {
+        return handler.isSessionResumed();
+    }
+
+    /**
+     * @return true if the connection has been closed by either side.
+     */
+    public boolean isClosed()
+    {
+        return handler.isClosed();
+    }
+
+    /**
+     * @return the number of bytes of network data waiting to be collected by
+     *         {@link #wrap(ByteBuffer, ByteBuffer)}.
+     */
+    public int getAvailableOutputBytes()
+    {
+        return outboundQueue.size();
+    }
+
+    /**
+     * @return the number of bytes of decrypted application data waiting to be collected by
+     *         {@link #unwrap(ByteBuffer, ByteBuffer)}.
+     */
+    public int getAvailableInputBytes()
+    {
+        return handler.getAvailableApplicationData();
+    }
+
+    /**
+     * Encode application data from src and write pending network data to dst.
+     * <p/>
+     * Application data is only consumed once the handshake is complete, and only as long as
+     * the network data already produced fits in dst; anything that does not fit is retained
+     * for the next call.
+     *
+     * @param src application data to send, may be empty.
+     * @param dst buffer to receive network data.
+     * @return the number of bytes written to dst.
+     * @throws IOException if the data could not be encoded.
+     */
+    public int wrap(ByteBuffer src, ByteBuffer dst) throws IOException
+    {
+        checkStarted();
+
+        if (handler.isHandshakeComplete() && !handler.isClosed())
+        {
+            while (src.hasRemaining() && outboundQueue.size() < dst.remaining())
+            {
+                int len = Math.min(src.remaining(), MAX_FRAGMENT_LENGTH);
+
+                if (src.hasArray())
+                {
+                    handler.writeData(src.array(), src.arrayOffset() + src.position(), len);
+                    src.position(src.position() + len);
+                }
+                else
+                {
+                    byte[] buf = getCopyBuf(len);
+                    src.get(buf, 0, len);
+                    handler.writeData(buf, 0, len);
+                }
+            }
+        }
+
+        int count = Math.min(outboundQueue.size(), dst.remaining());
+        if (count > 0)
+        {
+            if (dst.hasArray())
+            {
+                outboundQueue.read(dst.array(), dst.arrayOffset() + dst.position(), count, 0);
+                dst.position(dst.position() + count);
+            }
+            else
+            {
+                byte[] buf = getCopyBuf(count);
+                outboundQueue.read(buf, 0, count, 0);
+                dst.put(buf, 0, count);
+            }
+            outboundQueue.removeData(count);
+        }
+
+        return count;
+    }
+
+    /**
+     * Process network data from src and write any decrypted application data to dst.
+     * <p/>
+     * Only complete records are consumed from src; a trailing partial record is left in place
+     * so the caller can compact the buffer and read more. Application data that does not fit
+     * in dst is retained for the next call. Processing a record may produce handshake or
+     * alert messages, which should then be collected with {@link #wrap(ByteBuffer, ByteBuffer)}.
+     *
+     * @param src network data received from the peer.
+     * @param dst buffer to receive application data.
+     * @return the number of bytes written to dst.
+     * @throws IOException if a record was rejected.
+     */
+    public int unwrap(ByteBuffer src, ByteBuffer dst) throws IOException
+    {
+        checkStarted();
+
+        while (!handler.isClosed() && src.remaining() >= RECORD_HEADER_LENGTH)
+        {
+            int pos = src.position();
+            int fragmentLength = ((src.get(pos + 3) & 0xff) << 8) | (src.get(pos + 4) & 0xff);
+
+            // rejected before waiting for, or buffering, the rest of the record
+            if (fragmentLength > MAX_CIPHERTEXT_LENGTH)
+            {
+                handler.failWithAlert(AlertDescription.record_overflow);
+            }
+
+            int recordLength = RECORD_HEADER_LENGTH + fragmentLength;
+
+            if (src.remaining() < recordLength)
+            {
+                break;
+            }
+
+            if (src.hasArray())
+            {
+                inboundQueue.addData(src.array(), src.arrayOffset() + pos, recordLength);
+                src.position(pos + recordLength);
+            }
+            else
+            {
+                byte[] buf = getCopyBuf(recordLength);
+                src.get(buf, 0, recordLength);
+                inboundQueue.addData(buf, 0, recordLength);
+            }
+
+            handler.processRecord();
+        }
+
+        int count = Math.min(handler.getAvailableApplicationData(), dst.remaining());
+        if (count > 0)
+        {
+            if (dst.hasArray())
+            {
+                handler.readApplicationData(dst.array(), dst.arrayOffset() + dst.position(), count);
+                dst.position(dst.position() + count);
+            }
+            else
+            {
+                byte[] buf = getCopyBuf(count);
+                handler.readApplicationData(buf, 0, count);
+                dst.put(buf, 0, count);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Send a close_notify alert to the peer. The alert is queued for the next call to
+     * {@link #wrap(ByteBuffer, ByteBuffer)}.
+     *
+     * @throws IOException if the alert could not be produced.
+     */
+    public void closeOutbound() throws IOException
+    {
+        handler.close();
+    }
+
+    private void checkStarted()
+    {
+        if (!started)
+        {
+            throw new IllegalStateException("beginHandshake must be called first");
+        }
+    }
+
+    private byte[] getCopyBuf(int len)
+    {
+        if (copyBuf.length < len)
+        {
+            copyBuf = new byte[ByteQueue.nextTwoPow(len)];
+        }
+        return copyBuf;
+    }
+
+    private static class QueueInputStream
+        extends InputStream
+    {
+        private final ByteQueue queue;
+
+        QueueInputStream(ByteQueue queue)
+        {
+            this.queue = queue;
+        }
+
+        public int available()
+        {
+            return queue.size();
+        }
+
+        public int read()
+        {
+            if (queue.size() == 0)
+            {
+                return -1;
+            }
+
+            byte[] b = new byte[1];
+            queue.read(b, 0, 1, 0);
+            queue.removeData(1);
+            return b[0] & 0xff;
+        }
+
+        public int read(byte[] buf, int off, int len)
+        {
+            if (queue.size() == 0)
+            {
+                return -1;
+            }
+
+            len = Math.min(len, queue.size());
+            queue.read(buf, off, len, 0);
+            queue.removeData(len);
+            return len;
+        }
+
+        public void close()
+        {
+        }
+    }
+
+    private static class QueueOutputStream
+        extends OutputStream
+    {
+        private final ByteQueue queue;
+        private final byte[] oneByte = new byte[1];
+
+        QueueOutputStream(ByteQueue queue)
+        {
+            this.queue = queue;
+        }
+
+        public void write(int b)
+        {
+            oneByte[0] = (byte)b;
+            queue.addData(oneByte, 0, 1);
+        }
+
+        public void write(byte[] buf, int off, int len)
+        {
+            queue.addData(buf, off, len);
+        }
+
+        public void close()
+        {
+        }
+    }
+}
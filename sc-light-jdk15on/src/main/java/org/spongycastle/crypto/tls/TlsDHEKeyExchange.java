@@ -1,13 +1,14 @@
 package org.spongycastle.crypto.tls;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
 
 import org.spongycastle.crypto.Signer;
-import org.spongycastle.crypto.io.SignerInputStream;
 import org.spongycastle.crypto.params.DHParameters;
 import org.spongycastle.crypto.params.DHPublicKeyParameters;
+import org.spongycastle.util.io.TeeInputStream;
 
 class TlsDHEKeyExchange extends TlsDHKeyExchange
 {
@@ -26,12 +27,20 @@ class TlsDHEKeyExchange extends TlsDHKeyExchange
     {
         SecurityParameters securityParameters = context.getSecurityParameters();
 
-        Signer signer = initSigner(tlsSigner, securityParameters);
-        InputStream sigIn = new SignerInputStream(is, signer);
+        /*
+         * The params are captured as they are read, since under TLS 1.2 the hash they are
+         * signed with is only given after them.
+         */
+        ByteArrayOutputStream serverParams = new ByteArrayOutputStream();
+        InputStream teeIn = new TeeInputStream(is, serverParams);
 
-        byte[] pBytes = TlsUtils.readOpaque16(sigIn);
-        byte[] gBytes = TlsUtils.readOpaque16(sigIn);
-        byte[] YsBytes = TlsUtils.readOpaque16(sigIn);
+        byte[] pBytes = TlsUtils.readOpaque16(teeIn);
+        byte[] gBytes = TlsUtils.readOpaque16(teeIn);
+        byte[] YsBytes = TlsUtils.readOpaque16(teeIn);
+
+        Signer signer = initSigner(tlsSigner, securityParameters, is);
+        byte[] params = serverParams.toByteArray();
+        signer.update(params, 0, params.length);
 
         byte[] sigByte = TlsUtils.readOpaque16(is);
         if (!signer.verifySignature(sigByte))
@@ -47,9 +56,10 @@ class TlsDHEKeyExchange extends TlsDHKeyExchange
             new DHParameters(p, g)));
     }
 
-    protected Signer initSigner(TlsSigner tlsSigner, SecurityParameters securityParameters)
+    protected Signer initSigner(TlsSigner tlsSigner, SecurityParameters securityParameters,
+        InputStream is) throws IOException
     {
-        Signer signer = tlsSigner.createVerifyer(this.serverPublicKey);
+        Signer signer = TlsUtils.createVerifyer(context, tlsSigner, this.serverPublicKey, is);
         signer.update(securityParameters.clientRandom, 0, securityParameters.clientRandom.length);
         signer.update(securityParameters.serverRandom, 0, securityParameters.serverRandom.length);
         return signer;
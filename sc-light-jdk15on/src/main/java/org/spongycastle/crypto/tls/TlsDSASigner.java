@@ -4,6 +4,7 @@ import java.security.SecureRandom;
 
 import org.spongycastle.crypto.CryptoException;
 import org.spongycastle.crypto.DSA;
+import org.spongycastle.crypto.Digest;
 import org.spongycastle.crypto.Signer;
 import org.spongycastle.crypto.digests.NullDigest;
 import org.spongycastle.crypto.digests.SHA1Digest;
@@ -23,6 +24,15 @@ abstract class TlsDSASigner implements TlsSigner
         return signer.generateSignature();
     }
 
+    public byte[] calculateRawSignature(SecureRandom secureRandom, AsymmetricKeyParameter privateKey,
+        short hashAlgorithm, byte[] hash) throws CryptoException
+    {
+        Signer signer = new DSADigestSigner(createDSAImpl(), new NullDigest());
+        signer.init(true, new ParametersWithRandom(privateKey, secureRandom));
+        signer.update(hash, 0, hash.length);
+        return signer.generateSignature();
+    }
+
     public Signer createVerifyer(AsymmetricKeyParameter publicKey)
     {
         Signer verifyer = new DSADigestSigner(createDSAImpl(), new SHA1Digest());
@@ -30,5 +40,12 @@ abstract class TlsDSASigner implements TlsSigner
         return verifyer;
     }
 
+    public Signer createVerifyer(Digest digest, AsymmetricKeyParameter publicKey)
+    {
+        Signer verifyer = new DSADigestSigner(createDSAImpl(), digest);
+        verifyer.init(false, publicKey);
+        return verifyer;
+    }
+
     protected abstract DSA createDSAImpl();
 }
@@ -1,13 +1,14 @@
 package org.spongycastle.crypto.tls;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
 import org.spongycastle.crypto.Signer;
-import org.spongycastle.crypto.io.SignerInputStream;
 import org.spongycastle.crypto.params.ECDomainParameters;
 import org.spongycastle.crypto.params.ECPublicKeyParameters;
 import org.spongycastle.math.ec.ECPoint;
+import org.spongycastle.util.io.TeeInputStream;
 
 /**
  * ECDHE key exchange (see RFC 4492)
@@ -29,8 +30,12 @@ class TlsECDHEKeyExchange extends TlsECDHKeyExchange
     {
         SecurityParameters securityParameters = context.getSecurityParameters();
 
-        Signer signer = initSigner(tlsSigner, securityParameters);
-        InputStream sigIn = new SignerInputStream(is, signer);
+        /*
+         * The params are captured as they are read, since under TLS 1.2 the hash they are
+         * signed with is only given after them.
+         */
+        ByteArrayOutputStream serverParams = new ByteArrayOutputStream();
+        InputStream sigIn = new TeeInputStream(is, serverParams);
 
         short curveType = TlsUtils.readUint8(sigIn);
         ECDomainParameters curve_params;
@@ -53,6 +58,10 @@ class TlsECDHEKeyExchange extends TlsECDHKeyExchange
 
         byte[] publicBytes = TlsUtils.readOpaque8(sigIn);
 
+        Signer signer = initSigner(tlsSigner, securityParameters, is);
+        byte[] params = serverParams.toByteArray();
+        signer.update(params, 0, params.length);
+
         byte[] sigByte = TlsUtils.readOpaque16(is);
         if (!signer.verifySignature(sigByte))
         {
@@ -102,9 +111,10 @@ class TlsECDHEKeyExchange extends TlsECDHKeyExchange
         }
     }
 
-    protected Signer initSigner(TlsSigner tlsSigner, SecurityParameters securityParameters)
+    protected Signer initSigner(TlsSigner tlsSigner, SecurityParameters securityParameters,
+        InputStream is) throws IOException
     {
-        Signer signer = tlsSigner.createVerifyer(this.serverPublicKey);
+        Signer signer = TlsUtils.createVerifyer(context, tlsSigner, this.serverPublicKey, is);
         signer.update(securityParameters.clientRandom, 0, securityParameters.clientRandom.length);
         signer.update(securityParameters.serverRandom, 0, securityParameters.serverRandom.length);
         return signer;
@@ -12,6 +12,11 @@ class TlsECDSASigner extends TlsDSASigner
         return publicKey instanceof ECPublicKeyParameters;
     }
 
+    public short getSignatureAlgorithm()
+    {
+        return SignatureAlgorithm.ecdsa;
+    }
+
     protected DSA createDSAImpl()
     {
         return new ECDSASigner();
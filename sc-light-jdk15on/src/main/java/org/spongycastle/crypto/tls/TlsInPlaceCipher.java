@@ -0,0 +1,38 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.IOException;
+
+/**
+ * Ciphers which can encode and decode records within a buffer supplied by the caller
+ * implement this interface as well as TlsCipher. RecordStream uses these methods when
+ * they are available, and the copying methods on TlsCipher otherwise.
+ */
+public interface TlsInPlaceCipher
+    extends TlsCipher
+{
+    /**
+     * Return the maximum size of the encoding of a plaintext of the given length. A buffer
+     * passed to {@link #encodePlaintextInPlace(short, byte[], int, int)} must have at least
+     * this many bytes available from the start of the plaintext.
+     *
+     * @param plaintextLength the length of the plaintext.
+     * @return the maximum ciphertext length.
+     */
+    int getCiphertextLimit(int plaintextLength);
+
+    /**
+     * Encode the plaintext at buf[offset..offset + len) in place, writing the ciphertext back
+     * starting at offset.
+     *
+     * @return the length of the ciphertext.
+     */
+    int encodePlaintextInPlace(short type, byte[] buf, int offset, int len) throws IOException;
+
+    /**
+     * Decode the ciphertext at buf[offset..offset + len) in place, leaving the plaintext
+     * starting at offset.
+     *
+     * @return the length of the plaintext.
+     */
+    int decodeCiphertextInPlace(short type, byte[] buf, int offset, int len) throws IOException;
+}
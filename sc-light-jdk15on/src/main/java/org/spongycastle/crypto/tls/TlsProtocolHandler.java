@@ -21,6 +21,7 @@ import org.spongycastle.util.Arrays;
 public class TlsProtocolHandler
 {
     private static final Integer EXT_RenegotiationInfo = new Integer(ExtensionType.renegotiation_info);
+    private static final Integer EXT_SignatureAlgorithms = new Integer(ExtensionType.signature_algorithms);
 
     /*
      * Our Connection states
@@ -37,6 +38,7 @@ public class TlsProtocolHandler
     private static final short CS_CLIENT_FINISHED_SEND = 10;
     private static final short CS_SERVER_CHANGE_CIPHER_SPEC_RECEIVED = 11;
     private static final short CS_DONE = 12;
+    private static final short CS_SERVER_HELLO_RESUMED_RECEIVED = 13;
 
     private static final byte[] emptybuf = new byte[0];
 
@@ -73,6 +75,14 @@ public class TlsProtocolHandler
     private TlsKeyExchange keyExchange = null;
     private TlsAuthentication authentication = null;
     private CertificateRequest certificateRequest = null;
+    private SignatureAndHashAlgorithm certificateVerifyAlgorithm = null;
+
+    private TlsSessionCache sessionCache = null;
+    private String serverIdentity = null;
+    private TlsSession offeredSession = null;
+    private byte[] sessionID = null;
+    private int selectedCipherSuite = -1;
+    private short selectedCompressionMethod = -1;
 
     private short connection_state = 0;
 
@@ -262,8 +272,39 @@ public class TlsProtocolHandler
                             this.failWithError(AlertLevel.fatal, AlertDescription.handshake_failure);
                         }
 
+                        if (offeredSession != null)
+                        {
+                            /*
+                             * In an abbreviated handshake our finished message follows, and
+                             * covers, the server's.
+                             */
+                            byte[] header = new byte[4];
+                            TlsUtils.writeUint8(HandshakeType.finished, header, 0);
+                            TlsUtils.writeUint24(buf.length, header, 1);
+                            rs.updateHandshakeData(header, 0, header.length);
+                            rs.updateHandshakeData(buf, 0, buf.length);
+
+                            sendChangeCipherSpecAndFinished();
+                        }
+
                         connection_state = CS_DONE;
 
+                        rs.handshakeComplete();
+
+                        if (sessionCache != null && offeredSession == null)
+                        {
+                            if (sessionID.length > 0)
+                            {
+                                sessionCache.putSession(serverIdentity, new TlsSession(sessionID,
+                                    tlsClientContext.getServerVersion(), selectedCipherSuite,
+                                    selectedCompressionMethod, securityParameters));
+                            }
+                            else
+                            {
+                                sessionCache.removeSession(serverIdentity);
+                            }
+                        }
+
                         /*
                          * We are now ready to receive application data.
                          */
@@ -289,6 +330,7 @@ public class TlsProtocolHandler
 
                         this.tlsClientContext.setServerVersion(server_version);
                         this.tlsClient.notifyServerVersion(server_version);
+                        this.rs.setServerVersion(server_version);
 
                         /*
                          * Read the server random
@@ -296,7 +338,7 @@ public class TlsProtocolHandler
                         securityParameters.serverRandom = new byte[32];
                         TlsUtils.readFully(securityParameters.serverRandom, is);
 
-                        byte[] sessionID = TlsUtils.readOpaque8(is);
+                        this.sessionID = TlsUtils.readOpaque8(is);
                         if (sessionID.length > 32)
                         {
                             this.failWithError(AlertLevel.fatal, AlertDescription.illegal_parameter);
@@ -308,7 +350,7 @@ public class TlsProtocolHandler
                          * Find out which CipherSuite the server has chosen and check that
                          * it was one of the offered ones.
                          */
-                        int selectedCipherSuite = TlsUtils.readUint16(is);
+                        this.selectedCipherSuite = TlsUtils.readUint16(is);
                         if (!arrayContains(offeredCipherSuites, selectedCipherSuite)
                             || selectedCipherSuite == CipherSuite.TLS_EMPTY_RENEGOTIATION_INFO_SCSV)
                         {
@@ -317,11 +359,16 @@ public class TlsProtocolHandler
 
                         this.tlsClient.notifySelectedCipherSuite(selectedCipherSuite);
 
+                        if (TlsUtils.isTLSv12(tlsClientContext))
+                        {
+                            securityParameters.prfAlgorithm = TlsUtils.getPRFAlgorithm(selectedCipherSuite);
+                        }
+
                         /*
                          * Find out which CompressionMethod the server has chosen and check that
                          * it was one of the offered ones.
                          */
-                        short selectedCompressionMethod = TlsUtils.readUint8(is);
+                        this.selectedCompressionMethod = TlsUtils.readUint8(is);
                         if (!arrayContains(offeredCompressionMethods, selectedCompressionMethod))
                         {
                             this.failWithError(AlertLevel.fatal, AlertDescription.illegal_parameter);
@@ -442,6 +489,30 @@ public class TlsProtocolHandler
                             tlsClient.processServerExtensions(serverExtensions);
                         }
 
+                        /*
+                         * RFC 5246 7.4.1.3. If the server echoes the session ID we offered, the
+                         * session is being resumed and the handshake proceeds directly to the
+                         * server's change cipher spec and finished messages.
+                         */
+                        if (offeredSession != null
+                            && Arrays.constantTimeAreEqual(offeredSession.getSessionID(), sessionID))
+                        {
+                            if (!offeredSession.getVersion().equals(server_version)
+                                || offeredSession.getCipherSuite() != selectedCipherSuite
+                                || offeredSession.getCompressionMethod() != selectedCompressionMethod)
+                            {
+                                this.failWithError(AlertLevel.fatal, AlertDescription.illegal_parameter);
+                            }
+
+                            offeredSession.restoreSecurityParameters(securityParameters);
+
+                            rs.setPendingConnectionState(tlsClient.getCompression(), tlsClient.getCipher());
+
+                            connection_state = CS_SERVER_HELLO_RESUMED_RECEIVED;
+                            break;
+                        }
+
+                        this.offeredSession = null;
                         this.keyExchange = tlsClient.getKeyExchange();
 
                         connection_state = CS_SERVER_HELLO_RECEIVED;
@@ -501,6 +572,12 @@ public class TlsProtocolHandler
                             }
                             else
                             {
+                                if (clientCreds instanceof TlsSignerCredentials
+                                    && TlsUtils.isTLSv12(tlsClientContext))
+                                {
+                                    this.certificateVerifyAlgorithm = chooseCertificateVerifyAlgorithm(clientCreds);
+                                }
+
                                 this.keyExchange.processClientCredentials(clientCreds);
 
                                 sendClientCertificate(clientCreds.getCertificate());
@@ -532,44 +609,36 @@ public class TlsProtocolHandler
 
                         if (clientCreds != null && clientCreds instanceof TlsSignerCredentials)
                         {
-                            TlsSignerCredentials signerCreds = (TlsSignerCredentials)clientCreds;
-                            byte[] md5andsha1 = rs.getCurrentHash(null);
-                            byte[] clientCertificateSignature = signerCreds.generateCertificateSignature(
-                                md5andsha1);
-                            sendCertificateVerify(clientCertificateSignature);
+                            byte[] clientCertificateSignature;
+                            if (certificateVerifyAlgorithm != null)
+                            {
+                                /*
+                                 * RFC 5246 7.4.8. The handshake messages are hashed with the hash
+                                 * of the algorithm agreed from the certificate request.
+                                 */
+                                TlsSignatureAndHashCredentials signerCreds = (TlsSignatureAndHashCredentials)clientCreds;
+                                byte[] hash = rs.getHandshakeHash(TlsUtils.createHash(certificateVerifyAlgorithm.getHash()));
+                                clientCertificateSignature = signerCreds.generateCertificateSignature(
+                                    certificateVerifyAlgorithm, hash);
+                            }
+                            else
+                            {
+                                TlsSignerCredentials signerCreds = (TlsSignerCredentials)clientCreds;
+                                byte[] md5andsha1 = rs.getCurrentHash(null);
+                                clientCertificateSignature = signerCreds.generateCertificateSignature(
+                                    md5andsha1);
+                            }
+                            sendCertificateVerify(certificateVerifyAlgorithm, clientCertificateSignature);
 
                             connection_state = CS_CERTIFICATE_VERIFY_SEND;
                         }
 
-                        /*
-                         * Now, we send change cipher state
-                         */
-                        byte[] cmessage = new byte[1];
-                        cmessage[0] = 1;
-                        rs.writeMessage(ContentType.change_cipher_spec, cmessage, 0,
-                            cmessage.length);
-
-                        connection_state = CS_CLIENT_CHANGE_CIPHER_SPEC_SEND;
-
                         /*
                          * Initialize our cipher suite
                          */
-                        rs.clientCipherSpecDecided(tlsClient.getCompression(), tlsClient.getCipher());
-
-                        /*
-                         * Send our finished message.
-                         */
-                        byte[] clientVerifyData = TlsUtils.calculateVerifyData(tlsClientContext,
-                            "client finished", rs.getCurrentHash(TlsUtils.SSL_CLIENT));
+                        rs.setPendingConnectionState(tlsClient.getCompression(), tlsClient.getCipher());
 
-                        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                        TlsUtils.writeUint8(HandshakeType.finished, bos);
-                        TlsUtils.writeOpaque24(clientVerifyData, bos);
-                        byte[] message = bos.toByteArray();
-
-                        rs.writeMessage(ContentType.handshake, message, 0, message.length);
-
-                        this.connection_state = CS_CLIENT_FINISHED_SEND;
+                        sendChangeCipherSpecAndFinished();
                         break;
                     default:
                         this.failWithError(AlertLevel.fatal, AlertDescription.handshake_failure);
@@ -630,6 +699,22 @@ public class TlsProtocolHandler
                             certificateTypes[i] = TlsUtils.readUint8(is);
                         }
 
+                        Vector supportedSignatureAlgorithms = null;
+                        if (TlsUtils.isTLSv12(tlsClientContext))
+                        {
+                            supportedSignatureAlgorithms = TlsUtils.parseSupportedSignatureAlgorithms(is);
+
+                            /*
+                             * RFC 5246 7.4.8. The certificate verify signature must use an
+                             * algorithm from this list, and we only sign with those we offered.
+                             */
+                            if (!containsAny(supportedSignatureAlgorithms,
+                                securityParameters.supportedSignatureAlgorithms))
+                            {
+                                this.failWithError(AlertLevel.fatal, AlertDescription.handshake_failure);
+                            }
+                        }
+
                         byte[] authorities = TlsUtils.readOpaque16(is);
 
                         assertEmpty(is);
@@ -644,7 +729,7 @@ public class TlsProtocolHandler
                         }
 
                         this.certificateRequest = new CertificateRequest(certificateTypes,
-                            authorityDNs);
+                            supportedSignatureAlgorithms, authorityDNs);
                         this.keyExchange.validateCertificateRequest(this.certificateRequest);
 
                         break;
@@ -709,6 +794,7 @@ public class TlsProtocolHandler
                  */
                 this.failedWithError = true;
                 this.closed = true;
+                invalidateSession();
                 /*
                  * Now try to close the stream, ignore errors.
                  */
@@ -768,17 +854,46 @@ public class TlsProtocolHandler
             /*
              * Check if we are in the correct connection state.
              */
-            if (this.connection_state != CS_CLIENT_FINISHED_SEND)
+            if (this.connection_state != CS_CLIENT_FINISHED_SEND
+                && this.connection_state != CS_SERVER_HELLO_RESUMED_RECEIVED)
             {
                 this.failWithError(AlertLevel.fatal, AlertDescription.handshake_failure);
             }
 
-            rs.serverClientSpecReceived();
+            rs.receivedReadCipherSpec();
 
             this.connection_state = CS_SERVER_CHANGE_CIPHER_SPEC_RECEIVED;
         }
     }
 
+    private void sendChangeCipherSpecAndFinished() throws IOException
+    {
+        /*
+         * Now, we send change cipher state
+         */
+        byte[] cmessage = new byte[1];
+        cmessage[0] = 1;
+        rs.writeMessage(ContentType.change_cipher_spec, cmessage, 0, cmessage.length);
+        rs.sentWriteCipherSpec();
+
+        connection_state = CS_CLIENT_CHANGE_CIPHER_SPEC_SEND;
+
+        /*
+         * Send our finished message.
+         */
+        byte[] clientVerifyData = TlsUtils.calculateVerifyData(tlsClientContext,
+            "client finished", rs.getCurrentHash(TlsUtils.SSL_CLIENT));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        TlsUtils.writeUint8(HandshakeType.finished, bos);
+        TlsUtils.writeOpaque24(clientVerifyData, bos);
+        byte[] message = bos.toByteArray();
+
+        rs.writeMessage(ContentType.handshake, message, 0, message.length);
+
+        this.connection_state = CS_CLIENT_FINISHED_SEND;
+    }
+
     private void sendClientCertificate(Certificate clientCert) throws IOException
     {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
@@ -814,7 +929,7 @@ public class TlsProtocolHandler
         rs.writeMessage(ContentType.handshake, message, 0, message.length);
     }
 
-    private void sendCertificateVerify(byte[] data) throws IOException
+    private void sendCertificateVerify(SignatureAndHashAlgorithm algorithm, byte[] data) throws IOException
     {
         /*
          * Send signature of handshake messages so far to prove we are the owner of the
@@ -822,13 +937,89 @@ public class TlsProtocolHandler
          */
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         TlsUtils.writeUint8(HandshakeType.certificate_verify, bos);
-        TlsUtils.writeUint24(data.length + 2, bos);
+
+        // Reserve space for length
+        TlsUtils.writeUint24(0, bos);
+
+        /*
+         * RFC 5246 4.7. Under TLS 1.2 the signature is preceded by the algorithm used.
+         */
+        if (algorithm != null)
+        {
+            algorithm.encode(bos);
+        }
         TlsUtils.writeOpaque16(data, bos);
         byte[] message = bos.toByteArray();
 
+        // Patch actual length back in
+        TlsUtils.writeUint24(message.length - 4, message, 1);
+
         rs.writeMessage(ContentType.handshake, message, 0, message.length);
     }
 
+    /**
+     * Choose the SignatureAndHashAlgorithm for a TLS 1.2 certificate verify: the first of those
+     * we offered that the server also listed in its certificate request, for our key type.
+     */
+    private SignatureAndHashAlgorithm chooseCertificateVerifyAlgorithm(TlsCredentials clientCreds)
+        throws IOException
+    {
+        if (!(clientCreds instanceof TlsSignatureAndHashCredentials))
+        {
+            /*
+             * These credentials can only sign the MD5/SHA-1 hash used before TLS 1.2.
+             */
+            this.failWithError(AlertLevel.fatal, AlertDescription.internal_error);
+        }
+
+        short signatureAlgorithm = ((TlsSignatureAndHashCredentials)clientCreds).getSignatureAlgorithm();
+        Vector offered = securityParameters.supportedSignatureAlgorithms;
+        Vector requested = certificateRequest.getSupportedSignatureAlgorithms();
+
+        for (int i = 0; i < offered.size(); ++i)
+        {
+            SignatureAndHashAlgorithm algorithm = (SignatureAndHashAlgorithm)offered.elementAt(i);
+            if (algorithm.getSignature() == signatureAlgorithm && requested.contains(algorithm))
+            {
+                return algorithm;
+            }
+        }
+
+        this.failWithError(AlertLevel.fatal, AlertDescription.handshake_failure);
+        return null;
+    }
+
+    /**
+     * Enable session resumption. A cached session for the server is offered in the client
+     * hello, and a newly established session is added to the cache. Must be called before
+     * the handshake is started.
+     * 
+     * @param sessionCache the cache to use.
+     * @param serverIdentity the key for the server in the cache, e.g. "host:port".
+     */
+    public void setSessionCache(TlsSessionCache sessionCache, String serverIdentity)
+    {
+        if (sessionCache == null || serverIdentity == null)
+        {
+            throw new IllegalArgumentException("'sessionCache' and 'serverIdentity' cannot be null");
+        }
+        if (this.tlsClient != null)
+        {
+            throw new IllegalStateException("session cache must be set before the handshake starts");
+        }
+
+        this.sessionCache = sessionCache;
+        this.serverIdentity = serverIdentity;
+    }
+
+    /**
+     * @return true if the handshake resumed a cached session rather than establishing a new one.
+     */
+    public boolean isSessionResumed()
+    {
+        return connection_state == CS_DONE && offeredSession != null;
+    }
+
     /**
      * Connects to the remote system.
      * 
@@ -850,6 +1041,29 @@ public class TlsProtocolHandler
      * @throws IOException If handshake was not successful.
      */
     public void connect(TlsClient tlsClient) throws IOException
+    {
+        beginHandshake(tlsClient);
+
+        /*
+         * We will now read data, until we have completed the handshake.
+         */
+        while (connection_state != CS_DONE)
+        {
+            safeReadData();
+        }
+
+        this.tlsInputStream = new TlsInputStream(this);
+        this.tlsOutputStream = new TlsOutputStream(this);
+    }
+
+    /**
+     * Send the client hello and return without waiting for the server's reply. The rest of
+     * the handshake is driven by subsequent calls to {@link #processRecord()}.
+     * 
+     * @param tlsClient
+     * @throws IOException If the client hello could not be sent.
+     */
+    void beginHandshake(TlsClient tlsClient) throws IOException
     {
         if (tlsClient == null)
         {
@@ -872,8 +1086,6 @@ public class TlsProtocolHandler
 
         this.tlsClientContext = new TlsClientContextImpl(random, securityParameters);
 
-        this.rs.init(tlsClientContext);
-
         this.tlsClient = tlsClient;
         this.tlsClient.init(tlsClientContext);
 
@@ -885,21 +1097,61 @@ public class TlsProtocolHandler
         this.tlsClientContext.setServerVersion(client_version);
         TlsUtils.writeVersion(client_version, os);
 
+        this.rs.init(tlsClientContext);
+
         os.write(securityParameters.clientRandom);
 
         /*
-         * Length of Session id
+         * Cipher suites
          */
-        TlsUtils.writeUint8((short)0, os);
+        this.offeredCipherSuites = this.tlsClient.getCipherSuites();
 
         /*
-         * Cipher suites
+         * Session id, if we have a session for this server that is still acceptable
          */
-        this.offeredCipherSuites = this.tlsClient.getCipherSuites();
+        if (sessionCache != null)
+        {
+            TlsSession session = sessionCache.getSession(serverIdentity);
+            if (session != null && session.getVersion().getFullVersion() <= client_version.getFullVersion()
+                && arrayContains(offeredCipherSuites, session.getCipherSuite()))
+            {
+                this.offeredSession = session;
+            }
+        }
+
+        TlsUtils.writeOpaque8(offeredSession == null ? emptybuf : offeredSession.getSessionID(), os);
 
         // Integer -> byte[]
         this.clientExtensions = this.tlsClient.getClientExtensions();
 
+        /*
+         * RFC 5246 7.4.1.4.1. A TLS 1.2 client offers the hash and signature algorithm pairs it
+         * will accept in server signatures; the server may not use any other.
+         */
+        if (client_version.getFullVersion() >= ProtocolVersion.TLSv12.getFullVersion())
+        {
+            byte[] sigAlgsExt = clientExtensions == null ? null
+                : (byte[])clientExtensions.get(EXT_SignatureAlgorithms);
+
+            if (sigAlgsExt != null)
+            {
+                securityParameters.supportedSignatureAlgorithms = TlsUtils.readSignatureAlgorithmsExtension(sigAlgsExt);
+            }
+            else
+            {
+                securityParameters.supportedSignatureAlgorithms = TlsUtils.getDefaultSupportedSignatureAlgorithms();
+
+                Hashtable extensions = new Hashtable();
+                if (clientExtensions != null)
+                {
+                    extensions.putAll(clientExtensions);
+                }
+                extensions.put(EXT_SignatureAlgorithms,
+                    TlsUtils.createSignatureAlgorithmsExtension(securityParameters.supportedSignatureAlgorithms));
+                this.clientExtensions = extensions;
+            }
+        }
+
         // Cipher Suites (and SCSV)
         {
             /*
@@ -956,17 +1208,50 @@ public class TlsProtocolHandler
         safeWriteMessage(ContentType.handshake, message, 0, message.length);
 
         connection_state = CS_CLIENT_HELLO_SEND;
+    }
 
-        /*
-         * We will now read data, until we have completed the handshake.
-         */
-        while (connection_state != CS_DONE)
-        {
-            safeReadData();
-        }
+    /**
+     * Read and process exactly one record from the underlying input stream.
+     * 
+     * @throws IOException If the record could not be read or was rejected.
+     */
+    void processRecord() throws IOException
+    {
+        safeReadData();
+    }
 
-        this.tlsInputStream = new TlsInputStream(this);
-        this.tlsOutputStream = new TlsOutputStream(this);
+    /**
+     * Close the connection with a fatal alert, which is queued for sending.
+     *
+     * @throws IOException always, to report the failure.
+     */
+    void failWithAlert(short alertDescription) throws IOException
+    {
+        failWithError(AlertLevel.fatal, alertDescription);
+    }
+
+    /**
+     * @return true if the handshake has completed and application data may be exchanged.
+     */
+    boolean isHandshakeComplete()
+    {
+        return connection_state == CS_DONE;
+    }
+
+    /**
+     * @return true if the connection has been closed, either normally or with an error.
+     */
+    boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * @return The number of bytes of application data that can be read without blocking.
+     */
+    int getAvailableApplicationData()
+    {
+        return applicationDataQueue.size();
     }
 
     /**
@@ -1163,6 +1448,7 @@ public class TlsProtocolHandler
                  * This is a fatal message.
                  */
                 this.failedWithError = true;
+                invalidateSession();
             }
             sendAlert(alertLevel, alertDescription);
             rs.close();
@@ -1177,6 +1463,17 @@ public class TlsProtocolHandler
         }
     }
 
+    /**
+     * RFC 5246 7.2.2. Any connection terminated with a fatal alert MUST NOT be resumed.
+     */
+    private void invalidateSession()
+    {
+        if (sessionCache != null)
+        {
+            sessionCache.removeSession(serverIdentity);
+        }
+    }
+
     private void sendAlert(short alertLevel, short alertDescription) throws IOException
     {
         byte[] error = new byte[2];
@@ -1242,6 +1539,18 @@ public class TlsProtocolHandler
         return false;
     }
 
+    private static boolean containsAny(Vector a, Vector b)
+    {
+        for (int i = 0; i < a.size(); ++i)
+        {
+            if (b.contains(a.elementAt(i)))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static byte[] createRenegotiationInfo(byte[] renegotiated_connection)
         throws IOException
     {
@@ -1,8 +1,18 @@
 package org.spongycastle.crypto.tls;
 
+import java.io.IOException;
 import java.security.SecureRandom;
 
+import org.spongycastle.asn1.ASN1Encoding;
+import org.spongycastle.asn1.ASN1ObjectIdentifier;
+import org.spongycastle.asn1.DERNull;
+import org.spongycastle.asn1.nist.NISTObjectIdentifiers;
+import org.spongycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.spongycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.spongycastle.asn1.x509.AlgorithmIdentifier;
+import org.spongycastle.asn1.x509.DigestInfo;
 import org.spongycastle.crypto.CryptoException;
+import org.spongycastle.crypto.Digest;
 import org.spongycastle.crypto.Signer;
 import org.spongycastle.crypto.digests.NullDigest;
 import org.spongycastle.crypto.encodings.PKCS1Encoding;
@@ -11,6 +21,7 @@ import org.spongycastle.crypto.params.AsymmetricKeyParameter;
 import org.spongycastle.crypto.params.ParametersWithRandom;
 import org.spongycastle.crypto.params.RSAKeyParameters;
 import org.spongycastle.crypto.signers.GenericSigner;
+import org.spongycastle.crypto.signers.RSADigestSigner;
 
 class TlsRSASigner implements TlsSigner
 {
@@ -23,6 +34,27 @@ class TlsRSASigner implements TlsSigner
         return sig.generateSignature();
     }
 
+    public byte[] calculateRawSignature(SecureRandom random, AsymmetricKeyParameter privateKey, short hashAlgorithm,
+        byte[] hash) throws CryptoException
+    {
+        /*
+         * RFC 5246 4.7. In RSA signing, the opaque vector contains the signature generated
+         * using the RSASSA-PKCS1-v1_5 signature scheme, i.e. over a DigestInfo.
+         */
+        byte[] digestInfo;
+        try
+        {
+            AlgorithmIdentifier algID = new AlgorithmIdentifier(getDigestOID(hashAlgorithm), DERNull.INSTANCE);
+            digestInfo = new DigestInfo(algID, hash).getEncoded(ASN1Encoding.DER);
+        }
+        catch (IOException e)
+        {
+            throw new CryptoException("unable to encode DigestInfo: " + e.getMessage(), e);
+        }
+
+        return calculateRawSignature(random, privateKey, digestInfo);
+    }
+
     public Signer createVerifyer(AsymmetricKeyParameter publicKey)
     {
         Signer s = new GenericSigner(new PKCS1Encoding(new RSABlindedEngine()), new CombinedHash());
@@ -30,6 +62,39 @@ class TlsRSASigner implements TlsSigner
         return s;
     }
 
+    public Signer createVerifyer(Digest digest, AsymmetricKeyParameter publicKey)
+    {
+        Signer s = new RSADigestSigner(digest);
+        s.init(false, publicKey);
+        return s;
+    }
+
+    public short getSignatureAlgorithm()
+    {
+        return SignatureAlgorithm.rsa;
+    }
+
+    private static ASN1ObjectIdentifier getDigestOID(short hashAlgorithm) throws CryptoException
+    {
+        switch (hashAlgorithm)
+        {
+            case HashAlgorithm.md5:
+                return PKCSObjectIdentifiers.md5;
+            case HashAlgorithm.sha1:
+                return OIWObjectIdentifiers.idSHA1;
+            case HashAlgorithm.sha224:
+                return NISTObjectIdentifiers.id_sha224;
+            case HashAlgorithm.sha256:
+                return NISTObjectIdentifiers.id_sha256;
+            case HashAlgorithm.sha384:
+                return NISTObjectIdentifiers.id_sha384;
+            case HashAlgorithm.sha512:
+                return NISTObjectIdentifiers.id_sha512;
+            default:
+                throw new CryptoException("unknown HashAlgorithm: " + hashAlgorithm);
+        }
+    }
+
     public boolean isValidPublicKey(AsymmetricKeyParameter publicKey)
     {
         return publicKey instanceof RSAKeyParameters && !publicKey.isPrivate();
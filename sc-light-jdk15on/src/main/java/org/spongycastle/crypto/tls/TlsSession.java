@@ -0,0 +1,99 @@
+package org.spongycastle.crypto.tls;
+
+import org.spongycastle.util.Arrays;
+
+/**
+ * The state of an established TLS session needed to resume it with an abbreviated handshake
+ * (RFC 5246 7.3): the session ID and the negotiated parameters, including the master secret.
+ */
+public class TlsSession
+{
+    private final byte[] sessionID;
+    private final ProtocolVersion version;
+    private final int cipherSuite;
+    private final short compressionMethod;
+    private final int prfAlgorithm;
+    private final byte[] masterSecret;
+    private final long creationTime;
+
+    TlsSession(byte[] sessionID, ProtocolVersion version, int cipherSuite,
+        short compressionMethod, SecurityParameters securityParameters)
+    {
+        this(sessionID, version, cipherSuite, compressionMethod, securityParameters.getPrfAlgorithm(),
+            securityParameters.getMasterSecret(), System.currentTimeMillis());
+    }
+
+    /**
+     * Recreate a session, e.g. one previously saved by the application.
+     */
+    public TlsSession(byte[] sessionID, ProtocolVersion version, int cipherSuite,
+        short compressionMethod, int prfAlgorithm, byte[] masterSecret, long creationTime)
+    {
+        if (sessionID == null || sessionID.length < 1 || sessionID.length > 32)
+        {
+            throw new IllegalArgumentException("'sessionID' must have length between 1 and 32 bytes");
+        }
+        if (version == null || masterSecret == null)
+        {
+            throw new IllegalArgumentException("'version' and 'masterSecret' cannot be null");
+        }
+
+        this.sessionID = Arrays.clone(sessionID);
+        this.version = version;
+        this.cipherSuite = cipherSuite;
+        this.compressionMethod = compressionMethod;
+        this.prfAlgorithm = prfAlgorithm;
+        this.masterSecret = Arrays.clone(masterSecret);
+        this.creationTime = creationTime;
+    }
+
+    public byte[] getSessionID()
+    {
+        return Arrays.clone(sessionID);
+    }
+
+    public ProtocolVersion getVersion()
+    {
+        return version;
+    }
+
+    public int getCipherSuite()
+    {
+        return cipherSuite;
+    }
+
+    public short getCompressionMethod()
+    {
+        return compressionMethod;
+    }
+
+    /**
+     * @return the {@link PRFAlgorithm} of the session.
+     */
+    public int getPrfAlgorithm()
+    {
+        return prfAlgorithm;
+    }
+
+    public byte[] getMasterSecret()
+    {
+        return Arrays.clone(masterSecret);
+    }
+
+    /**
+     * @return the time the session was established, in milliseconds since the epoch.
+     */
+    public long getCreationTime()
+    {
+        return creationTime;
+    }
+
+    /**
+     * Restore the resumable parts of this session's security parameters.
+     */
+    void restoreSecurityParameters(SecurityParameters securityParameters)
+    {
+        securityParameters.masterSecret = Arrays.clone(masterSecret);
+        securityParameters.prfAlgorithm = prfAlgorithm;
+    }
+}
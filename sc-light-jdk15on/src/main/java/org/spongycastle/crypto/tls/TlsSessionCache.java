@@ -0,0 +1,25 @@
+package org.spongycastle.crypto.tls;
+
+/**
+ * A client side store of resumable sessions, keyed by an application chosen server identity,
+ * for example "host:port". Implementations must be safe for use by several connections at
+ * once.
+ */
+public interface TlsSessionCache
+{
+    /**
+     * @param serverIdentity the server to look up.
+     * @return a session to offer for resumption, or null if there is none.
+     */
+    TlsSession getSession(String serverIdentity);
+
+    /**
+     * Record a newly established session, replacing any previous one for the server.
+     */
+    void putSession(String serverIdentity, TlsSession session);
+
+    /**
+     * Forget the session for the server, e.g. because the connection failed.
+     */
+    void removeSession(String serverIdentity);
+}
@@ -0,0 +1,23 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.IOException;
+
+/**
+ * Signer credentials which can also sign the TLS 1.2 form of the certificate verify message,
+ * where the handshake messages are hashed with an algorithm agreed with the server rather
+ * than with MD5 and SHA-1. Credentials that do not implement this can only be used for
+ * client authentication before TLS 1.2.
+ */
+public interface TlsSignatureAndHashCredentials extends TlsSignerCredentials
+{
+    /**
+     * @return the {@link SignatureAlgorithm} of the private key.
+     */
+    short getSignatureAlgorithm();
+
+    /**
+     * @param algorithm the {@link SignatureAndHashAlgorithm} to sign with.
+     * @param hash the handshake messages, hashed with the algorithm's {@link HashAlgorithm}.
+     */
+    byte[] generateCertificateSignature(SignatureAndHashAlgorithm algorithm, byte[] hash) throws IOException;
+}
@@ -3,6 +3,7 @@ package org.spongycastle.crypto.tls;
 import java.security.SecureRandom;
 
 import org.spongycastle.crypto.CryptoException;
+import org.spongycastle.crypto.Digest;
 import org.spongycastle.crypto.Signer;
 import org.spongycastle.crypto.params.AsymmetricKeyParameter;
 
@@ -11,7 +12,26 @@ interface TlsSigner
     byte[] calculateRawSignature(SecureRandom random, AsymmetricKeyParameter privateKey, byte[] md5andsha1)
         throws CryptoException;
 
+    /**
+     * Sign a hash for a TLS 1.2 digitally-signed element.
+     *
+     * @param hashAlgorithm the {@link HashAlgorithm} hash was calculated with.
+     */
+    byte[] calculateRawSignature(SecureRandom random, AsymmetricKeyParameter privateKey, short hashAlgorithm,
+        byte[] hash) throws CryptoException;
+
     Signer createVerifyer(AsymmetricKeyParameter publicKey);
 
+    /**
+     * Create a verifier for a TLS 1.2 digitally-signed element, where the hash is given
+     * explicitly by the accompanying SignatureAndHashAlgorithm.
+     */
+    Signer createVerifyer(Digest digest, AsymmetricKeyParameter publicKey);
+
+    /**
+     * @return the {@link SignatureAlgorithm} this signer implements.
+     */
+    short getSignatureAlgorithm();
+
     boolean isValidPublicKey(AsymmetricKeyParameter publicKey);
 }
@@ -1,9 +1,12 @@
 package org.spongycastle.crypto.tls;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Vector;
 
 import org.spongycastle.asn1.DERBitString;
 import org.spongycastle.asn1.x509.KeyUsage;
@@ -11,9 +14,15 @@ import org.spongycastle.asn1.x509.X509CertificateStructure;
 import org.spongycastle.asn1.x509.X509Extension;
 import org.spongycastle.asn1.x509.X509Extensions;
 import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.Signer;
 import org.spongycastle.crypto.digests.MD5Digest;
 import org.spongycastle.crypto.digests.SHA1Digest;
+import org.spongycastle.crypto.digests.SHA224Digest;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.digests.SHA384Digest;
+import org.spongycastle.crypto.digests.SHA512Digest;
 import org.spongycastle.crypto.macs.HMac;
+import org.spongycastle.crypto.params.AsymmetricKeyParameter;
 import org.spongycastle.crypto.params.KeyParameter;
 import org.spongycastle.util.Arrays;
 import org.spongycastle.util.Strings;
@@ -189,6 +198,14 @@ public class TlsUtils
         }
     }
 
+    protected static void readFully(byte[] buf, int off, int len, InputStream is) throws IOException
+    {
+        if (Streams.readFully(is, buf, off, len) != len)
+        {
+            throw new EOFException();
+        }
+    }
+
     protected static byte[] readOpaque8(InputStream is) throws IOException
     {
         short length = readUint8(is);
@@ -247,13 +264,12 @@ public class TlsUtils
         int iterations = (out.length + size - 1) / size;
         byte[] buf = new byte[mac.getMacSize()];
         byte[] buf2 = new byte[mac.getMacSize()];
+        mac.init(param);
         for (int i = 0; i < iterations; i++)
         {
-            mac.init(param);
             mac.update(a, 0, a.length);
             mac.doFinal(buf, 0);
             a = buf;
-            mac.init(param);
             mac.update(a, 0, a.length);
             mac.update(seed, 0, seed.length);
             mac.doFinal(buf2, 0);
@@ -294,6 +310,204 @@ public class TlsUtils
         return buf;
     }
 
+    static byte[] PRF(TlsClientContext context, byte[] secret, String asciiLabel, byte[] seed, int size)
+    {
+        int prfAlgorithm = context.getSecurityParameters().prfAlgorithm;
+
+        if (prfAlgorithm == PRFAlgorithm.tls_prf_legacy)
+        {
+            return PRF(secret, asciiLabel, seed, size);
+        }
+
+        return PRF_1_2(createPRFHash(prfAlgorithm), secret, asciiLabel, seed, size);
+    }
+
+    static boolean isTLSv11(TlsClientContext context)
+    {
+        return context.getServerVersion().getFullVersion() >= ProtocolVersion.TLSv11.getFullVersion();
+    }
+
+    static boolean isTLSv12(TlsClientContext context)
+    {
+        return context.getServerVersion().getFullVersion() >= ProtocolVersion.TLSv12.getFullVersion();
+    }
+
+    static int getPRFAlgorithm(int cipherSuite)
+    {
+        switch (cipherSuite)
+        {
+            case CipherSuite.TLS_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DHE_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DH_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DHE_DSS_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DH_DSS_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DH_anon_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_CBC_SHA384:
+            case CipherSuite.TLS_ECDH_ECDSA_WITH_AES_256_CBC_SHA384:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA384:
+            case CipherSuite.TLS_ECDH_RSA_WITH_AES_256_CBC_SHA384:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDH_ECDSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDH_RSA_WITH_AES_256_GCM_SHA384:
+                return PRFAlgorithm.tls_prf_sha384;
+
+            default:
+                return PRFAlgorithm.tls_prf_sha256;
+        }
+    }
+
+    static Digest createPRFHash(int prfAlgorithm)
+    {
+        switch (prfAlgorithm)
+        {
+            case PRFAlgorithm.tls_prf_sha256:
+                return new SHA256Digest();
+            case PRFAlgorithm.tls_prf_sha384:
+                return new SHA384Digest();
+            default:
+                throw new IllegalArgumentException("unknown PRFAlgorithm: " + prfAlgorithm);
+        }
+    }
+
+    static Digest createHash(short hashAlgorithm) throws IOException
+    {
+        switch (hashAlgorithm)
+        {
+            case HashAlgorithm.md5:
+                return new MD5Digest();
+            case HashAlgorithm.sha1:
+                return new SHA1Digest();
+            case HashAlgorithm.sha224:
+                return new SHA224Digest();
+            case HashAlgorithm.sha256:
+                return new SHA256Digest();
+            case HashAlgorithm.sha384:
+                return new SHA384Digest();
+            case HashAlgorithm.sha512:
+                return new SHA512Digest();
+            default:
+                throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+        }
+    }
+
+    /**
+     * The signature_algorithms offered by default when the client supports TLS 1.2. MD5 is
+     * deliberately left out.
+     *
+     * @return Vector of {@link SignatureAndHashAlgorithm}
+     */
+    static Vector getDefaultSupportedSignatureAlgorithms()
+    {
+        short[] hashAlgorithms = new short[] { HashAlgorithm.sha512, HashAlgorithm.sha384,
+            HashAlgorithm.sha256, HashAlgorithm.sha224, HashAlgorithm.sha1 };
+        short[] signatureAlgorithms = new short[] { SignatureAlgorithm.rsa, SignatureAlgorithm.dsa,
+            SignatureAlgorithm.ecdsa };
+
+        Vector result = new Vector();
+        for (int i = 0; i < hashAlgorithms.length; ++i)
+        {
+            for (int j = 0; j < signatureAlgorithms.length; ++j)
+            {
+                result.addElement(new SignatureAndHashAlgorithm(hashAlgorithms[i], signatureAlgorithms[j]));
+            }
+        }
+        return result;
+    }
+
+    static byte[] createSignatureAlgorithmsExtension(Vector supportedSignatureAlgorithms)
+        throws IOException
+    {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+
+        encodeSupportedSignatureAlgorithms(supportedSignatureAlgorithms, buf);
+
+        return buf.toByteArray();
+    }
+
+    static Vector readSignatureAlgorithmsExtension(byte[] extensionValue) throws IOException
+    {
+        ByteArrayInputStream buf = new ByteArrayInputStream(extensionValue);
+
+        Vector result = parseSupportedSignatureAlgorithms(buf);
+
+        if (buf.available() > 0)
+        {
+            throw new TlsFatalAlert(AlertDescription.decode_error);
+        }
+
+        return result;
+    }
+
+    /**
+     * RFC 5246 7.4.1.4.1. Write a supported_signature_algorithms list, which may not be empty.
+     */
+    static void encodeSupportedSignatureAlgorithms(Vector supportedSignatureAlgorithms,
+        OutputStream output) throws IOException
+    {
+        if (supportedSignatureAlgorithms == null || supportedSignatureAlgorithms.size() < 1
+            || supportedSignatureAlgorithms.size() >= (1 << 15))
+        {
+            throw new IllegalArgumentException(
+                "'supportedSignatureAlgorithms' must have length from 1 to (2^15 - 1)");
+        }
+
+        writeUint16(2 * supportedSignatureAlgorithms.size(), output);
+        for (int i = 0; i < supportedSignatureAlgorithms.size(); ++i)
+        {
+            ((SignatureAndHashAlgorithm)supportedSignatureAlgorithms.elementAt(i)).encode(output);
+        }
+    }
+
+    /**
+     * RFC 5246 7.4.1.4.1. Read a supported_signature_algorithms list, which may not be empty.
+     */
+    static Vector parseSupportedSignatureAlgorithms(InputStream input) throws IOException
+    {
+        int length = readUint16(input);
+        if (length < 2 || (length & 1) != 0)
+        {
+            throw new TlsFatalAlert(AlertDescription.decode_error);
+        }
+
+        int count = length / 2;
+        Vector result = new Vector(count);
+        for (int i = 0; i < count; ++i)
+        {
+            result.addElement(SignatureAndHashAlgorithm.parse(input));
+        }
+        return result;
+    }
+
+    /**
+     * Create a verifier for a digitally-signed element whose signed content follows; under
+     * TLS 1.2 this reads the SignatureAndHashAlgorithm preceding the signature from is, which
+     * must be one the client offered and must match the signer.
+     */
+    static Signer createVerifyer(TlsClientContext context, TlsSigner tlsSigner,
+        AsymmetricKeyParameter publicKey, InputStream is) throws IOException
+    {
+        if (!isTLSv12(context))
+        {
+            return tlsSigner.createVerifyer(publicKey);
+        }
+
+        SignatureAndHashAlgorithm algorithm = SignatureAndHashAlgorithm.parse(is);
+
+        /*
+         * RFC 5246 7.4.1.4.1. If the client has offered the "signature_algorithms" extension,
+         * the signature algorithm and hash algorithm MUST be a pair listed in that extension.
+         */
+        Vector supportedSignatureAlgorithms = context.getSecurityParameters().getSupportedSignatureAlgorithms();
+        if (algorithm.getSignature() != tlsSigner.getSignatureAlgorithm()
+            || supportedSignatureAlgorithms == null || !supportedSignatureAlgorithms.contains(algorithm))
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+        }
+
+        return tlsSigner.createVerifyer(createHash(algorithm.getHash()), publicKey);
+    }
+
     static byte[] concat(byte[] a, byte[] b)
     {
         byte[] c = new byte[a.length + b.length];
@@ -330,7 +544,7 @@ public class TlsUtils
 
         if (isTls)
         {
-            return PRF(sp.masterSecret, "key expansion", random, size);
+            return PRF(context, sp.masterSecret, "key expansion", random, size);
         }
 
         Digest md5 = new MD5Digest();
@@ -372,7 +586,7 @@ public class TlsUtils
 
         if (isTls)
         {
-            return PRF(pms, "master secret", random, 48);
+            return PRF(context, pms, "master secret", random, 48);
         }
 
         Digest md5 = new MD5Digest();
@@ -411,7 +625,7 @@ public class TlsUtils
 
         if (isTls)
         {
-            return PRF(sp.masterSecret, asciiLabel, handshakeHash, 12);
+            return PRF(context, sp.masterSecret, asciiLabel, handshakeHash, 12);
         }
 
         return handshakeHash;
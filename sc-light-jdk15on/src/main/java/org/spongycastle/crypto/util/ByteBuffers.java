@@ -0,0 +1,131 @@
+package org.spongycastle.crypto.util;
+
+import java.nio.ByteBuffer;
+
+import org.spongycastle.crypto.ByteBufferDigest;
+import org.spongycastle.crypto.ByteBufferMac;
+import org.spongycastle.crypto.ByteBufferStreamCipher;
+import org.spongycastle.crypto.DataLengthException;
+import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.Mac;
+import org.spongycastle.crypto.StreamCipher;
+
+/**
+ * Pass the contents of ByteBuffers to digests, MACs and stream ciphers. Where the
+ * primitive takes ByteBuffers itself they are passed straight through; otherwise the
+ * array backing a heap buffer is used in place, and a direct buffer is copied through
+ * the primitive a chunk at a time.
+ */
+public final class ByteBuffers
+{
+    private static final int CHUNK_SIZE = 4096;
+
+    private ByteBuffers()
+    {
+    }
+
+    /**
+     * update digest with the remaining bytes of in, leaving its position at its limit.
+     */
+    public static void update(Digest digest, ByteBuffer in)
+    {
+        if (digest instanceof ByteBufferDigest)
+        {
+            ((ByteBufferDigest)digest).update(in);
+            return;
+        }
+
+        if (in.hasArray())
+        {
+            int len = in.remaining();
+
+            digest.update(in.array(), in.arrayOffset() + in.position(), len);
+            in.position(in.position() + len);
+            return;
+        }
+
+        byte[] chunk = new byte[Math.min(in.remaining(), CHUNK_SIZE)];
+
+        while (in.hasRemaining())
+        {
+            int len = Math.min(in.remaining(), chunk.length);
+
+            in.get(chunk, 0, len);
+            digest.update(chunk, 0, len);
+        }
+    }
+
+    /**
+     * update mac with the remaining bytes of in, leaving its position at its limit.
+     */
+    public static void update(Mac mac, ByteBuffer in)
+    {
+        if (mac instanceof ByteBufferMac)
+        {
+            ((ByteBufferMac)mac).update(in);
+            return;
+        }
+
+        if (in.hasArray())
+        {
+            int len = in.remaining();
+
+            mac.update(in.array(), in.arrayOffset() + in.position(), len);
+            in.position(in.position() + len);
+            return;
+        }
+
+        byte[] chunk = new byte[Math.min(in.remaining(), CHUNK_SIZE)];
+
+        while (in.hasRemaining())
+        {
+            int len = Math.min(in.remaining(), chunk.length);
+
+            in.get(chunk, 0, len);
+            mac.update(chunk, 0, len);
+        }
+    }
+
+    /**
+     * process the remaining bytes of in with cipher, writing the result to out. The
+     * positions of both buffers are advanced by the number of bytes processed.
+     *
+     * @exception DataLengthException if out has less space remaining than in has data.
+     */
+    public static void processBytes(StreamCipher cipher, ByteBuffer in, ByteBuffer out)
+        throws DataLengthException
+    {
+        if (cipher instanceof ByteBufferStreamCipher)
+        {
+            ((ByteBufferStreamCipher)cipher).processBytes(in, out);
+            return;
+        }
+
+        int len = in.remaining();
+
+        if (out.remaining() < len)
+        {
+            throw new DataLengthException("output buffer too short");
+        }
+
+        if (in.hasArray() && out.hasArray())
+        {
+            cipher.processBytes(in.array(), in.arrayOffset() + in.position(), len,
+                out.array(), out.arrayOffset() + out.position());
+            in.position(in.position() + len);
+            out.position(out.position() + len);
+            return;
+        }
+
+        byte[] chunk = new byte[Math.min(len, CHUNK_SIZE)];
+
+        while (in.hasRemaining())
+        {
+            int chunkLen = Math.min(in.remaining(), chunk.length);
+
+            in.get(chunk, 0, chunkLen);
+            cipher.processBytes(chunk, 0, chunkLen, chunk, 0);
+            out.put(chunk, 0, chunkLen);
+        }
+    }
+}
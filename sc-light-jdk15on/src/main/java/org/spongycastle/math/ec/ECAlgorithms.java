@@ -26,6 +26,98 @@ public class ECAlgorithms
         return implShamirsTrick(P, a, Q, b);
     }
 
+    /**
+     * Compute a[i] * P[i] + b[i] * Q[i] for each i. All the points must be on the same
+     * curve; the results are converted to affine co-ordinates together, needing only
+     * a single field inversion for the whole batch.
+     */
+    public static ECPoint[] sumOfTwoMultiplies(ECPoint[] P, BigInteger[] a,
+        ECPoint[] Q, BigInteger[] b)
+    {
+        int count = P.length;
+        if (a.length != count || Q.length != count || b.length != count)
+        {
+            throw new IllegalArgumentException("point and scalar arrays must be the same length");
+        }
+
+        ECPoint[] R = new ECPoint[count];
+        if (count == 0)
+        {
+            return R;
+        }
+
+        ECCurve c = P[0].getCurve();
+        boolean koblitz = (c instanceof ECCurve.F2m) && ((ECCurve.F2m)c).isKoblitz();
+
+        for (int i = 0; i < count; ++i)
+        {
+            if (!c.equals(P[i].getCurve()) || !c.equals(Q[i].getCurve()))
+            {
+                throw new IllegalArgumentException("all points must be on same curve");
+            }
+
+            if (koblitz)
+            {
+                R[i] = P[i].multiply(a[i]).add(Q[i].multiply(b[i]));
+            }
+            else
+            {
+                R[i] = implShamirsTrickInternal(P[i], a[i], Q[i], b[i]);
+            }
+        }
+
+        normalizeAll(R);
+
+        return R;
+    }
+
+    /**
+     * Convert each of the points to affine co-ordinates, using Montgomery's trick so that
+     * one inversion serves for all of them.
+     */
+    static void normalizeAll(ECPoint[] points)
+    {
+        int[] indices = new int[points.length];
+        int count = 0;
+
+        for (int i = 0; i < points.length; ++i)
+        {
+            ECPoint p = points[i];
+            if (p instanceof ECPoint.Fp && !p.isInfinity() && ((ECPoint.Fp)p).z != null)
+            {
+                indices[count++] = i;
+            }
+        }
+
+        if (count == 0)
+        {
+            return;
+        }
+
+        // products[j] = z[0] * z[1] * ... * z[j]
+        ECFieldElement[] products = new ECFieldElement[count];
+
+        products[0] = ((ECPoint.Fp)points[indices[0]]).z;
+        for (int j = 1; j < count; ++j)
+        {
+            products[j] = products[j - 1].multiply(((ECPoint.Fp)points[indices[j]]).z);
+        }
+
+        ECFieldElement u = products[count - 1].invert();
+
+        for (int j = count - 1; j > 0; --j)
+        {
+            ECPoint.Fp p = (ECPoint.Fp)points[indices[j]];
+
+            ECFieldElement zInv = u.multiply(products[j - 1]);
+            u = u.multiply(p.z);
+
+            points[indices[j]] = p.normalize(zInv);
+        }
+
+        points[indices[0]] = ((ECPoint.Fp)points[indices[0]]).normalize(u);
+    }
+
     /*
      * "Shamir's Trick", originally due to E. G. Straus
      * (Addition chains of vectors. American Mathematical Monthly,
@@ -58,6 +150,15 @@ public class ECAlgorithms
 
     private static ECPoint implShamirsTrick(ECPoint P, BigInteger k,
         ECPoint Q, BigInteger l)
+    {
+        return implShamirsTrickInternal(P, k, Q, l).normalize();
+    }
+
+    /*
+     * The result may still be in a projective representation.
+     */
+    private static ECPoint implShamirsTrickInternal(ECPoint P, BigInteger k,
+        ECPoint Q, BigInteger l)
     {
         int m = Math.max(k.bitLength(), l.bitLength());
         ECPoint Z = P.add(Q);
@@ -65,24 +166,24 @@ public class ECAlgorithms
 
         for (int i = m - 1; i >= 0; --i)
         {
-            R = R.twice();
+            R = R.twiceInternal();
 
             if (k.testBit(i))
             {
                 if (l.testBit(i))
                 {
-                    R = R.add(Z);
+                    R = R.addInternal(Z);
                 }
                 else
                 {
-                    R = R.add(P);
+                    R = R.addInternal(P);
                 }
             }
             else
             {
                 if (l.testBit(i))
                 {
-                    R = R.add(Q);
+                    R = R.addInternal(Q);
                 }
             }
         }
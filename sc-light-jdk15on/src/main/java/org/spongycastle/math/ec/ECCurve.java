@@ -38,12 +38,25 @@ public abstract class ECCurve
         BigInteger q;
         ECPoint.Fp infinity;
 
+        // fixed width arithmetic for the prime, if one is available
+        SolinasField field;
+
+        // allow ECPoint.Fp to pick a cheaper doubling formula
+        boolean aIsZero;
+        boolean aIsMinusThree;
+
         public Fp(BigInteger q, BigInteger a, BigInteger b)
         {
             this.q = q;
+            this.field = SolinasField.getInstance(q);
             this.a = fromBigInteger(a);
             this.b = fromBigInteger(b);
             this.infinity = new ECPoint.Fp(this, null, null);
+
+            BigInteger aModQ = a.mod(q);
+
+            this.aIsZero = aModQ.signum() == 0;
+            this.aIsMinusThree = aModQ.add(ECConstants.THREE).equals(q);
         }
 
         public BigInteger getQ()
@@ -58,6 +71,11 @@ public abstract class ECCurve
 
         public ECFieldElement fromBigInteger(BigInteger x)
         {
+            if (field != null)
+            {
+                return new SolinasFieldElement(field, x);
+            }
+
             return new ECFieldElement.Fp(this.q, x);
         }
 
@@ -94,7 +112,7 @@ public abstract class ECCurve
 
                 System.arraycopy(encoded, 1, i, 0, i.length);
 
-                ECFieldElement x = new ECFieldElement.Fp(this.q, new BigInteger(1, i));
+                ECFieldElement x = fromBigInteger(new BigInteger(1, i));
                 ECFieldElement alpha = x.multiply(x.square().add(a)).add(b);
                 ECFieldElement beta = alpha.sqrt();
 
@@ -115,8 +133,7 @@ public abstract class ECCurve
                 }
                 else
                 {
-                    p = new ECPoint.Fp(this, x,
-                        new ECFieldElement.Fp(this.q, q.subtract(beta.toBigInteger())), true);
+                    p = new ECPoint.Fp(this, x, beta.negate(), true);
                 }
                 break;
                 // uncompressed
@@ -131,8 +148,8 @@ public abstract class ECCurve
                 System.arraycopy(encoded, xEnc.length + 1, yEnc, 0, yEnc.length);
 
                 p = new ECPoint.Fp(this,
-                        new ECFieldElement.Fp(this.q, new BigInteger(1, xEnc)),
-                        new ECFieldElement.Fp(this.q, new BigInteger(1, yEnc)));
+                        fromBigInteger(new BigInteger(1, xEnc)),
+                        fromBigInteger(new BigInteger(1, yEnc)));
                 break;
             default:
                 throw new RuntimeException("Invalid point encoding 0x" + Integer.toString(encoded[0], 16));
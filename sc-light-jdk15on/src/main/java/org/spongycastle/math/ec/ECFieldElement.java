@@ -19,6 +19,11 @@ public abstract class ECFieldElement
     public abstract ECFieldElement invert();
     public abstract ECFieldElement sqrt();
 
+    boolean isZero()
+    {
+        return toBigInteger().signum() == 0;
+    }
+
     public String toString()
     {
         return this.toBigInteger().toString(2);
@@ -42,6 +47,15 @@ public abstract class ECFieldElement
             this.q = q;
         }
 
+        /**
+         * For subclasses holding their value in some other form, which must then
+         * override toBigInteger() and the arithmetic operations.
+         */
+        Fp(BigInteger q)
+        {
+            this.q = q;
+        }
+
         public BigInteger toBigInteger()
         {
             return x;
@@ -294,12 +308,12 @@ public abstract class ECFieldElement
             }
             
             ECFieldElement.Fp o = (ECFieldElement.Fp)other;
-            return q.equals(o.q) && x.equals(o.x);
+            return q.equals(o.q) && toBigInteger().equals(o.toBigInteger());
         }
 
         public int hashCode()
         {
-            return q.hashCode() ^ x.hashCode();
+            return q.hashCode() ^ toBigInteger().hashCode();
         }
     }
 
@@ -105,6 +105,13 @@ public abstract class ECPoint
      */
     void setPreCompInfo(PreCompInfo preCompInfo)
     {
+        // a comb is only replaced by another comb, or removed
+        if (this.preCompInfo instanceof FixedPointComb
+            && preCompInfo != null && !(preCompInfo instanceof FixedPointComb))
+        {
+            return;
+        }
+
         this.preCompInfo = preCompInfo;
     }
 
@@ -115,6 +122,36 @@ public abstract class ECPoint
     public abstract ECPoint negate();
     public abstract ECPoint twice();
 
+    /*
+     * The following are used by the multipliers for their intermediate results. Subclasses
+     * may hold such results in a projective representation, which must be converted back to
+     * affine co-ordinates by normalize() before the point is returned to a caller.
+     */
+    ECPoint addInternal(ECPoint b)
+    {
+        return add(b);
+    }
+
+    ECPoint subtractInternal(ECPoint b)
+    {
+        if (b.isInfinity())
+        {
+            return this;
+        }
+
+        return addInternal(b.negate());
+    }
+
+    ECPoint twiceInternal()
+    {
+        return twice();
+    }
+
+    ECPoint normalize()
+    {
+        return this;
+    }
+
     /**
      * Sets the default <code>ECMultiplier</code>, unless already set. 
      */
@@ -148,8 +185,21 @@ public abstract class ECPoint
             return this.curve.getInfinity();
         }
 
+        PreCompInfo info = preCompInfo;
+        if (info instanceof FixedPointComb)
+        {
+            FixedPointComb comb = (FixedPointComb)info;
+            if (comb.canMultiply(k))
+            {
+                return comb.multiply(k);
+            }
+
+            // use the usual multiplier, without a precomputation of its own as the comb is kept
+            info = null;
+        }
+
         assertECMultiplier();
-        return this.multiplier.multiply(this, k, preCompInfo);
+        return this.multiplier.multiply(this, k, info);
     }
 
     /**
@@ -157,7 +207,12 @@ public abstract class ECPoint
      */
     public static class Fp extends ECPoint
     {
-        
+        /*
+         * Jacobian z co-ordinate, where (x, y, z) represents the affine point (x/z^2, y/z^3).
+         * Only intermediate results of the multipliers carry one; null means the point is affine.
+         */
+        ECFieldElement z;
+
         /**
          * Create a point which encodes with point compression.
          * 
@@ -189,7 +244,15 @@ public abstract class ECPoint
 
             this.withCompression = withCompression;
         }
-         
+
+        Fp(ECCurve curve, ECFieldElement x, ECFieldElement y, ECFieldElement z, boolean withCompression)
+        {
+            super(curve, x, y);
+
+            this.z = z;
+            this.withCompression = withCompression;
+        }
+
         /**
          * return the field element encoded with point compression. (S 4.3.6)
          */
@@ -280,18 +343,17 @@ public abstract class ECPoint
                 return this;
             }
 
-            if (this.y.toBigInteger().signum() == 0) 
+            if (this.y.isZero()) 
             {
                 // if y1 == 0, then (x1, y1) == (x1, -y1)
                 // and hence this = -this and thus 2(x1, y1) == infinity
                 return this.curve.getInfinity();
             }
 
-            ECFieldElement TWO = this.curve.fromBigInteger(BigInteger.valueOf(2));
-            ECFieldElement THREE = this.curve.fromBigInteger(BigInteger.valueOf(3));
-            ECFieldElement gamma = this.x.square().multiply(THREE).add(curve.a).divide(y.multiply(TWO));
+            ECFieldElement x1Sq = this.x.square();
+            ECFieldElement gamma = x1Sq.add(x1Sq).add(x1Sq).add(curve.a).divide(this.y.add(this.y));
 
-            ECFieldElement x3 = gamma.square().subtract(this.x.multiply(TWO));
+            ECFieldElement x3 = gamma.square().subtract(this.x.add(this.x));
             ECFieldElement y3 = gamma.multiply(this.x.subtract(x3)).subtract(this.y);
                 
             return new ECPoint.Fp(curve, x3, y3, this.withCompression);
@@ -311,7 +373,163 @@ public abstract class ECPoint
 
         public ECPoint negate()
         {
-            return new ECPoint.Fp(curve, this.x, this.y.negate(), this.withCompression);
+            return new ECPoint.Fp(curve, this.x, this.y.negate(), this.z, this.withCompression);
+        }
+
+        /*
+         * Jacobian addition, "add-2007-bl" with the mixed case where either z is one (null)
+         * simplified - the multipliers mostly add affine precomputed points.
+         */
+        ECPoint addInternal(ECPoint b)
+        {
+            if (this.isInfinity())
+            {
+                return b;
+            }
+
+            if (b.isInfinity())
+            {
+                return this;
+            }
+
+            ECPoint.Fp other = (ECPoint.Fp)b;
+            ECFieldElement z1 = this.z, z2 = other.z;
+
+            ECFieldElement u1 = this.x, s1 = this.y;
+            if (z2 != null)
+            {
+                ECFieldElement z2Sq = z2.square();
+                u1 = u1.multiply(z2Sq);
+                s1 = s1.multiply(z2Sq.multiply(z2));
+            }
+
+            ECFieldElement u2 = other.x, s2 = other.y;
+            if (z1 != null)
+            {
+                ECFieldElement z1Sq = z1.square();
+                u2 = u2.multiply(z1Sq);
+                s2 = s2.multiply(z1Sq.multiply(z1));
+            }
+
+            ECFieldElement h = u2.subtract(u1);
+            ECFieldElement r = s2.subtract(s1);
+
+            if (h.isZero())
+            {
+                if (r.isZero())
+                {
+                    // this = b, i.e. this must be doubled
+                    return this.twiceInternal();
+                }
+
+                // this = -b, i.e. the result is the point at infinity
+                return this.curve.getInfinity();
+            }
+
+            ECFieldElement hSq = h.square();
+            ECFieldElement hCu = hSq.multiply(h);
+            ECFieldElement v = u1.multiply(hSq);
+
+            ECFieldElement x3 = r.square().subtract(hCu).subtract(v.add(v));
+            ECFieldElement y3 = r.multiply(v.subtract(x3)).subtract(s1.multiply(hCu));
+
+            ECFieldElement z3 = h;
+            if (z1 != null)
+            {
+                z3 = z3.multiply(z1);
+            }
+            if (z2 != null)
+            {
+                z3 = z3.multiply(z2);
+            }
+
+            return new ECPoint.Fp(curve, x3, y3, z3, this.withCompression);
+        }
+
+        /*
+         * Jacobian doubling, "dbl-1998-cmo-2", using M = 3(x - z^2)(x + z^2) when a = -3.
+         */
+        ECPoint twiceInternal()
+        {
+            if (this.isInfinity())
+            {
+                return this;
+            }
+
+            if (this.y.isZero())
+            {
+                return this.curve.getInfinity();
+            }
+
+            ECCurve.Fp fpCurve = (ECCurve.Fp)this.curve;
+            ECFieldElement x1 = this.x, y1 = this.y, z1 = this.z;
+
+            ECFieldElement m;
+            if (z1 == null || fpCurve.aIsZero)
+            {
+                ECFieldElement x1Sq = x1.square();
+                m = x1Sq.add(x1Sq).add(x1Sq);
+
+                if (z1 == null && !fpCurve.aIsZero)
+                {
+                    m = m.add(curve.a);
+                }
+            }
+            else if (fpCurve.aIsMinusThree)
+            {
+                ECFieldElement z1Sq = z1.square();
+                ECFieldElement t = x1.add(z1Sq).multiply(x1.subtract(z1Sq));
+                m = t.add(t).add(t);
+            }
+            else
+            {
+                ECFieldElement x1Sq = x1.square();
+                ECFieldElement z1Sq = z1.square();
+                m = x1Sq.add(x1Sq).add(x1Sq).add(curve.a.multiply(z1Sq.square()));
+            }
+
+            ECFieldElement y1Sq = y1.square();
+            ECFieldElement s = x1.multiply(y1Sq);
+            s = s.add(s);
+            s = s.add(s);
+
+            ECFieldElement t = y1Sq.square();
+            t = t.add(t);
+            t = t.add(t);
+            t = t.add(t);
+
+            ECFieldElement x3 = m.square().subtract(s.add(s));
+            ECFieldElement y3 = m.multiply(s.subtract(x3)).subtract(t);
+
+            ECFieldElement z3 = y1.add(y1);
+            if (z1 != null)
+            {
+                z3 = z3.multiply(z1);
+            }
+
+            return new ECPoint.Fp(curve, x3, y3, z3, this.withCompression);
+        }
+
+        ECPoint normalize()
+        {
+            if (this.isInfinity() || this.z == null)
+            {
+                return this;
+            }
+
+            return normalize(this.z.invert());
+        }
+
+        /**
+         * Convert to affine co-ordinates given the inverse of z, which may have been
+         * found along with others in a single inversion.
+         */
+        ECPoint normalize(ECFieldElement zInv)
+        {
+            ECFieldElement zInvSq = zInv.square();
+
+            return new ECPoint.Fp(curve, this.x.multiply(zInvSq), this.y.multiply(zInvSq.multiply(zInv)),
+                this.withCompression);
         }
 
         /**
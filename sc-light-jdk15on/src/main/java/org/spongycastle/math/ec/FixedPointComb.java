@@ -0,0 +1,175 @@
+package org.spongycastle.math.ec;
+
+import java.math.BigInteger;
+
+/**
+ * Precomputation for multiplying a fixed point, such as the base point of a set of
+ * domain parameters, using the comb method (Lim and Lee, "More Flexible Exponentiation
+ * with Precomputation", CRYPTO '94).
+ * <p>
+ * A multiplier of up to <code>bits</code> bits is split into <code>width</code> rows of
+ * <code>d = ceil(bits / width)</code> bits each, and a table of the 2^width sums of
+ * the points P * 2^(j * d) lets a multiplication be done in d doublings and at most d
+ * additions. The table is built the first time it is needed and is never changed after
+ * that, so a point, and its table, can be shared between threads.
+ */
+public class FixedPointComb
+    implements PreCompInfo
+{
+    /**
+     * The largest table width supported, giving a table of 2^MAX_WIDTH points.
+     */
+    public static final int MAX_WIDTH = 10;
+
+    private final ECPoint p;
+    private final int bits;
+    private final int width;
+    private final int spacing;
+
+    private volatile ECPoint[] table;
+
+    private FixedPointComb(ECPoint p, int bits, int width)
+    {
+        this.p = p;
+        this.bits = bits;
+        this.width = width;
+        this.spacing = (bits + width - 1) / width;
+    }
+
+    /**
+     * Arrange for multiplications of p by values of up to bits bits to use a comb with a
+     * table of 2^width points. The table itself is only built on the first such
+     * multiplication. If p already has a comb at least as wide, this has no effect.
+     *
+     * @param p the point that will be multiplied.
+     * @param bits the bit length of the largest multiplier expected, usually that of the
+     * order of p.
+     * @param width the number of rows in the comb, from 1 to MAX_WIDTH. Each increment
+     * doubles the size of the table, and reduces the time taken by a multiplication.
+     */
+    public static void precompute(ECPoint p, int bits, int width)
+    {
+        if (width < 1 || width > MAX_WIDTH)
+        {
+            throw new IllegalArgumentException("width must be between 1 and " + MAX_WIDTH);
+        }
+        if (bits < 1)
+        {
+            throw new IllegalArgumentException("bits must be positive");
+        }
+        if (p.isInfinity())
+        {
+            return;
+        }
+
+        PreCompInfo existing = p.preCompInfo;
+        if (existing instanceof FixedPointComb)
+        {
+            FixedPointComb comb = (FixedPointComb)existing;
+            if (comb.width >= width && comb.bits >= bits)
+            {
+                return;
+            }
+        }
+
+        p.setPreCompInfo(new FixedPointComb(p, bits, width));
+    }
+
+    /**
+     * Remove any comb from p, so its multiplications go back to its usual multiplier. As the
+     * comb belongs to the point, this affects every user of the same ECPoint instance, such
+     * as all domain parameters for a named curve.
+     *
+     * @param p the point to remove the comb from.
+     */
+    public static void remove(ECPoint p)
+    {
+        if (p.preCompInfo instanceof FixedPointComb)
+        {
+            p.setPreCompInfo(null);
+        }
+    }
+
+    boolean canMultiply(BigInteger k)
+    {
+        return k.bitLength() <= spacing * width;
+    }
+
+    ECPoint multiply(BigInteger k)
+    {
+        ECPoint[] table = getTable();
+        ECPoint R = p.getCurve().getInfinity();
+
+        for (int i = spacing - 1; i >= 0; --i)
+        {
+            R = R.twiceInternal();
+
+            int index = 0;
+            for (int j = width - 1; j >= 0; --j)
+            {
+                index <<= 1;
+                if (k.testBit(j * spacing + i))
+                {
+                    index |= 1;
+                }
+            }
+
+            if (index != 0)
+            {
+                R = R.addInternal(table[index]);
+            }
+        }
+
+        return R.normalize();
+    }
+
+    private ECPoint[] getTable()
+    {
+        ECPoint[] t = table;
+        if (t == null)
+        {
+            synchronized (this)
+            {
+                t = table;
+                if (t == null)
+                {
+                    t = buildTable();
+                    table = t;
+                }
+            }
+        }
+        return t;
+    }
+
+    private ECPoint[] buildTable()
+    {
+        // the points P * 2^(j * spacing), one per row of the comb
+        ECPoint[] rows = new ECPoint[width];
+
+        rows[0] = p;
+        for (int j = 1; j < width; ++j)
+        {
+            ECPoint q = rows[j - 1];
+            for (int s = 0; s < spacing; ++s)
+            {
+                q = q.twiceInternal();
+            }
+            rows[j] = q.normalize();
+        }
+
+        // entry i is the sum of the rows whose bits are set in i
+        ECPoint[] t = new ECPoint[1 << width];
+
+        t[0] = p.getCurve().getInfinity();
+        for (int j = 0; j < width; ++j)
+        {
+            int bit = 1 << j;
+            for (int i = 0; i < bit; ++i)
+            {
+                t[bit + i] = t[i].add(rows[j]);
+            }
+        }
+
+        return t;
+    }
+}
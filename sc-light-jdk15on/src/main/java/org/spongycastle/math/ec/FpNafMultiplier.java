@@ -23,17 +23,17 @@ class FpNafMultiplier implements ECMultiplier
 
         for (int i = h.bitLength() - 2; i > 0; --i)
         {             
-            R = R.twice();
+            R = R.twiceInternal();
 
             boolean hBit = h.testBit(i);
             boolean eBit = e.testBit(i);
 
             if (hBit != eBit)
             {
-                R = R.add(hBit ? p : neg);
+                R = R.addInternal(hBit ? p : neg);
             }
         }
 
-        return R;
+        return R.normalize();
     }
 }
@@ -0,0 +1,185 @@
+package org.spongycastle.math.ec;
+
+import java.math.BigInteger;
+
+/**
+ * Arithmetic on fixed length natural numbers, held as little-endian arrays of 32 bit
+ * words. Results are written into arrays supplied by the caller.
+ */
+class Nat
+{
+    private static final long M = 0xFFFFFFFFL;
+
+    /**
+     * z = x + y, returning the carry out (0 or 1).
+     */
+    static int add(int len, int[] x, int[] y, int[] z)
+    {
+        long c = 0;
+        for (int i = 0; i < len; ++i)
+        {
+            c += (x[i] & M) + (y[i] & M);
+            z[i] = (int)c;
+            c >>>= 32;
+        }
+        return (int)c;
+    }
+
+    /**
+     * z = x - y, returning the borrow (0 or -1).
+     */
+    static int sub(int len, int[] x, int[] y, int[] z)
+    {
+        long c = 0;
+        for (int i = 0; i < len; ++i)
+        {
+            c += (x[i] & M) - (y[i] & M);
+            z[i] = (int)c;
+            c >>= 32;
+        }
+        return (int)c;
+    }
+
+    /**
+     * zz = x * y, where zz has length 2 * len.
+     */
+    static void mul(int len, int[] x, int[] y, int[] zz)
+    {
+        long c = 0;
+        long x0 = x[0] & M;
+        for (int j = 0; j < len; ++j)
+        {
+            c += x0 * (y[j] & M);
+            zz[j] = (int)c;
+            c >>>= 32;
+        }
+        zz[len] = (int)c;
+
+        for (int i = 1; i < len; ++i)
+        {
+            long xi = x[i] & M;
+
+            c = 0;
+            for (int j = 0; j < len; ++j)
+            {
+                c += xi * (y[j] & M) + (zz[i + j] & M);
+                zz[i + j] = (int)c;
+                c >>>= 32;
+            }
+            zz[i + len] = (int)c;
+        }
+    }
+
+    /**
+     * zz = x * x, where zz has length 2 * len. Each cross product is only formed once.
+     */
+    static void square(int len, int[] x, int[] zz)
+    {
+        for (int i = 0; i < len; ++i)
+        {
+            zz[i] = 0;
+        }
+
+        long c;
+        for (int i = 0; i < len; ++i)
+        {
+            long xi = x[i] & M;
+
+            c = 0;
+            for (int j = i + 1; j < len; ++j)
+            {
+                c += xi * (x[j] & M) + (zz[i + j] & M);
+                zz[i + j] = (int)c;
+                c >>>= 32;
+            }
+            zz[i + len] = (int)c;
+        }
+
+        // double the cross products
+        int carry = 0;
+        for (int k = 0; k < 2 * len; ++k)
+        {
+            int w = zz[k];
+            zz[k] = (w << 1) | carry;
+            carry = w >>> 31;
+        }
+
+        // and add in the squares
+        c = 0;
+        for (int i = 0; i < len; ++i)
+        {
+            long xi = x[i] & M;
+            long d = xi * xi;
+
+            c += (d & M) + (zz[2 * i] & M);
+            zz[2 * i] = (int)c;
+            c >>>= 32;
+            c += (d >>> 32) + (zz[2 * i + 1] & M);
+            zz[2 * i + 1] = (int)c;
+            c >>>= 32;
+        }
+    }
+
+    static boolean gte(int len, int[] x, int[] y)
+    {
+        for (int i = len - 1; i >= 0; --i)
+        {
+            int xi = x[i] ^ Integer.MIN_VALUE;
+            int yi = y[i] ^ Integer.MIN_VALUE;
+
+            if (xi < yi)
+            {
+                return false;
+            }
+            if (xi > yi)
+            {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    static boolean isZero(int len, int[] x)
+    {
+        for (int i = 0; i < len; ++i)
+        {
+            if (x[i] != 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int[] fromBigInteger(int len, BigInteger x)
+    {
+        if (x.signum() < 0 || x.bitLength() > len * 32)
+        {
+            throw new IllegalArgumentException("value out of range");
+        }
+
+        int[] z = new int[len];
+        for (int i = 0; i < len; ++i)
+        {
+            z[i] = x.intValue();
+            x = x.shiftRight(32);
+        }
+        return z;
+    }
+
+    static BigInteger toBigInteger(int len, int[] x)
+    {
+        byte[] bs = new byte[len * 4];
+        for (int i = 0; i < len; ++i)
+        {
+            int xi = x[i];
+            int off = (len - 1 - i) * 4;
+
+            bs[off]     = (byte)(xi >>> 24);
+            bs[off + 1] = (byte)(xi >>> 16);
+            bs[off + 2] = (byte)(xi >>> 8);
+            bs[off + 3] = (byte)xi;
+        }
+        return new BigInteger(1, bs);
+    }
+}
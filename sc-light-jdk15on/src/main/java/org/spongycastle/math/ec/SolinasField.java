@@ -0,0 +1,303 @@
+package org.spongycastle.math.ec;
+
+import java.math.BigInteger;
+import java.util.Hashtable;
+
+import org.spongycastle.util.encoders.Hex;
+
+/**
+ * Fixed width arithmetic modulo one of the special form primes used by the NIST/SEC
+ * curves. Field elements are little-endian arrays of 32 bit words, always fully reduced,
+ * and products are reduced using the shape of the prime rather than a division.
+ */
+abstract class SolinasField
+{
+    private static final long M = 0xFFFFFFFFL;
+
+    private static final Hashtable fields = new Hashtable();
+
+    static
+    {
+        addField(new P256R1());
+        addField(new P384R1());
+        addField(new P521R1());
+        addField(new P256K1());
+    }
+
+    private static void addField(SolinasField field)
+    {
+        fields.put(field.q, field);
+    }
+
+    /**
+     * Return the specialised arithmetic for the prime q, or null if there isn't any.
+     */
+    static SolinasField getInstance(BigInteger q)
+    {
+        return (SolinasField)fields.get(q);
+    }
+
+    final BigInteger q;
+    final int len;
+    final int[] p;
+
+    SolinasField(String q)
+    {
+        this.q = new BigInteger(1, Hex.decode(q));
+        this.len = (this.q.bitLength() + 31) / 32;
+        this.p = Nat.fromBigInteger(len, this.q);
+    }
+
+    /**
+     * z = tt mod p, where tt is the double length result of a multiplication or squaring.
+     */
+    abstract void reduce(int[] tt, int[] z);
+
+    int[] fromBigInteger(BigInteger x)
+    {
+        if (x.signum() < 0 || x.compareTo(q) >= 0)
+        {
+            x = x.mod(q);
+        }
+
+        return Nat.fromBigInteger(len, x);
+    }
+
+    void add(int[] x, int[] y, int[] z)
+    {
+        int c = Nat.add(len, x, y, z);
+        if (c != 0 || Nat.gte(len, z, p))
+        {
+            Nat.sub(len, z, p, z);
+        }
+    }
+
+    void subtract(int[] x, int[] y, int[] z)
+    {
+        int c = Nat.sub(len, x, y, z);
+        if (c != 0)
+        {
+            Nat.add(len, z, p, z);
+        }
+    }
+
+    void negate(int[] x, int[] z)
+    {
+        if (Nat.isZero(len, x))
+        {
+            System.arraycopy(x, 0, z, 0, len);
+        }
+        else
+        {
+            Nat.sub(len, p, x, z);
+        }
+    }
+
+    void multiply(int[] x, int[] y, int[] tt, int[] z)
+    {
+        Nat.mul(len, x, y, tt);
+        reduce(tt, z);
+    }
+
+    void square(int[] x, int[] tt, int[] z)
+    {
+        Nat.square(len, x, tt);
+        reduce(tt, z);
+    }
+
+    /**
+     * Bring z back into the range [0, p), where the full value is c * 2^(32 * len) + z for
+     * a small signed c.
+     */
+    void normalise(long c, int[] z)
+    {
+        while (c > 0)
+        {
+            c += Nat.sub(len, z, p, z);
+        }
+        while (c < 0)
+        {
+            c += Nat.add(len, z, p, z);
+        }
+        if (Nat.gte(len, z, p))
+        {
+            Nat.sub(len, z, p, z);
+        }
+    }
+
+    /**
+     * Generalised Mersenne primes, reduced as in FIPS 186-3 D.2: the result is the low half
+     * of the product plus a signed sum of terms each made up of words of the high half.
+     */
+    static abstract class NistField
+        extends SolinasField
+    {
+        private final int[][] terms;
+        private final int[] coeffs;
+
+        /**
+         * @param terms for each term, the index of the product word that goes into each
+         * result word, least significant first, or -1 for a zero word.
+         * @param coeffs the multiple of each term added to the result.
+         */
+        NistField(String q, int[][] terms, int[] coeffs)
+        {
+            super(q);
+
+            this.terms = terms;
+            this.coeffs = coeffs;
+        }
+
+        void reduce(int[] tt, int[] z)
+        {
+            long c = 0;
+            for (int j = 0; j < len; ++j)
+            {
+                c += tt[j] & M;
+                for (int t = 0; t < terms.length; ++t)
+                {
+                    int index = terms[t][j];
+                    if (index >= 0)
+                    {
+                        c += coeffs[t] * (tt[index] & M);
+                    }
+                }
+                z[j] = (int)c;
+                c >>= 32;
+            }
+
+            normalise(c, z);
+        }
+    }
+
+    /**
+     * p = 2^256 - 2^224 + 2^192 + 2^96 - 1 (secp256r1, NIST P-256)
+     */
+    static class P256R1
+        extends NistField
+    {
+        P256R1()
+        {
+            super("FFFFFFFF00000001000000000000000000000000FFFFFFFFFFFFFFFFFFFFFFFF",
+                new int[][]{
+                    { -1, -1, -1, 11, 12, 13, 14, 15 },
+                    { -1, -1, -1, 12, 13, 14, 15, -1 },
+                    {  8,  9, 10, -1, -1, -1, 14, 15 },
+                    {  9, 10, 11, 13, 14, 15, 13,  8 },
+                    { 11, 12, 13, -1, -1, -1,  8, 10 },
+                    { 12, 13, 14, 15, -1, -1,  9, 11 },
+                    { 13, 14, 15,  8,  9, 10, -1, 12 },
+                    { 14, 15, -1,  9, 10, 11, -1, 13 }},
+                new int[]{ 2, 2, 1, 1, -1, -1, -1, -1 });
+        }
+    }
+
+    /**
+     * p = 2^384 - 2^128 - 2^96 + 2^32 - 1 (secp384r1, NIST P-384)
+     */
+    static class P384R1
+        extends NistField
+    {
+        P384R1()
+        {
+            super("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFFFF0000000000000000FFFFFFFF",
+                new int[][]{
+                    { -1, -1, -1, -1, 21, 22, 23, -1, -1, -1, -1, -1 },
+                    { 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23 },
+                    { 21, 22, 23, 12, 13, 14, 15, 16, 17, 18, 19, 20 },
+                    { -1, 23, -1, 20, 12, 13, 14, 15, 16, 17, 18, 19 },
+                    { -1, -1, -1, -1, 20, 21, 22, 23, -1, -1, -1, -1 },
+                    { 20, -1, -1, 21, 22, 23, -1, -1, -1, -1, -1, -1 },
+                    { 23, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22 },
+                    { -1, 20, 21, 22, 23, -1, -1, -1, -1, -1, -1, -1 },
+                    { -1, -1, -1, 23, 23, -1, -1, -1, -1, -1, -1, -1 }},
+                new int[]{ 2, 1, 1, 1, 1, 1, -1, -1, -1 });
+        }
+    }
+
+    /**
+     * p = 2^521 - 1 (secp521r1, NIST P-521), so the bits above 2^521 are simply added back in.
+     */
+    static class P521R1
+        extends SolinasField
+    {
+        P521R1()
+        {
+            super("01FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF");
+        }
+
+        void reduce(int[] tt, int[] z)
+        {
+            long c = 0;
+            for (int j = 0; j < 16; ++j)
+            {
+                int hi = (tt[j + 16] >>> 9) | (tt[j + 17] << 23);
+                c += (tt[j] & M) + (hi & M);
+                z[j] = (int)c;
+                c >>>= 32;
+            }
+            c += (tt[16] & 0x1FF) + ((tt[32] >>> 9) | (tt[33] << 23));
+
+            // at most one bit above 2^521 remains
+            z[16] = (int)c & 0x1FF;
+            c = (int)c >>> 9;
+            for (int j = 0; c != 0 && j < 17; ++j)
+            {
+                c += z[j] & M;
+                z[j] = (int)c;
+                c >>>= 32;
+            }
+
+            if (Nat.gte(len, z, p))
+            {
+                Nat.sub(len, z, p, z);
+            }
+        }
+    }
+
+    /**
+     * p = 2^256 - 2^32 - 977 (secp256k1), so the high half is folded back in multiplied
+     * by 2^32 + 977.
+     */
+    static class P256K1
+        extends SolinasField
+    {
+        P256K1()
+        {
+            super("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFC2F");
+        }
+
+        void reduce(int[] tt, int[] z)
+        {
+            long c = (tt[0] & M) + (tt[8] & M) * 977;
+            z[0] = (int)c;
+            c >>>= 32;
+            for (int j = 1; j < 8; ++j)
+            {
+                c += (tt[j] & M) + (tt[j + 8] & M) * 977 + (tt[j + 7] & M);
+                z[j] = (int)c;
+                c >>>= 32;
+            }
+            c += tt[15] & M;
+
+            // and again for the remaining high word
+            long d = (z[0] & M) + c * 977;
+            z[0] = (int)d;
+            d >>>= 32;
+            d += (z[1] & M) + c;
+            z[1] = (int)d;
+            d >>>= 32;
+            for (int j = 2; d != 0 && j < 8; ++j)
+            {
+                d += z[j] & M;
+                z[j] = (int)d;
+                d >>>= 32;
+            }
+
+            if (d != 0 || Nat.gte(len, z, p))
+            {
+                Nat.sub(len, z, p, z);
+            }
+        }
+    }
+}
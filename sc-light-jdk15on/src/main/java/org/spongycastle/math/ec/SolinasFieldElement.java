@@ -0,0 +1,117 @@
+package org.spongycastle.math.ec;
+
+import java.math.BigInteger;
+
+/**
+ * An element of one of the prime fields with a {@link SolinasField}, as created by
+ * <code>ECCurve.Fp</code> for those fields. Arithmetic is done on fixed width arrays of
+ * words; the BigInteger value is only formed when asked for.
+ */
+class SolinasFieldElement
+    extends ECFieldElement.Fp
+{
+    private final SolinasField field;
+    private final int[] value;
+
+    SolinasFieldElement(SolinasField field, BigInteger x)
+    {
+        super(field.q);
+
+        if (x.compareTo(field.q) >= 0)
+        {
+            throw new IllegalArgumentException("x value too large in field element");
+        }
+
+        this.field = field;
+        this.value = field.fromBigInteger(x);
+    }
+
+    private SolinasFieldElement(SolinasField field, int[] value)
+    {
+        super(field.q);
+
+        this.field = field;
+        this.value = value;
+    }
+
+    public BigInteger toBigInteger()
+    {
+        if (x == null)
+        {
+            x = Nat.toBigInteger(field.len, value);
+        }
+
+        return x;
+    }
+
+    boolean isZero()
+    {
+        return Nat.isZero(field.len, value);
+    }
+
+    private int[] valueOf(ECFieldElement b)
+    {
+        if (b instanceof SolinasFieldElement && ((SolinasFieldElement)b).field == field)
+        {
+            return ((SolinasFieldElement)b).value;
+        }
+
+        return field.fromBigInteger(b.toBigInteger());
+    }
+
+    public ECFieldElement add(ECFieldElement b)
+    {
+        int[] z = new int[field.len];
+        field.add(value, valueOf(b), z);
+        return new SolinasFieldElement(field, z);
+    }
+
+    public ECFieldElement subtract(ECFieldElement b)
+    {
+        int[] z = new int[field.len];
+        field.subtract(value, valueOf(b), z);
+        return new SolinasFieldElement(field, z);
+    }
+
+    public ECFieldElement multiply(ECFieldElement b)
+    {
+        int[] z = new int[field.len];
+        field.multiply(value, valueOf(b), new int[2 * field.len], z);
+        return new SolinasFieldElement(field, z);
+    }
+
+    public ECFieldElement divide(ECFieldElement b)
+    {
+        return multiply(b.invert());
+    }
+
+    public ECFieldElement negate()
+    {
+        int[] z = new int[field.len];
+        field.negate(value, z);
+        return new SolinasFieldElement(field, z);
+    }
+
+    public ECFieldElement square()
+    {
+        int[] z = new int[field.len];
+        field.square(value, new int[2 * field.len], z);
+        return new SolinasFieldElement(field, z);
+    }
+
+    public ECFieldElement invert()
+    {
+        return new SolinasFieldElement(field, toBigInteger().modInverse(q));
+    }
+
+    public ECFieldElement sqrt()
+    {
+        ECFieldElement root = new ECFieldElement.Fp(q, toBigInteger()).sqrt();
+        if (root == null)
+        {
+            return null;
+        }
+
+        return new SolinasFieldElement(field, root.toBigInteger());
+    }
+}
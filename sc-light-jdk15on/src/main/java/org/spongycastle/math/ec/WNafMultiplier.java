@@ -213,22 +213,25 @@ class WNafMultiplier implements ECMultiplier
         ECPoint q = p.getCurve().getInfinity();
         for (int i = l - 1; i >= 0; i--)
         {
-            q = q.twice();
+            q = q.twiceInternal();
 
             if (wnaf[i] != 0)
             {
                 if (wnaf[i] > 0)
                 {
-                    q = q.add(preComp[(wnaf[i] - 1)/2]);
+                    q = q.addInternal(preComp[(wnaf[i] - 1)/2]);
                 }
                 else
                 {
                     // wnaf[i] < 0
-                    q = q.subtract(preComp[(-wnaf[i] - 1)/2]);
+                    q = q.subtractInternal(preComp[(-wnaf[i] - 1)/2]);
                 }
             }
         }
 
+        // Intermediate results may be projective, so convert back to affine
+        q = q.normalize();
+
         // Set PreCompInfo in ECPoint, such that it is available for next
         // multiplication.
         wnafPreCompInfo.setPreComp(preComp);
@@ -0,0 +1,26 @@
+package org.spongycastle.util;
+
+/**
+ * Interface for objects whose state can be captured and later restored, allowing a
+ * computation to be resumed from a saved point without repeating the work that led to it.
+ */
+public interface Memoable
+{
+    /**
+     * Produce a copy of this object with its configuration and in its current state.
+     * <p>
+     * The returned object may be used simply to store the state, or may be used as a similar object
+     * starting from the copied state.
+     */
+    Memoable copy();
+
+    /**
+     * Restore a copied object state into this object.
+     * <p>
+     * Implementations of this method <em>should</em> try to avoid or minimise memory allocation to perform the reset.
+     *
+     * @param other an object originally {@link #copy() copied} from an object of the same type as this instance.
+     * @throws ClassCastException if the provided object is not of the correct type.
+     */
+    void reset(Memoable other);
+}
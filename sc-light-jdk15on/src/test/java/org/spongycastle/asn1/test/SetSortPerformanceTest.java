@@ -0,0 +1,107 @@
+package org.spongycastle.asn1.test;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.spongycastle.asn1.ASN1EncodableVector;
+import org.spongycastle.asn1.ASN1Integer;
+import org.spongycastle.asn1.DERBitString;
+import org.spongycastle.asn1.DEROctetString;
+import org.spongycastle.asn1.DERSequence;
+import org.spongycastle.asn1.DERSet;
+import org.spongycastle.asn1.cms.CMSObjectIdentifiers;
+import org.spongycastle.asn1.cms.ContentInfo;
+import org.spongycastle.asn1.cms.SignedData;
+import org.spongycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.spongycastle.asn1.x500.X500Name;
+import org.spongycastle.asn1.x509.AlgorithmIdentifier;
+import org.spongycastle.asn1.x509.Certificate;
+import org.spongycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.spongycastle.asn1.x509.Time;
+import org.spongycastle.asn1.x509.V3TBSCertificateGenerator;
+import org.spongycastle.asn1.x509.X509ObjectIdentifiers;
+
+/**
+ * Times the DER encoding of a SignedData carrying a large certificates SET, which is
+ * dominated by sorting the SET members into DER order.
+ */
+public class SetSortPerformanceTest
+    extends TestCase
+{
+    private static final int NUM_CERTS = 10000;
+    private static final int NUM_ROUNDS = 5;
+
+    private ASN1EncodableVector createCertificates(int count)
+    {
+        Random random = new Random(1);
+        AlgorithmIdentifier sigAlg = new AlgorithmIdentifier(PKCSObjectIdentifiers.sha256WithRSAEncryption);
+        X500Name issuer = new X500Name("CN=Test CA, O=Legion of the Bouncy Castle, C=AU");
+        SubjectPublicKeyInfo keyInfo = new SubjectPublicKeyInfo(
+            new AlgorithmIdentifier(X509ObjectIdentifiers.id_ea_rsa), new byte[140]);
+        Time start = new Time(new Date(1000000000000L));
+        Time end = new Time(new Date(1500000000000L));
+
+        ASN1EncodableVector certs = new ASN1EncodableVector();
+
+        for (int i = 0; i != count; i++)
+        {
+            V3TBSCertificateGenerator tbsGen = new V3TBSCertificateGenerator();
+
+            // random serial numbers, so the certificates arrive out of order
+            tbsGen.setSerialNumber(new ASN1Integer(new BigInteger(64, random)));
+            tbsGen.setSignature(sigAlg);
+            tbsGen.setIssuer(issuer);
+            tbsGen.setStartDate(start);
+            tbsGen.setEndDate(end);
+            tbsGen.setSubject(new X500Name("CN=Subject " + i + ", O=Legion of the Bouncy Castle, C=AU"));
+            tbsGen.setSubjectPublicKeyInfo(keyInfo);
+
+            byte[] sig = new byte[128];
+            random.nextBytes(sig);
+
+            ASN1EncodableVector v = new ASN1EncodableVector();
+            v.add(tbsGen.generateTBSCertificate());
+            v.add(sigAlg);
+            v.add(new DERBitString(sig));
+
+            certs.add(Certificate.getInstance(new DERSequence(v)));
+        }
+
+        return certs;
+    }
+
+    public void testEncodeSignedData()
+        throws Exception
+    {
+        ASN1EncodableVector certs = createCertificates(NUM_CERTS);
+        ContentInfo content = new ContentInfo(CMSObjectIdentifiers.data, new DEROctetString(new byte[100]));
+        DERSet digestAlgs = new DERSet(new AlgorithmIdentifier(X509ObjectIdentifiers.id_SHA1));
+
+        byte[] encoding = null;
+        long total = 0;
+
+        for (int round = 0; round <= NUM_ROUNDS; round++)
+        {
+            long startTime = System.currentTimeMillis();
+
+            SignedData signedData = new SignedData(digestAlgs, content, new DERSet(certs), null, new DERSet());
+            encoding = new ContentInfo(CMSObjectIdentifiers.signedData, signedData).getEncoded("DER");
+
+            long endTime = System.currentTimeMillis();
+
+            // first round is warm up
+            if (round != 0)
+            {
+                total += endTime - startTime;
+            }
+        }
+
+        System.out.println("SignedData with " + NUM_CERTS + " certificates (" + encoding.length + " bytes)");
+        System.out.print("Millis   : ");
+        System.out.println((double)total / NUM_ROUNDS);
+        System.out.println();
+    }
+}
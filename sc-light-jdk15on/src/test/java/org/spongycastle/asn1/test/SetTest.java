@@ -1,5 +1,8 @@
 package org.spongycastle.asn1.test;
 
+import java.util.Random;
+
+import org.spongycastle.asn1.ASN1Encodable;
 import org.spongycastle.asn1.ASN1EncodableVector;
 import org.spongycastle.asn1.ASN1Set;
 import org.spongycastle.asn1.ASN1TaggedObject;
@@ -11,6 +14,7 @@ import org.spongycastle.asn1.DEROctetString;
 import org.spongycastle.asn1.DERSequence;
 import org.spongycastle.asn1.DERSet;
 import org.spongycastle.asn1.DERTaggedObject;
+import org.spongycastle.util.Arrays;
 import org.spongycastle.util.test.SimpleTest;
 
 /**
@@ -105,6 +109,90 @@ public class SetTest
         v.add(new DERBoolean(true));
 
         s = new DERSet(v);
+
+        largeSetTest();
+    }
+
+    private void largeSetTest()
+    {
+        Random random = new Random(42);
+        ASN1EncodableVector v = new ASN1EncodableVector();
+
+        for (int i = 0; i != 1000; i++)
+        {
+            byte[] data = new byte[random.nextInt(4)];
+            random.nextBytes(data);
+
+            // duplicate encodings included, different lengths and prefixes
+            v.add(new DEROctetString(data));
+            v.add(new DERInteger(random.nextInt(200) - 100));
+        }
+
+        ASN1Set s = new DERSet(v);
+
+        if (s.size() != v.size())
+        {
+            fail("large set size changed");
+        }
+
+        byte[] last = null;
+        for (int i = 0; i != s.size(); i++)
+        {
+            byte[] enc = getDEREncoded(s.getObjectAt(i));
+
+            if (last != null && compare(last, enc) > 0)
+            {
+                fail("large set not sorted at index " + i);
+            }
+            last = enc;
+        }
+
+        // sorting an already sorted set must not change it
+        ASN1EncodableVector sorted = new ASN1EncodableVector();
+        for (int i = 0; i != s.size(); i++)
+        {
+            sorted.add(s.getObjectAt(i));
+        }
+
+        ASN1Set s2 = new DERSet(sorted);
+        for (int i = 0; i != s.size(); i++)
+        {
+            if (s.getObjectAt(i) != s2.getObjectAt(i))
+            {
+                fail("re-sorting changed set order at index " + i);
+            }
+        }
+
+        if (!Arrays.areEqual(getDEREncoded(s), getDEREncoded(s2)))
+        {
+            fail("re-sorted set encoding differs");
+        }
+    }
+
+    private byte[] getDEREncoded(ASN1Encodable obj)
+    {
+        try
+        {
+            return obj.toASN1Primitive().getEncoded("DER");
+        }
+        catch (Exception e)
+        {
+            fail("encoding failed", e);
+            return null;
+        }
+    }
+
+    private static int compare(byte[] a, byte[] b)
+    {
+        int len = Math.min(a.length, b.length);
+        for (int i = 0; i != len; ++i)
+        {
+            if (a[i] != b[i])
+            {
+                return (a[i] & 0xff) - (b[i] & 0xff);
+            }
+        }
+        return a.length - b.length;
     }
 
     public static void main(
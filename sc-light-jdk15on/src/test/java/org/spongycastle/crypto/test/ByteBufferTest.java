@@ -0,0 +1,260 @@
+package org.spongycastle.crypto.test;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.DataLengthException;
+import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.Mac;
+import org.spongycastle.crypto.StreamCipher;
+import org.spongycastle.crypto.digests.MD5Digest;
+import org.spongycastle.crypto.digests.SHA1Digest;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.digests.SHA512Digest;
+import org.spongycastle.crypto.digests.TigerDigest;
+import org.spongycastle.crypto.engines.AESFastEngine;
+import org.spongycastle.crypto.engines.RC4Engine;
+import org.spongycastle.crypto.engines.Salsa20Engine;
+import org.spongycastle.crypto.macs.HMac;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+import org.spongycastle.crypto.util.ByteBuffers;
+import org.spongycastle.util.Arrays;
+import org.spongycastle.util.test.SimpleTest;
+
+/**
+ * Check the ByteBuffer entry points give the same results as the byte array ones, for
+ * heap, read only and direct buffers.
+ */
+public class ByteBufferTest
+    extends SimpleTest
+{
+    private static final int DATA_SIZE = 10007;
+
+    private SecureRandom random = new SecureRandom();
+    private byte[] data;
+
+    public String getName()
+    {
+        return "ByteBuffer";
+    }
+
+    /**
+     * Return buffers holding data, of each kind, positioned 3 bytes in.
+     */
+    private ByteBuffer[] buffers(byte[] data)
+    {
+        ByteBuffer heap = ByteBuffer.allocate(data.length + 6);
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length + 6);
+
+        heap.position(3);
+        heap.put(data);
+        heap.position(3);
+        heap.limit(3 + data.length);
+
+        direct.position(3);
+        direct.put(data);
+        direct.position(3);
+        direct.limit(3 + data.length);
+
+        return new ByteBuffer[] { heap, heap.asReadOnlyBuffer(), direct };
+    }
+
+    private byte[] remaining(ByteBuffer buf, int start)
+    {
+        byte[] bytes = new byte[buf.position() - start];
+
+        buf.flip();
+        buf.position(start);
+        buf.get(bytes);
+
+        return bytes;
+    }
+
+    private void checkDigest(Digest digest)
+    {
+        byte[] expected = new byte[digest.getDigestSize()];
+
+        // an odd byte first, so the word buffer is part full
+        digest.update(data[0]);
+        digest.update(data, 1, data.length - 1);
+        digest.doFinal(expected, 0);
+
+        byte[] rest = new byte[data.length - 1];
+        System.arraycopy(data, 1, rest, 0, rest.length);
+
+        ByteBuffer[] bufs = buffers(rest);
+        for (int i = 0; i != bufs.length; i++)
+        {
+            byte[] out = new byte[digest.getDigestSize()];
+
+            digest.update(data[0]);
+            ByteBuffers.update(digest, bufs[i]);
+            digest.doFinal(out, 0);
+
+            if (!Arrays.areEqual(expected, out))
+            {
+                fail(digest.getAlgorithmName() + " failed on buffer " + i);
+            }
+            if (bufs[i].hasRemaining())
+            {
+                fail(digest.getAlgorithmName() + " buffer " + i + " not consumed");
+            }
+        }
+    }
+
+    private void checkMac(Mac mac)
+    {
+        byte[] expected = new byte[mac.getMacSize()];
+
+        mac.update(data, 0, data.length);
+        mac.doFinal(expected, 0);
+
+        ByteBuffer[] bufs = buffers(data);
+        for (int i = 0; i != bufs.length; i++)
+        {
+            byte[] out = new byte[mac.getMacSize()];
+
+            ByteBuffers.update(mac, bufs[i]);
+            mac.doFinal(out, 0);
+
+            if (!Arrays.areEqual(expected, out))
+            {
+                fail(mac.getAlgorithmName() + " failed on buffer " + i);
+            }
+        }
+    }
+
+    private void checkStreamCipher(StreamCipher cipher, ParametersWithIV params, boolean withIV)
+    {
+        byte[] expected = new byte[data.length];
+
+        cipher.init(true, withIV ? params : params.getParameters());
+        cipher.processBytes(data, 0, data.length, expected, 0);
+
+        ByteBuffer[] bufs = buffers(data);
+        for (int i = 0; i != bufs.length; i++)
+        {
+            ByteBuffer out = (i == 2) ? ByteBuffer.allocateDirect(data.length + 1) : ByteBuffer.allocate(data.length + 1);
+
+            out.put((byte)0);
+            cipher.init(true, withIV ? params : params.getParameters());
+            ByteBuffers.processBytes(cipher, bufs[i], out);
+
+            if (!Arrays.areEqual(expected, remaining(out, 1)))
+            {
+                fail(cipher.getAlgorithmName() + " failed on buffer " + i);
+            }
+        }
+
+        // in place, in a direct buffer
+        ByteBuffer direct = buffers(data)[2];
+
+        cipher.init(true, withIV ? params : params.getParameters());
+        ByteBuffers.processBytes(cipher, direct.duplicate(), direct.duplicate());
+
+        byte[] result = new byte[data.length];
+        direct.get(result);
+        if (!Arrays.areEqual(expected, result))
+        {
+            fail(cipher.getAlgorithmName() + " failed in place");
+        }
+
+        try
+        {
+            cipher.init(true, withIV ? params : params.getParameters());
+            ByteBuffers.processBytes(cipher, buffers(data)[0], ByteBuffer.allocate(data.length - 1));
+            fail(cipher.getAlgorithmName() + " short output buffer not detected");
+        }
+        catch (DataLengthException e)
+        {
+            // expected
+        }
+    }
+
+    private void checkBufferedCipher(BufferedBlockCipher cipher, ParametersWithIV params)
+        throws Exception
+    {
+        for (int pass = 0; pass != 2; pass++)
+        {
+            boolean forEncryption = (pass == 0);
+            byte[] in = data;
+
+            if (!forEncryption)
+            {
+                cipher.init(true, params);
+
+                byte[] enc = new byte[cipher.getOutputSize(data.length)];
+                int len = cipher.processBytes(data, 0, data.length, enc, 0);
+                len += cipher.doFinal(enc, len);
+
+                in = new byte[len];
+                System.arraycopy(enc, 0, in, 0, len);
+            }
+
+            cipher.init(forEncryption, params);
+
+            byte[] expected = new byte[cipher.getOutputSize(in.length)];
+            int len = cipher.processBytes(in, 0, in.length, expected, 0);
+            len += cipher.doFinal(expected, len);
+            expected = Arrays.copyOf(expected, len);
+
+            ByteBuffer[] bufs = buffers(in);
+            for (int i = 0; i != bufs.length; i++)
+            {
+                ByteBuffer out = (i == 2) ? ByteBuffer.allocateDirect(in.length + 32) : ByteBuffer.allocate(in.length + 32);
+
+                cipher.init(forEncryption, params);
+
+                // split the input so some is left buffered between calls
+                ByteBuffer first = bufs[i].duplicate();
+                first.limit(first.position() + 1001);
+                bufs[i].position(bufs[i].position() + 1001);
+
+                cipher.processBytes(first, out);
+                cipher.processBytes(bufs[i], out);
+                cipher.doFinal(out);
+
+                if (!Arrays.areEqual(expected, remaining(out, 0)))
+                {
+                    fail("buffered " + cipher.getUnderlyingCipher().getAlgorithmName() + " failed on buffer " + i + " (" + forEncryption + ")");
+                }
+            }
+        }
+    }
+
+    public void performTest()
+        throws Exception
+    {
+        data = new byte[DATA_SIZE];
+        random.nextBytes(data);
+
+        checkDigest(new MD5Digest());
+        checkDigest(new SHA1Digest());
+        checkDigest(new SHA256Digest());
+        checkDigest(new SHA512Digest());
+        checkDigest(new TigerDigest());
+
+        KeyParameter key = new KeyParameter(Arrays.copyOf(data, 32));
+        ParametersWithIV params = new ParametersWithIV(key, Arrays.copyOf(data, 8));
+
+        Mac mac = new HMac(new SHA256Digest());
+        mac.init(key);
+        checkMac(mac);
+
+        checkStreamCipher(new Salsa20Engine(), params, true);
+        checkStreamCipher(new RC4Engine(), params, false);
+
+        checkBufferedCipher(new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESFastEngine())),
+            new ParametersWithIV(key, Arrays.copyOf(data, 16)));
+    }
+
+    public static void main(
+        String[]    args)
+    {
+        runTest(new ByteBufferTest());
+    }
+}
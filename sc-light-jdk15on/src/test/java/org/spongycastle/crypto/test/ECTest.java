@@ -2,6 +2,9 @@ package org.spongycastle.crypto.test;
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.spongycastle.asn1.nist.NISTNamedCurves;
 import org.spongycastle.asn1.sec.SECNamedCurves;
@@ -19,6 +22,7 @@ import org.spongycastle.crypto.params.ECPublicKeyParameters;
 import org.spongycastle.crypto.params.MQVPrivateParameters;
 import org.spongycastle.crypto.params.MQVPublicParameters;
 import org.spongycastle.crypto.params.ParametersWithRandom;
+import org.spongycastle.crypto.signers.ECDSABatchVerifier;
 import org.spongycastle.crypto.signers.ECDSASigner;
 import org.spongycastle.math.ec.ECCurve;
 import org.spongycastle.math.ec.ECPoint;
@@ -653,6 +657,86 @@ public class ECTest
         }
     }
 
+    /**
+     * batch verification with a mix of curves and of good and bad signatures.
+     */
+    private void testECDSABatchVerify()
+    {
+        SecureRandom random = new SecureRandom();
+        String[] curveNames = { "P-256", "P-384" };
+
+        ECDSABatchVerifier batch = new ECDSABatchVerifier();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        ECDSABatchVerifier parallelBatch = new ECDSABatchVerifier(executor, 3);
+        Vector expected = new Vector();
+
+        for (int c = 0; c != curveNames.length; c++)
+        {
+            X9ECParameters x9 = NISTNamedCurves.getByName(curveNames[c]);
+            ECDomainParameters params = new ECDomainParameters(x9.getCurve(), x9.getG(), x9.getN(), x9.getH());
+
+            ECKeyPairGenerator pGen = new ECKeyPairGenerator();
+            pGen.init(new ECKeyGenerationParameters(params, random));
+
+            for (int i = 0; i != 6; i++)
+            {
+                AsymmetricCipherKeyPair pair = pGen.generateKeyPair();
+                ECDSASigner ecdsa = new ECDSASigner();
+
+                ecdsa.init(true, new ParametersWithRandom(pair.getPrivate(), random));
+
+                byte[] message = new byte[32];
+                random.nextBytes(message);
+                BigInteger[] sig = ecdsa.generateSignature(message);
+
+                BigInteger r = sig[0];
+                BigInteger s = sig[1];
+
+                switch (i)
+                {
+                case 1:
+                    message[0] ^= 1;
+                    break;
+                case 2:
+                    s = params.getN();
+                    break;
+                case 3:
+                    r = r.add(BigInteger.valueOf(1));
+                    break;
+                }
+
+                ecdsa.init(false, pair.getPublic());
+                expected.addElement(Boolean.valueOf(ecdsa.verifySignature(message, r, s)));
+
+                batch.add(message, r, s, (ECPublicKeyParameters)pair.getPublic());
+                parallelBatch.add(message, r, s, (ECPublicKeyParameters)pair.getPublic());
+            }
+        }
+
+        boolean[] results = batch.verify();
+        boolean[] parallelResults = parallelBatch.verify();
+
+        executor.shutdown();
+
+        for (int i = 0; i != expected.size(); i++)
+        {
+            boolean valid = ((Boolean)expected.elementAt(i)).booleanValue();
+
+            if (valid != ((i % 6) == 0 || (i % 6) > 3))
+            {
+                fail("individual verification gave wrong result for signature " + i);
+            }
+            if (results[i] != valid)
+            {
+                fail("batch verification gave wrong result for signature " + i);
+            }
+            if (parallelResults[i] != valid)
+            {
+                fail("parallel batch verification gave wrong result for signature " + i);
+            }
+        }
+    }
+
     /**
      * Basic Key Agreement Test
      */
@@ -877,6 +961,7 @@ public class ECTest
         testECDSA191bitBinary();
         testECDSA239bitBinary();
         testECDSAKeyGenTest();
+        testECDSABatchVerify();
         testECBasicAgreementTest();
 
         testECDSAP224sha224();
@@ -0,0 +1,223 @@
+package org.spongycastle.crypto.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.security.SecureRandom;
+
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.Mac;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.digests.WhirlpoolDigest;
+import org.spongycastle.crypto.engines.AESFastEngine;
+import org.spongycastle.crypto.io.FileChannelProcessor;
+import org.spongycastle.crypto.macs.HMac;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+import org.spongycastle.util.Arrays;
+import org.spongycastle.util.test.SimpleTest;
+
+/**
+ * Check processing a file through a FileChannelProcessor gives the same result as
+ * processing its contents from memory.
+ */
+public class FileChannelProcessorTest
+    extends SimpleTest
+{
+    private static final int FILE_SIZE = 100000;
+
+    public String getName()
+    {
+        return "FileChannelProcessor";
+    }
+
+    private byte[] digest(Digest digest, byte[] data, int off, int len)
+    {
+        byte[] out = new byte[digest.getDigestSize()];
+
+        digest.update(data, off, len);
+        digest.doFinal(out, 0);
+
+        return out;
+    }
+
+    private byte[] mac(Mac mac, byte[] data)
+    {
+        byte[] out = new byte[mac.getMacSize()];
+
+        mac.update(data, 0, data.length);
+        mac.doFinal(out, 0);
+
+        return out;
+    }
+
+    private byte[] cipher(BufferedBlockCipher cipher, byte[] data)
+        throws Exception
+    {
+        byte[] out = new byte[cipher.getOutputSize(data.length)];
+
+        int len = cipher.processBytes(data, 0, data.length, out, 0);
+        len += cipher.doFinal(out, len);
+
+        byte[] result = new byte[len];
+        System.arraycopy(out, 0, result, 0, len);
+
+        return result;
+    }
+
+    private void checkProcessor(String label, FileChannelProcessor processor, File file, byte[] data)
+        throws Exception
+    {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        FileChannel channel = raf.getChannel();
+
+        try
+        {
+            // whole file digest
+            Digest digest = new SHA256Digest();
+            processor.update(digest, channel);
+
+            byte[] out = new byte[digest.getDigestSize()];
+            digest.doFinal(out, 0);
+            if (!Arrays.areEqual(digest(new SHA256Digest(), data, 0, data.length), out))
+            {
+                fail(label + " digest failed");
+            }
+
+            // region digest
+            processor.update(digest, channel, 12345, 54321);
+            digest.doFinal(out, 0);
+            if (!Arrays.areEqual(digest(new SHA256Digest(), data, 12345, 54321), out))
+            {
+                fail(label + " region digest failed");
+            }
+
+            // digest without ByteBuffer support
+            digest = new WhirlpoolDigest();
+            processor.update(digest, channel, 12345, 54321);
+            out = new byte[digest.getDigestSize()];
+            digest.doFinal(out, 0);
+            if (!Arrays.areEqual(digest(new WhirlpoolDigest(), data, 12345, 54321), out))
+            {
+                fail(label + " Whirlpool digest failed");
+            }
+
+            // MAC
+            KeyParameter key = new KeyParameter(new byte[16]);
+            Mac mac = new HMac(new SHA256Digest());
+
+            mac.init(key);
+            processor.update(mac, channel);
+
+            out = new byte[mac.getMacSize()];
+            mac.doFinal(out, 0);
+
+            Mac expectedMac = new HMac(new SHA256Digest());
+            expectedMac.init(key);
+            if (!Arrays.areEqual(mac(expectedMac, data), out))
+            {
+                fail(label + " mac failed");
+            }
+
+            // encryption
+            ParametersWithIV params = new ParametersWithIV(key, new byte[16]);
+            BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESFastEngine()));
+
+            cipher.init(true, params);
+
+            ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+            long written = processor.process(cipher, channel, Channels.newChannel(bOut));
+
+            cipher.init(true, params);
+            byte[] expected = cipher(cipher, data);
+            if (written != expected.length || !Arrays.areEqual(expected, bOut.toByteArray()))
+            {
+                fail(label + " encryption failed");
+            }
+
+            // and back again
+            File encFile = File.createTempFile("fcp", ".enc");
+            try
+            {
+                FileOutputStream fOut = new FileOutputStream(encFile);
+                fOut.write(expected);
+                fOut.close();
+
+                RandomAccessFile encRaf = new RandomAccessFile(encFile, "r");
+                try
+                {
+                    cipher.init(false, params);
+                    bOut = new ByteArrayOutputStream();
+                    processor.process(cipher, encRaf.getChannel(), Channels.newChannel(bOut));
+                }
+                finally
+                {
+                    encRaf.close();
+                }
+            }
+            finally
+            {
+                encFile.delete();
+            }
+
+            if (!Arrays.areEqual(data, bOut.toByteArray()))
+            {
+                fail(label + " decryption failed");
+            }
+
+            if (channel.position() != 0)
+            {
+                fail(label + " channel position changed");
+            }
+
+            try
+            {
+                processor.update(new SHA256Digest(), channel, data.length - 10, 11);
+                fail(label + " no exception on region past end");
+            }
+            catch (EOFException e)
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    public void performTest()
+        throws Exception
+    {
+        byte[] data = new byte[FILE_SIZE];
+        new SecureRandom().nextBytes(data);
+
+        File file = File.createTempFile("fcp", ".dat");
+        try
+        {
+            FileOutputStream fOut = new FileOutputStream(file);
+            fOut.write(data);
+            fOut.close();
+
+            checkProcessor("default", new FileChannelProcessor(), file, data);
+            checkProcessor("small chunk", new FileChannelProcessor(1001), file, data);
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public static void main(
+        String[]    args)
+    {
+        runTest(new FileChannelProcessorTest());
+    }
+}
@@ -0,0 +1,93 @@
+package org.spongycastle.crypto.test;
+
+import junit.framework.TestCase;
+
+import org.spongycastle.crypto.engines.AESFastEngine;
+import org.spongycastle.crypto.modes.GCMBlockCipher;
+import org.spongycastle.crypto.modes.gcm.GCMMultiplier;
+import org.spongycastle.crypto.modes.gcm.Tables64kGCMMultiplier;
+import org.spongycastle.crypto.modes.gcm.Tables8kGCMMultiplier;
+import org.spongycastle.crypto.params.AEADParameters;
+import org.spongycastle.crypto.params.KeyParameter;
+
+/**
+ * Measures AES-GCM throughput for a range of message sizes, with each of the table
+ * driven multipliers.
+ */
+public class GCMPerformanceTest
+    extends TestCase
+{
+    private static final int[] MESSAGE_SIZES = { 1024, 16 * 1024, 1024 * 1024 };
+    private static final long TOTAL_BYTES = 64L * 1024 * 1024;
+
+    private double measure(GCMMultiplier multiplier, boolean forEncryption, int size)
+        throws Exception
+    {
+        GCMBlockCipher gcm = new GCMBlockCipher(new AESFastEngine(), multiplier);
+        AEADParameters keyParams = new AEADParameters(new KeyParameter(new byte[16]), 128, new byte[12], null);
+
+        // messages after the first reuse the key, as they would on a connection
+        AEADParameters params = new AEADParameters(null, 128, new byte[12], null);
+
+        gcm.init(forEncryption, keyParams);
+
+        byte[] in = new byte[size + 16];
+        byte[] out = new byte[size + 16];
+        int inLen = size;
+
+        if (!forEncryption)
+        {
+            gcm.init(true, params);
+            inLen = gcm.processBytes(in, 0, size, out, 0);
+            inLen += gcm.doFinal(out, inLen);
+
+            byte[] tmp = in;
+            in = out;
+            out = tmp;
+        }
+
+        int rounds = (int)Math.max(TOTAL_BYTES / size, 1);
+
+        // warm up
+        for (int i = 0; i != rounds / 4 + 1; i++)
+        {
+            gcm.init(forEncryption, params);
+            int len = gcm.processBytes(in, 0, inLen, out, 0);
+            gcm.doFinal(out, len);
+        }
+
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i != rounds; i++)
+        {
+            gcm.init(forEncryption, params);
+            int len = gcm.processBytes(in, 0, inLen, out, 0);
+            gcm.doFinal(out, len);
+        }
+        long endTime = System.currentTimeMillis();
+
+        return ((double)rounds * size / (1024 * 1024)) * 1000 / Math.max(endTime - startTime, 1);
+    }
+
+    private void compare(String name, GCMMultiplier multiplier)
+        throws Exception
+    {
+        System.out.println("AES-GCM with " + name);
+        for (int i = 0; i != MESSAGE_SIZES.length; i++)
+        {
+            int size = MESSAGE_SIZES[i];
+
+            System.out.print("MB/s encrypt/decrypt " + (size / 1024) + "KB : ");
+            System.out.print(measure(multiplier, true, size));
+            System.out.print(" / ");
+            System.out.println(measure(multiplier, false, size));
+        }
+        System.out.println();
+    }
+
+    public void testThroughput()
+        throws Exception
+    {
+        compare("Tables8kGCMMultiplier", new Tables8kGCMMultiplier());
+        compare("Tables64kGCMMultiplier", new Tables64kGCMMultiplier());
+    }
+}
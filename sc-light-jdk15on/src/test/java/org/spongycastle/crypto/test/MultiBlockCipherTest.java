@@ -0,0 +1,151 @@
+package org.spongycastle.crypto.test;
+
+import java.security.SecureRandom;
+
+import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.CipherParameters;
+import org.spongycastle.crypto.DefaultMultiBlockCipher;
+import org.spongycastle.crypto.engines.AESEngine;
+import org.spongycastle.crypto.engines.AESFastEngine;
+import org.spongycastle.crypto.engines.AESLightEngine;
+import org.spongycastle.crypto.engines.TwofishEngine;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.modes.SICBlockCipher;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+import org.spongycastle.util.Arrays;
+import org.spongycastle.util.test.SimpleTest;
+
+/**
+ * Check processing a run of blocks in one call gives the same result as processing
+ * them one at a time.
+ */
+public class MultiBlockCipherTest
+    extends SimpleTest
+{
+    private static final int BLOCKS = 100;
+
+    private SecureRandom random = new SecureRandom();
+
+    public String getName()
+    {
+        return "MultiBlockCipher";
+    }
+
+    private byte[] oneAtATime(BlockCipher cipher, boolean forEncryption, CipherParameters params, byte[] in)
+    {
+        byte[] out = new byte[in.length];
+        int blockSize = cipher.getBlockSize();
+
+        cipher.init(forEncryption, params);
+        for (int i = 0; i < in.length; i += blockSize)
+        {
+            cipher.processBlock(in, i, out, i);
+        }
+
+        return out;
+    }
+
+    private void checkCipher(String label, BlockCipher cipher, CipherParameters params)
+    {
+        int blockSize = cipher.getBlockSize();
+        byte[] in = new byte[BLOCKS * blockSize];
+
+        random.nextBytes(in);
+
+        for (int pass = 0; pass != 2; pass++)
+        {
+            boolean forEncryption = (pass == 0);
+            byte[] expected = oneAtATime(cipher, forEncryption, params, in);
+
+            cipher.init(forEncryption, params);
+
+            byte[] out = new byte[in.length];
+            if (DefaultMultiBlockCipher.processBlocks(cipher, in, 0, BLOCKS, out, 0) != in.length)
+            {
+                fail(label + " wrong length returned");
+            }
+            if (!Arrays.areEqual(expected, out))
+            {
+                fail(label + " single call failed (" + forEncryption + ")");
+            }
+
+            // in place, split at an odd number of blocks
+            cipher.init(forEncryption, params);
+
+            byte[] buf = Arrays.clone(in);
+            DefaultMultiBlockCipher.processBlocks(cipher, buf, 0, 37, buf, 0);
+            DefaultMultiBlockCipher.processBlocks(cipher, buf, 37 * blockSize, BLOCKS - 37, buf, 37 * blockSize);
+            if (!Arrays.areEqual(expected, buf))
+            {
+                fail(label + " in place failed (" + forEncryption + ")");
+            }
+
+            // through a buffered cipher, with input that doesn't fall on block boundaries
+            BufferedBlockCipher buffered = new BufferedBlockCipher(cipher);
+
+            buffered.init(forEncryption, params);
+
+            out = new byte[in.length];
+            int inOff = 0;
+            int outOff = 0;
+            for (int len = 1; inOff < in.length; len += 7)
+            {
+                int chunk = Math.min(len, in.length - inOff);
+
+                outOff += buffered.processBytes(in, inOff, chunk, out, outOff);
+                inOff += chunk;
+            }
+
+            try
+            {
+                buffered.doFinal(out, outOff);
+            }
+            catch (Exception e)
+            {
+                fail(label + " buffered doFinal failed: " + e);
+            }
+
+            if (!Arrays.areEqual(expected, out))
+            {
+                fail(label + " buffered failed (" + forEncryption + ")");
+            }
+        }
+    }
+
+    public void performTest()
+        throws Exception
+    {
+        byte[] keyBytes = new byte[32];
+        byte[] iv = new byte[16];
+
+        random.nextBytes(keyBytes);
+        random.nextBytes(iv);
+
+        KeyParameter key = new KeyParameter(keyBytes);
+        ParametersWithIV ivParams = new ParametersWithIV(key, iv);
+
+        checkCipher("AESFast", new AESFastEngine(), key);
+        checkCipher("AES", new AESEngine(), key);
+        checkCipher("AESLight", new AESLightEngine(), key);
+        checkCipher("Twofish", new TwofishEngine(), key);
+        checkCipher("SIC/AESFast", new SICBlockCipher(new AESFastEngine()), ivParams);
+        checkCipher("SIC/AESLight", new SICBlockCipher(new AESLightEngine()), ivParams);
+        checkCipher("CBC/AESFast", new CBCBlockCipher(new AESFastEngine()), ivParams);
+        checkCipher("CBC/Twofish", new CBCBlockCipher(new TwofishEngine()), ivParams);
+
+        // counter wrap across a run of blocks
+        byte[] maxIv = new byte[16];
+        Arrays.fill(maxIv, (byte)0xff);
+        maxIv[0] = 0;
+        maxIv[15] = (byte)0xf0;
+        checkCipher("SIC wrap", new SICBlockCipher(new AESFastEngine()), new ParametersWithIV(key, maxIv));
+    }
+
+    public static void main(
+        String[]    args)
+    {
+        runTest(new MultiBlockCipherTest());
+    }
+}
@@ -0,0 +1,161 @@
+package org.spongycastle.crypto.test;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.BlockCipherProvider;
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.DefaultMultiBlockCipher;
+import org.spongycastle.crypto.engines.AESFastEngine;
+import org.spongycastle.crypto.engines.TwofishEngine;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.modes.ParallelBlockCipher;
+import org.spongycastle.crypto.modes.ParallelCBCBlockCipher;
+import org.spongycastle.crypto.modes.ParallelSICBlockCipher;
+import org.spongycastle.crypto.modes.SICBlockCipher;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+import org.spongycastle.util.Arrays;
+import org.spongycastle.util.test.SimpleTest;
+
+/**
+ * Check the parallel SIC and CBC modes give the same output as the sequential ones.
+ */
+public class ParallelBlockCipherTest
+    extends SimpleTest
+{
+    private static final int BLOCKS = 1000;
+    private static final int CHUNK_BLOCKS = 7;
+
+    private static final BlockCipherProvider AES = new BlockCipherProvider()
+    {
+        public BlockCipher get()
+        {
+            return new AESFastEngine();
+        }
+    };
+
+    private static final BlockCipherProvider TWOFISH = new BlockCipherProvider()
+    {
+        public BlockCipher get()
+        {
+            return new TwofishEngine();
+        }
+    };
+
+    private SecureRandom random = new SecureRandom();
+
+    public String getName()
+    {
+        return "ParallelBlockCipher";
+    }
+
+    private void checkMode(String label, BlockCipher sequential, ParallelBlockCipher parallel, KeyParameter key, byte[] iv)
+    {
+        int blockSize = sequential.getBlockSize();
+        byte[] in = new byte[BLOCKS * blockSize];
+
+        random.nextBytes(in);
+
+        for (int pass = 0; pass != 2; pass++)
+        {
+            boolean forEncryption = (pass == 0);
+
+            byte[] expected = new byte[in.length];
+            sequential.init(forEncryption, new ParametersWithIV(key, iv));
+            DefaultMultiBlockCipher.processBlocks(sequential, in, 0, BLOCKS, expected, 0);
+
+            // one call
+            parallel.init(forEncryption, new ParametersWithIV(key, iv));
+
+            byte[] out = new byte[in.length];
+            DefaultMultiBlockCipher.processBlocks(parallel, in, 0, BLOCKS, out, 0);
+            if (!Arrays.areEqual(expected, out))
+            {
+                fail(label + " single call failed (" + forEncryption + ")");
+            }
+
+            // in place, over several calls of different sizes, after an IV only init
+            parallel.init(forEncryption, new ParametersWithIV(null, iv));
+
+            byte[] buf = Arrays.clone(in);
+            int done = 0;
+            for (int count = 1; done < BLOCKS; count = count * 3 + 1)
+            {
+                int blocks = Math.min(count, BLOCKS - done);
+
+                parallel.processBlocks(buf, done * blockSize, blocks, buf, done * blockSize);
+                done += blocks;
+            }
+            if (!Arrays.areEqual(expected, buf))
+            {
+                fail(label + " in place failed (" + forEncryption + ")");
+            }
+
+            // reset and go again, through a buffered cipher
+            parallel.reset();
+
+            BufferedBlockCipher buffered = new BufferedBlockCipher(parallel);
+
+            out = new byte[in.length];
+            int len = buffered.processBytes(in, 0, 5, out, 0);
+            len += buffered.processBytes(in, 5, in.length - 5, out, len);
+            try
+            {
+                buffered.doFinal(out, len);
+            }
+            catch (Exception e)
+            {
+                fail(label + " buffered doFinal failed: " + e);
+            }
+            if (!Arrays.areEqual(expected, out))
+            {
+                fail(label + " buffered failed (" + forEncryption + ")");
+            }
+        }
+    }
+
+    public void performTest()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try
+        {
+            byte[] keyBytes = new byte[16];
+            byte[] iv = new byte[16];
+
+            random.nextBytes(keyBytes);
+            random.nextBytes(iv);
+
+            KeyParameter key = new KeyParameter(keyBytes);
+
+            checkMode("SIC/AES", new SICBlockCipher(new AESFastEngine()),
+                new ParallelSICBlockCipher(AES, executor, CHUNK_BLOCKS), key, iv);
+            checkMode("CBC/AES", new CBCBlockCipher(new AESFastEngine()),
+                new ParallelCBCBlockCipher(AES, executor, CHUNK_BLOCKS), key, iv);
+            checkMode("CBC/Twofish", new CBCBlockCipher(new TwofishEngine()),
+                new ParallelCBCBlockCipher(TWOFISH, executor, CHUNK_BLOCKS), key, iv);
+
+            // a counter which carries and wraps part way through the run
+            byte[] wrapIv = new byte[16];
+            Arrays.fill(wrapIv, (byte)0xff);
+            wrapIv[15] = (byte)0x00;
+
+            checkMode("SIC/AES wrap", new SICBlockCipher(new AESFastEngine()),
+                new ParallelSICBlockCipher(AES, executor, CHUNK_BLOCKS), key, wrapIv);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    public static void main(
+        String[]    args)
+    {
+        runTest(new ParallelBlockCipherTest());
+    }
+}
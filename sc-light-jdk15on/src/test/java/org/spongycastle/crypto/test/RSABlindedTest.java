@@ -6,6 +6,8 @@ import org.spongycastle.crypto.InvalidCipherTextException;
 import org.spongycastle.crypto.encodings.OAEPEncoding;
 import org.spongycastle.crypto.encodings.PKCS1Encoding;
 import org.spongycastle.crypto.engines.RSABlindedEngine;
+import org.spongycastle.crypto.engines.RSABlindingFactorPool;
+import org.spongycastle.crypto.engines.RSAEngine;
 import org.spongycastle.crypto.generators.RSAKeyPairGenerator;
 import org.spongycastle.crypto.params.RSAKeyGenerationParameters;
 import org.spongycastle.crypto.params.RSAKeyParameters;
@@ -416,6 +418,7 @@ public class RSABlindedTest
         testMissingDataPKCS1Block(pubParameters, privParameters);
         testTruncatedPKCS1Block(pubParameters, privParameters);
         testWrongPaddingPKCS1Block(pubParameters, privParameters);
+        testBlindingFactorPool((RSAPrivateCrtKeyParameters)privParameters);
 
         try
         {
@@ -429,6 +432,97 @@ public class RSABlindedTest
     }
 
 
+    private void testBlindingFactorPool(final RSAPrivateCrtKeyParameters privParameters)
+    {
+        final RSABlindingFactorPool pool = new RSABlindingFactorPool(privParameters, new SecureRandom(), 4);
+
+        RSAEngine plain = new RSAEngine();
+        plain.init(false, privParameters);
+
+        RSABlindedEngine eng = new RSABlindedEngine(pool);
+        eng.init(false, privParameters);
+
+        // run past the refresh interval a few times
+        byte[] data = Hex.decode(input);
+        for (int i = 0; i != 10; i++)
+        {
+            byte[] expected = plain.processBlock(data, 0, data.length);
+            byte[] result = eng.processBlock(data, 0, data.length);
+
+            if (!areEqual(expected, result))
+            {
+                fail("blinding factor pool result incorrect");
+            }
+
+            data = expected;
+        }
+
+        // concurrent use of the one pool
+        final byte[] in = Hex.decode(input);
+        final byte[] expected = plain.processBlock(in, 0, in.length);
+        final Exception[] errors = new Exception[4];
+        Thread[] threads = new Thread[errors.length];
+
+        for (int i = 0; i != threads.length; i++)
+        {
+            final int index = i;
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        RSABlindedEngine tEng = new RSABlindedEngine(pool);
+                        tEng.init(false, privParameters);
+
+                        for (int j = 0; j != 20; j++)
+                        {
+                            if (!areEqual(expected, tEng.processBlock(in, 0, in.length)))
+                            {
+                                throw new IllegalStateException("concurrent result incorrect");
+                            }
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        errors[index] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        for (int i = 0; i != threads.length; i++)
+        {
+            try
+            {
+                threads[i].join();
+            }
+            catch (InterruptedException e)
+            {
+                fail("interrupted");
+            }
+            if (errors[i] != null)
+            {
+                fail("blinding factor pool failed - exception " + errors[i].toString(), errors[i]);
+            }
+        }
+
+        // the pool is tied to its key
+        RSAKeyPairGenerator pGen = new RSAKeyPairGenerator();
+        pGen.init(new RSAKeyGenerationParameters(BigInteger.valueOf(0x11), new SecureRandom(), 512, 25));
+
+        try
+        {
+            eng.init(false, pGen.generateKeyPair().getPrivate());
+            fail("pool accepted with wrong key");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
     public static void main(
         String[]    args)
     {
@@ -0,0 +1,129 @@
+package org.spongycastle.crypto.test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+import junit.framework.TestCase;
+
+import org.spongycastle.crypto.AsymmetricCipherKeyPair;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.encodings.PKCS1Encoding;
+import org.spongycastle.crypto.engines.RSABlindedEngine;
+import org.spongycastle.crypto.engines.RSABlindingFactorPool;
+import org.spongycastle.crypto.generators.RSAKeyPairGenerator;
+import org.spongycastle.crypto.params.RSAKeyGenerationParameters;
+import org.spongycastle.crypto.params.RSAPrivateCrtKeyParameters;
+import org.spongycastle.crypto.signers.GenericSigner;
+
+/**
+ * Compares RSA signing rates with a fresh blinding factor per operation against
+ * blinding factors taken from a pool, single threaded and with concurrent signers.
+ */
+public class RSABlindingPerformanceTest
+    extends TestCase
+{
+    private static final int NUM_ROUNDS = 500;
+    private static final int NUM_THREADS = 4;
+
+    private static final byte[] message = new byte[32];
+
+    private RSAPrivateCrtKeyParameters generateKey(int bits)
+    {
+        RSAKeyPairGenerator pGen = new RSAKeyPairGenerator();
+        pGen.init(new RSAKeyGenerationParameters(BigInteger.valueOf(0x10001), new SecureRandom(), bits, 25));
+
+        AsymmetricCipherKeyPair pair = pGen.generateKeyPair();
+
+        return (RSAPrivateCrtKeyParameters)pair.getPrivate();
+    }
+
+    private GenericSigner createSigner(RSAPrivateCrtKeyParameters key, RSABlindingFactorPool pool)
+    {
+        RSABlindedEngine engine = (pool == null) ? new RSABlindedEngine() : new RSABlindedEngine(pool);
+        GenericSigner signer = new GenericSigner(new PKCS1Encoding(engine), new SHA256Digest());
+
+        signer.init(true, key);
+
+        return signer;
+    }
+
+    private static void sign(GenericSigner signer, int rounds)
+        throws Exception
+    {
+        for (int i = 0; i < rounds; i++)
+        {
+            signer.update(message, 0, message.length);
+            signer.generateSignature();
+        }
+    }
+
+    private double measure(final RSAPrivateCrtKeyParameters key, final RSABlindingFactorPool pool, int threads)
+        throws Exception
+    {
+        // warm up
+        sign(createSigner(key, pool), NUM_ROUNDS / 5);
+
+        final Exception[] errors = new Exception[threads];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i != threads; i++)
+        {
+            final int index = i;
+            workers[i] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        sign(createSigner(key, pool), NUM_ROUNDS);
+                    }
+                    catch (Exception e)
+                    {
+                        errors[index] = e;
+                    }
+                }
+            };
+        }
+
+        long startTime = System.currentTimeMillis();
+        for (int i = 0; i != threads; i++)
+        {
+            workers[i].start();
+        }
+        for (int i = 0; i != threads; i++)
+        {
+            workers[i].join();
+            if (errors[i] != null)
+            {
+                throw errors[i];
+            }
+        }
+        long endTime = System.currentTimeMillis();
+
+        return (double)(threads * NUM_ROUNDS) * 1000 / Math.max(endTime - startTime, 1);
+    }
+
+    private void compare(int bits)
+        throws Exception
+    {
+        RSAPrivateCrtKeyParameters key = generateKey(bits);
+        RSABlindingFactorPool pool = new RSABlindingFactorPool(key, new SecureRandom());
+
+        System.out.println("RSA-" + bits);
+        System.out.print("Signs/s (fresh blinding)          : ");
+        System.out.println(measure(key, null, 1));
+        System.out.print("Signs/s (blinding pool)           : ");
+        System.out.println(measure(key, pool, 1));
+        System.out.print("Signs/s (fresh blinding, " + NUM_THREADS + " threads): ");
+        System.out.println(measure(key, null, NUM_THREADS));
+        System.out.print("Signs/s (blinding pool, " + NUM_THREADS + " threads) : ");
+        System.out.println(measure(key, pool, NUM_THREADS));
+        System.out.println();
+    }
+
+    public void testSign()
+        throws Exception
+    {
+        compare(1024);
+        compare(2048);
+    }
+}
@@ -14,6 +14,10 @@ public class RegressionTest
         new DESTest(),
         new DESedeTest(),
         new ModeTest(),
+        new MultiBlockCipherTest(),
+        new ParallelBlockCipherTest(),
+        new FileChannelProcessorTest(),
+        new ByteBufferTest(),
         new PaddingTest(),
         new DHTest(),
         new ElGamalTest(),
@@ -2,6 +2,8 @@ package org.spongycastle.crypto.test;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.spongycastle.crypto.generators.SCrypt;
 import org.spongycastle.util.Strings;
@@ -23,6 +25,8 @@ public class SCryptTest extends SimpleTest
 
     public void performTest() throws Exception
     {
+        testParallel();
+
         BufferedReader br = new BufferedReader(new FileReader(getDataHome() + "/TestVectors.txt"));
 
         int count = 0;
@@ -73,6 +77,58 @@ public class SCryptTest extends SimpleTest
         br.close();
     }
 
+    private void testParallel()
+    {
+        // the first two vectors from the file, which are also in RFC 7914
+        byte[] expected1 = Hex.decode("77d6576238657b203b19ca42c18a0497f16b4844e3074ae8dfdffa3fede21442"
+            + "fcd0069ded0948f8326a753a0fc81f17e8d3e0fb2e0d3628cf35e20c38d18906");
+        byte[] expected2 = Hex.decode("fdbabe1c9d3472007856e7190d01e9fe7c6ad7cbc8237830e77376634b373162"
+            + "2eaf30d92e22a3886ff109279d9830dac727afb94a83ee6d8360cbdfa2cc0640");
+        byte[] P = Strings.toByteArray("password");
+        byte[] S = Strings.toByteArray("NaCl");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try
+        {
+            if (!areEqual(expected2, SCrypt.generate(P, S, 1024, 8, 16, 64, executor, null)))
+            {
+                fail("parallel result does not match expected value");
+            }
+
+            // fewer lanes than p, used more than once and for a smaller N and r
+            SCrypt.Scratch scratch = new SCrypt.Scratch(1024, 8, 3);
+
+            for (int i = 0; i != 2; i++)
+            {
+                if (!areEqual(expected2, SCrypt.generate(P, S, 1024, 8, 16, 64, executor, scratch)))
+                {
+                    fail("result using scratch area does not match expected value");
+                }
+            }
+
+            if (!areEqual(expected1, SCrypt.generate(new byte[0], new byte[0], 16, 1, 1, 64, null, scratch)))
+            {
+                fail("result using larger scratch area does not match expected value");
+            }
+
+            try
+            {
+                SCrypt.generate(P, S, 2048, 8, 1, 64, null, scratch);
+
+                fail("scratch area too small not detected");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
     private static boolean isEndData(String line)
     {
         return line == null || line.startsWith("scrypt");
@@ -17,6 +17,8 @@ public class AllTests
         TestSuite suite = new TestSuite("TLS tests");
         
         suite.addTest(BasicTlsTest.suite());
+        suite.addTest(TlsClientEngineTest.suite());
+        suite.addTest(DefaultTlsSessionCacheTest.suite());
         
         return suite;
     }
@@ -0,0 +1,88 @@
+package org.spongycastle.crypto.tls.test;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.spongycastle.crypto.tls.CipherSuite;
+import org.spongycastle.crypto.tls.CompressionMethod;
+import org.spongycastle.crypto.tls.DefaultTlsSessionCache;
+import org.spongycastle.crypto.tls.PRFAlgorithm;
+import org.spongycastle.crypto.tls.ProtocolVersion;
+import org.spongycastle.crypto.tls.TlsSession;
+
+public class DefaultTlsSessionCacheTest
+    extends TestCase
+{
+    public void testLookup()
+    {
+        DefaultTlsSessionCache cache = new DefaultTlsSessionCache();
+
+        TlsSession session = createSession(1, System.currentTimeMillis());
+        cache.putSession("a:443", session);
+
+        assertSame(session, cache.getSession("a:443"));
+        assertNull(cache.getSession("b:443"));
+
+        TlsSession replacement = createSession(2, System.currentTimeMillis());
+        cache.putSession("a:443", replacement);
+
+        assertSame(replacement, cache.getSession("a:443"));
+        assertEquals(1, cache.size());
+
+        cache.removeSession("a:443");
+
+        assertNull(cache.getSession("a:443"));
+        assertEquals(0, cache.size());
+    }
+
+    public void testLeastRecentlyUsedEviction()
+    {
+        DefaultTlsSessionCache cache = new DefaultTlsSessionCache(3, 60000);
+        long now = System.currentTimeMillis();
+
+        cache.putSession("a", createSession(1, now));
+        cache.putSession("b", createSession(2, now));
+        cache.putSession("c", createSession(3, now));
+
+        // touch "a", so "b" is now the least recently used
+        assertNotNull(cache.getSession("a"));
+
+        cache.putSession("d", createSession(4, now));
+
+        assertEquals(3, cache.size());
+        assertNotNull(cache.getSession("a"));
+        assertNull(cache.getSession("b"));
+        assertNotNull(cache.getSession("c"));
+        assertNotNull(cache.getSession("d"));
+    }
+
+    public void testExpiry()
+    {
+        DefaultTlsSessionCache cache = new DefaultTlsSessionCache(10, 60000);
+        long now = System.currentTimeMillis();
+
+        cache.putSession("old", createSession(1, now - 60000));
+        cache.putSession("new", createSession(2, now));
+
+        assertNull(cache.getSession("old"));
+        assertNotNull(cache.getSession("new"));
+        assertEquals(1, cache.size());
+    }
+
+    private static TlsSession createSession(int id, long creationTime)
+    {
+        return new TlsSession(new byte[]{ (byte)id }, ProtocolVersion.TLSv10,
+            CipherSuite.TLS_RSA_WITH_AES_128_CBC_SHA, CompressionMethod.NULL,
+            PRFAlgorithm.tls_prf_legacy, new byte[48], creationTime);
+    }
+
+    public static TestSuite suite()
+    {
+        return new TestSuite(DefaultTlsSessionCacheTest.class);
+    }
+
+    public static void main(String[] args)
+        throws Exception
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+}
@@ -14,6 +14,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.security.KeyStore;
+import java.security.Security;
 
 public class HTTPSServerThread
     extends Thread
@@ -22,6 +23,18 @@ public class HTTPSServerThread
     private static final char[] SERVER_PASSWORD = "serverPassword".toCharArray();
     private static final char[] TRUST_STORE_PASSWORD = "trustPassword".toCharArray();
 
+    static
+    {
+        /*
+         * Recent JDKs disable TLS 1.0/1.1 and RSA key exchange by default, and will only resume
+         * sessions that used the extended master secret (RFC 7627), which the client doesn't
+         * support. Both settings are read once, when JSSE is first used, so this has to happen
+         * before any SSLContext is created.
+         */
+        Security.setProperty("jdk.tls.disabledAlgorithms", "");
+        System.setProperty("jdk.tls.useExtendedMasterSecret", "false");
+    }
+
     /**
      * Read a HTTP request
      */
@@ -0,0 +1,169 @@
+package org.spongycastle.crypto.tls.test;
+
+import java.nio.ByteBuffer;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+
+import junit.framework.TestCase;
+import org.spongycastle.crypto.tls.AlwaysValidVerifyer;
+import org.spongycastle.crypto.tls.CipherSuite;
+import org.spongycastle.crypto.tls.LegacyTlsClient;
+import org.spongycastle.crypto.tls.ProtocolVersion;
+import org.spongycastle.crypto.tls.TlsClientEngine;
+
+/**
+ * Compares the bulk record throughput of the AES-GCM cipher suites against the equivalent
+ * AES-CBC/HMAC-SHA1 suites. Only the time spent in the client engine is measured; the JSSE
+ * server engine is used to complete the handshake and to produce the records to decrypt.
+ */
+public class TlsCipherPerformanceTest
+    extends TestCase
+{
+    private static final int DATA_SIZE = 1 << 24;
+    private static final int CHUNK_SIZE = 1 << 14;
+    private static final int NET_SIZE = 1 << 17;
+
+    private void measure(String name, final int cipherSuite)
+        throws Exception
+    {
+        SSLEngine server = new HTTPSServerThread().createSSLContext().createSSLEngine();
+        server.setUseClientMode(false);
+
+        TlsClientEngine client = new TlsClientEngine(new LegacyTlsClient(new AlwaysValidVerifyer())
+        {
+            public ProtocolVersion getClientVersion()
+            {
+                return ProtocolVersion.TLSv12;
+            }
+
+            public int[] getCipherSuites()
+            {
+                return new int[] { cipherSuite };
+            }
+        });
+
+        handshake(client, server);
+
+        byte[] chunk = new byte[CHUNK_SIZE];
+        ByteBuffer net = ByteBuffer.allocate(NET_SIZE);
+
+        // warm up, then time encryption
+        encrypt(client, chunk, net, DATA_SIZE / 4);
+        long startTime = System.currentTimeMillis();
+        encrypt(client, chunk, net, DATA_SIZE);
+        long encryptTime = System.currentTimeMillis() - startTime;
+
+        // collect a single batch of server records, then time repeated decryption of it
+        ByteBuffer records = ByteBuffer.allocate(DATA_SIZE / 4 + NET_SIZE);
+        ByteBuffer app = ByteBuffer.allocate(CHUNK_SIZE);
+        long decryptTime = 0;
+        for (int round = 0; round != 5; round++)
+        {
+            records.clear();
+            ByteBuffer src = ByteBuffer.allocate(DATA_SIZE / 4);
+            while (src.hasRemaining())
+            {
+                server.wrap(src, records);
+            }
+            records.flip();
+
+            startTime = System.currentTimeMillis();
+            while (records.hasRemaining() || client.getAvailableInputBytes() > 0)
+            {
+                app.clear();
+                client.unwrap(records, app);
+            }
+            if (round != 0)
+            {
+                decryptTime += System.currentTimeMillis() - startTime;
+            }
+        }
+
+        System.out.println(name);
+        System.out.print("Encrypt MB/s : ");
+        System.out.println(rate(DATA_SIZE, encryptTime));
+        System.out.print("Decrypt MB/s : ");
+        System.out.println(rate(DATA_SIZE, decryptTime));
+        System.out.println();
+    }
+
+    public void testThroughput()
+        throws Exception
+    {
+        measure("TLS_RSA_WITH_AES_128_CBC_SHA", CipherSuite.TLS_RSA_WITH_AES_128_CBC_SHA);
+        measure("TLS_RSA_WITH_AES_128_GCM_SHA256", CipherSuite.TLS_RSA_WITH_AES_128_GCM_SHA256);
+        measure("TLS_RSA_WITH_AES_256_CBC_SHA", CipherSuite.TLS_RSA_WITH_AES_256_CBC_SHA);
+        measure("TLS_RSA_WITH_AES_256_GCM_SHA384", CipherSuite.TLS_RSA_WITH_AES_256_GCM_SHA384);
+    }
+
+    private static void encrypt(TlsClientEngine client, byte[] chunk, ByteBuffer net, int total)
+        throws Exception
+    {
+        for (int written = 0; written < total; written += chunk.length)
+        {
+            ByteBuffer src = ByteBuffer.wrap(chunk);
+            while (src.hasRemaining() || client.getAvailableOutputBytes() > 0)
+            {
+                net.clear();
+                client.wrap(src, net);
+            }
+        }
+    }
+
+    private static double rate(int bytes, long millis)
+    {
+        return (bytes / (1024.0 * 1024.0)) / (Math.max(millis, 1) / 1000.0);
+    }
+
+    private static void handshake(TlsClientEngine client, SSLEngine server)
+        throws Exception
+    {
+        ByteBuffer clientToServer = ByteBuffer.allocate(NET_SIZE);
+        ByteBuffer serverToClient = ByteBuffer.allocate(NET_SIZE);
+        ByteBuffer serverApp = ByteBuffer.allocate(NET_SIZE);
+        ByteBuffer empty = ByteBuffer.allocate(0);
+
+        client.beginHandshake();
+        server.beginHandshake();
+
+        for (int i = 0; !client.isHandshakeComplete(); i++)
+        {
+            if (i > 100)
+            {
+                fail("handshake did not complete");
+            }
+
+            client.wrap(empty, clientToServer);
+
+            clientToServer.flip();
+            SSLEngineResult result;
+            do
+            {
+                result = server.unwrap(clientToServer, serverApp);
+                runDelegatedTasks(server);
+            }
+            while (result.getStatus() == SSLEngineResult.Status.OK && clientToServer.hasRemaining());
+            clientToServer.compact();
+
+            while (server.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP)
+            {
+                server.wrap(empty, serverToClient);
+                runDelegatedTasks(server);
+            }
+
+            serverToClient.flip();
+            client.unwrap(serverToClient, empty);
+            serverToClient.compact();
+        }
+    }
+
+    private static void runDelegatedTasks(SSLEngine server)
+    {
+        Runnable task;
+        while ((task = server.getDelegatedTask()) != null)
+        {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,742 @@
+package org.spongycastle.crypto.tls.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.spongycastle.asn1.ASN1Primitive;
+import org.spongycastle.asn1.x509.X509CertificateStructure;
+import org.spongycastle.crypto.params.AsymmetricKeyParameter;
+import org.spongycastle.crypto.tls.AlertDescription;
+import org.spongycastle.crypto.tls.AlwaysValidVerifyer;
+import org.spongycastle.crypto.tls.Certificate;
+import org.spongycastle.crypto.tls.CertificateRequest;
+import org.spongycastle.crypto.tls.CipherSuite;
+import org.spongycastle.crypto.tls.DefaultTlsCipherFactory;
+import org.spongycastle.crypto.tls.DefaultTlsSessionCache;
+import org.spongycastle.crypto.tls.DefaultTlsSignerCredentials;
+import org.spongycastle.crypto.tls.ExtensionType;
+import org.spongycastle.crypto.tls.LegacyTlsAuthentication;
+import org.spongycastle.crypto.tls.LegacyTlsClient;
+import org.spongycastle.crypto.tls.ProtocolVersion;
+import org.spongycastle.crypto.tls.TlsAuthentication;
+import org.spongycastle.crypto.tls.TlsCipher;
+import org.spongycastle.crypto.tls.TlsCipherFactory;
+import org.spongycastle.crypto.tls.TlsClientContext;
+import org.spongycastle.crypto.tls.TlsClientEngine;
+import org.spongycastle.crypto.tls.TlsCredentials;
+import org.spongycastle.crypto.util.PrivateKeyFactory;
+import org.spongycastle.util.Arrays;
+
+/**
+ * Loopback test for TlsClientEngine - the client engine and a JSSE server engine are driven
+ * against each other entirely through in-memory buffers.
+ */
+public class TlsClientEngineTest
+    extends TestCase
+{
+    private static final int BUF_SIZE = 1 << 17;
+
+    private static final char[] SERVER_PASSWORD = "serverPassword".toCharArray();
+
+    private SSLContext serverContext;
+    private TlsClientEngine client;
+    private SSLEngine server;
+
+    private ByteBuffer clientToServer = ByteBuffer.allocate(BUF_SIZE);
+    private ByteBuffer serverToClient = ByteBuffer.allocate(BUF_SIZE);
+    private ByteBuffer serverApp = ByteBuffer.allocate(BUF_SIZE);
+    private ByteBuffer empty = ByteBuffer.allocate(0);
+
+    public void setUp()
+        throws Exception
+    {
+        serverContext = new HTTPSServerThread().createSSLContext();
+        server = serverContext.createSSLEngine();
+        server.setUseClientMode(false);
+
+        client = new TlsClientEngine(new LegacyTlsClient(new AlwaysValidVerifyer()));
+    }
+
+    public void testHandshakeAndData()
+        throws Exception
+    {
+        handshake();
+
+        byte[] request = "GET / HTTP/1.1\r\n\r\n".getBytes();
+        clientSend(request);
+        assertTrue(Arrays.areEqual(request, serverReceive(request.length)));
+
+        byte[] response = new byte[50000];
+        for (int i = 0; i != response.length; i++)
+        {
+            response[i] = (byte)i;
+        }
+        serverSend(response);
+        assertTrue(Arrays.areEqual(response, clientReceive(response.length, ByteBuffer.allocate(1000))));
+    }
+
+    public void testDirectBuffers()
+        throws Exception
+    {
+        handshake();
+
+        byte[] data = new byte[40000];
+        for (int i = 0; i != data.length; i++)
+        {
+            data[i] = (byte)(i * 7);
+        }
+
+        ByteBuffer src = ByteBuffer.allocateDirect(data.length);
+        src.put(data);
+        src.flip();
+
+        ByteBuffer net = ByteBuffer.allocateDirect(BUF_SIZE);
+        while (src.hasRemaining() || client.getAvailableOutputBytes() > 0)
+        {
+            client.wrap(src, net);
+        }
+        net.flip();
+        clientToServer.put(net);
+
+        assertTrue(Arrays.areEqual(data, serverReceive(data.length)));
+
+        serverSend(data);
+        serverToClient.flip();
+        net.clear();
+        net.put(serverToClient);
+        serverToClient.clear();
+        net.flip();
+
+        ByteBuffer app = ByteBuffer.allocateDirect(data.length);
+        while (app.hasRemaining())
+        {
+            client.unwrap(net, app);
+        }
+        app.flip();
+
+        byte[] received = new byte[data.length];
+        app.get(received);
+        assertTrue(Arrays.areEqual(data, received));
+    }
+
+    public void testPartialRecords()
+        throws Exception
+    {
+        handshake();
+
+        byte[] data = "partial record delivery".getBytes();
+        serverSend(data);
+        serverToClient.flip();
+
+        // feed the client one byte at a time, compacting as we go
+        ByteBuffer net = ByteBuffer.allocate(BUF_SIZE);
+        ByteBuffer app = ByteBuffer.allocate(data.length);
+        while (serverToClient.hasRemaining())
+        {
+            net.put(serverToClient.get());
+            net.flip();
+            client.unwrap(net, app);
+            net.compact();
+        }
+        serverToClient.clear();
+
+        assertEquals(0, net.position());
+        assertTrue(Arrays.areEqual(data, app.array()));
+    }
+
+    public void testTls12GCM()
+        throws Exception
+    {
+        client = new TlsClientEngine(new LegacyTlsClient(new AlwaysValidVerifyer())
+        {
+            public ProtocolVersion getClientVersion()
+            {
+                return ProtocolVersion.TLSv12;
+            }
+
+            public int[] getCipherSuites()
+            {
+                return new int[] { CipherSuite.TLS_RSA_WITH_AES_128_GCM_SHA256 };
+            }
+        });
+
+        handshake();
+
+        assertEquals("TLSv1.2", server.getSession().getProtocol());
+        assertEquals("TLS_RSA_WITH_AES_128_GCM_SHA256", server.getSession().getCipherSuite());
+
+        byte[] data = new byte[40000];
+        for (int i = 0; i != data.length; i++)
+        {
+            data[i] = (byte)(i * 3);
+        }
+
+        clientSend(data);
+        assertTrue(Arrays.areEqual(data, serverReceive(data.length)));
+
+        serverSend(data);
+        assertTrue(Arrays.areEqual(data, clientReceive(data.length, ByteBuffer.allocate(1000))));
+    }
+
+    public void testCopyingCipher()
+        throws Exception
+    {
+        // a cipher implementing only TlsCipher must still work through the copying path
+        client = new TlsClientEngine(new LegacyTlsClient(new AlwaysValidVerifyer())
+        {
+            {
+                cipherFactory = new TlsCipherFactory()
+                {
+                    public TlsCipher createCipher(TlsClientContext context, int encryptionAlgorithm, int digestAlgorithm)
+                        throws IOException
+                    {
+                        final TlsCipher cipher = new DefaultTlsCipherFactory().createCipher(context, encryptionAlgorithm, digestAlgorithm);
+
+                        return new TlsCipher()
+                        {
+                            public byte[] encodePlaintext(short type, byte[] plaintext, int offset, int len)
+                                throws IOException
+                            {
+                                return cipher.encodePlaintext(type, plaintext, offset, len);
+                            }
+
+                            public byte[] decodeCiphertext(short type, byte[] ciphertext, int offset, int len)
+                                throws IOException
+                            {
+                                return cipher.decodeCiphertext(type, ciphertext, offset, len);
+                            }
+                        };
+                    }
+                };
+            }
+        });
+
+        handshake();
+
+        byte[] data = new byte[40000];
+        for (int i = 0; i != data.length; i++)
+        {
+            data[i] = (byte)(i * 7);
+        }
+
+        clientSend(data);
+        assertTrue(Arrays.areEqual(data, serverReceive(data.length)));
+
+        serverSend(data);
+        assertTrue(Arrays.areEqual(data, clientReceive(data.length, ByteBuffer.allocate(100))));
+    }
+
+    public void testTls12ClientAuth()
+        throws Exception
+    {
+        KeyStore serverStore = KeyStore.getInstance("JKS");
+        serverStore.load(new ByteArrayInputStream(KeyStores.server), SERVER_PASSWORD);
+
+        KeyManagerFactory mgrFact = KeyManagerFactory.getInstance("SunX509");
+        mgrFact.init(serverStore, SERVER_PASSWORD);
+
+        // the test certificate has long expired, so the server takes any client certificate
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(mgrFact.getKeyManagers(), new TrustManager[]{ new X509TrustManager()
+        {
+            public void checkClientTrusted(X509Certificate[] chain, String authType)
+            {
+            }
+
+            public void checkServerTrusted(X509Certificate[] chain, String authType)
+            {
+            }
+
+            public X509Certificate[] getAcceptedIssuers()
+            {
+                return new X509Certificate[0];
+            }
+        } }, null);
+
+        server = context.createSSLEngine();
+        server.setUseClientMode(false);
+        server.setNeedClientAuth(true);
+
+        final Certificate clientCert = new Certificate(new X509CertificateStructure[]{
+            X509CertificateStructure.getInstance(ASN1Primitive.fromByteArray(
+                serverStore.getCertificate("server").getEncoded())) });
+        final AsymmetricKeyParameter clientKey = PrivateKeyFactory.createKey(
+            serverStore.getKey("server", SERVER_PASSWORD).getEncoded());
+
+        client = new TlsClientEngine(new LegacyTlsClient(new AlwaysValidVerifyer())
+        {
+            public ProtocolVersion getClientVersion()
+            {
+                return ProtocolVersion.TLSv12;
+            }
+
+            public int[] getCipherSuites()
+            {
+                return new int[] { CipherSuite.TLS_RSA_WITH_AES_128_GCM_SHA256 };
+            }
+
+            public TlsAuthentication getAuthentication()
+            {
+                return new LegacyTlsAuthentication(verifyer)
+                {
+                    public TlsCredentials getClientCredentials(CertificateRequest certificateRequest)
+                    {
+                        assertNotNull(certificateRequest.getSupportedSignatureAlgorithms());
+
+                        return new DefaultTlsSignerCredentials(context, clientCert, clientKey);
+                    }
+                };
+            }
+        });
+
+        handshake();
+
+        assertEquals("TLSv1.2", server.getSession().getProtocol());
+        assertEquals(1, server.getSession().getPeerCertificates().length);
+
+        byte[] data = "authenticated".getBytes();
+        clientSend(data);
+        assertTrue(Arrays.areEqual(data, serverReceive(data.length)));
+    }
+
+    public void testServerSignatureAlgorithmNotOffered()
+        throws Exception
+    {
+        // MD5 isn't offered, and the signature must match the server's RSA certificate
+        short[][] algorithms = new short[][]{ { 1, 1 }, { 4, 2 } };
+
+        for (int i = 0; i != algorithms.length; i++)
+        {
+            client = new TlsClientEngine(new LegacyTlsClient(new AlwaysValidVerifyer())
+            {
+                public ProtocolVersion getClientVersion()
+                {
+                    return ProtocolVersion.TLSv12;
+                }
+            });
+
+            serverToClient.clear();
+            clientToServer.clear();
+
+            client.beginHandshake();
+            client.wrap(empty, clientToServer);
+            clientToServer.flip();
+            assertTrue(hasExtension(clientToServer, ExtensionType.signature_algorithms));
+            clientToServer.clear();
+
+            // DHE params, followed by the signature and hash algorithm and a dummy signature
+            ByteArrayOutputStream keyExchange = new ByteArrayOutputStream();
+            keyExchange.write(new byte[]{ 0, 1, 23, 0, 1, 2, 0, 1, 3 });
+            keyExchange.write(algorithms[i][0]);
+            keyExchange.write(algorithms[i][1]);
+            keyExchange.write(new byte[]{ 0, 1, 0 });
+
+            serverHandshake(new byte[][]{
+                serverHello(CipherSuite.TLS_DHE_RSA_WITH_AES_128_GCM_SHA256),
+                serverCertificate(),
+                handshakeMessage(12, keyExchange.toByteArray()) });
+
+            assertFatalAlert(AlertDescription.illegal_parameter);
+        }
+    }
+
+    public void testCertificateRequestNoCommonAlgorithm()
+        throws Exception
+    {
+        client = new TlsClientEngine(new LegacyTlsClient(new AlwaysValidVerifyer())
+        {
+            public ProtocolVersion getClientVersion()
+            {
+                return ProtocolVersion.TLSv12;
+            }
+        });
+
+        client.beginHandshake();
+        client.wrap(empty, clientToServer);
+        clientToServer.clear();
+
+        // rsa_sign, only MD5 with RSA, no authorities
+        serverHandshake(new byte[][]{
+            serverHello(CipherSuite.TLS_RSA_WITH_AES_128_GCM_SHA256),
+            serverCertificate(),
+            handshakeMessage(13, new byte[]{ 1, 1, 0, 2, 1, 1, 0, 0 }) });
+
+        assertFatalAlert(AlertDescription.handshake_failure);
+    }
+
+    /*
+     * Note: recent JSSE servers will only resume sessions that used the extended master
+     * secret (RFC 7627), so this relies on HTTPSServerThread turning that off.
+     */
+    public void testSessionResumption()
+        throws Exception
+    {
+        DefaultTlsSessionCache cache = new DefaultTlsSessionCache();
+
+        client.setSessionCache(cache, "localhost:443");
+        handshake();
+
+        assertFalse(client.isSessionResumed());
+        assertEquals(1, cache.size());
+
+        byte[] sessionID = server.getSession().getId();
+
+        for (int i = 0; i != 2; i++)
+        {
+            reconnect();
+            client.setSessionCache(cache, "localhost:443");
+            handshake();
+
+            assertTrue(client.isSessionResumed());
+            assertTrue(Arrays.areEqual(sessionID, server.getSession().getId()));
+
+            byte[] data = "resumed".getBytes();
+            clientSend(data);
+            assertTrue(Arrays.areEqual(data, serverReceive(data.length)));
+            serverSend(data);
+            assertTrue(Arrays.areEqual(data, clientReceive(data.length, ByteBuffer.allocate(100))));
+        }
+
+        // a different server identity gets a full handshake
+        reconnect();
+        client.setSessionCache(cache, "otherhost:443");
+        handshake();
+
+        assertFalse(client.isSessionResumed());
+        assertEquals(2, cache.size());
+    }
+
+    public void testClose()
+        throws Exception
+    {
+        handshake();
+
+        client.closeOutbound();
+        assertTrue(client.isClosed());
+        client.wrap(empty, clientToServer);
+
+        clientToServer.flip();
+        SSLEngineResult result = server.unwrap(clientToServer, serverApp);
+        clientToServer.compact();
+
+        assertEquals(SSLEngineResult.Status.CLOSED, result.getStatus());
+        assertTrue(server.isInboundDone());
+    }
+
+    public void testRecordOverflow()
+        throws Exception
+    {
+        handshake();
+
+        // only the header of a record longer than TLSCiphertext allows
+        ByteBuffer record = ByteBuffer.wrap(new byte[]{ 23, 3, 1, (byte)0xff, (byte)0xff });
+        try
+        {
+            client.unwrap(record, ByteBuffer.allocate(100));
+            fail("no exception");
+        }
+        catch (IOException e)
+        {
+            // expected
+        }
+
+        assertTrue(client.isClosed());
+        assertEquals(0, record.position());
+
+        // the record_overflow alert is sent to the server
+        client.wrap(empty, clientToServer);
+        clientToServer.flip();
+        try
+        {
+            server.unwrap(clientToServer, serverApp);
+            fail("alert not received");
+        }
+        catch (SSLException e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().indexOf("record_overflow") >= 0);
+        }
+    }
+
+    public void testNotStarted()
+        throws Exception
+    {
+        try
+        {
+            client.wrap(empty, clientToServer);
+            fail("no exception");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+    }
+
+    private void handshake()
+        throws Exception
+    {
+        client.beginHandshake();
+        server.beginHandshake();
+
+        for (int i = 0; !client.isHandshakeComplete(); i++)
+        {
+            if (i > 100)
+            {
+                fail("handshake did not complete");
+            }
+
+            client.wrap(empty, clientToServer);
+
+            clientToServer.flip();
+            SSLEngineResult result;
+            do
+            {
+                result = server.unwrap(clientToServer, serverApp);
+                runDelegatedTasks();
+            }
+            while (result.getStatus() == SSLEngineResult.Status.OK && clientToServer.hasRemaining());
+            clientToServer.compact();
+
+            while (server.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP)
+            {
+                server.wrap(empty, serverToClient);
+                runDelegatedTasks();
+            }
+
+            serverToClient.flip();
+            client.unwrap(serverToClient, ByteBuffer.allocate(0));
+            serverToClient.compact();
+        }
+
+        // on an abbreviated handshake the server finishes first, so the client's Finished
+        // may still need to be delivered
+        for (int i = 0; server.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING; i++)
+        {
+            if (i > 100)
+            {
+                fail("server handshake did not complete");
+            }
+
+            client.wrap(empty, clientToServer);
+
+            clientToServer.flip();
+            server.unwrap(clientToServer, serverApp);
+            runDelegatedTasks();
+            clientToServer.compact();
+        }
+
+        assertEquals(0, client.getAvailableInputBytes());
+    }
+
+    private byte[] serverHello(int cipherSuite)
+    {
+        byte[] body = new byte[2 + 32 + 1 + 2 + 1];
+        body[0] = 3;
+        body[1] = 3;
+        body[35] = (byte)(cipherSuite >> 8);
+        body[36] = (byte)cipherSuite;
+        return handshakeMessage(2, body);
+    }
+
+    private byte[] serverCertificate()
+        throws Exception
+    {
+        KeyStore serverStore = KeyStore.getInstance("JKS");
+        serverStore.load(new ByteArrayInputStream(KeyStores.server), SERVER_PASSWORD);
+        byte[] cert = serverStore.getCertificate("server").getEncoded();
+
+        byte[] body = new byte[6 + cert.length];
+        writeUint24(3 + cert.length, body, 0);
+        writeUint24(cert.length, body, 3);
+        System.arraycopy(cert, 0, body, 6, cert.length);
+        return handshakeMessage(11, body);
+    }
+
+    private byte[] handshakeMessage(int type, byte[] body)
+    {
+        byte[] message = new byte[4 + body.length];
+        message[0] = (byte)type;
+        writeUint24(body.length, message, 1);
+        System.arraycopy(body, 0, message, 4, body.length);
+        return message;
+    }
+
+    /**
+     * Feed handshake messages from a scripted server to the client, which should reject them.
+     */
+    private void serverHandshake(byte[][] messages)
+        throws Exception
+    {
+        ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+        for (int i = 0; i != messages.length; i++)
+        {
+            bOut.write(messages[i]);
+        }
+        byte[] fragment = bOut.toByteArray();
+
+        serverToClient.put(new byte[]{ 22, 3, 3, (byte)(fragment.length >> 8), (byte)fragment.length });
+        serverToClient.put(fragment);
+        serverToClient.flip();
+
+        try
+        {
+            client.unwrap(serverToClient, ByteBuffer.allocate(100));
+            fail("no exception");
+        }
+        catch (IOException e)
+        {
+            // expected
+        }
+
+        assertTrue(client.isClosed());
+    }
+
+    private void assertFatalAlert(short description)
+        throws Exception
+    {
+        client.wrap(empty, clientToServer);
+        clientToServer.flip();
+
+        assertEquals(7, clientToServer.remaining());
+        assertEquals(21, clientToServer.get(0));
+        assertEquals(2, clientToServer.get(5));
+        assertEquals(description, clientToServer.get(6));
+    }
+
+    /**
+     * Look for an extension in a client hello record.
+     */
+    private static boolean hasExtension(ByteBuffer record, int extensionType)
+    {
+        ByteBuffer hello = record.duplicate();
+
+        // record header, handshake header, version and random
+        hello.position(hello.position() + 5 + 4 + 2 + 32);
+        hello.position(hello.position() + 1 + (hello.get(hello.position()) & 0xff));
+        hello.position(hello.position() + 2 + (hello.getShort(hello.position()) & 0xffff));
+        hello.position(hello.position() + 1 + (hello.get(hello.position()) & 0xff));
+
+        int end = hello.position() + 2 + (hello.getShort() & 0xffff);
+        while (hello.position() < end)
+        {
+            int type = hello.getShort() & 0xffff;
+            int length = hello.getShort() & 0xffff;
+            if (type == extensionType)
+            {
+                return true;
+            }
+            hello.position(hello.position() + length);
+        }
+        return false;
+    }
+
+    private static void writeUint24(int i, byte[] buf, int offset)
+    {
+        buf[offset] = (byte)(i >> 16);
+        buf[offset + 1] = (byte)(i >> 8);
+        buf[offset + 2] = (byte)i;
+    }
+
+    private void reconnect()
+    {
+        server = serverContext.createSSLEngine();
+        server.setUseClientMode(false);
+
+        client = new TlsClientEngine(new LegacyTlsClient(new AlwaysValidVerifyer()));
+
+        clientToServer.clear();
+        serverToClient.clear();
+        serverApp.clear();
+    }
+
+    private void runDelegatedTasks()
+    {
+        Runnable task;
+        while ((task = server.getDelegatedTask()) != null)
+        {
+            task.run();
+        }
+    }
+
+    private void clientSend(byte[] data)
+        throws Exception
+    {
+        ByteBuffer src = ByteBuffer.wrap(data);
+        while (src.hasRemaining() || client.getAvailableOutputBytes() > 0)
+        {
+            client.wrap(src, clientToServer);
+        }
+    }
+
+    private byte[] serverReceive(int len)
+        throws Exception
+    {
+        clientToServer.flip();
+        while (serverApp.position() < len)
+        {
+            server.unwrap(clientToServer, serverApp);
+        }
+        clientToServer.compact();
+
+        serverApp.flip();
+        byte[] data = new byte[serverApp.remaining()];
+        serverApp.get(data);
+        serverApp.clear();
+        return data;
+    }
+
+    private void serverSend(byte[] data)
+        throws Exception
+    {
+        ByteBuffer src = ByteBuffer.wrap(data);
+        while (src.hasRemaining())
+        {
+            server.wrap(src, serverToClient);
+        }
+    }
+
+    private byte[] clientReceive(int len, ByteBuffer app)
+        throws Exception
+    {
+        byte[] data = new byte[len];
+        int total = 0;
+
+        serverToClient.flip();
+        while (total < len)
+        {
+            app.clear();
+            client.unwrap(serverToClient, app);
+            app.flip();
+            int count = app.remaining();
+            app.get(data, total, count);
+            total += count;
+        }
+        serverToClient.compact();
+
+        return data;
+    }
+
+    public static TestSuite suite()
+    {
+        return new TestSuite(TlsClientEngineTest.class);
+    }
+
+    public static void main(String[] args)
+        throws Exception
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+}
@@ -0,0 +1,97 @@
+package org.spongycastle.math.ec.test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.Enumeration;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.spongycastle.asn1.sec.SECNamedCurves;
+import org.spongycastle.asn1.x9.X9ECParameters;
+import org.spongycastle.math.ec.ECConstants;
+import org.spongycastle.math.ec.ECCurve;
+import org.spongycastle.math.ec.ECFieldElement;
+
+/**
+ * Checks the arithmetic of the field elements created by the prime curves, some of which
+ * use specialised implementations, against plain <code>BigInteger</code> arithmetic.
+ */
+public class ECFieldElementTest extends TestCase
+{
+    private static final int NUM_ROUNDS = 1000;
+
+    private SecureRandom random = new SecureRandom();
+
+    private BigInteger randomElement(BigInteger q, int round)
+    {
+        // the first rounds use values around the ends of the range
+        switch (round)
+        {
+        case 0:
+            return ECConstants.ZERO;
+        case 1:
+            return ECConstants.ONE;
+        case 2:
+            return q.subtract(ECConstants.ONE);
+        case 3:
+            return q.subtract(ECConstants.TWO);
+        default:
+            return new BigInteger(q.bitLength(), random).mod(q);
+        }
+    }
+
+    private void implTestArithmetic(String name, ECCurve.Fp curve)
+    {
+        BigInteger q = curve.getQ();
+
+        for (int i = 0; i != NUM_ROUNDS; i++)
+        {
+            BigInteger x = randomElement(q, i % 5);
+            BigInteger y = randomElement(q, i / 5);
+
+            ECFieldElement fx = curve.fromBigInteger(x);
+            ECFieldElement fy = curve.fromBigInteger(y);
+
+            assertEquals(name + " add", x.add(y).mod(q), fx.add(fy).toBigInteger());
+            assertEquals(name + " subtract", x.subtract(y).mod(q), fx.subtract(fy).toBigInteger());
+            assertEquals(name + " multiply", x.multiply(y).mod(q), fx.multiply(fy).toBigInteger());
+            assertEquals(name + " square", x.multiply(x).mod(q), fx.square().toBigInteger());
+            assertEquals(name + " negate", x.negate().mod(q), fx.negate().toBigInteger());
+
+            if (y.signum() != 0)
+            {
+                assertEquals(name + " divide", x.multiply(y.modInverse(q)).mod(q), fx.divide(fy).toBigInteger());
+            }
+
+            // elements from the curve must mix with ones created directly
+            ECFieldElement plain = new ECFieldElement.Fp(q, x);
+
+            assertEquals(name + " equals", plain, fx);
+            assertEquals(name + " equals", fx, plain);
+            assertEquals(name + " hashCode", plain.hashCode(), fx.hashCode());
+            assertEquals(name + " mixed multiply", x.multiply(y).mod(q), fy.multiply(plain).toBigInteger());
+        }
+    }
+
+    public void testArithmetic()
+    {
+        Enumeration curveEnum = SECNamedCurves.getNames();
+        while (curveEnum.hasMoreElements())
+        {
+            String name = (String)curveEnum.nextElement();
+            X9ECParameters x9ECParameters = SECNamedCurves.getByName(name);
+
+            if (x9ECParameters.getCurve() instanceof ECCurve.Fp)
+            {
+                implTestArithmetic(name, (ECCurve.Fp)x9ECParameters.getCurve());
+            }
+        }
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite(ECFieldElementTest.class);
+    }
+}
@@ -10,9 +10,12 @@ import junit.framework.TestSuite;
 
 import org.spongycastle.asn1.sec.SECNamedCurves;
 import org.spongycastle.asn1.x9.X9ECParameters;
+import org.spongycastle.math.ec.ECAlgorithms;
+import org.spongycastle.math.ec.ECConstants;
 import org.spongycastle.math.ec.ECCurve;
 import org.spongycastle.math.ec.ECFieldElement;
 import org.spongycastle.math.ec.ECPoint;
+import org.spongycastle.math.ec.FixedPointComb;
 
 /**
  * Test class for {@link org.spongycastle.math.ec.ECPoint ECPoint}. All
@@ -444,6 +447,69 @@ public class ECPointTest extends TestCase
         }
     }
 
+    /**
+     * Checks <code>ECAlgorithms.sumOfTwoMultiplies</code> against separate
+     * multiplications, including the degenerate cases where the two partial
+     * results coincide or cancel, for each of the standard elliptic curves.
+     */
+    public void testSumOfTwoMultiplies()
+    {
+        Enumeration curveEnum = SECNamedCurves.getNames();
+        while (curveEnum.hasMoreElements())
+        {
+            String name = (String) curveEnum.nextElement();
+            X9ECParameters x9ECParameters = SECNamedCurves.getByName(name);
+
+            BigInteger n = x9ECParameters.getN();
+            ECPoint g = x9ECParameters.getG();
+            ECPoint q = g.multiply(new BigInteger(n.bitLength(), secRand));
+
+            BigInteger a = new BigInteger(n.bitLength(), secRand);
+            BigInteger b = new BigInteger(n.bitLength(), secRand);
+
+            assertEquals("sum of two multiplies failed on " + name,
+                g.multiply(a).add(q.multiply(b)), ECAlgorithms.sumOfTwoMultiplies(g, a, q, b));
+            assertEquals("doubling in sum of two multiplies failed on " + name,
+                g.multiply(a.shiftLeft(1)), ECAlgorithms.sumOfTwoMultiplies(g, a, g, a));
+            assertTrue("cancellation in sum of two multiplies failed on " + name,
+                ECAlgorithms.sumOfTwoMultiplies(g, a, g.negate(), a).isInfinity());
+        }
+    }
+
+    /**
+     * Checks multiplication through a <code>FixedPointComb</code> against the
+     * default multiplier for each of the standard elliptic curves, including
+     * multipliers too long for the comb.
+     */
+    public void testFixedPointComb()
+    {
+        Enumeration curveEnum = SECNamedCurves.getNames();
+        while (curveEnum.hasMoreElements())
+        {
+            String name = (String) curveEnum.nextElement();
+            X9ECParameters x9ECParameters = SECNamedCurves.getByName(name);
+
+            BigInteger n = x9ECParameters.getN();
+            ECPoint g = x9ECParameters.getG();
+
+            for (int width = 1; width <= 6; width += 5)
+            {
+                // a separate copy of the generator to hold the comb
+                ECPoint combG = g.getCurve().decodePoint(g.getEncoded());
+                FixedPointComb.precompute(combG, n.bitLength(), width);
+
+                BigInteger[] ks = new BigInteger[]{ ECConstants.ONE, n.subtract(ECConstants.ONE),
+                    new BigInteger(n.bitLength(), secRand), n.shiftLeft(2).add(ECConstants.THREE) };
+
+                for (int i = 0; i != ks.length; i++)
+                {
+                    assertEquals("comb multiply failed on " + name + " width " + width,
+                        g.multiply(ks[i]), combG.multiply(ks[i]));
+                }
+            }
+        }
+    }
+
     public static Test suite()
     {
         return new TestSuite(ECPointTest.class);
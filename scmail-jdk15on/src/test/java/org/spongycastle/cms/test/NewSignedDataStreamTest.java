@@ -16,6 +16,9 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
@@ -693,6 +696,91 @@ public class NewSignedDataStreamTest
         verifyEncodedData(bOut);
     }
 
+    public void testParallelDigests()
+        throws Exception
+    {
+        List                  certList = new ArrayList();
+        ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+
+        certList.add(_origCert);
+        certList.add(_signCert);
+
+        Store           certs = new JcaCertStore(certList);
+
+        byte[] data = new byte[1024 * 1024 + 17];
+        for (int i = 0; i != data.length; i++)
+        {
+            data[i] = (byte)(i * 31 + (i >>> 8));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try
+        {
+            CMSSignedDataStreamGenerator gen = new CMSSignedDataStreamGenerator();
+            JcaSignerInfoGeneratorBuilder signerInfoGeneratorBuilder = new JcaSignerInfoGeneratorBuilder(new JcaDigestCalculatorProviderBuilder().setProvider(BC).build());
+
+            gen.addSignerInfoGenerator(signerInfoGeneratorBuilder.build(new JcaContentSignerBuilder("SHA1withRSA").setProvider(BC).build(_origKP.getPrivate()), _origCert));
+            gen.addSignerInfoGenerator(signerInfoGeneratorBuilder.build(new JcaContentSignerBuilder("SHA256withRSA").setProvider(BC).build(_origKP.getPrivate()), _origCert));
+            gen.addSignerInfoGenerator(signerInfoGeneratorBuilder.build(new JcaContentSignerBuilder("SHA512withRSA").setProvider(BC).build(_origKP.getPrivate()), _origCert));
+
+            gen.addCertificates(certs);
+            gen.setDigestExecutor(executor);
+
+            OutputStream sigOut = gen.open(bOut, true);
+
+            // mix single bytes, small writes and writes spanning several chunks
+            int off = 0;
+            sigOut.write(data[off++]);
+            for (int len = 1; off + len <= data.length; len = len * 3 + 1)
+            {
+                sigOut.write(data, off, len);
+                off += len;
+            }
+            while (off < data.length)
+            {
+                sigOut.write(data[off++]);
+            }
+
+            sigOut.close();
+
+            Map generated = gen.getGeneratedDigests();
+
+            assertTrue(MessageDigest.isEqual(MessageDigest.getInstance("SHA-256", BC).digest(data), (byte[])generated.get(CMSAlgorithm.SHA256.getId())));
+
+            checkParallelDigests(bOut.toByteArray(), data, null);
+            checkParallelDigests(bOut.toByteArray(), data, executor);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private void checkParallelDigests(byte[] sig, byte[] data, Executor executor)
+        throws Exception
+    {
+        CMSSignedDataParser sp = new CMSSignedDataParser(new JcaDigestCalculatorProviderBuilder().setProvider(BC).build(), sig);
+
+        sp.setDigestExecutor(executor);
+        sp.getSignedContent().drain();
+
+        verifySignatures(sp);
+
+        Collection signers = sp.getSignerInfos().getSigners();
+
+        assertEquals(3, signers.size());
+
+        for (Iterator it = signers.iterator(); it.hasNext();)
+        {
+            SignerInformation signer = (SignerInformation)it.next();
+
+            assertTrue(MessageDigest.isEqual(MessageDigest.getInstance(signer.getDigestAlgOID(), BC).digest(data), signer.getContentDigest()));
+        }
+
+        sp.close();
+    }
+
     public void testSHA1WithRSAEncapsulatedSubjectKeyID()
         throws Exception
     {
@@ -3,6 +3,8 @@ package org.spongycastle.bcpg;
 import java.io.*;
 import java.util.Vector;
 
+import org.spongycastle.util.io.Streams;
+
 /**
  * reader for Base64 armored objects - read the headers and then start returning
  * bytes when the data is reached. An IOException is thrown if the CRC check
@@ -39,6 +41,42 @@ public class ArmoredInputStream
         decodingTable['/'] = 63;
     }
 
+    /*
+     * as decodingTable, but for any byte and with -1 for characters outside the alphabet,
+     * used for bulk decoding.
+     */
+    private static final byte[] bulkDecodingTable;
+
+    static
+    {
+        bulkDecodingTable = new byte[256];
+
+        for (int i = 0; i != bulkDecodingTable.length; i++)
+        {
+            bulkDecodingTable[i] = -1;
+        }
+
+        for (int i = 'A'; i <= 'Z'; i++)
+        {
+            bulkDecodingTable[i] = decodingTable[i];
+        }
+
+        for (int i = 'a'; i <= 'z'; i++)
+        {
+            bulkDecodingTable[i] = decodingTable[i];
+        }
+
+        for (int i = '0'; i <= '9'; i++)
+        {
+            bulkDecodingTable[i] = decodingTable[i];
+        }
+
+        bulkDecodingTable['+'] = 62;
+        bulkDecodingTable['/'] = 63;
+    }
+
+    private static final int BULK_BUF_SIZE = 4096;
+
     /**
      * decode the base 64 encoded input data.
      *
@@ -108,6 +146,7 @@ public class ArmoredInputStream
     Vector         headerList= new Vector();
     int            lastC = 0;
     boolean        isEndOfStream;
+    byte[]         bulkBuf;
     
     /**
      * Create a stream for reading a PGP armoured message, parsing up to a header 
@@ -463,6 +502,151 @@ public class ArmoredInputStream
         return c;
     }
     
+    /**
+     * Read up to len bytes into b. Where the underlying stream supports mark/reset, runs of
+     * complete base 64 groups, including the line breaks between them, are read and decoded
+     * in bulk; everything else, such as headers, clear text and the checksum, is handled
+     * one byte at a time by read().
+     */
+    public int read(
+        byte[] b,
+        int    off,
+        int    len)
+        throws IOException
+    {
+        if (off < 0 || len < 0 || off + len > b.length)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+
+        int count = 0;
+
+        while (count < len)
+        {
+            if (!clearText && !start && !crcFound)
+            {
+                if (bufPtr <= 2)
+                {
+                    int c = outBuf[bufPtr++];
+
+                    crc.update(c);
+                    b[off + count++] = (byte)c;
+                    continue;
+                }
+
+                int n = decodeBulk(b, off + count, len - count);
+                if (n > 0)
+                {
+                    count += n;
+                    continue;
+                }
+            }
+
+            int c = read();
+            if (c < 0)
+            {
+                break;
+            }
+
+            b[off + count++] = (byte)c;
+        }
+
+        return (count == 0 && len != 0) ? -1 : count;
+    }
+
+    /**
+     * Decode as many complete 4 character groups as will fit in len bytes, stopping short of
+     * anything the groups might not be data - a padded group, a line starting with '=' or '-',
+     * or any other character outside the base 64 alphabet - so read() sees it instead. Only
+     * the characters decoded are taken from the underlying stream.
+     *
+     * @return the number of bytes written to out.
+     */
+    private int decodeBulk(
+        byte[] out,
+        int    outOff,
+        int    len)
+        throws IOException
+    {
+        int maxGroups = len / 3;
+
+        if (maxGroups == 0 || !in.markSupported())
+        {
+            return 0;
+        }
+
+        if (bulkBuf == null)
+        {
+            bulkBuf = new byte[BULK_BUF_SIZE];
+        }
+
+        // allow for a line break in every 64 characters
+        int toRead = (int)Math.min(bulkBuf.length, maxGroups * 5L + 8);
+
+        in.mark(toRead);
+
+        int available = in.read(bulkBuf, 0, toRead);
+        int pos = 0;
+        int consumed = 0;
+        int outPos = outOff;
+
+        while (outPos - outOff < len - 2)
+        {
+            boolean lineBreak = false;
+
+            while (pos < available)
+            {
+                int ch = bulkBuf[pos];
+
+                if (ch == ' ' || ch == '\t')
+                {
+                    pos++;
+                }
+                else if (ch == '\r' || ch == '\n')
+                {
+                    lineBreak = true;
+                    pos++;
+                }
+                else
+                {
+                    break;
+                }
+            }
+
+            if (pos + 4 > available || (lineBreak && (bulkBuf[pos] == '=' || bulkBuf[pos] == '-')))
+            {
+                break;
+            }
+
+            int b1 = bulkDecodingTable[bulkBuf[pos] & 0xff];
+            int b2 = bulkDecodingTable[bulkBuf[pos + 1] & 0xff];
+            int b3 = bulkDecodingTable[bulkBuf[pos + 2] & 0xff];
+            int b4 = bulkDecodingTable[bulkBuf[pos + 3] & 0xff];
+
+            if ((b1 | b2 | b3 | b4) < 0)
+            {
+                break;
+            }
+
+            out[outPos++] = (byte)((b1 << 2) | (b2 >> 4));
+            out[outPos++] = (byte)((b2 << 4) | (b3 >> 2));
+            out[outPos++] = (byte)((b3 << 6) | b4);
+
+            pos += 4;
+            consumed = pos;
+        }
+
+        in.reset();
+
+        if (consumed > 0)
+        {
+            Streams.readFully(in, bulkBuf, 0, consumed);
+            crc.update(out, outOff, outPos - outOff);
+        }
+
+        return outPos - outOff;
+    }
+
     public void close()
         throws IOException
     {
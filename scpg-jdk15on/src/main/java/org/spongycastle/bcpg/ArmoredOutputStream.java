@@ -4,6 +4,8 @@ import java.io.*;
 import java.util.Enumeration;
 import java.util.Hashtable;
 
+import org.spongycastle.util.Strings;
+
 /**
  * Basic output stream.
  */
@@ -26,6 +28,8 @@ public class ArmoredOutputStream
             (byte)'+', (byte)'/'
         };
 
+    private static final int ENC_BUF_SIZE = 4096;
+
     /**
      * encode the input data producing a base 64 encoded byte array.
      */
@@ -79,6 +83,7 @@ public class ArmoredOutputStream
     CRC24           crc = new CRC24();
     int             chunkCount = 0;
     int             lastb;
+    byte[]          encBuf;
 
     boolean         start = true;
     boolean         clearText = false;
@@ -346,6 +351,93 @@ public class ArmoredOutputStream
         buf[bufPtr++] = b & 0xff;
     }
     
+    /**
+     * Write len bytes from b. Once the armor header has been written, whole groups of
+     * input are encoded into a buffer, with their line breaks, and passed on in large
+     * writes rather than a character at a time.
+     */
+    public void write(
+        byte[] b,
+        int    off,
+        int    len)
+        throws IOException
+    {
+        if (off < 0 || len < 0 || off + len > b.length)
+        {
+            throw new IndexOutOfBoundsException();
+        }
+
+        // clear text, the header and a part filled group are done as single bytes
+        while (len > 0 && (clearText || start || bufPtr != 3))
+        {
+            write(b[off++] & 0xff);
+            len--;
+        }
+
+        if (len == 0)
+        {
+            return;
+        }
+
+        crc.update(b, off, len);
+
+        // the last 1 to 3 bytes are kept back, as write(int) would, so close() sees them
+        int groups = (len - 1) / 3;
+        int tail = len - groups * 3;
+
+        if (encBuf == null)
+        {
+            encBuf = new byte[ENC_BUF_SIZE];
+        }
+
+        byte[] lineEnd = Strings.toByteArray(nl);
+        int    encPos = 0;
+
+        // the group already held in buf is written first
+        encBuf[encPos++] = encodingTable[(buf[0] >>> 2) & 0x3f];
+        encBuf[encPos++] = encodingTable[((buf[0] << 4) | (buf[1] >>> 4)) & 0x3f];
+        encBuf[encPos++] = encodingTable[((buf[1] << 2) | (buf[2] >>> 6)) & 0x3f];
+        encBuf[encPos++] = encodingTable[buf[2] & 0x3f];
+
+        for (int i = 0;; i++)
+        {
+            if ((++chunkCount & 0xf) == 0)
+            {
+                System.arraycopy(lineEnd, 0, encBuf, encPos, lineEnd.length);
+                encPos += lineEnd.length;
+            }
+
+            if (i == groups)
+            {
+                break;
+            }
+
+            if (encPos > encBuf.length - 4 - lineEnd.length)
+            {
+                out.write(encBuf, 0, encPos);
+                encPos = 0;
+            }
+
+            int d1 = b[off] & 0xff;
+            int d2 = b[off + 1] & 0xff;
+            int d3 = b[off + 2] & 0xff;
+
+            encBuf[encPos++] = encodingTable[(d1 >>> 2) & 0x3f];
+            encBuf[encPos++] = encodingTable[((d1 << 4) | (d2 >>> 4)) & 0x3f];
+            encBuf[encPos++] = encodingTable[((d2 << 2) | (d3 >>> 6)) & 0x3f];
+            encBuf[encPos++] = encodingTable[d3 & 0x3f];
+
+            off += 3;
+        }
+
+        out.write(encBuf, 0, encPos);
+
+        for (bufPtr = 0; bufPtr != tail; bufPtr++)
+        {
+            buf[bufPtr] = b[off + bufPtr] & 0xff;
+        }
+    }
+
     public void flush()
         throws IOException
     {
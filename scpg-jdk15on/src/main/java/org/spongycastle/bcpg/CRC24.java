@@ -4,9 +4,45 @@ public class CRC24
 {
     private static final int CRC24_INIT = 0x0b704ce;
     private static final int CRC24_POLY = 0x1864cfb;
-                                                                                
+
+    /*
+     * T0[i] is the CRC register after processing i from a register of zero, and
+     * Tn[i] the register after also processing n zero bytes, so four bytes can be
+     * processed with four table lookups (slicing by 4).
+     */
+    private static final int[] T0 = new int[256];
+    private static final int[] T1 = new int[256];
+    private static final int[] T2 = new int[256];
+    private static final int[] T3 = new int[256];
+
+    static
+    {
+        for (int i = 0; i != 256; i++)
+        {
+            int c = i << 16;
+
+            for (int j = 0; j < 8; j++)
+            {
+                c <<= 1;
+                if ((c & 0x1000000) != 0)
+                {
+                    c ^= CRC24_POLY;
+                }
+            }
+
+            T0[i] = c;
+        }
+
+        for (int i = 0; i != 256; i++)
+        {
+            T1[i] = ((T0[i] << 8) & 0xffffff) ^ T0[T0[i] >>> 16];
+            T2[i] = ((T1[i] << 8) & 0xffffff) ^ T0[T1[i] >>> 16];
+            T3[i] = ((T2[i] << 8) & 0xffffff) ^ T0[T2[i] >>> 16];
+        }
+    }
+
     private int crc = CRC24_INIT;
-                                                                                
+
     public CRC24()
     {
     }
@@ -14,15 +50,35 @@ public class CRC24
     public void update(
         int b)
     {
-        crc ^= b << 16;
-        for (int i = 0; i < 8; i++)
+        crc = ((crc << 8) & 0xffffff) ^ T0[((crc >>> 16) ^ b) & 0xff];
+    }
+
+    /**
+     * Update the CRC with len bytes from buf, starting at off.
+     */
+    public void update(
+        byte[] buf,
+        int    off,
+        int    len)
+    {
+        int c = crc;
+        int end = off + len;
+
+        while (off + 4 <= end)
         {
-            crc <<= 1;
-            if ((crc & 0x1000000) != 0)
-            {
-                crc ^= CRC24_POLY;
-            }
+            // the register is 3 bytes wide, so the 4th byte has nothing to be combined with
+            int x = c ^ (((buf[off] & 0xff) << 16) | ((buf[off + 1] & 0xff) << 8) | (buf[off + 2] & 0xff));
+
+            c = T3[x >>> 16] ^ T2[(x >>> 8) & 0xff] ^ T1[x & 0xff] ^ T0[buf[off + 3] & 0xff];
+            off += 4;
+        }
+
+        while (off < end)
+        {
+            c = ((c << 8) & 0xffffff) ^ T0[((c >>> 16) ^ buf[off++]) & 0xff];
         }
+
+        crc = c;
     }
 
     public int getValue()
@@ -0,0 +1,255 @@
+package org.spongycastle.openpgp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.spongycastle.util.Arrays;
+import org.spongycastle.util.Strings;
+
+/**
+ * Secondary indexes for a key ring collection, mapping key IDs, fingerprints, user IDs
+ * and email addresses to the IDs of the rings (the key IDs of their master keys) they
+ * appear in.
+ * <p>
+ * Almost every entry maps to a single ring, so an entry is held as a single Long, and
+ * only becomes a List of them if a second ring shares it. Lists are never changed once
+ * stored, so a copy of the index can share them with the original.
+ */
+class KeyRingIndex
+{
+    private final Map keyIDs;
+    private final Map fingerprints;
+    private final Map userIDs;
+    private final Map foldedUserIDs;
+    private final Map emails;
+
+    KeyRingIndex()
+    {
+        this.keyIDs = new HashMap();
+        this.fingerprints = new HashMap();
+        this.userIDs = new HashMap();
+        this.foldedUserIDs = new HashMap();
+        this.emails = new HashMap();
+    }
+
+    private KeyRingIndex(KeyRingIndex other)
+    {
+        this.keyIDs = new HashMap(other.keyIDs);
+        this.fingerprints = new HashMap(other.fingerprints);
+        this.userIDs = new HashMap(other.userIDs);
+        this.foldedUserIDs = new HashMap(other.foldedUserIDs);
+        this.emails = new HashMap(other.emails);
+    }
+
+    /**
+     * Return a copy of this index which can be changed without affecting this one.
+     */
+    KeyRingIndex copy()
+    {
+        return new KeyRingIndex(this);
+    }
+
+    /**
+     * Add a ring to the index.
+     *
+     * @param ringID the key ID of the ring's master key.
+     * @param keys the PGPPublicKeys in the ring which lookups should find.
+     * @param ids the user IDs of the ring's master key.
+     */
+    void add(Long ringID, Iterator keys, Iterator ids)
+    {
+        while (keys.hasNext())
+        {
+            PGPPublicKey key = (PGPPublicKey)keys.next();
+
+            put(keyIDs, new Long(key.getKeyID()), ringID);
+            put(fingerprints, new Fingerprint(key.getFingerprint()), ringID);
+        }
+
+        while (ids.hasNext())
+        {
+            String id = (String)ids.next();
+            String email = extractEmail(id);
+
+            put(userIDs, id, ringID);
+            put(foldedUserIDs, Strings.toLowerCase(id), ringID);
+            if (email != null)
+            {
+                put(emails, email, ringID);
+            }
+        }
+    }
+
+    /**
+     * Remove a ring from the index, passing the same keys and user IDs it was added with.
+     */
+    void remove(Long ringID, Iterator keys, Iterator ids)
+    {
+        while (keys.hasNext())
+        {
+            PGPPublicKey key = (PGPPublicKey)keys.next();
+
+            remove(keyIDs, new Long(key.getKeyID()), ringID);
+            remove(fingerprints, new Fingerprint(key.getFingerprint()), ringID);
+        }
+
+        while (ids.hasNext())
+        {
+            String id = (String)ids.next();
+            String email = extractEmail(id);
+
+            remove(userIDs, id, ringID);
+            remove(foldedUserIDs, Strings.toLowerCase(id), ringID);
+            if (email != null)
+            {
+                remove(emails, email, ringID);
+            }
+        }
+    }
+
+    /**
+     * Return the ID of a ring containing a key with the passed in key ID, or null.
+     */
+    Long getRingForKeyID(long keyID)
+    {
+        return first(keyIDs.get(new Long(keyID)));
+    }
+
+    /**
+     * Return the ID of a ring containing a key with the passed in fingerprint, or null.
+     */
+    Long getRingForFingerprint(byte[] fingerprint)
+    {
+        return first(fingerprints.get(new Fingerprint(fingerprint)));
+    }
+
+    /**
+     * Return the IDs of the rings with a user ID matching userID, once for each user ID
+     * that matches.
+     */
+    List getRingsForUserID(String userID, boolean ignoreCase)
+    {
+        if (ignoreCase)
+        {
+            return all(foldedUserIDs.get(Strings.toLowerCase(userID)));
+        }
+
+        return all(userIDs.get(userID));
+    }
+
+    /**
+     * Return the IDs of the rings with a user ID containing the passed in email address,
+     * ignoring case, once for each user ID that matches.
+     */
+    List getRingsForEmail(String email)
+    {
+        return all(emails.get(Strings.toLowerCase(email)));
+    }
+
+    /**
+     * Return the email address in a user ID, in lower case: the part in angle brackets
+     * if there is one, otherwise the whole ID if it looks like an address, otherwise null.
+     */
+    static String extractEmail(String id)
+    {
+        int start = id.lastIndexOf('<');
+        if (start >= 0)
+        {
+            int end = id.indexOf('>', start);
+            if (end > start + 1)
+            {
+                return Strings.toLowerCase(id.substring(start + 1, end).trim());
+            }
+        }
+
+        String trimmed = id.trim();
+        if (trimmed.indexOf('@') > 0 && trimmed.indexOf(' ') < 0)
+        {
+            return Strings.toLowerCase(trimmed);
+        }
+
+        return null;
+    }
+
+    private static void put(Map map, Object key, Long ringID)
+    {
+        Object current = map.get(key);
+
+        if (current == null)
+        {
+            map.put(key, ringID);
+        }
+        else
+        {
+            List rings = new ArrayList(all(current));
+
+            rings.add(ringID);
+            map.put(key, rings);
+        }
+    }
+
+    private static void remove(Map map, Object key, Long ringID)
+    {
+        Object current = map.get(key);
+
+        if (current instanceof List)
+        {
+            List rings = new ArrayList((List)current);
+
+            rings.remove(ringID);
+            map.put(key, (rings.size() == 1) ? rings.get(0) : rings);
+        }
+        else if (ringID.equals(current))
+        {
+            map.remove(key);
+        }
+    }
+
+    private static Long first(Object entry)
+    {
+        if (entry instanceof List)
+        {
+            return (Long)((List)entry).get(0);
+        }
+
+        return (Long)entry;
+    }
+
+    private static List all(Object entry)
+    {
+        if (entry == null)
+        {
+            return Collections.EMPTY_LIST;
+        }
+        if (entry instanceof List)
+        {
+            return (List)entry;
+        }
+
+        return Collections.singletonList(entry);
+    }
+
+    private static class Fingerprint
+    {
+        private final byte[] fingerprint;
+
+        Fingerprint(byte[] fingerprint)
+        {
+            this.fingerprint = fingerprint;
+        }
+
+        public boolean equals(Object o)
+        {
+            return (o instanceof Fingerprint) && Arrays.areEqual(fingerprint, ((Fingerprint)o).fingerprint);
+        }
+
+        public int hashCode()
+        {
+            return Arrays.hashCode(fingerprint);
+        }
+    }
+}
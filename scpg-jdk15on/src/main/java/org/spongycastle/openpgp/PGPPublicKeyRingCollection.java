@@ -1,6 +1,7 @@
 package org.spongycastle.openpgp;
 
 import org.spongycastle.bcpg.BCPGOutputStream;
+import org.spongycastle.util.Arrays;
 import org.spongycastle.util.Strings;
 
 import java.io.ByteArrayInputStream;
@@ -23,13 +24,16 @@ public class PGPPublicKeyRingCollection
 {
     private Map   pubRings = new HashMap();
     private List  order = new ArrayList();
+    private KeyRingIndex index = new KeyRingIndex();
     
     private PGPPublicKeyRingCollection(
-        Map     pubRings,
-        List    order)
+        Map             pubRings,
+        List            order,
+        KeyRingIndex    index)
     {
         this.pubRings = pubRings;
         this.order = order;
+        this.index = index;
     }
     
     public PGPPublicKeyRingCollection(
@@ -63,7 +67,7 @@ public class PGPPublicKeyRingCollection
             PGPPublicKeyRing    pgpPub = (PGPPublicKeyRing)obj;
             Long    key = new Long(pgpPub.getPublicKey().getKeyID());
             
-            pubRings.put(key, pgpPub);
+            addToIndex(pubRings, index, key, pgpPub);
             order.add(key);
         }
     }
@@ -80,7 +84,7 @@ public class PGPPublicKeyRingCollection
             
             Long              key = new Long(pgpPub.getPublicKey().getKeyID());
             
-            pubRings.put(key, pgpPub);
+            addToIndex(pubRings, index, key, pgpPub);
             order.add(key);
         }
     }
@@ -137,6 +141,7 @@ public class PGPPublicKeyRingCollection
     /**
      * Return an iterator of the key rings associated with the passed in userID.
      * <p>
+     * Exact matches are looked up in an index, partial matches require a scan of every ring.
      * 
      * @param userID the user ID to be matched.
      * @param matchPartial if true userID need only be a substring of an actual ID string to match.
@@ -150,6 +155,11 @@ public class PGPPublicKeyRingCollection
         boolean   ignoreCase) 
         throws PGPException
     {
+        if (!matchPartial)
+        {
+            return getRings(index.getRingsForUserID(userID, ignoreCase));
+        }
+
         Iterator    it = this.getKeyRings();
         List        rings = new ArrayList();
 
@@ -191,6 +201,19 @@ public class PGPPublicKeyRingCollection
         return rings.iterator();
     }
 
+    /**
+     * Return an iterator of the key rings with a user ID containing the passed in email
+     * address, either in angle brackets or as the whole user ID. Case is ignored.
+     *
+     * @param email the email address to be matched.
+     * @return an iterator (possibly empty) of key rings which matched.
+     */
+    public Iterator getKeyRingsByEmail(
+        String    email)
+    {
+        return getRings(index.getRingsForEmail(email));
+    }
+
     /**
      * Return the PGP public key associated with the given key id.
      * 
@@ -202,19 +225,42 @@ public class PGPPublicKeyRingCollection
         long        keyID) 
         throws PGPException
     {    
-        Iterator    it = this.getKeyRings();
+        Long    ringID = index.getRingForKeyID(keyID);
         
-        while (it.hasNext())
+        if (ringID != null)
         {
-            PGPPublicKeyRing    pubRing = (PGPPublicKeyRing)it.next();
-            PGPPublicKey        pub = pubRing.getPublicKey(keyID);
-            
-            if (pub != null)
+            return ((PGPPublicKeyRing)pubRings.get(ringID)).getPublicKey(keyID);
+        }
+    
+        return null;
+    }
+
+    /**
+     * Return the PGP public key with the given fingerprint.
+     *
+     * @param fingerprint the fingerprint of the key.
+     * @return the PGP public key, or null if it is not present.
+     */
+    public PGPPublicKey getPublicKey(
+        byte[]      fingerprint)
+    {
+        Long    ringID = index.getRingForFingerprint(fingerprint);
+
+        if (ringID != null)
+        {
+            Iterator    it = ((PGPPublicKeyRing)pubRings.get(ringID)).getPublicKeys();
+
+            while (it.hasNext())
             {
-                return pub;
+                PGPPublicKey    pub = (PGPPublicKey)it.next();
+
+                if (Arrays.areEqual(fingerprint, pub.getFingerprint()))
+                {
+                    return pub;
+                }
             }
         }
-    
+
         return null;
     }
     
@@ -236,17 +282,11 @@ public class PGPPublicKeyRingCollection
             return (PGPPublicKeyRing)pubRings.get(id);
         }
         
-        Iterator    it = this.getKeyRings();
+        Long    ringID = index.getRingForKeyID(keyID);
         
-        while (it.hasNext())
+        if (ringID != null)
         {
-            PGPPublicKeyRing    pubRing = (PGPPublicKeyRing)it.next();
-            PGPPublicKey        pub = pubRing.getPublicKey(keyID);
-            
-            if (pub != null)
-            {
-                return pubRing;
-            }
+            return (PGPPublicKeyRing)pubRings.get(ringID);
         }
     
         return null;
@@ -319,13 +359,14 @@ public class PGPPublicKeyRingCollection
             throw new IllegalArgumentException("Collection already contains a key with a keyID for the passed in ring.");
         }
         
-        Map     newPubRings = new HashMap(ringCollection.pubRings);
-        List    newOrder = new ArrayList(ringCollection.order); 
+        Map             newPubRings = new HashMap(ringCollection.pubRings);
+        List            newOrder = new ArrayList(ringCollection.order); 
+        KeyRingIndex    newIndex = ringCollection.index.copy();
         
-        newPubRings.put(key, publicKeyRing);
+        addToIndex(newPubRings, newIndex, key, publicKeyRing);
         newOrder.add(key);
         
-        return new PGPPublicKeyRingCollection(newPubRings, newOrder);
+        return new PGPPublicKeyRingCollection(newPubRings, newOrder, newIndex);
     }
     
     /**
@@ -348,10 +389,11 @@ public class PGPPublicKeyRingCollection
             throw new IllegalArgumentException("Collection does not contain a key with a keyID for the passed in ring.");
         }
         
-        Map     newPubRings = new HashMap(ringCollection.pubRings);
-        List    newOrder = new ArrayList(ringCollection.order); 
+        Map             newPubRings = new HashMap(ringCollection.pubRings);
+        List            newOrder = new ArrayList(ringCollection.order); 
+        KeyRingIndex    newIndex = ringCollection.index.copy();
         
-        newPubRings.remove(key);
+        removeFromIndex(newPubRings, newIndex, key);
         
         for (int i = 0; i < newOrder.size(); i++)
         {
@@ -364,6 +406,44 @@ public class PGPPublicKeyRingCollection
             }
         }
         
-        return new PGPPublicKeyRingCollection(newPubRings, newOrder);
+        return new PGPPublicKeyRingCollection(newPubRings, newOrder, newIndex);
+    }
+
+    private Iterator getRings(
+        List    ringIDs)
+    {
+        List    rings = new ArrayList(ringIDs.size());
+
+        for (int i = 0; i != ringIDs.size(); i++)
+        {
+            rings.add(pubRings.get(ringIDs.get(i)));
+        }
+
+        return rings.iterator();
+    }
+
+    private static void addToIndex(
+        Map                 pubRings,
+        KeyRingIndex        index,
+        Long                key,
+        PGPPublicKeyRing    pubRing)
+    {
+        removeFromIndex(pubRings, index, key);
+
+        pubRings.put(key, pubRing);
+        index.add(key, pubRing.getPublicKeys(), pubRing.getPublicKey().getUserIDs());
+    }
+
+    private static void removeFromIndex(
+        Map             pubRings,
+        KeyRingIndex    index,
+        Long            key)
+    {
+        PGPPublicKeyRing    pubRing = (PGPPublicKeyRing)pubRings.remove(key);
+
+        if (pubRing != null)
+        {
+            index.remove(key, pubRing.getPublicKeys(), pubRing.getPublicKey().getUserIDs());
+        }
     }
 }
@@ -0,0 +1,856 @@
+package org.spongycastle.openpgp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.spongycastle.bcpg.BCPGInputStream;
+import org.spongycastle.bcpg.Packet;
+import org.spongycastle.bcpg.PacketTags;
+import org.spongycastle.bcpg.PublicKeyPacket;
+import org.spongycastle.bcpg.UserIDPacket;
+import org.spongycastle.openpgp.operator.KeyFingerPrintCalculator;
+import org.spongycastle.util.Arrays;
+import org.spongycastle.util.Strings;
+
+/**
+ * Read only access to a large public key ring file, such as a pubring.gpg, without
+ * loading all of it.
+ * <p>
+ * The first time a key ring file is opened its packets are scanned once, and the position
+ * of each ring is recorded in an index file against the key IDs, fingerprints and user IDs
+ * it contains. The index is held in sorted tables which are searched where they lie in a
+ * memory mapped copy of the index file. A ring is only parsed when it is asked for, from a
+ * memory mapped copy of the key ring file, and only a small number of recently used rings
+ * are kept, so the memory used does not grow with the size of the key ring file.
+ * <p>
+ * The index file records the length and modification time of the key ring file, and a
+ * hash of its first and last blocks, and is rebuilt if any of these has changed, or the
+ * index is damaged, when the store is opened. A new index is written to a temporary file
+ * and renamed into place. Changing the key ring file while a store is open on it is not
+ * supported.
+ */
+public class PGPPublicKeyRingStore
+{
+    /**
+     * The default number of parsed rings kept.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 64;
+
+    private static final int MAGIC = 0x50475849;    // "PGXI"
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 48;
+    private static final int CHECK_BLOCK_SIZE = 4096;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final int RING_ENTRY_SIZE = 12;
+    private static final int ENTRY_SIZE = 12;
+
+    private final KeyFingerPrintCalculator fingerPrintCalculator;
+    private final RandomAccessFile keyRingFile;
+    private final FileChannel keyRingChannel;
+    private final ByteBuffer keyRingMap;
+    private final ByteBuffer index;
+    private final Map ringCache;
+
+    private final int ringCount;
+    private final int keyIDStart;
+    private final int keyIDCount;
+    private final int fingerprintStart;
+    private final int fingerprintCount;
+    private final int userIDStart;
+    private final int userIDCount;
+
+    /**
+     * Open a store on a key ring file, keeping up to DEFAULT_CACHE_SIZE parsed rings.
+     *
+     * @param keyRing the key ring file.
+     * @param indexFile the index for the key ring, which is created or rebuilt if needed.
+     * @param fingerPrintCalculator calculator for key fingerprints.
+     * @throws IOException if the key ring cannot be parsed, or a file cannot be read or written.
+     * @throws PGPException if the key ring file contains secret keys.
+     */
+    public PGPPublicKeyRingStore(
+        File                     keyRing,
+        File                     indexFile,
+        KeyFingerPrintCalculator fingerPrintCalculator)
+        throws IOException, PGPException
+    {
+        this(keyRing, indexFile, fingerPrintCalculator, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Open a store on a key ring file.
+     *
+     * @param keyRing the key ring file.
+     * @param indexFile the index for the key ring, which is created or rebuilt if needed.
+     * @param fingerPrintCalculator calculator for key fingerprints.
+     * @param cacheSize the number of parsed rings to keep, 0 for none.
+     * @throws IOException if the key ring cannot be parsed, or a file cannot be read or written.
+     * @throws PGPException if the key ring file contains secret keys.
+     */
+    public PGPPublicKeyRingStore(
+        File                     keyRing,
+        File                     indexFile,
+        KeyFingerPrintCalculator fingerPrintCalculator,
+        final int                cacheSize)
+        throws IOException, PGPException
+    {
+        this.fingerPrintCalculator = fingerPrintCalculator;
+        this.ringCache = new LinkedHashMap(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry eldest)
+            {
+                return size() > cacheSize;
+            }
+        };
+
+        ByteBuffer idx = mapIndex(keyRing, indexFile);
+        if (idx == null)
+        {
+            buildIndex(keyRing, indexFile, fingerPrintCalculator);
+
+            idx = mapIndex(keyRing, indexFile);
+            if (idx == null)
+            {
+                throw new IOException("index file changed while being built: " + indexFile);
+            }
+        }
+
+        this.index = idx;
+        this.ringCount = idx.getInt(32);
+        this.keyIDCount = idx.getInt(36);
+        this.fingerprintCount = idx.getInt(40);
+        this.userIDCount = idx.getInt(44);
+        this.keyIDStart = HEADER_SIZE + ringCount * RING_ENTRY_SIZE;
+        this.fingerprintStart = keyIDStart + keyIDCount * ENTRY_SIZE;
+        this.userIDStart = fingerprintStart + fingerprintCount * ENTRY_SIZE;
+
+        this.keyRingFile = new RandomAccessFile(keyRing, "r");
+        this.keyRingChannel = keyRingFile.getChannel();
+
+        // files too large to map in one go are read ring by ring instead
+        if (keyRingChannel.size() <= Integer.MAX_VALUE)
+        {
+            this.keyRingMap = keyRingChannel.map(FileChannel.MapMode.READ_ONLY, 0, keyRingChannel.size());
+        }
+        else
+        {
+            this.keyRingMap = null;
+        }
+    }
+
+    /**
+     * Return the number of rings in the key ring file.
+     */
+    public int size()
+    {
+        return ringCount;
+    }
+
+    /**
+     * Return the public key rings in the key ring file, in the order they appear. Each ring
+     * is parsed as the iterator reaches it; an IllegalStateException is thrown if one cannot be.
+     */
+    public Iterator getKeyRings()
+    {
+        return new Iterator()
+        {
+            private int next = 0;
+
+            public boolean hasNext()
+            {
+                return next < ringCount;
+            }
+
+            public Object next()
+            {
+                if (next >= ringCount)
+                {
+                    throw new NoSuchElementException();
+                }
+
+                try
+                {
+                    return getRing(next++);
+                }
+                catch (IOException e)
+                {
+                    throw new IllegalStateException("unable to parse key ring: " + e.getMessage());
+                }
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException("store is read only");
+            }
+        };
+    }
+
+    /**
+     * Return the public key ring which contains the key referred to by keyID.
+     *
+     * @param keyID key ID to match against.
+     * @return the public key ring, or null if there is none.
+     * @throws IOException if the ring cannot be parsed.
+     */
+    public PGPPublicKeyRing getPublicKeyRing(
+        long    keyID)
+        throws IOException
+    {
+        for (int pos = find(keyIDStart, keyIDCount, keyID); pos >= 0; pos = nextMatch(keyIDStart, keyIDCount, pos))
+        {
+            PGPPublicKeyRing ring = getRing(index.getInt(pos + 8));
+
+            if (ring.getPublicKey(keyID) != null)
+            {
+                return ring;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Return the public key associated with the given key ID.
+     *
+     * @param keyID key ID to match against.
+     * @return the public key, or null if there is none.
+     * @throws IOException if the ring containing the key cannot be parsed.
+     */
+    public PGPPublicKey getPublicKey(
+        long    keyID)
+        throws IOException
+    {
+        PGPPublicKeyRing ring = getPublicKeyRing(keyID);
+
+        return (ring != null) ? ring.getPublicKey(keyID) : null;
+    }
+
+    /**
+     * Return the public key with the given fingerprint.
+     *
+     * @param fingerprint the fingerprint of the key.
+     * @return the public key, or null if there is none.
+     * @throws IOException if the ring containing the key cannot be parsed.
+     */
+    public PGPPublicKey getPublicKey(
+        byte[]  fingerprint)
+        throws IOException
+    {
+        if (fingerprint.length < 8)
+        {
+            return null;
+        }
+
+        long prefix = fingerprintPrefix(fingerprint);
+
+        for (int pos = find(fingerprintStart, fingerprintCount, prefix); pos >= 0; pos = nextMatch(fingerprintStart, fingerprintCount, pos))
+        {
+            Iterator it = getRing(index.getInt(pos + 8)).getPublicKeys();
+
+            while (it.hasNext())
+            {
+                PGPPublicKey key = (PGPPublicKey)it.next();
+
+                if (Arrays.areEqual(fingerprint, key.getFingerprint()))
+                {
+                    return key;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Return true if a key matching the passed in key ID is present, false otherwise. Only
+     * the index is consulted.
+     *
+     * @param keyID key ID to look for.
+     * @return true if keyID present, false otherwise.
+     */
+    public boolean contains(
+        long    keyID)
+    {
+        return find(keyIDStart, keyIDCount, keyID) >= 0;
+    }
+
+    /**
+     * Return an iterator of the key rings with a user ID equal to the passed in one.
+     *
+     * @param userID the user ID to be matched.
+     * @return an iterator (possibly empty) of key rings which matched.
+     * @throws IOException if a candidate ring cannot be parsed.
+     */
+    public Iterator getKeyRings(
+        String  userID)
+        throws IOException
+    {
+        return getKeyRings(userID, false);
+    }
+
+    /**
+     * Return an iterator of the key rings with a user ID equal to the passed in one,
+     * optionally ignoring case. A ring is returned once for each of its user IDs that match.
+     *
+     * @param userID the user ID to be matched.
+     * @param ignoreCase if true case is ignored in user ID comparisons.
+     * @return an iterator (possibly empty) of key rings which matched.
+     * @throws IOException if a candidate ring cannot be parsed.
+     */
+    public Iterator getKeyRings(
+        String  userID,
+        boolean ignoreCase)
+        throws IOException
+    {
+        List   rings = new ArrayList();
+        int    lastRing = -1;
+        String folded = Strings.toLowerCase(userID);
+
+        for (int pos = find(userIDStart, userIDCount, userIDHash(userID)); pos >= 0; pos = nextMatch(userIDStart, userIDCount, pos))
+        {
+            int ringNo = index.getInt(pos + 8);
+
+            // a ring with two user IDs folding to the same string appears twice in the table
+            if (ringNo == lastRing)
+            {
+                continue;
+            }
+            lastRing = ringNo;
+
+            PGPPublicKeyRing ring = getRing(ringNo);
+
+            for (Iterator it = ring.getPublicKey().getUserIDs(); it.hasNext();)
+            {
+                String id = (String)it.next();
+
+                if (ignoreCase ? Strings.toLowerCase(id).equals(folded) : id.equals(userID))
+                {
+                    rings.add(ring);
+                }
+            }
+        }
+
+        return rings.iterator();
+    }
+
+    /**
+     * Close the key ring file.
+     */
+    public void close()
+        throws IOException
+    {
+        synchronized (ringCache)
+        {
+            ringCache.clear();
+        }
+
+        keyRingFile.close();
+    }
+
+    private PGPPublicKeyRing getRing(
+        int     ringNo)
+        throws IOException
+    {
+        Integer key = new Integer(ringNo);
+
+        synchronized (ringCache)
+        {
+            PGPPublicKeyRing ring = (PGPPublicKeyRing)ringCache.get(key);
+            if (ring != null)
+            {
+                return ring;
+            }
+        }
+
+        int  entry = HEADER_SIZE + ringNo * RING_ENTRY_SIZE;
+        long offset = index.getLong(entry);
+        int  length = index.getInt(entry + 8);
+
+        byte[] encoding = new byte[length];
+
+        if (keyRingMap != null)
+        {
+            ByteBuffer buf = keyRingMap.duplicate();
+
+            buf.position((int)offset);
+            buf.get(encoding);
+        }
+        else
+        {
+            ByteBuffer buf = ByteBuffer.wrap(encoding);
+
+            while (buf.hasRemaining())
+            {
+                if (keyRingChannel.read(buf, offset + buf.position()) < 0)
+                {
+                    throw new EOFException("key ring file truncated");
+                }
+            }
+        }
+
+        PGPPublicKeyRing ring = new PGPPublicKeyRing(encoding, fingerPrintCalculator);
+
+        synchronized (ringCache)
+        {
+            ringCache.put(key, ring);
+        }
+
+        return ring;
+    }
+
+    /**
+     * Return the position of the first entry in a table matching value, or -1.
+     */
+    private int find(
+        int     start,
+        int     count,
+        long    value)
+    {
+        int lo = 0;
+        int hi = count;
+
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+
+            if (index.getLong(start + mid * ENTRY_SIZE) < value)
+            {
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid;
+            }
+        }
+
+        int pos = start + lo * ENTRY_SIZE;
+
+        return (lo < count && index.getLong(pos) == value) ? pos : -1;
+    }
+
+    /**
+     * Return the position of the entry after pos if it has the same value, or -1.
+     */
+    private int nextMatch(
+        int     start,
+        int     count,
+        int     pos)
+    {
+        int next = pos + ENTRY_SIZE;
+
+        if (next < start + count * ENTRY_SIZE && index.getLong(next) == index.getLong(pos))
+        {
+            return next;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Map the index file, returning null if there is none, it is damaged, or it is not for
+     * the current version of the key ring file.
+     */
+    private static ByteBuffer mapIndex(
+        File    keyRing,
+        File    indexFile)
+        throws IOException
+    {
+        if (!indexFile.exists() || indexFile.length() < HEADER_SIZE || indexFile.length() > Integer.MAX_VALUE)
+        {
+            return null;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer  idx = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (idx.capacity() < HEADER_SIZE || idx.getInt(0) != MAGIC || idx.getInt(4) != VERSION
+                || idx.getLong(8) != keyRing.length() || idx.getLong(16) != keyRing.lastModified()
+                || !isComplete(idx, keyRing.length()))
+            {
+                return null;
+            }
+
+            // checked last, as it needs the key ring file to be read
+            if (idx.getLong(24) != contentHash(keyRing))
+            {
+                return null;
+            }
+
+            return idx;
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * Check the table sizes in the header account for the whole index, and the last ring, if
+     * there is one, ends at the end of the key ring file. A file holding only packets outside
+     * of any ring, such as markers, is indexed as having no rings.
+     */
+    private static boolean isComplete(
+        ByteBuffer  idx,
+        long        fileLength)
+    {
+        long size = HEADER_SIZE;
+        int  ringCount = idx.getInt(32);
+
+        for (int i = 32; i != HEADER_SIZE; i += 4)
+        {
+            int count = idx.getInt(i);
+
+            if (count < 0)
+            {
+                return false;
+            }
+
+            size += (long)count * ((i == 32) ? RING_ENTRY_SIZE : ENTRY_SIZE);
+        }
+
+        if (size != idx.capacity())
+        {
+            return false;
+        }
+
+        if (ringCount == 0)
+        {
+            return true;
+        }
+
+        int entry = HEADER_SIZE + (ringCount - 1) * RING_ENTRY_SIZE;
+
+        return idx.getLong(entry) + idx.getInt(entry + 8) == fileLength;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the first and last blocks of the key ring file, to catch a file
+     * rewritten with the same length within the resolution of its modification time.
+     */
+    private static long contentHash(
+        File    keyRing)
+        throws IOException
+    {
+        RandomAccessFile raf = new RandomAccessFile(keyRing, "r");
+
+        try
+        {
+            long   length = raf.length();
+            byte[] block = new byte[(int)Math.min(length, CHECK_BLOCK_SIZE)];
+
+            raf.readFully(block);
+
+            long hash = fnv1a(FNV_OFFSET_BASIS, block, block.length);
+
+            if (length > CHECK_BLOCK_SIZE)
+            {
+                raf.seek(length - block.length);
+                raf.readFully(block);
+
+                hash = fnv1a(hash, block, block.length);
+            }
+
+            return hash;
+        }
+        finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * Scan the key ring file, writing an index of where each ring starts and what it contains.
+     */
+    private static void buildIndex(
+        File                     keyRing,
+        File                     indexFile,
+        KeyFingerPrintCalculator fingerPrintCalculator)
+        throws IOException, PGPException
+    {
+        long fileLength = keyRing.length();
+        long lastModified = keyRing.lastModified();
+        long contentHash = contentHash(keyRing);
+
+        List ringOffsets = new ArrayList();
+        List keyIDs = new ArrayList();
+        List fingerprints = new ArrayList();
+        List userIDs = new ArrayList();
+
+        CountingInputStream cIn = new CountingInputStream(new BufferedInputStream(new FileInputStream(keyRing)));
+        BCPGInputStream     pIn = new BCPGInputStream(cIn);
+
+        try
+        {
+            int tag;
+
+            while ((tag = pIn.nextPacketTag()) >= 0)
+            {
+                // the tag byte has been read ahead
+                long   position = cIn.getCount() - 1;
+                Packet packet = pIn.readPacket();
+                int    ringNo = ringOffsets.size() - 1;
+
+                switch (tag)
+                {
+                case PacketTags.PUBLIC_KEY:
+                case PacketTags.PUBLIC_SUBKEY:
+                    if (tag == PacketTags.PUBLIC_KEY)
+                    {
+                        ringOffsets.add(new Long(position));
+                        ringNo++;
+                    }
+                    else if (ringNo < 0)
+                    {
+                        throw new IOException("public key ring doesn't start with public key tag");
+                    }
+
+                    PGPPublicKey key = new PGPPublicKey((PublicKeyPacket)packet, fingerPrintCalculator);
+
+                    keyIDs.add(new Entry(key.getKeyID(), ringNo));
+                    fingerprints.add(new Entry(fingerprintPrefix(key.getFingerprint()), ringNo));
+                    break;
+                case PacketTags.USER_ID:
+                    if (ringNo >= 0)
+                    {
+                        userIDs.add(new Entry(userIDHash(((UserIDPacket)packet).getID()), ringNo));
+                    }
+                    break;
+                case PacketTags.SECRET_KEY:
+                case PacketTags.SECRET_SUBKEY:
+                    throw new PGPException("secret key found in public key ring file");
+                default:
+                    // signatures, trust packets, user attributes and markers
+                    break;
+                }
+            }
+        }
+        finally
+        {
+            pIn.close();
+        }
+
+        if (cIn.getCount() != fileLength)
+        {
+            throw new IOException("key ring file changed while being indexed");
+        }
+
+        Collections.sort(keyIDs, Entry.COMPARATOR);
+        Collections.sort(fingerprints, Entry.COMPARATOR);
+        Collections.sort(userIDs, Entry.COMPARATOR);
+
+        // written to a temporary file and renamed, so a partly written index is never seen
+        File             tmpFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getAbsoluteFile().getParentFile());
+        DataOutputStream dOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        boolean          written = false;
+
+        try
+        {
+            dOut.writeInt(MAGIC);
+            dOut.writeInt(VERSION);
+            dOut.writeLong(fileLength);
+            dOut.writeLong(lastModified);
+            dOut.writeLong(contentHash);
+            dOut.writeInt(ringOffsets.size());
+            dOut.writeInt(keyIDs.size());
+            dOut.writeInt(fingerprints.size());
+            dOut.writeInt(userIDs.size());
+
+            for (int i = 0; i != ringOffsets.size(); i++)
+            {
+                long start = ((Long)ringOffsets.get(i)).longValue();
+                long end = (i + 1 < ringOffsets.size()) ? ((Long)ringOffsets.get(i + 1)).longValue() : fileLength;
+
+                if (end - start > Integer.MAX_VALUE)
+                {
+                    throw new IOException("key ring too large to index");
+                }
+
+                dOut.writeLong(start);
+                dOut.writeInt((int)(end - start));
+            }
+
+            writeEntries(dOut, keyIDs);
+            writeEntries(dOut, fingerprints);
+            writeEntries(dOut, userIDs);
+
+            dOut.close();
+
+            // renameTo() will not replace an existing file on some platforms
+            if (!tmpFile.renameTo(indexFile) && !(indexFile.delete() && tmpFile.renameTo(indexFile)))
+            {
+                throw new IOException("unable to replace index file: " + indexFile);
+            }
+
+            written = true;
+        }
+        finally
+        {
+            if (!written)
+            {
+                dOut.close();
+                tmpFile.delete();
+            }
+        }
+    }
+
+    private static void writeEntries(
+        DataOutputStream dOut,
+        List             entries)
+        throws IOException
+    {
+        for (int i = 0; i != entries.size(); i++)
+        {
+            Entry entry = (Entry)entries.get(i);
+
+            dOut.writeLong(entry.value);
+            dOut.writeInt(entry.ringNo);
+        }
+    }
+
+    private static long fingerprintPrefix(
+        byte[]  fingerprint)
+    {
+        long prefix = 0;
+
+        for (int i = 0; i != 8; i++)
+        {
+            prefix = (prefix << 8) | (fingerprint[i] & 0xff);
+        }
+
+        return prefix;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the UTF-8 encoding of a user ID in lower case.
+     */
+    private static long userIDHash(
+        String  userID)
+    {
+        byte[] bytes = Strings.toUTF8ByteArray(Strings.toLowerCase(userID));
+
+        return fnv1a(FNV_OFFSET_BASIS, bytes, bytes.length);
+    }
+
+    private static long fnv1a(
+        long    hash,
+        byte[]  bytes,
+        int     len)
+    {
+        for (int i = 0; i != len; i++)
+        {
+            hash ^= bytes[i] & 0xff;
+            hash *= 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    private static class Entry
+    {
+        static final Comparator COMPARATOR = new Comparator()
+        {
+            public int compare(Object o1, Object o2)
+            {
+                Entry e1 = (Entry)o1;
+                Entry e2 = (Entry)o2;
+
+                if (e1.value != e2.value)
+                {
+                    return (e1.value < e2.value) ? -1 : 1;
+                }
+
+                return e1.ringNo - e2.ringNo;
+            }
+        };
+
+        final long value;
+        final int  ringNo;
+
+        Entry(long value, int ringNo)
+        {
+            this.value = value;
+            this.ringNo = ringNo;
+        }
+    }
+
+    private static class CountingInputStream
+        extends FilterInputStream
+    {
+        private long count;
+
+        CountingInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        public int read()
+            throws IOException
+        {
+            int b = in.read();
+
+            if (b >= 0)
+            {
+                count++;
+            }
+
+            return b;
+        }
+
+        public int read(byte[] buf, int off, int len)
+            throws IOException
+        {
+            int n = in.read(buf, off, len);
+
+            if (n > 0)
+            {
+                count += n;
+            }
+
+            return n;
+        }
+
+        public long skip(long n)
+            throws IOException
+        {
+            long skipped = in.skip(n);
+
+            count += skipped;
+
+            return skipped;
+        }
+
+        public boolean markSupported()
+        {
+            return false;
+        }
+
+        long getCount()
+        {
+            return count;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.spongycastle.openpgp;
 
 import org.spongycastle.bcpg.BCPGOutputStream;
+import org.spongycastle.util.Arrays;
 import org.spongycastle.util.Strings;
 
 import java.io.ByteArrayInputStream;
@@ -23,13 +24,16 @@ public class PGPSecretKeyRingCollection
 {
     private Map    secretRings = new HashMap();
     private List   order = new ArrayList();
+    private KeyRingIndex index = new KeyRingIndex();
     
     private PGPSecretKeyRingCollection(
-        Map     secretRings,
-        List    order)
+        Map             secretRings,
+        List            order,
+        KeyRingIndex    index)
     {
         this.secretRings = secretRings;
         this.order = order;
+        this.index = index;
     }
     
     public PGPSecretKeyRingCollection(
@@ -63,7 +67,7 @@ public class PGPSecretKeyRingCollection
             PGPSecretKeyRing    pgpSecret = (PGPSecretKeyRing)obj;
             Long                key = new Long(pgpSecret.getPublicKey().getKeyID());
             
-            secretRings.put(key, pgpSecret);
+            addToIndex(secretRings, index, key, pgpSecret);
             order.add(key);
         }
     }
@@ -79,7 +83,7 @@ public class PGPSecretKeyRingCollection
             PGPSecretKeyRing    pgpSecret = (PGPSecretKeyRing)it.next();
             Long                key = new Long(pgpSecret.getPublicKey().getKeyID());
             
-            secretRings.put(key, pgpSecret);
+            addToIndex(secretRings, index, key, pgpSecret);
             order.add(key);
         }
     }
@@ -136,6 +140,7 @@ public class PGPSecretKeyRingCollection
     /**
      * Return an iterator of the key rings associated with the passed in userID.
      * <p>
+     * Exact matches are looked up in an index, partial matches require a scan of every ring.
      * 
      * @param userID the user ID to be matched.
      * @param matchPartial if true userID need only be a substring of an actual ID string to match.
@@ -149,6 +154,11 @@ public class PGPSecretKeyRingCollection
         boolean   ignoreCase) 
         throws PGPException
     {
+        if (!matchPartial)
+        {
+            return getRings(index.getRingsForUserID(userID, ignoreCase));
+        }
+
         Iterator    it = this.getKeyRings();
         List        rings = new ArrayList();
 
@@ -190,6 +200,19 @@ public class PGPSecretKeyRingCollection
         return rings.iterator();
     }
 
+    /**
+     * Return an iterator of the key rings with a user ID containing the passed in email
+     * address, either in angle brackets or as the whole user ID. Case is ignored.
+     *
+     * @param email the email address to be matched.
+     * @return an iterator (possibly empty) of key rings which matched.
+     */
+    public Iterator getKeyRingsByEmail(
+        String    email)
+    {
+        return getRings(index.getRingsForEmail(email));
+    }
+
     /**
      * Return the PGP secret key associated with the given key id.
      * 
@@ -201,19 +224,42 @@ public class PGPSecretKeyRingCollection
         long        keyID) 
         throws PGPException
     {    
-        Iterator    it = this.getKeyRings();
+        Long    ringID = index.getRingForKeyID(keyID);
         
-        while (it.hasNext())
+        if (ringID != null)
         {
-            PGPSecretKeyRing    secRing = (PGPSecretKeyRing)it.next();
-            PGPSecretKey        sec = secRing.getSecretKey(keyID);
-            
-            if (sec != null)
+            return ((PGPSecretKeyRing)secretRings.get(ringID)).getSecretKey(keyID);
+        }
+    
+        return null;
+    }
+
+    /**
+     * Return the PGP secret key with the given fingerprint.
+     *
+     * @param fingerprint the fingerprint of the key's public key.
+     * @return the secret key, or null if it is not present.
+     */
+    public PGPSecretKey getSecretKey(
+        byte[]      fingerprint)
+    {
+        Long    ringID = index.getRingForFingerprint(fingerprint);
+
+        if (ringID != null)
+        {
+            Iterator    it = ((PGPSecretKeyRing)secretRings.get(ringID)).getSecretKeys();
+
+            while (it.hasNext())
             {
-                return sec;
+                PGPSecretKey    sec = (PGPSecretKey)it.next();
+
+                if (Arrays.areEqual(fingerprint, sec.getPublicKey().getFingerprint()))
+                {
+                    return sec;
+                }
             }
         }
-    
+
         return null;
     }
     
@@ -235,17 +281,11 @@ public class PGPSecretKeyRingCollection
             return (PGPSecretKeyRing)secretRings.get(id);
         }
         
-        Iterator    it = this.getKeyRings();
+        Long    ringID = index.getRingForKeyID(keyID);
         
-        while (it.hasNext())
+        if (ringID != null)
         {
-            PGPSecretKeyRing    secretRing = (PGPSecretKeyRing)it.next();
-            PGPSecretKey        secret = secretRing.getSecretKey(keyID);
-            
-            if (secret != null)
-            {
-                return secretRing;
-            }
+            return (PGPSecretKeyRing)secretRings.get(ringID);
         }
     
         return null;
@@ -317,13 +357,14 @@ public class PGPSecretKeyRingCollection
             throw new IllegalArgumentException("Collection already contains a key with a keyID for the passed in ring.");
         }
         
-        Map     newSecretRings = new HashMap(ringCollection.secretRings);
-        List    newOrder = new ArrayList(ringCollection.order); 
+        Map             newSecretRings = new HashMap(ringCollection.secretRings);
+        List            newOrder = new ArrayList(ringCollection.order); 
+        KeyRingIndex    newIndex = ringCollection.index.copy();
         
-        newSecretRings.put(key, secretKeyRing);
+        addToIndex(newSecretRings, newIndex, key, secretKeyRing);
         newOrder.add(key);
         
-        return new PGPSecretKeyRingCollection(newSecretRings, newOrder);
+        return new PGPSecretKeyRingCollection(newSecretRings, newOrder, newIndex);
     }
     
     /**
@@ -346,10 +387,11 @@ public class PGPSecretKeyRingCollection
             throw new IllegalArgumentException("Collection does not contain a key with a keyID for the passed in ring.");
         }
         
-        Map     newSecretRings = new HashMap(ringCollection.secretRings);
-        List    newOrder = new ArrayList(ringCollection.order); 
+        Map             newSecretRings = new HashMap(ringCollection.secretRings);
+        List            newOrder = new ArrayList(ringCollection.order); 
+        KeyRingIndex    newIndex = ringCollection.index.copy();
         
-        newSecretRings.remove(key);
+        removeFromIndex(newSecretRings, newIndex, key);
         
         for (int i = 0; i < newOrder.size(); i++)
         {
@@ -362,6 +404,62 @@ public class PGPSecretKeyRingCollection
             }
         }
         
-        return new PGPSecretKeyRingCollection(newSecretRings, newOrder);
+        return new PGPSecretKeyRingCollection(newSecretRings, newOrder, newIndex);
+    }
+
+    private Iterator getRings(
+        List    ringIDs)
+    {
+        List    rings = new ArrayList(ringIDs.size());
+
+        for (int i = 0; i != ringIDs.size(); i++)
+        {
+            rings.add(secretRings.get(ringIDs.get(i)));
+        }
+
+        return rings.iterator();
+    }
+
+    private static void addToIndex(
+        Map                 secretRings,
+        KeyRingIndex        index,
+        Long                key,
+        PGPSecretKeyRing    secretRing)
+    {
+        removeFromIndex(secretRings, index, key);
+
+        secretRings.put(key, secretRing);
+        index.add(key, getSecretPublicKeys(secretRing), secretRing.getPublicKey().getUserIDs());
+    }
+
+    private static void removeFromIndex(
+        Map             secretRings,
+        KeyRingIndex    index,
+        Long            key)
+    {
+        PGPSecretKeyRing    secretRing = (PGPSecretKeyRing)secretRings.remove(key);
+
+        if (secretRing != null)
+        {
+            index.remove(key, getSecretPublicKeys(secretRing), secretRing.getPublicKey().getUserIDs());
+        }
+    }
+
+    /**
+     * Return the public keys of the secret keys in a ring - only keys which have a secret
+     * part are indexed, as they are the only ones getSecretKey() can return.
+     */
+    private static Iterator getSecretPublicKeys(
+        PGPSecretKeyRing    secretRing)
+    {
+        List        keys = new ArrayList();
+        Iterator    it = secretRing.getSecretKeys();
+
+        while (it.hasNext())
+        {
+            keys.add(((PGPSecretKey)it.next()).getPublicKey());
+        }
+
+        return keys.iterator();
     }
 }
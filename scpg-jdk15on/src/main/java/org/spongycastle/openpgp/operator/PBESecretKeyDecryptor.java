@@ -7,11 +7,26 @@ public abstract class PBESecretKeyDecryptor
 {
     private char[] passPhrase;
     private PGPDigestCalculatorProvider calculatorProvider;
+    private S2KKeyCache keyCache;
 
     protected PBESecretKeyDecryptor(char[] passPhrase, PGPDigestCalculatorProvider calculatorProvider)
+    {
+        this(passPhrase, calculatorProvider, null);
+    }
+
+    /**
+     * Base constructor for a decryptor which looks in keyCache for keys it has already
+     * derived from the pass phrase, and adds the keys it derives to it.
+     *
+     * @param passPhrase the pass phrase protecting the secret keys.
+     * @param calculatorProvider provider of the digests used for key derivation.
+     * @param keyCache cache to use, or null if keys should always be derived.
+     */
+    protected PBESecretKeyDecryptor(char[] passPhrase, PGPDigestCalculatorProvider calculatorProvider, S2KKeyCache keyCache)
     {
         this.passPhrase = passPhrase;
         this.calculatorProvider = calculatorProvider;
+        this.keyCache = keyCache;
     }
 
     public PGPDigestCalculator getChecksumCalculator(int hashAlgorithm)
@@ -23,7 +38,22 @@ public abstract class PBESecretKeyDecryptor
     public byte[] makeKeyFromPassPhrase(int keyAlgorithm, S2K s2k)
         throws PGPException
     {
-        return PGPUtil.makeKeyFromPassPhrase(calculatorProvider, keyAlgorithm, s2k, passPhrase);
+        if (keyCache == null)
+        {
+            return PGPUtil.makeKeyFromPassPhrase(calculatorProvider, keyAlgorithm, s2k, passPhrase);
+        }
+
+        byte[] passPhraseHash = PGPUtil.hashPassPhrase(calculatorProvider, passPhrase);
+        byte[] key = keyCache.get(keyAlgorithm, s2k, passPhraseHash);
+
+        if (key == null)
+        {
+            key = PGPUtil.makeKeyFromPassPhrase(calculatorProvider, keyAlgorithm, s2k, passPhrase);
+
+            keyCache.put(keyAlgorithm, s2k, passPhraseHash, key);
+        }
+
+        return key;
     }
 
     public abstract byte[] recoverKeyData(int encAlgorithm, byte[] key, byte[] iv, byte[] keyData, int keyOff, int keyLen)
@@ -14,6 +14,8 @@ import org.spongycastle.openpgp.PGPException;
 class PGPUtil
     implements HashAlgorithmTags
 {
+    private static final int ITERATED_CHUNK_SIZE = 64 * 1024;
+
     static byte[] makeKeyFromPassPhrase(
         PGPDigestCalculator digestCalculator,
         int     algorithm,
@@ -122,36 +124,7 @@ class PGPUtil
                         dOut.write(pBytes);
                         break;
                     case S2K.SALTED_AND_ITERATED:
-                        long    count = s2k.getIterationCount();
-                        dOut.write(iv);
-                        dOut.write(pBytes);
-
-                        count -= iv.length + pBytes.length;
-
-                        while (count > 0)
-                        {
-                            if (count < iv.length)
-                            {
-                                dOut.write(iv, 0, (int)count);
-                                break;
-                            }
-                            else
-                            {
-                                dOut.write(iv);
-                                count -= iv.length;
-                            }
-
-                            if (count < pBytes.length)
-                            {
-                                dOut.write(pBytes, 0, (int)count);
-                                count = 0;
-                            }
-                            else
-                            {
-                                dOut.write(pBytes);
-                                count -= pBytes.length;
-                            }
-                        }
+                        writeIterated(dOut, iv, pBytes, s2k.getIterationCount());
                         break;
                     default:
                         throw new PGPException("unknown S2K type: " + s2k.getType());
@@ -198,6 +171,82 @@ class PGPUtil
         return keyBytes;
     }
 
+    /**
+     * Write count bytes of the salt and pass phrase repeated, or the pair once if count is
+     * shorter. Rather than writing the salt and pass phrase separately each time round,
+     * which can mean millions of small writes, a buffer is filled with as many copies of the
+     * pair as fit in ITERATED_CHUNK_SIZE bytes and written in one go.
+     */
+    private static void writeIterated(
+        OutputStream dOut,
+        byte[]       iv,
+        byte[]       pBytes,
+        long         count)
+        throws IOException
+    {
+        int     unitLen = iv.length + pBytes.length;
+        byte[]  buf = new byte[Math.max(1, ITERATED_CHUNK_SIZE / unitLen) * unitLen];
+
+        for (int off = 0; off != buf.length; off += unitLen)
+        {
+            System.arraycopy(iv, 0, buf, off, iv.length);
+            System.arraycopy(pBytes, 0, buf, off + iv.length, pBytes.length);
+        }
+
+        try
+        {
+            count = Math.max(count, unitLen);
+
+            // each full write ends on a copy boundary, so the next starts with the salt
+            while (count >= buf.length)
+            {
+                dOut.write(buf, 0, buf.length);
+                count -= buf.length;
+            }
+
+            if (count > 0)
+            {
+                dOut.write(buf, 0, (int)count);
+            }
+        }
+        finally
+        {
+            for (int i = 0; i != buf.length; i++)
+            {
+                buf[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Return a hash of the bytes a pass phrase is turned into for S2K, so keys derived from
+     * it can be cached without keeping the pass phrase itself.
+     */
+    static byte[] hashPassPhrase(
+        PGPDigestCalculatorProvider digCalcProvider,
+        char[]  passPhrase)
+        throws PGPException
+    {
+        PGPDigestCalculator digestCalculator = digCalcProvider.get(HashAlgorithmTags.SHA256);
+        OutputStream        dOut = digestCalculator.getOutputStream();
+
+        try
+        {
+            for (int i = 0; i != passPhrase.length; i++)
+            {
+                dOut.write((byte)passPhrase[i]);
+            }
+
+            dOut.close();
+        }
+        catch (IOException e)
+        {
+            throw new PGPException("exception calculating digest: " + e.getMessage(), e);
+        }
+
+        return digestCalculator.getDigest();
+    }
+
     public static byte[] makeKeyFromPassPhrase(
         PGPDigestCalculatorProvider digCalcProvider,
         int     algorithm,
@@ -0,0 +1,136 @@
+package org.spongycastle.openpgp.operator;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.spongycastle.bcpg.S2K;
+import org.spongycastle.util.Arrays;
+
+/**
+ * A bounded cache of keys derived from pass phrases, for use when many secret keys
+ * protected with the same pass phrase and S2K parameters are unlocked, as each
+ * derivation with a high iteration count can be expensive.
+ * <p>
+ * Entries are looked up by the S2K parameters, the key algorithm and a hash of the pass
+ * phrase - the pass phrase itself is not kept. Once the cache is full the least recently
+ * used entry is dropped. A cache can be shared between threads, but as it holds derived
+ * keys it should be cleared when no longer needed.
+ */
+public class S2KKeyCache
+{
+    private final Map entries;
+
+    /**
+     * Create a cache holding at most maxEntries keys.
+     *
+     * @param maxEntries the maximum number of keys to hold.
+     */
+    public S2KKeyCache(final int maxEntries)
+    {
+        if (maxEntries < 1)
+        {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+
+        this.entries = new LinkedHashMap(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry eldest)
+            {
+                if (size() > maxEntries)
+                {
+                    Arrays.fill((byte[])eldest.getValue(), (byte)0);
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the number of keys held.
+     */
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Remove, and clear, all the keys held.
+     */
+    public synchronized void clear()
+    {
+        for (Iterator it = entries.values().iterator(); it.hasNext();)
+        {
+            Arrays.fill((byte[])it.next(), (byte)0);
+        }
+
+        entries.clear();
+    }
+
+    synchronized byte[] get(int keyAlgorithm, S2K s2k, byte[] passPhraseHash)
+    {
+        byte[] key = (byte[])entries.get(new Entry(keyAlgorithm, s2k, passPhraseHash));
+
+        return (key != null) ? Arrays.clone(key) : null;
+    }
+
+    synchronized void put(int keyAlgorithm, S2K s2k, byte[] passPhraseHash, byte[] key)
+    {
+        entries.put(new Entry(keyAlgorithm, s2k, passPhraseHash), Arrays.clone(key));
+    }
+
+    private static class Entry
+    {
+        private final int keyAlgorithm;
+        private final int type;
+        private final int hashAlgorithm;
+        private final long iterationCount;
+        private final byte[] iv;
+        private final byte[] passPhraseHash;
+
+        Entry(int keyAlgorithm, S2K s2k, byte[] passPhraseHash)
+        {
+            this.keyAlgorithm = keyAlgorithm;
+            this.passPhraseHash = passPhraseHash;
+
+            if (s2k != null)
+            {
+                this.type = s2k.getType();
+                this.hashAlgorithm = s2k.getHashAlgorithm();
+                this.iterationCount = (type == S2K.SALTED_AND_ITERATED) ? s2k.getIterationCount() : 0;
+                this.iv = s2k.getIV();
+            }
+            else
+            {
+                this.type = -1;
+                this.hashAlgorithm = -1;
+                this.iterationCount = 0;
+                this.iv = null;
+            }
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Entry))
+            {
+                return false;
+            }
+
+            Entry other = (Entry)o;
+
+            return keyAlgorithm == other.keyAlgorithm
+                && type == other.type
+                && hashAlgorithm == other.hashAlgorithm
+                && iterationCount == other.iterationCount
+                && Arrays.areEqual(iv, other.iv)
+                && Arrays.areEqual(passPhraseHash, other.passPhraseHash);
+        }
+
+        public int hashCode()
+        {
+            return Arrays.hashCode(passPhraseHash) ^ Arrays.hashCode(iv) ^ (keyAlgorithm << 16) ^ (type << 8) ^ hashAlgorithm;
+        }
+    }
+}
@@ -5,19 +5,36 @@ import org.spongycastle.crypto.InvalidCipherTextException;
 import org.spongycastle.openpgp.PGPException;
 import org.spongycastle.openpgp.operator.PBESecretKeyDecryptor;
 import org.spongycastle.openpgp.operator.PGPDigestCalculatorProvider;
+import org.spongycastle.openpgp.operator.S2KKeyCache;
 
 public class BcPBESecretKeyDecryptorBuilder
 {
     private PGPDigestCalculatorProvider calculatorProvider;
+    private S2KKeyCache keyCache;
 
     public BcPBESecretKeyDecryptorBuilder(PGPDigestCalculatorProvider calculatorProvider)
     {
         this.calculatorProvider = calculatorProvider;
     }
 
+    /**
+     * Set a cache for the decryptors built to keep the keys they derive from their pass
+     * phrase in, so that unlocking several secret keys with the same pass phrase and S2K
+     * parameters only runs the S2K once.
+     *
+     * @param keyCache the cache to use, or null for none.
+     * @return the current builder.
+     */
+    public BcPBESecretKeyDecryptorBuilder setKeyCache(S2KKeyCache keyCache)
+    {
+        this.keyCache = keyCache;
+
+        return this;
+    }
+
     public PBESecretKeyDecryptor build(char[] passPhrase)
     {
-        return new PBESecretKeyDecryptor(passPhrase, calculatorProvider)
+        return new PBESecretKeyDecryptor(passPhrase, calculatorProvider, keyCache)
         {
             public byte[] recoverKeyData(int encAlgorithm, byte[] key, byte[] iv, byte[] keyData, int keyOff, int keyLen)
                 throws PGPException
@@ -15,11 +15,13 @@ import org.spongycastle.jcajce.ProviderJcaJceHelper;
 import org.spongycastle.openpgp.PGPException;
 import org.spongycastle.openpgp.operator.PBESecretKeyDecryptor;
 import org.spongycastle.openpgp.operator.PGPDigestCalculatorProvider;
+import org.spongycastle.openpgp.operator.S2KKeyCache;
 
 public class JcePBESecretKeyDecryptorBuilder
 {
     private OperatorHelper helper = new OperatorHelper(new DefaultJcaJceHelper());
     private PGPDigestCalculatorProvider calculatorProvider;
+    private S2KKeyCache keyCache;
 
     private JcaPGPDigestCalculatorProviderBuilder calculatorProviderBuilder;
 
@@ -57,6 +59,21 @@ public class JcePBESecretKeyDecryptorBuilder
         return this;
     }
 
+    /**
+     * Set a cache for the decryptors built to keep the keys they derive from their pass
+     * phrase in, so that unlocking several secret keys with the same pass phrase and S2K
+     * parameters only runs the S2K once.
+     *
+     * @param keyCache the cache to use, or null for none.
+     * @return the current builder.
+     */
+    public JcePBESecretKeyDecryptorBuilder setKeyCache(S2KKeyCache keyCache)
+    {
+        this.keyCache = keyCache;
+
+        return this;
+    }
+
     public PBESecretKeyDecryptor build(char[] passPhrase)
         throws PGPException
     {
@@ -65,7 +82,7 @@ public class JcePBESecretKeyDecryptorBuilder
             calculatorProvider = calculatorProviderBuilder.build();
         }
 
-        return new PBESecretKeyDecryptor(passPhrase, calculatorProvider)
+        return new PBESecretKeyDecryptor(passPhrase, calculatorProvider, keyCache)
         {
             public byte[] recoverKeyData(int encAlgorithm, byte[] key, byte[] iv, byte[] keyData, int keyOff, int keyLen)
                 throws PGPException
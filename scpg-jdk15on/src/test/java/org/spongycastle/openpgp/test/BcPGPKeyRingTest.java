@@ -9,6 +9,10 @@ import java.security.Security;
 import java.util.Date;
 import java.util.Iterator;
 
+import org.spongycastle.bcpg.HashAlgorithmTags;
+import org.spongycastle.bcpg.S2K;
+import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.digests.SHA1Digest;
 import org.spongycastle.jce.provider.BouncyCastleProvider;
 import org.spongycastle.jce.spec.ElGamalParameterSpec;
 import org.spongycastle.openpgp.PGPEncryptedData;
@@ -23,10 +27,13 @@ import org.spongycastle.openpgp.PGPSecretKey;
 import org.spongycastle.openpgp.PGPSecretKeyRing;
 import org.spongycastle.openpgp.PGPSecretKeyRingCollection;
 import org.spongycastle.openpgp.PGPSignature;
+import org.spongycastle.openpgp.operator.PBESecretKeyDecryptor;
+import org.spongycastle.openpgp.operator.S2KKeyCache;
 import org.spongycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
 import org.spongycastle.openpgp.operator.bc.BcPBESecretKeyDecryptorBuilder;
 import org.spongycastle.openpgp.operator.bc.BcPGPContentVerifierBuilderProvider;
 import org.spongycastle.openpgp.operator.bc.BcPGPDigestCalculatorProvider;
+import org.spongycastle.util.Arrays;
 import org.spongycastle.util.encoders.Base64;
 import org.spongycastle.util.encoders.Hex;
 import org.spongycastle.util.test.SimpleTest;
@@ -2249,6 +2256,289 @@ public class BcPGPKeyRingTest
         }
     }
 
+    private void testIndexedLookup()
+        throws Exception
+    {
+        PGPPublicKeyRingCollection pubRings = new PGPPublicKeyRingCollection(pub1);
+
+        pubRings = PGPPublicKeyRingCollection.addPublicKeyRing(pubRings, new PGPPublicKeyRing(pub2, new BcKeyFingerprintCalculator()));
+
+        PGPPublicKeyRingCollection fullRings = pubRings;
+        PGPPublicKeyRing           lastRing = null;
+
+        for (Iterator rIt = pubRings.getKeyRings(); rIt.hasNext();)
+        {
+            PGPPublicKeyRing ring = (PGPPublicKeyRing)rIt.next();
+            int              keyCount = 0;
+
+            for (Iterator it = ring.getPublicKeys(); it.hasNext();)
+            {
+                PGPPublicKey pub = (PGPPublicKey)it.next();
+
+                if (pubRings.getPublicKey(pub.getKeyID()) != pub)
+                {
+                    fail("key ID lookup failed");
+                }
+                if (pubRings.getPublicKeyRing(pub.getKeyID()) != ring)
+                {
+                    fail("key ring lookup by key ID failed");
+                }
+                if (pubRings.getPublicKey(pub.getFingerprint()) != pub)
+                {
+                    fail("fingerprint lookup failed");
+                }
+                keyCount++;
+            }
+
+            if (keyCount < 2)
+            {
+                fail("test ring has no sub keys");
+            }
+
+            String userID = (String)ring.getPublicKey().getUserIDs().next();
+
+            if (!contains(pubRings.getKeyRings(userID), ring))
+            {
+                fail("user ID lookup failed");
+            }
+            if (!contains(pubRings.getKeyRings(userID.toUpperCase(), false, true), ring))
+            {
+                fail("case folded user ID lookup failed");
+            }
+            if (contains(pubRings.getKeyRings(userID.toUpperCase()), ring) && !userID.equals(userID.toUpperCase()))
+            {
+                fail("user ID lookup ignored case");
+            }
+
+            int start = userID.indexOf('<');
+            if (start >= 0)
+            {
+                String email = userID.substring(start + 1, userID.indexOf('>', start));
+
+                if (!contains(pubRings.getKeyRingsByEmail(email.toUpperCase()), ring))
+                {
+                    fail("email lookup failed");
+                }
+            }
+
+            lastRing = ring;
+        }
+
+        if (pubRings.getPublicKey(new byte[20]) != null || pubRings.getPublicKey(0x1234L) != null)
+        {
+            fail("lookup found missing key");
+        }
+
+        pubRings = PGPPublicKeyRingCollection.removePublicKeyRing(pubRings, lastRing);
+
+        for (Iterator it = lastRing.getPublicKeys(); it.hasNext();)
+        {
+            PGPPublicKey pub = (PGPPublicKey)it.next();
+
+            if (pubRings.getPublicKey(pub.getKeyID()) != null || pubRings.getPublicKey(pub.getFingerprint()) != null
+                || pubRings.getPublicKeyRing(pub.getKeyID()) != null)
+            {
+                fail("removed key still found");
+            }
+            if (fullRings.getPublicKey(pub.getKeyID()) != pub)
+            {
+                fail("removal changed original collection");
+            }
+        }
+
+        if (pubRings.getKeyRings((String)lastRing.getPublicKey().getUserIDs().next()).hasNext())
+        {
+            fail("removed ring found by user ID");
+        }
+
+        PGPSecretKeyRingCollection secRings = new PGPSecretKeyRingCollection(sec1);
+
+        for (Iterator rIt = secRings.getKeyRings(); rIt.hasNext();)
+        {
+            PGPSecretKeyRing ring = (PGPSecretKeyRing)rIt.next();
+
+            for (Iterator it = ring.getSecretKeys(); it.hasNext();)
+            {
+                PGPSecretKey sec = (PGPSecretKey)it.next();
+
+                if (secRings.getSecretKey(sec.getKeyID()) != sec)
+                {
+                    fail("secret key ID lookup failed");
+                }
+                if (secRings.getSecretKeyRing(sec.getKeyID()) != ring)
+                {
+                    fail("secret key ring lookup by key ID failed");
+                }
+                if (secRings.getSecretKey(sec.getPublicKey().getFingerprint()) != sec)
+                {
+                    fail("secret fingerprint lookup failed");
+                }
+            }
+
+            String userID = (String)ring.getSecretKey().getUserIDs().next();
+
+            if (!contains(secRings.getKeyRings(userID.toLowerCase(), false, true), ring))
+            {
+                fail("secret user ID lookup failed");
+            }
+
+            secRings = PGPSecretKeyRingCollection.removeSecretKeyRing(secRings, ring);
+
+            if (secRings.getSecretKey(ring.getSecretKey().getKeyID()) != null || secRings.getKeyRings(userID).hasNext())
+            {
+                fail("removed secret key still found");
+            }
+
+            secRings = PGPSecretKeyRingCollection.addSecretKeyRing(secRings, ring);
+
+            if (secRings.getSecretKey(ring.getSecretKey().getKeyID()) != ring.getSecretKey())
+            {
+                fail("re-added secret key not found");
+            }
+        }
+    }
+
+    private void testIteratedS2K()
+        throws Exception
+    {
+        PBESecretKeyDecryptor decryptor;
+        char[]                passPhrase = new char[1100];
+        byte[]                salt = Hex.decode("0102030405060708");
+
+        for (int i = 0; i != passPhrase.length; i++)
+        {
+            passPhrase[i] = (char)('a' + (i % 26));
+        }
+
+        // the pass phrase lengths go past the smallest iteration count of 1024
+        int[] passLens = { 0, 1, 7, 8, 9, 1000, 1016, 1100 };
+        int[] itCounts = { 0x00, 0x01, 0x2f, 0x60 };
+
+        for (int i = 0; i != passLens.length; i++)
+        {
+            char[] pass = new char[passLens[i]];
+
+            System.arraycopy(passPhrase, 0, pass, 0, pass.length);
+
+            decryptor = new BcPBESecretKeyDecryptorBuilder(new BcPGPDigestCalculatorProvider()).build(pass);
+
+            for (int j = 0; j != itCounts.length; j++)
+            {
+                S2K s2k = new S2K(HashAlgorithmTags.SHA1, salt, itCounts[j]);
+
+                // AES-256 needs two digest outputs, the second preloaded with a zero byte
+                byte[] expected = new byte[32];
+                byte[] dig = iteratedDigest(0, salt, pass, s2k.getIterationCount());
+                System.arraycopy(dig, 0, expected, 0, 20);
+                dig = iteratedDigest(1, salt, pass, s2k.getIterationCount());
+                System.arraycopy(dig, 0, expected, 20, 12);
+
+                if (!Arrays.areEqual(expected, decryptor.makeKeyFromPassPhrase(PGPEncryptedData.AES_256, s2k)))
+                {
+                    fail("iterated S2K failed for pass phrase length " + pass.length + " and count " + s2k.getIterationCount());
+                }
+            }
+        }
+    }
+
+    private byte[] iteratedDigest(int zeros, byte[] salt, char[] pass, long count)
+    {
+        Digest digest = new SHA1Digest();
+        byte[] unit = new byte[salt.length + pass.length];
+
+        System.arraycopy(salt, 0, unit, 0, salt.length);
+        for (int i = 0; i != pass.length; i++)
+        {
+            unit[salt.length + i] = (byte)pass[i];
+        }
+
+        for (int i = 0; i != zeros; i++)
+        {
+            digest.update((byte)0);
+        }
+
+        count = Math.max(count, unit.length);
+        for (long i = 0; i != count; i++)
+        {
+            digest.update(unit[(int)(i % unit.length)]);
+        }
+
+        byte[] out = new byte[digest.getDigestSize()];
+        digest.doFinal(out, 0);
+
+        return out;
+    }
+
+    private void testKeyCache()
+        throws Exception
+    {
+        S2KKeyCache      keyCache = new S2KKeyCache(10);
+        PGPSecretKeyRing secRing = new PGPSecretKeyRing(sec8, new BcKeyFingerprintCalculator());
+
+        for (int pass = 0; pass != 2; pass++)
+        {
+            PBESecretKeyDecryptor decryptor = new BcPBESecretKeyDecryptorBuilder(new BcPGPDigestCalculatorProvider())
+                .setKeyCache(keyCache).build(sec8pass);
+
+            for (Iterator it = secRing.getSecretKeys(); it.hasNext();)
+            {
+                PGPSecretKey k = (PGPSecretKey)it.next();
+
+                k.extractPrivateKey(decryptor);
+            }
+
+            if (keyCache.size() != 2)
+            {
+                fail("wrong number of cached keys: " + keyCache.size());
+            }
+        }
+
+        try
+        {
+            secRing.getSecretKey().extractPrivateKey(new BcPBESecretKeyDecryptorBuilder(new BcPGPDigestCalculatorProvider())
+                .setKeyCache(keyCache).build("wrong".toCharArray()));
+            fail("cached key used for wrong pass phrase");
+        }
+        catch (PGPException e)
+        {
+            // expected
+        }
+
+        keyCache.clear();
+        if (keyCache.size() != 0)
+        {
+            fail("cache not cleared");
+        }
+
+        keyCache = new S2KKeyCache(1);
+
+        PBESecretKeyDecryptor decryptor = new BcPBESecretKeyDecryptorBuilder(new BcPGPDigestCalculatorProvider())
+            .setKeyCache(keyCache).build(sec8pass);
+
+        for (Iterator it = secRing.getSecretKeys(); it.hasNext();)
+        {
+            ((PGPSecretKey)it.next()).extractPrivateKey(decryptor);
+        }
+
+        if (keyCache.size() != 1)
+        {
+            fail("cache size limit not enforced");
+        }
+    }
+
+    private boolean contains(Iterator it, Object o)
+    {
+        while (it.hasNext())
+        {
+            if (it.next() == o)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     private void checkSecretKeyRingWithPersonalCertificate(byte[] keyRing)
         throws Exception
     {
@@ -2332,6 +2622,9 @@ public class BcPGPKeyRingTest
             testSecretKeyRingWithPersonalCertificate();
             insertMasterTest();
             testUmlaut();
+            testIndexedLookup();
+            testIteratedS2K();
+            testKeyCache();
         }
         catch (PGPException e)
         {
@@ -2,9 +2,14 @@ package org.spongycastle.openpgp.test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.SecureRandom;
 
 import org.spongycastle.bcpg.ArmoredOutputStream;
 import org.spongycastle.bcpg.ArmoredInputStream;
+import org.spongycastle.bcpg.CRC24;
 import org.spongycastle.util.Arrays;
 import org.spongycastle.util.Strings;
 import org.spongycastle.util.encoders.Base64;
@@ -240,6 +245,185 @@ public class PGPArmoredTest
         }
 
         blankLineTest();
+        crcTest();
+        bulkTest();
+    }
+
+    private byte[] armor(byte[] data, int chunk)
+        throws Exception
+    {
+        ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+        ArmoredOutputStream   aOut = new ArmoredOutputStream(bOut);
+
+        for (int off = 0; off < data.length; off += chunk)
+        {
+            if (chunk == 1)
+            {
+                aOut.write(data[off] & 0xff);
+            }
+            else
+            {
+                aOut.write(data, off, Math.min(chunk, data.length - off));
+            }
+        }
+
+        aOut.close();
+
+        return bOut.toByteArray();
+    }
+
+    private byte[] dearmor(InputStream in, int chunk)
+        throws Exception
+    {
+        ArmoredInputStream    aIn = new ArmoredInputStream(in);
+        ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+        byte[]                buf = new byte[chunk];
+        int                   len;
+
+        if (chunk == 1)
+        {
+            while ((len = aIn.read()) >= 0)
+            {
+                bOut.write(len);
+            }
+        }
+        else
+        {
+            while ((len = aIn.read(buf, 0, buf.length)) >= 0)
+            {
+                bOut.write(buf, 0, len);
+            }
+        }
+
+        return bOut.toByteArray();
+    }
+
+    private void bulkTest()
+        throws Exception
+    {
+        SecureRandom random = new SecureRandom();
+        int[]        sizes = { 1, 2, 3, 4, 47, 48, 49, 50, 1000, 10007 };
+        int[]        chunks = { 1, 2, 5, 7, 48, 100, 4096, 100000 };
+
+        for (int i = 0; i != sizes.length; i++)
+        {
+            byte[] data = new byte[sizes[i]];
+
+            random.nextBytes(data);
+            data[0] = (byte)0x99;    // a public key packet tag, so the header is fixed
+
+            byte[] expected = armor(data, 1);
+
+            for (int j = 0; j != chunks.length; j++)
+            {
+                if (!Arrays.areEqual(expected, armor(data, chunks[j])))
+                {
+                    fail("bulk armor failed for size " + sizes[i] + " chunk " + chunks[j]);
+                }
+            }
+
+            String crLf = Strings.fromByteArray(expected).replaceAll("\r?\n", "\r\n");
+            byte[][] encodings = { expected, Strings.toByteArray(crLf) };
+
+            for (int e = 0; e != encodings.length; e++)
+            {
+                for (int j = 0; j != chunks.length; j++)
+                {
+                    if (!Arrays.areEqual(data, dearmor(new ByteArrayInputStream(encodings[e]), chunks[j])))
+                    {
+                        fail("bulk dearmor failed for size " + sizes[i] + " chunk " + chunks[j]);
+                    }
+
+                    InputStream noMark = new FilterInputStream(new ByteArrayInputStream(encodings[e]))
+                    {
+                        public boolean markSupported()
+                        {
+                            return false;
+                        }
+                    };
+
+                    if (!Arrays.areEqual(data, dearmor(noMark, chunks[j])))
+                    {
+                        fail("dearmor without mark failed for size " + sizes[i] + " chunk " + chunks[j]);
+                    }
+                }
+            }
+        }
+
+        // a corrupted character must still be caught by the checksum
+        byte[] data = new byte[1000];
+        random.nextBytes(data);
+        byte[] encoded = armor(data, 100);
+        int    pos = encoded.length / 2;
+
+        while (encoded[pos] == '\r' || encoded[pos] == '\n')
+        {
+            pos++;
+        }
+
+        encoded[pos] = (byte)((encoded[pos] == 'A') ? 'B' : 'A');
+
+        try
+        {
+            dearmor(new ByteArrayInputStream(encoded), 4096);
+            fail("corrupted armor not detected");
+        }
+        catch (IOException e)
+        {
+            // expected
+        }
+    }
+
+    private void crcTest()
+    {
+        SecureRandom random = new SecureRandom();
+        byte[]       data = new byte[1001];
+
+        random.nextBytes(data);
+
+        for (int len = 0; len != 20; len++)
+        {
+            CRC24 single = new CRC24();
+            CRC24 bulk = new CRC24();
+
+            // reference bit at a time calculation, as specified in RFC 4880
+            int crc = 0xb704ce;
+            for (int i = 0; i != len; i++)
+            {
+                crc ^= (data[i] & 0xff) << 16;
+                for (int j = 0; j < 8; j++)
+                {
+                    crc <<= 1;
+                    if ((crc & 0x1000000) != 0)
+                    {
+                        crc ^= 0x1864cfb;
+                    }
+                }
+                single.update(data[i] & 0xff);
+            }
+
+            bulk.update(data, 0, len / 2);
+            bulk.update(data, len / 2, len - len / 2);
+
+            if (single.getValue() != crc || bulk.getValue() != crc)
+            {
+                fail("CRC24 failed for length " + len);
+            }
+        }
+
+        CRC24 single = new CRC24();
+        CRC24 bulk = new CRC24();
+
+        for (int i = 0; i != data.length; i++)
+        {
+            single.update(data[i] & 0xff);
+        }
+        bulk.update(data, 0, data.length);
+
+        if (single.getValue() != bulk.getValue())
+        {
+            fail("CRC24 bulk update failed");
+        }
     }
 
     public String getName()
@@ -1,5 +1,7 @@
 package org.spongycastle.openpgp.test;
 
+import org.spongycastle.apache.bzip2.CBZip2InputStream;
+import org.spongycastle.apache.bzip2.CBZip2OutputStream;
 import org.spongycastle.jce.provider.BouncyCastleProvider;
 import org.spongycastle.openpgp.PGPCompressedData;
 import org.spongycastle.openpgp.PGPCompressedDataGenerator;
@@ -8,11 +10,15 @@ import org.spongycastle.openpgp.PGPObjectFactory;
 import org.spongycastle.util.test.SimpleTest;
 import org.spongycastle.util.test.UncloseableOutputStream;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.security.Security;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class PGPCompressionTest 
     extends SimpleTest
@@ -25,6 +31,8 @@ public class PGPCompressionTest
         testCompression(PGPCompressedData.ZLIB);
         testCompression(PGPCompressedData.BZIP2);
 
+        testBZip2Blocks();
+
         //
         // new style - using stream close
         //
@@ -128,6 +136,92 @@ public class PGPCompressionTest
         }
     }
 
+    /*
+     * compress several blocks on the calling thread, a byte at a time and in bulk,
+     * and on an executor - all three should give the same stream.
+     */
+    private void testBZip2Blocks()
+        throws Exception
+    {
+        byte[] data = new byte[2500000];
+        Random random = new Random(1);
+
+        for (int i = 0; i < data.length; )
+        {
+            int len = Math.min(random.nextInt(1000), data.length - i);
+
+            if (random.nextInt(10) == 0)
+            {
+                // a run, long enough to cover the run length limits
+                byte b = (byte)random.nextInt(256);
+                for (int j = 0; j != len; j++)
+                {
+                    data[i++] = b;
+                }
+            }
+            else
+            {
+                for (int j = 0; j != len; j++)
+                {
+                    data[i++] = (byte)('a' + random.nextInt(8));
+                }
+            }
+        }
+
+        ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+        OutputStream out = new CBZip2OutputStream(bOut);
+
+        for (int i = 0; i != data.length; i++)
+        {
+            out.write(data[i]);
+        }
+        out.close();
+
+        byte[] expected = bOut.toByteArray();
+
+        bOut = new ByteArrayOutputStream();
+        out = new CBZip2OutputStream(bOut);
+        out.write(data, 0, data.length);
+        out.close();
+
+        if (!areEqual(expected, bOut.toByteArray()))
+        {
+            fail("bzip2 bulk write output differs");
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            bOut = new ByteArrayOutputStream();
+            out = new CBZip2OutputStream(bOut, 9, executor, 2);
+            out.write(data, 0, data.length);
+            out.close();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        if (!areEqual(expected, bOut.toByteArray()))
+        {
+            fail("bzip2 parallel output differs");
+        }
+
+        InputStream in = new CBZip2InputStream(new ByteArrayInputStream(expected));
+        ByteArrayOutputStream dOut = new ByteArrayOutputStream();
+
+        int ch;
+        while ((ch = in.read()) >= 0)
+        {
+            dOut.write(ch);
+        }
+
+        if (!areEqual(data, dOut.toByteArray()))
+        {
+            fail("bzip2 multi-block data failed to decompress");
+        }
+    }
+
     public String getName()
     {
         return "PGPCompressionTest";
@@ -0,0 +1,259 @@
+package org.spongycastle.openpgp.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+
+import org.spongycastle.openpgp.PGPException;
+import org.spongycastle.openpgp.PGPPublicKey;
+import org.spongycastle.openpgp.PGPPublicKeyRing;
+import org.spongycastle.openpgp.PGPPublicKeyRingCollection;
+import org.spongycastle.openpgp.PGPPublicKeyRingStore;
+import org.spongycastle.openpgp.operator.bc.BcKeyFingerprintCalculator;
+import org.spongycastle.util.Arrays;
+import org.spongycastle.util.Strings;
+import org.spongycastle.util.test.SimpleTest;
+
+/**
+ * Check lookups through a PGPPublicKeyRingStore match those on a PGPPublicKeyRingCollection
+ * read from the same key ring file.
+ */
+public class PGPPublicKeyRingStoreTest
+    extends SimpleTest
+{
+    public String getName()
+    {
+        return "PGPPublicKeyRingStore";
+    }
+
+    private void writeFile(File file, byte[] data)
+        throws Exception
+    {
+        FileOutputStream fOut = new FileOutputStream(file);
+
+        fOut.write(data);
+        fOut.close();
+    }
+
+    private void checkStore(PGPPublicKeyRingStore store, PGPPublicKeyRingCollection pubRings)
+        throws Exception
+    {
+        if (store.size() != pubRings.size())
+        {
+            fail("wrong number of rings: " + store.size());
+        }
+
+        int count = 0;
+        for (Iterator rIt = store.getKeyRings(); rIt.hasNext();)
+        {
+            PGPPublicKeyRing ring = (PGPPublicKeyRing)rIt.next();
+
+            if (!Arrays.areEqual(ring.getEncoded(), pubRings.getPublicKeyRing(ring.getPublicKey().getKeyID()).getEncoded()))
+            {
+                fail("ring " + count + " does not match");
+            }
+            count++;
+        }
+
+        if (count != pubRings.size())
+        {
+            fail("wrong number of rings iterated: " + count);
+        }
+
+        for (Iterator rIt = pubRings.getKeyRings(); rIt.hasNext();)
+        {
+            PGPPublicKeyRing ring = (PGPPublicKeyRing)rIt.next();
+
+            for (Iterator it = ring.getPublicKeys(); it.hasNext();)
+            {
+                PGPPublicKey pub = (PGPPublicKey)it.next();
+
+                if (!store.contains(pub.getKeyID()))
+                {
+                    fail("key ID not found in index");
+                }
+                if (!Arrays.areEqual(pub.getFingerprint(), store.getPublicKey(pub.getKeyID()).getFingerprint()))
+                {
+                    fail("key ID lookup failed");
+                }
+                if (!Arrays.areEqual(ring.getEncoded(), store.getPublicKeyRing(pub.getKeyID()).getEncoded()))
+                {
+                    fail("key ring lookup failed");
+                }
+                if (store.getPublicKey(pub.getFingerprint()).getKeyID() != pub.getKeyID())
+                {
+                    fail("fingerprint lookup failed");
+                }
+            }
+
+            for (Iterator it = ring.getPublicKey().getUserIDs(); it.hasNext();)
+            {
+                String userID = (String)it.next();
+
+                if (!sameRings(pubRings.getKeyRings(userID), store.getKeyRings(userID)))
+                {
+                    fail("user ID lookup failed");
+                }
+                if (!sameRings(pubRings.getKeyRings(Strings.toUpperCase(userID), false, true), store.getKeyRings(Strings.toUpperCase(userID), true)))
+                {
+                    fail("case folded user ID lookup failed");
+                }
+            }
+        }
+
+        if (store.getPublicKey(0x1234L) != null || store.getPublicKeyRing(0x1234L) != null || store.contains(0x1234L))
+        {
+            fail("missing key ID found");
+        }
+        if (store.getPublicKey(new byte[20]) != null)
+        {
+            fail("missing fingerprint found");
+        }
+        if (store.getKeyRings("nobody <nobody@example.com>").hasNext())
+        {
+            fail("missing user ID found");
+        }
+    }
+
+    private boolean sameRings(Iterator expected, Iterator found)
+        throws Exception
+    {
+        while (expected.hasNext())
+        {
+            if (!found.hasNext()
+                || !Arrays.areEqual(((PGPPublicKeyRing)expected.next()).getEncoded(), ((PGPPublicKeyRing)found.next()).getEncoded()))
+            {
+                return false;
+            }
+        }
+
+        return !found.hasNext();
+    }
+
+    public void performTest()
+        throws Exception
+    {
+        BcPGPKeyRingTest keyRings = new BcPGPKeyRingTest();
+        ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+
+        bOut.write(keyRings.pub1);
+        bOut.write(keyRings.pub2);
+        bOut.write(keyRings.pub3);
+
+        byte[] data = bOut.toByteArray();
+
+        File keyRingFile = File.createTempFile("pubring", ".gpg");
+        File indexFile = File.createTempFile("pubring", ".idx");
+
+        try
+        {
+            indexFile.delete();
+            writeFile(keyRingFile, data);
+
+            PGPPublicKeyRingStore store = new PGPPublicKeyRingStore(keyRingFile, indexFile, new BcKeyFingerprintCalculator());
+            checkStore(store, new PGPPublicKeyRingCollection(data));
+            store.close();
+
+            // reopening should use the index as it is
+            long indexModified = indexFile.lastModified();
+            long indexLength = indexFile.length();
+
+            store = new PGPPublicKeyRingStore(keyRingFile, indexFile, new BcKeyFingerprintCalculator(), 0);
+            checkStore(store, new PGPPublicKeyRingCollection(data));
+            store.close();
+
+            if (indexFile.lastModified() != indexModified || indexFile.length() != indexLength)
+            {
+                fail("index rebuilt for unchanged key ring");
+            }
+
+            // a changed key ring should be reindexed
+            bOut.write(keyRings.pub5);
+            data = bOut.toByteArray();
+            writeFile(keyRingFile, data);
+
+            store = new PGPPublicKeyRingStore(keyRingFile, indexFile, new BcKeyFingerprintCalculator(), 1);
+            checkStore(store, new PGPPublicKeyRingCollection(data));
+            store.close();
+
+            // a truncated index should be rebuilt
+            RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+            raf.setLength(raf.length() / 2);
+            raf.close();
+
+            store = new PGPPublicKeyRingStore(keyRingFile, indexFile, new BcKeyFingerprintCalculator());
+            checkStore(store, new PGPPublicKeyRingCollection(data));
+            store.close();
+
+            // as should the index of a file rewritten with the same length and modification time
+            bOut.reset();
+            bOut.write(keyRings.pub5);
+            bOut.write(keyRings.pub2);
+            bOut.write(keyRings.pub3);
+            bOut.write(keyRings.pub1);
+            byte[] reordered = bOut.toByteArray();
+
+            long keyRingModified = keyRingFile.lastModified();
+            writeFile(keyRingFile, reordered);
+            keyRingFile.setLastModified(keyRingModified);
+
+            if (reordered.length != data.length || keyRingFile.lastModified() != keyRingModified)
+            {
+                fail("unable to set up rewritten key ring");
+            }
+
+            store = new PGPPublicKeyRingStore(keyRingFile, indexFile, new BcKeyFingerprintCalculator());
+            checkStore(store, new PGPPublicKeyRingCollection(reordered));
+            if (!Arrays.areEqual(keyRings.pub5, ((PGPPublicKeyRing)store.getKeyRings().next()).getEncoded()))
+            {
+                fail("stale index used for rewritten key ring");
+            }
+            store.close();
+
+            // a key ring file with no keys in it at all has an empty index
+            writeFile(keyRingFile, new byte[]{ (byte)0xa8, 3, 'P', 'G', 'P' });
+
+            store = new PGPPublicKeyRingStore(keyRingFile, indexFile, new BcKeyFingerprintCalculator());
+            if (store.getKeyRings().hasNext())
+            {
+                fail("key ring found in file without keys");
+            }
+            store.close();
+
+            indexModified = indexFile.lastModified();
+            indexLength = indexFile.length();
+
+            store = new PGPPublicKeyRingStore(keyRingFile, indexFile, new BcKeyFingerprintCalculator());
+            store.close();
+
+            if (indexFile.lastModified() != indexModified || indexFile.length() != indexLength)
+            {
+                fail("index rebuilt for unchanged key ring without keys");
+            }
+
+            writeFile(keyRingFile, keyRings.sec1);
+            try
+            {
+                new PGPPublicKeyRingStore(keyRingFile, indexFile, new BcKeyFingerprintCalculator());
+                fail("secret key ring not detected");
+            }
+            catch (PGPException e)
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            keyRingFile.delete();
+            indexFile.delete();
+        }
+    }
+
+    public static void main(
+        String[]    args)
+    {
+        runTest(new PGPPublicKeyRingStoreTest());
+    }
+}
@@ -10,6 +10,7 @@ public class RegressionTest
     public static Test[]    tests = {
         new BcPGPKeyRingTest(),
         new PGPKeyRingTest(),
+        new PGPPublicKeyRingStoreTest(),
         new BcPGPRSATest(),
         new PGPRSATest(),
         new BcPGPDSATest(),
@@ -0,0 +1,514 @@
+package org.spongycastle.cert;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import org.spongycastle.asn1.ASN1Encodable;
+import org.spongycastle.asn1.ASN1Integer;
+import org.spongycastle.asn1.ASN1ObjectIdentifier;
+import org.spongycastle.asn1.ASN1Primitive;
+import org.spongycastle.asn1.ASN1Sequence;
+import org.spongycastle.asn1.ASN1SequenceParser;
+import org.spongycastle.asn1.ASN1StreamParser;
+import org.spongycastle.asn1.ASN1TaggedObject;
+import org.spongycastle.asn1.ASN1TaggedObjectParser;
+import org.spongycastle.asn1.DERBitString;
+import org.spongycastle.asn1.DERGeneralizedTime;
+import org.spongycastle.asn1.DERUTCTime;
+import org.spongycastle.asn1.InMemoryRepresentable;
+import org.spongycastle.asn1.x500.X500Name;
+import org.spongycastle.asn1.x509.AlgorithmIdentifier;
+import org.spongycastle.asn1.x509.Extension;
+import org.spongycastle.asn1.x509.Extensions;
+import org.spongycastle.asn1.x509.GeneralName;
+import org.spongycastle.asn1.x509.GeneralNames;
+import org.spongycastle.asn1.x509.IssuingDistributionPoint;
+import org.spongycastle.asn1.x509.TBSCertList;
+import org.spongycastle.asn1.x509.Time;
+import org.spongycastle.operator.ContentVerifier;
+import org.spongycastle.operator.ContentVerifierProvider;
+
+/**
+ * Streaming parser for X.509 CRLs. Only one revoked certificate entry is held in memory at a
+ * time, so very large CRLs can be indexed or filtered without loading the whole CRL.
+ * <p>
+ * The CRL header is read when the parser is created, entries are then returned one at a time
+ * by {@link #readEntry()}. The CRL extensions and the signature follow the entries in the
+ * encoding, so methods that need them read through, and discard, any entries that have not
+ * yet been returned. If a ContentVerifierProvider is passed in the signature is calculated
+ * as the entries are read, and checked by {@link #isSignatureValid()}.
+ * </p>
+ * <p>
+ * As the CRL extensions are only available after the entries, the certificateIssuer entry
+ * extension is always honoured when working out the certificate issuer of an entry. RFC 5280
+ * only allows it on indirect CRLs, which can be confirmed with {@link #isIndirect()}.
+ * </p>
+ * <pre>
+ *     X509CRLStreamParser parser = new X509CRLStreamParser(crlIn, verifierProvider);
+ *     X509CRLEntryHolder  entry;
+ *
+ *     while ((entry = parser.readEntry()) != null)
+ *     {
+ *         // process entry
+ *     }
+ *
+ *     if (!parser.isSignatureValid())
+ *     {
+ *         // reject the CRL
+ *     }
+ * </pre>
+ */
+public class X509CRLStreamParser
+{
+    private final TeeInputStream tIn;
+    private final ASN1SequenceParser crlParser;
+    private final ASN1SequenceParser tbsParser;
+
+    private ContentVerifier verifier;
+    private Exception verifierException;
+
+    private AlgorithmIdentifier tbsSignature;
+    private X500Name issuer;
+    private Time thisUpdate;
+    private Time nextUpdate;
+    private ASN1SequenceParser entriesParser;
+    private GeneralNames currentCA;
+
+    private Extensions extensions;
+    private AlgorithmIdentifier signatureAlgorithm;
+    private DERBitString signature;
+
+    /**
+     * Create a parser for the CRL on the passed in stream, without signature verification.
+     *
+     * @param crlStream DER encoded InputStream of the CRL
+     * @throws IOException in the event of corrupted data, or an incorrect structure.
+     */
+    public X509CRLStreamParser(InputStream crlStream)
+        throws IOException
+    {
+        this(crlStream, null);
+    }
+
+    /**
+     * Create a parser for the CRL on the passed in stream, calculating the signature as the CRL
+     * is read.
+     *
+     * @param crlStream DER encoded InputStream of the CRL
+     * @param verifierProvider a ContentVerifierProvider that can generate a verifier for the signature.
+     * @throws IOException in the event of corrupted data, or an incorrect structure.
+     */
+    public X509CRLStreamParser(InputStream crlStream, ContentVerifierProvider verifierProvider)
+        throws IOException
+    {
+        this.tIn = new TeeInputStream(crlStream);
+
+        try
+        {
+            this.crlParser = (ASN1SequenceParser)new ASN1StreamParser(tIn).readObject();
+            if (crlParser == null)
+            {
+                throw new CertIOException("no CRL found in stream");
+            }
+
+            // the TBSCertList is buffered until its signature algorithm is known
+            ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+
+            tIn.setOutputStream(bOut);
+
+            this.tbsParser = (ASN1SequenceParser)crlParser.readObject();
+
+            ASN1Encodable obj = tbsParser.readObject();
+            if (obj instanceof ASN1Integer)
+            {
+                obj = tbsParser.readObject();
+            }
+
+            this.tbsSignature = AlgorithmIdentifier.getInstance(load(obj));
+
+            tIn.setOutputStream(null);
+
+            if (verifierProvider != null)
+            {
+                try
+                {
+                    verifier = verifierProvider.get(tbsSignature);
+
+                    OutputStream sOut = verifier.getOutputStream();
+
+                    sOut.write(bOut.toByteArray());
+
+                    tIn.setOutputStream(sOut);
+                }
+                catch (Exception e)
+                {
+                    // reported by isSignatureValid()
+                    verifier = null;
+                    verifierException = e;
+                }
+            }
+            else
+            {
+                verifierException = new IllegalStateException("no ContentVerifierProvider supplied");
+            }
+
+            this.issuer = X500Name.getInstance(load(tbsParser.readObject()));
+            this.thisUpdate = Time.getInstance(tbsParser.readObject());
+
+            obj = tbsParser.readObject();
+            if (obj instanceof DERUTCTime || obj instanceof DERGeneralizedTime)
+            {
+                this.nextUpdate = Time.getInstance(obj);
+                obj = tbsParser.readObject();
+            }
+
+            this.currentCA = new GeneralNames(new GeneralName(issuer));
+
+            if (obj instanceof ASN1SequenceParser)
+            {
+                this.entriesParser = (ASN1SequenceParser)obj;
+            }
+            else
+            {
+                readTrailer(obj);
+            }
+        }
+        catch (ClassCastException e)
+        {
+            throw new CertIOException("malformed data: " + e.getMessage(), e);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new CertIOException("malformed data: " + e.getMessage(), e);
+        }
+    }
+
+    private static ASN1Primitive load(ASN1Encodable obj)
+        throws IOException
+    {
+        if (obj instanceof InMemoryRepresentable)
+        {
+            return ((InMemoryRepresentable)obj).getLoadedObject();
+        }
+
+        return obj.toASN1Primitive();
+    }
+
+    /**
+     * Return the next revoked certificate entry on the CRL.
+     *
+     * @return the next entry, null if there are no more entries.
+     * @throws IOException in the event of corrupted data, or an incorrect structure.
+     */
+    public X509CRLEntryHolder readEntry()
+        throws IOException
+    {
+        if (entriesParser == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            ASN1Encodable obj = entriesParser.readObject();
+
+            if (obj == null)
+            {
+                entriesParser = null;
+
+                readTrailer(tbsParser.readObject());
+
+                return null;
+            }
+
+            X509CRLEntryHolder entry = new X509CRLEntryHolder(TBSCertList.CRLEntry.getInstance(load(obj)), true, currentCA);
+
+            currentCA = entry.getCertificateIssuer();
+
+            return entry;
+        }
+        catch (ClassCastException e)
+        {
+            throw new CertIOException("malformed data: " + e.getMessage(), e);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new CertIOException("malformed data: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read from the (optional) CRL extensions to the end of the CRL.
+     */
+    private void readTrailer(ASN1Encodable obj)
+        throws IOException
+    {
+        if (obj instanceof ASN1TaggedObjectParser)
+        {
+            ASN1TaggedObject tagged = (ASN1TaggedObject)load(obj);
+
+            if (tagged.getTagNo() != 0)
+            {
+                throw new CertIOException("unknown tag in TBSCertList: " + tagged.getTagNo());
+            }
+
+            extensions = Extensions.getInstance(ASN1Sequence.getInstance(tagged, true));
+            obj = tbsParser.readObject();
+        }
+
+        if (obj != null)
+        {
+            throw new CertIOException("malformed data: unexpected object in TBSCertList");
+        }
+
+        tIn.setOutputStream(null);
+
+        signatureAlgorithm = AlgorithmIdentifier.getInstance(load(crlParser.readObject()));
+        signature = DERBitString.getInstance(crlParser.readObject());
+
+        if (crlParser.readObject() != null)
+        {
+            throw new CertIOException("malformed data: unexpected object in CertificateList");
+        }
+    }
+
+    private void skipEntries()
+        throws IOException
+    {
+        while (readEntry() != null)
+        {
+            // skip remaining entries
+        }
+    }
+
+    /**
+     * Return the issuer of the CRL.
+     *
+     * @return the CRL issuer.
+     */
+    public X500Name getIssuer()
+    {
+        return issuer;
+    }
+
+    public Date getThisUpdate()
+    {
+        return thisUpdate.getDate();
+    }
+
+    public Date getNextUpdate()
+    {
+        if (nextUpdate != null)
+        {
+            return nextUpdate.getDate();
+        }
+
+        return null;
+    }
+
+    /**
+     * Return the CRL extensions. Any entries not yet read are skipped.
+     *
+     * @return the CRL extensions, null if there are none.
+     * @throws IOException in the event of corrupted data, or an incorrect structure.
+     */
+    public Extensions getExtensions()
+        throws IOException
+    {
+        skipEntries();
+
+        return extensions;
+    }
+
+    /**
+     * Look up the CRL extension associated with the passed in OID. Any entries not yet read are skipped.
+     *
+     * @param oid the OID of the extension of interest.
+     *
+     * @return the extension if present, null otherwise.
+     * @throws IOException in the event of corrupted data, or an incorrect structure.
+     */
+    public Extension getExtension(ASN1ObjectIdentifier oid)
+        throws IOException
+    {
+        skipEntries();
+
+        if (extensions != null)
+        {
+            return extensions.getExtension(oid);
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns a list of ASN1ObjectIdentifier objects representing the OIDs of the
+     * CRL extensions. Any entries not yet read are skipped.
+     *
+     * @return a list of extension OIDs.
+     * @throws IOException in the event of corrupted data, or an incorrect structure.
+     */
+    public List getExtensionOIDs()
+        throws IOException
+    {
+        skipEntries();
+
+        return CertUtils.getExtensionOIDs(extensions);
+    }
+
+    /**
+     * Returns a set of ASN1ObjectIdentifier objects representing the OIDs of the
+     * critical CRL extensions. Any entries not yet read are skipped.
+     *
+     * @return a set of critical extension OIDs.
+     * @throws IOException in the event of corrupted data, or an incorrect structure.
+     */
+    public Set getCriticalExtensionOIDs()
+        throws IOException
+    {
+        skipEntries();
+
+        return CertUtils.getCriticalExtensionOIDs(extensions);
+    }
+
+    /**
+     * Returns a set of ASN1ObjectIdentifier objects representing the OIDs of the
+     * non-critical CRL extensions. Any entries not yet read are skipped.
+     *
+     * @return a set of non-critical extension OIDs.
+     * @throws IOException in the event of corrupted data, or an incorrect structure.
+     */
+    public Set getNonCriticalExtensionOIDs()
+        throws IOException
+    {
+        skipEntries();
+
+        return CertUtils.getNonCriticalExtensionOIDs(extensions);
+    }
+
+    /**
+     * Return whether the CRL is marked as indirect by its IssuingDistributionPoint extension.
+     * Any entries not yet read are skipped.
+     *
+     * @return true if the CRL is an indirect CRL, false otherwise.
+     * @throws IOException in the event of corrupted data, or an incorrect structure.
+     */
+    public boolean isIndirect()
+        throws IOException
+    {
+        Extension ext = getExtension(Extension.issuingDistributionPoint);
+
+        return ext != null && IssuingDistributionPoint.getInstance(ext.getParsedValue()).isIndirectCRL();
+    }
+
+    /**
+     * Return the signature algorithm of the CRL. Any entries not yet read are skipped.
+     *
+     * @return the CRL signature algorithm.
+     * @throws IOException in the event of corrupted data, or an incorrect structure.
+     */
+    public AlgorithmIdentifier getSignatureAlgorithm()
+        throws IOException
+    {
+        skipEntries();
+
+        return signatureAlgorithm;
+    }
+
+    /**
+     * Validate the signature on the CRL, using the ContentVerifierProvider passed to the constructor.
+     * Any entries not yet read are skipped.
+     *
+     * @return true if the signature is valid, false otherwise.
+     * @throws CertException if the signature cannot be processed or is inappropriate.
+     * @throws IOException in the event of corrupted data, or an incorrect structure.
+     */
+    public boolean isSignatureValid()
+        throws CertException, IOException
+    {
+        skipEntries();
+
+        if (!tbsSignature.equals(signatureAlgorithm))
+        {
+            throw new CertException("signature invalid - algorithm identifier mismatch");
+        }
+
+        if (verifier == null)
+        {
+            throw new CertException("unable to process signature: " + verifierException.getMessage(), verifierException);
+        }
+
+        verifier.getOutputStream().close();
+
+        return verifier.verify(signature.getBytes());
+    }
+
+    /**
+     * Input stream that copies what is read through it to an output stream, when one is set.
+     */
+    private static class TeeInputStream
+        extends FilterInputStream
+    {
+        private OutputStream out;
+
+        TeeInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        void setOutputStream(OutputStream out)
+        {
+            this.out = out;
+        }
+
+        public int read()
+            throws IOException
+        {
+            int b = in.read();
+
+            if (b >= 0 && out != null)
+            {
+                out.write(b);
+            }
+
+            return b;
+        }
+
+        public int read(byte[] buf, int off, int len)
+            throws IOException
+        {
+            int count = in.read(buf, off, len);
+
+            if (count > 0 && out != null)
+            {
+                out.write(buf, off, count);
+            }
+
+            return count;
+        }
+
+        public long skip(long n)
+            throws IOException
+        {
+            long count = 0;
+
+            while (count < n && read() >= 0)
+            {
+                count++;
+            }
+
+            return count;
+        }
+
+        public boolean markSupported()
+        {
+            return false;
+        }
+    }
+}
@@ -15,6 +15,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.spongycastle.asn1.ASN1Encodable;
 import org.spongycastle.asn1.ASN1EncodableVector;
@@ -52,6 +53,7 @@ import org.spongycastle.operator.bc.BcDigestCalculatorProvider;
 import org.spongycastle.util.CollectionStore;
 import org.spongycastle.util.Store;
 import org.spongycastle.util.io.Streams;
+import org.spongycastle.util.io.TeeInputStream;
 import org.spongycastle.x509.NoSuchStoreException;
 import org.spongycastle.x509.X509Store;
 
@@ -108,6 +110,8 @@ public class CMSSignedDataParser
     private ASN1ObjectIdentifier    _signedContentType;
     private CMSTypedStream          _signedContent;
     private Map                     digests;
+    private Executor                digestExecutor;
+    private OutputStream            parallelDigests;
 
     private SignerInformationStore  _signerInfoStore;
     private X509Store               _attributeStore;
@@ -314,6 +318,19 @@ public class CMSSignedDataParser
             
             List      signerInfos = new ArrayList();
             Map       hashes = new HashMap();
+
+            if (parallelDigests != null)
+            {
+                try
+                {
+                    // wait for the digests to see all the content read so far
+                    parallelDigests.close();
+                }
+                catch (IOException e)
+                {
+                    throw new CMSException("unable to calculate content digests: " + e.getMessage(), e);
+                }
+            }
             
             Iterator  it = digests.keySet().iterator();
             while (it.hasNext())
@@ -639,6 +656,21 @@ public class CMSSignedDataParser
         return _signedContentType.getId();
     }
 
+    /**
+     * Set an executor to calculate the content digests on. With more than one digest algorithm,
+     * or a single one and large content, this allows the digests to be calculated in parallel
+     * with each other and with the reading of the content. By default, or if executor is null,
+     * the digests are calculated one after another as the content is read.
+     * <p>
+     * This must be set before getSignedContent() is called.
+     * </p>
+     * @param executor the executor to run the digest calculations on, null to use the reading thread.
+     */
+    public void setDigestExecutor(Executor executor)
+    {
+        this.digestExecutor = executor;
+    }
+
     public CMSTypedStream getSignedContent()
     {
         if (_signedContent == null)
@@ -646,8 +678,28 @@ public class CMSSignedDataParser
             return null;
         }
 
-        InputStream digStream = CMSUtils.attachDigestsToInputStream(
-            digests.values(), _signedContent.getContentStream());
+        InputStream digStream;
+
+        if (digestExecutor != null)
+        {
+            if (parallelDigests == null)
+            {
+                List streams = new ArrayList();
+                for (Iterator it = digests.values().iterator(); it.hasNext();)
+                {
+                    streams.add(((DigestCalculator)it.next()).getOutputStream());
+                }
+
+                parallelDigests = new ParallelDigestOutputStream(streams, digestExecutor);
+            }
+
+            digStream = new TeeInputStream(_signedContent.getContentStream(), parallelDigests);
+        }
+        else
+        {
+            digStream = CMSUtils.attachDigestsToInputStream(
+                digests.values(), _signedContent.getContentStream());
+        }
 
         return new CMSTypedStream(_signedContent.getContentType(), digStream);
     }
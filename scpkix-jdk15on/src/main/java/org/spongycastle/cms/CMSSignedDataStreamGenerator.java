@@ -12,6 +12,7 @@ import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.spongycastle.asn1.ASN1EncodableVector;
 import org.spongycastle.asn1.ASN1ObjectIdentifier;
@@ -62,6 +63,7 @@ public class CMSSignedDataStreamGenerator
     extends CMSSignedGenerator
 {
     private int  _bufferSize;
+    private Executor _digestExecutor;
 
     /**
      * base constructor
@@ -92,6 +94,20 @@ public class CMSSignedDataStreamGenerator
         _bufferSize = bufferSize;
     }
     
+    /**
+     * Set an executor to calculate the signers' digests on. With more than one signer, or a
+     * single signer and large content, this allows the digests to be calculated in parallel
+     * with each other and with the writing of the content. By default, or if executor is null,
+     * the digests are calculated one after another as the content is written.
+     *
+     * @param executor the executor to run the digest calculations on, null to use the writing thread.
+     */
+    public void setDigestExecutor(
+        Executor executor)
+    {
+        _digestExecutor = executor;
+    }
+
     /**
      * add a signer - no attributes other than the default ones will be
      * provided here.
@@ -781,7 +797,7 @@ public class CMSSignedDataStreamGenerator
         OutputStream contentStream = CMSUtils.getSafeTeeOutputStream(dataOutputStream, encapStream);
 
         // Let all the signers see the data as it is written
-        OutputStream sigStream = CMSUtils.attachSignersToOutputStream(signerGens, contentStream);
+        OutputStream sigStream = CMSUtils.attachSignersToOutputStream(signerGens, contentStream, _digestExecutor);
 
         return new CmsSignedDataOutputStream(sigStream, eContentType, sGen, sigGen, eiGen);
     }
@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.spongycastle.asn1.ASN1Encodable;
 import org.spongycastle.asn1.ASN1EncodableVector;
@@ -322,6 +323,36 @@ class CMSUtils
         return result;
     }
 
+    /**
+     * As above, but if executor is not null the signers' digests are calculated in parallel
+     * on it, rather than one after another on the writing thread.
+     */
+    static OutputStream attachSignersToOutputStream(Collection signers, OutputStream s, Executor executor)
+    {
+        if (executor == null)
+        {
+            return attachSignersToOutputStream(signers, s);
+        }
+
+        List streams = new ArrayList();
+        Iterator it = signers.iterator();
+        while (it.hasNext())
+        {
+            OutputStream calcStream = ((SignerInfoGenerator)it.next()).getCalculatingOutputStream();
+            if (calcStream != null)
+            {
+                streams.add(calcStream);
+            }
+        }
+
+        if (streams.isEmpty())
+        {
+            return getSafeOutputStream(s);
+        }
+
+        return getSafeTeeOutputStream(s, new ParallelDigestOutputStream(streams, executor));
+    }
+
     static OutputStream getSafeOutputStream(OutputStream s)
     {
         return s == null ? new NullOutputStream() : s;
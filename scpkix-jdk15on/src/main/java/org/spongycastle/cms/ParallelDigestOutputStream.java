@@ -0,0 +1,355 @@
+package org.spongycastle.cms;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * An output stream which passes the data written to it on to a set of digesting streams,
+ * each running as a task on an Executor.
+ * <p>
+ * Data is copied into chunks taken from a fixed ring of buffers. A full chunk is queued for
+ * every consumer stream and the buffer goes back to the ring once all of them have processed
+ * it, so the writer only blocks when every buffer is still in use. Each consumer sees the
+ * chunks in the order they were written and is only ever run by one task at a time.
+ * </p>
+ * <p>
+ * Any exception thrown by a consumer is reported by the next call to write() or close().
+ * close() waits for all queued chunks to be processed and then closes the consumer streams
+ * on the calling thread, so any results they hold can be collected once it returns.
+ * </p>
+ */
+class ParallelDigestOutputStream
+    extends OutputStream
+{
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    static final int DEFAULT_BUFFER_COUNT = 4;
+
+    private final Executor executor;
+    private final Consumer[] consumers;
+    private final Vector free = new Vector();
+
+    private Chunk current;
+    private Throwable failure;
+    private boolean closed;
+
+    ParallelDigestOutputStream(Collection streams, Executor executor)
+    {
+        this(streams, executor, DEFAULT_CHUNK_SIZE, DEFAULT_BUFFER_COUNT);
+    }
+
+    ParallelDigestOutputStream(Collection streams, Executor executor, int chunkSize, int bufferCount)
+    {
+        if (executor == null)
+        {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+        if (chunkSize < 1 || bufferCount < 1)
+        {
+            throw new IllegalArgumentException("chunkSize and bufferCount must be at least 1");
+        }
+
+        this.executor = executor;
+        this.consumers = new Consumer[streams.size()];
+
+        int i = 0;
+        for (Iterator it = streams.iterator(); it.hasNext();)
+        {
+            consumers[i++] = new Consumer((OutputStream)it.next());
+        }
+
+        for (i = 0; i != bufferCount; i++)
+        {
+            free.addElement(new Chunk(chunkSize));
+        }
+    }
+
+    public void write(int b)
+        throws IOException
+    {
+        checkOpen();
+
+        if (current == null)
+        {
+            current = acquire();
+        }
+
+        current.buf[current.len++] = (byte)b;
+
+        if (current.len == current.buf.length)
+        {
+            publish();
+        }
+    }
+
+    public void write(byte[] b, int off, int len)
+        throws IOException
+    {
+        checkOpen();
+
+        while (len > 0)
+        {
+            if (current == null)
+            {
+                current = acquire();
+            }
+
+            int count = Math.min(len, current.buf.length - current.len);
+
+            System.arraycopy(b, off, current.buf, current.len, count);
+            current.len += count;
+            off += count;
+            len -= count;
+
+            if (current.len == current.buf.length)
+            {
+                publish();
+            }
+        }
+    }
+
+    public void close()
+        throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+
+        closed = true;
+
+        if (current != null && current.len > 0)
+        {
+            publish();
+        }
+
+        boolean interrupted = false;
+
+        synchronized (this)
+        {
+            for (int i = 0; i != consumers.length; i++)
+            {
+                while (consumers[i].scheduled)
+                {
+                    try
+                    {
+                        wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // queued chunks must still be processed before the consumers are closed
+                        interrupted = true;
+                    }
+                }
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        for (int i = 0; i != consumers.length; i++)
+        {
+            try
+            {
+                consumers[i].out.close();
+            }
+            catch (Throwable e)
+            {
+                recordFailure(e);
+            }
+        }
+
+        checkFailure();
+    }
+
+    private void checkOpen()
+        throws IOException
+    {
+        if (closed)
+        {
+            throw new CMSStreamException("stream closed");
+        }
+
+        checkFailure();
+    }
+
+    private synchronized void checkFailure()
+        throws IOException
+    {
+        if (failure != null)
+        {
+            if (failure instanceof IOException)
+            {
+                throw (IOException)failure;
+            }
+            if (failure instanceof RuntimeException)
+            {
+                throw (RuntimeException)failure;
+            }
+
+            throw new CMSStreamException("digest calculation failed: " + failure.getMessage(), failure);
+        }
+    }
+
+    private synchronized void recordFailure(Throwable e)
+    {
+        if (failure == null)
+        {
+            failure = e;
+        }
+    }
+
+    private synchronized Chunk acquire()
+        throws IOException
+    {
+        while (free.isEmpty())
+        {
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for a digest buffer");
+            }
+        }
+
+        Chunk chunk = (Chunk)free.remove(free.size() - 1);
+
+        chunk.len = 0;
+
+        return chunk;
+    }
+
+    private synchronized void release(Chunk chunk)
+    {
+        if (--chunk.pending == 0)
+        {
+            free.addElement(chunk);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Queue the current chunk for every consumer, starting a task for each one not already running.
+     */
+    private void publish()
+    {
+        Chunk chunk = current;
+        List toStart = new ArrayList();
+
+        current = null;
+
+        synchronized (this)
+        {
+            if (consumers.length == 0)
+            {
+                free.addElement(chunk);
+                return;
+            }
+
+            chunk.pending = consumers.length;
+
+            for (int i = 0; i != consumers.length; i++)
+            {
+                Consumer consumer = consumers[i];
+
+                consumer.queue.add(chunk);
+                if (!consumer.scheduled)
+                {
+                    consumer.scheduled = true;
+                    toStart.add(consumer);
+                }
+            }
+        }
+
+        for (int i = 0; i != toStart.size(); i++)
+        {
+            Consumer consumer = (Consumer)toStart.get(i);
+
+            try
+            {
+                executor.execute(consumer);
+            }
+            catch (RejectedExecutionException e)
+            {
+                consumer.run();
+            }
+        }
+    }
+
+    private static class Chunk
+    {
+        final byte[] buf;
+
+        int len;
+        int pending;
+
+        Chunk(int size)
+        {
+            this.buf = new byte[size];
+        }
+    }
+
+    private class Consumer
+        implements Runnable
+    {
+        final OutputStream out;
+        final List queue = new ArrayList();
+
+        boolean scheduled;
+
+        Consumer(OutputStream out)
+        {
+            this.out = out;
+        }
+
+        public void run()
+        {
+            for (;;)
+            {
+                Chunk chunk;
+                boolean failed;
+
+                synchronized (ParallelDigestOutputStream.this)
+                {
+                    if (queue.isEmpty())
+                    {
+                        scheduled = false;
+                        ParallelDigestOutputStream.this.notifyAll();
+                        return;
+                    }
+
+                    chunk = (Chunk)queue.remove(0);
+                    failed = failure != null;
+                }
+
+                try
+                {
+                    if (!failed)
+                    {
+                        out.write(chunk.buf, 0, chunk.len);
+                    }
+                }
+                catch (Throwable e)
+                {
+                    recordFailure(e);
+                }
+                finally
+                {
+                    release(chunk);
+                }
+            }
+        }
+    }
+}
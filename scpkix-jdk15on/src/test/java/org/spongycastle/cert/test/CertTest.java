@@ -37,6 +37,7 @@ import javax.security.auth.x500.X500Principal;
 import org.spongycastle.asn1.ASN1Encodable;
 import org.spongycastle.asn1.ASN1EncodableVector;
 import org.spongycastle.asn1.ASN1Enumerated;
+import org.spongycastle.asn1.ASN1Integer;
 import org.spongycastle.asn1.ASN1ObjectIdentifier;
 import org.spongycastle.asn1.ASN1Primitive;
 import org.spongycastle.asn1.DEREnumerated;
@@ -65,6 +66,7 @@ import org.spongycastle.asn1.x509.X509Extensions;
 import org.spongycastle.asn1.x9.X9ObjectIdentifiers;
 import org.spongycastle.cert.X509CRLEntryHolder;
 import org.spongycastle.cert.X509CRLHolder;
+import org.spongycastle.cert.X509CRLStreamParser;
 import org.spongycastle.cert.X509CertificateHolder;
 import org.spongycastle.cert.X509v1CertificateBuilder;
 import org.spongycastle.cert.X509v2CRLBuilder;
@@ -95,6 +97,7 @@ import org.spongycastle.operator.bc.BcRSAContentSignerBuilder;
 import org.spongycastle.operator.bc.BcRSAContentVerifierProviderBuilder;
 import org.spongycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.spongycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.spongycastle.util.Arrays;
 import org.spongycastle.util.encoders.Base64;
 import org.spongycastle.util.encoders.Hex;
 import org.spongycastle.util.test.SimpleTest;
@@ -2924,6 +2927,131 @@ public class CertTest
         }
     }
 
+    private void testStreamParser()
+        throws Exception
+    {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12", "SC");
+
+        ByteArrayInputStream input = new ByteArrayInputStream(testCAp12);
+
+        keyStore.load(input, "test".toCharArray());
+
+        X509Certificate certificate = (X509Certificate) keyStore.getCertificate("ca");
+        PrivateKey privateKey = (PrivateKey) keyStore.getKey("ca", null);
+
+        X500Name crlIssuer = X500Name.getInstance(certificate.getSubjectX500Principal().getEncoded());
+        X500Name caName = X500Name.getInstance(certificate.getIssuerX500Principal().getEncoded());
+
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(crlIssuer, new Date());
+
+        builder.setNextUpdate(new Date(System.currentTimeMillis() + 100000));
+        builder.addExtension(Extension.issuingDistributionPoint, true, new IssuingDistributionPoint(null, true, false));
+
+        for (int i = 0; i != 100; i++)
+        {
+            builder.addCRLEntry(BigInteger.valueOf(100 + i), new Date(), CRLReason.cACompromise);
+        }
+
+        ExtensionsGenerator extGen = new ExtensionsGenerator();
+
+        extGen.addExtension(Extension.reasonCode, false, CRLReason.lookup(CRLReason.cACompromise));
+        extGen.addExtension(Extension.certificateIssuer, true, new GeneralNames(new GeneralName(caName)));
+
+        builder.addCRLEntry(certificate.getSerialNumber(), new Date(), extGen.generate());
+
+        builder.addCRLEntry(BigInteger.valueOf(300), new Date(), CRLReason.cACompromise);
+
+        JcaContentSignerBuilder contentSignerBuilder = new JcaContentSignerBuilder("SHA256WithRSAEncryption");
+
+        contentSignerBuilder.setProvider("SC");
+
+        X509CRLHolder cRLHolder = builder.build(contentSignerBuilder.build(privateKey));
+        byte[] encoding = cRLHolder.getEncoded();
+
+        ContentVerifierProvider verifierProvider = new JcaContentVerifierProviderBuilder().setProvider("SC").build(certificate);
+
+        X509CRLStreamParser parser = new X509CRLStreamParser(new ByteArrayInputStream(encoding), verifierProvider);
+
+        if (!parser.getIssuer().equals(crlIssuer) || parser.getNextUpdate() == null)
+        {
+            fail("stream parser header incorrect");
+        }
+
+        Iterator it = cRLHolder.getRevokedCertificates().iterator();
+        X509CRLEntryHolder entry;
+        int count = 0;
+
+        while ((entry = parser.readEntry()) != null)
+        {
+            X509CRLEntryHolder expected = (X509CRLEntryHolder)it.next();
+
+            if (!entry.getSerialNumber().equals(expected.getSerialNumber())
+                || !entry.getCertificateIssuer().equals(expected.getCertificateIssuer()))
+            {
+                fail("stream parser entry " + count + " incorrect");
+            }
+
+            count++;
+        }
+
+        if (count != 102 || it.hasNext())
+        {
+            fail("stream parser wrong number of entries");
+        }
+
+        if (!parser.isIndirect() || parser.getExtension(Extension.issuingDistributionPoint) == null)
+        {
+            fail("stream parser extensions incorrect");
+        }
+
+        if (!parser.isSignatureValid())
+        {
+            fail("stream parser CRL signature not valid");
+        }
+
+        // signature checked without reading the entries first
+        parser = new X509CRLStreamParser(new ByteArrayInputStream(encoding), verifierProvider);
+
+        if (!parser.isSignatureValid())
+        {
+            fail("stream parser CRL signature not valid after skipping entries");
+        }
+
+        // change the serial number 120 entry to 121
+        byte[] corrupted = Arrays.clone(encoding);
+        byte[] serial = new ASN1Integer(120).getEncoded();
+        int index = 0;
+
+        while (!Arrays.areEqual(serial, Arrays.copyOfRange(corrupted, index, index + serial.length)))
+        {
+            index++;
+        }
+
+        corrupted[index + serial.length - 1]++;
+
+        parser = new X509CRLStreamParser(new ByteArrayInputStream(corrupted), verifierProvider);
+
+        if (parser.isSignatureValid())
+        {
+            fail("stream parser corrupted CRL signature valid");
+        }
+
+        // CRL with no entries
+        builder = new X509v2CRLBuilder(crlIssuer, new Date());
+
+        parser = new X509CRLStreamParser(new ByteArrayInputStream(builder.build(contentSignerBuilder.build(privateKey)).getEncoded()), verifierProvider);
+
+        if (parser.readEntry() != null || parser.getNextUpdate() != null || parser.getExtensions() != null)
+        {
+            fail("stream parser empty CRL incorrect");
+        }
+
+        if (!parser.isSignatureValid())
+        {
+            fail("stream parser empty CRL signature not valid");
+        }
+    }
+
     public void performTest()
         throws Exception
     {
@@ -2931,6 +3059,7 @@ public class CertTest
         testIndirect();
         testIndirect2();
         testMalformedIndirect();
+        testStreamParser();
 
         checkCertificate(1, cert1);
         checkCertificate(2, cert2);
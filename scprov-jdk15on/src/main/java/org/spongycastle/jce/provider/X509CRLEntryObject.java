@@ -131,6 +131,14 @@ public class X509CRLEntryObject extends X509CRLEntry
         }
     }
 
+    /**
+     * Return the issuer of the revoked certificate, null if it is the CRL issuer.
+     */
+    X500Name getCertificateIssuerName()
+    {
+        return certificateIssuer;
+    }
+
     private Set getExtensionOIDs(boolean critical)
     {
         Extensions extensions = c.getExtensions();
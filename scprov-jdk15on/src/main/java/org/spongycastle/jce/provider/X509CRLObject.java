@@ -19,6 +19,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Set;
 
@@ -36,7 +37,6 @@ import org.spongycastle.asn1.x509.CRLNumber;
 import org.spongycastle.asn1.x509.CertificateList;
 import org.spongycastle.asn1.x509.Extension;
 import org.spongycastle.asn1.x509.Extensions;
-import org.spongycastle.asn1.x509.GeneralNames;
 import org.spongycastle.asn1.x509.IssuingDistributionPoint;
 import org.spongycastle.asn1.x509.TBSCertList;
 import org.spongycastle.jce.X509Principal;
@@ -59,13 +59,24 @@ public class X509CRLObject
     private String sigAlgName;
     private byte[] sigAlgParams;
     private boolean isIndirect;
+    private volatile Hashtable revokedIndex;
 
     static boolean isIndirectCRL(X509CRL crl)
         throws CRLException
+    {
+        if (crl instanceof X509CRLObject)
+        {
+            return ((X509CRLObject)crl).isIndirect;
+        }
+
+        return isIndirectCRL(crl.getExtensionValue(Extension.issuingDistributionPoint.getId()));
+    }
+
+    private static boolean isIndirectCRL(byte[] idp)
+        throws CRLException
     {
         try
         {
-            byte[] idp = crl.getExtensionValue(Extension.issuingDistributionPoint.getId());
             return idp != null
                 && IssuingDistributionPoint.getInstance(X509ExtensionUtil.fromExtensionValue(idp)).isIndirectCRL();
         }
@@ -95,7 +106,7 @@ public class X509CRLObject
                 this.sigAlgParams = null;
             }
 
-            this.isIndirect = isIndirectCRL(this);
+            this.isIndirect = isIndirectCRL(getExtensionValue(Extension.issuingDistributionPoint.getId()));
         }
         catch (Exception e)
         {
@@ -271,57 +282,95 @@ public class X509CRLObject
         return null;
     }
  
-    private Set loadCRLEntries()
+    /**
+     * Return the index of revoked certificates by serial number, building it on first use.
+     * The values are the X509CRLEntryObject for the serial number, or an array of them in
+     * CRL order if the serial number is listed more than once, as it may be for different
+     * certificate issuers on an indirect CRL.
+     */
+    private Hashtable getRevokedIndex()
     {
-        Set entrySet = new HashSet();
-        Enumeration certs = c.getRevokedCertificateEnumeration();
+        Hashtable index = revokedIndex;
 
-        X500Name previousCertificateIssuer = null; // the issuer
-        while (certs.hasMoreElements())
+        if (index == null)
         {
-            TBSCertList.CRLEntry entry = (TBSCertList.CRLEntry)certs.nextElement();
-            X509CRLEntryObject crlEntry = new X509CRLEntryObject(entry, isIndirect, previousCertificateIssuer);
-            entrySet.add(crlEntry);
-            if (isIndirect && entry.hasExtensions())
+            index = new Hashtable();
+
+            Enumeration certs = c.getRevokedCertificateEnumeration();
+
+            X500Name previousCertificateIssuer = null; // the issuer
+            while (certs.hasMoreElements())
             {
-                Extension currentCaName = entry.getExtensions().getExtension(Extension.certificateIssuer);
+                TBSCertList.CRLEntry entry = (TBSCertList.CRLEntry)certs.nextElement();
+                X509CRLEntryObject crlEntry = new X509CRLEntryObject(entry, isIndirect, previousCertificateIssuer);
+                BigInteger serialNumber = entry.getUserCertificate().getValue();
+                Object existing = index.get(serialNumber);
 
-                if (currentCaName != null)
+                if (existing == null)
+                {
+                    index.put(serialNumber, crlEntry);
+                }
+                else if (existing instanceof X509CRLEntryObject)
                 {
-                    previousCertificateIssuer = X500Name.getInstance(GeneralNames.getInstance(currentCaName.getParsedValue()).getNames()[0].getName());
+                    index.put(serialNumber, new X509CRLEntryObject[] { (X509CRLEntryObject)existing, crlEntry });
+                }
+                else
+                {
+                    X509CRLEntryObject[] entries = (X509CRLEntryObject[])existing;
+                    X509CRLEntryObject[] tmp = new X509CRLEntryObject[entries.length + 1];
+
+                    System.arraycopy(entries, 0, tmp, 0, entries.length);
+                    tmp[entries.length] = crlEntry;
+
+                    index.put(serialNumber, tmp);
                 }
+
+                previousCertificateIssuer = crlEntry.getCertificateIssuerName();
             }
+
+            revokedIndex = index;
         }
 
-        return entrySet;
+        return index;
     }
 
-    public X509CRLEntry getRevokedCertificate(BigInteger serialNumber)
+    private Set loadCRLEntries()
     {
-        Enumeration certs = c.getRevokedCertificateEnumeration();
+        Set entrySet = new HashSet();
+        Enumeration e = getRevokedIndex().elements();
 
-        X500Name previousCertificateIssuer = null; // the issuer
-        while (certs.hasMoreElements())
+        while (e.hasMoreElements())
         {
-            TBSCertList.CRLEntry entry = (TBSCertList.CRLEntry)certs.nextElement();
+            Object o = e.nextElement();
 
-            if (serialNumber.equals(entry.getUserCertificate().getValue()))
+            if (o instanceof X509CRLEntryObject)
             {
-                return new X509CRLEntryObject(entry, isIndirect, previousCertificateIssuer);
+                entrySet.add(o);
             }
-
-            if (isIndirect && entry.hasExtensions())
+            else
             {
-                Extension currentCaName = entry.getExtensions().getExtension(Extension.certificateIssuer);
+                X509CRLEntryObject[] entries = (X509CRLEntryObject[])o;
 
-                if (currentCaName != null)
+                for (int i = 0; i != entries.length; i++)
                 {
-                    previousCertificateIssuer = X500Name.getInstance(GeneralNames.getInstance(currentCaName.getParsedValue()).getNames()[0].getName());
+                    entrySet.add(entries[i]);
                 }
             }
         }
 
-        return null;
+        return entrySet;
+    }
+
+    public X509CRLEntry getRevokedCertificate(BigInteger serialNumber)
+    {
+        Object o = getRevokedIndex().get(serialNumber);
+
+        if (o instanceof X509CRLEntryObject[])
+        {
+            return ((X509CRLEntryObject[])o)[0];
+        }
+
+        return (X509CRLEntry)o;
     }
 
     public Set getRevokedCertificates()
@@ -520,53 +569,55 @@ public class X509CRLObject
             throw new RuntimeException("X.509 CRL used with non X.509 Cert");
         }
 
-        TBSCertList.CRLEntry[] certs = c.getRevokedCertificates();
+        BigInteger serial = ((X509Certificate)cert).getSerialNumber();
+        Object o = getRevokedIndex().get(serial);
 
-        X500Name caName = c.getIssuer();
-
-        if (certs != null)
+        if (o == null)
         {
-            BigInteger serial = ((X509Certificate)cert).getSerialNumber();
+            return false;
+        }
 
-            for (int i = 0; i < certs.length; i++)
+        X500Name issuer;
+
+        if (cert instanceof  X509Certificate)
+        {
+            issuer = X500Name.getInstance(((X509Certificate)cert).getIssuerX500Principal().getEncoded());
+        }
+        else
+        {
+            try
             {
-                if (isIndirect && certs[i].hasExtensions())
-                {
-                    Extension currentCaName = certs[i].getExtensions().getExtension(Extension.certificateIssuer);
+                issuer = org.spongycastle.asn1.x509.Certificate.getInstance(cert.getEncoded()).getIssuer();
+            }
+            catch (CertificateEncodingException e)
+            {
+                throw new RuntimeException("Cannot process certificate");
+            }
+        }
 
-                    if (currentCaName != null)
-                    {
-                        caName = X500Name.getInstance(GeneralNames.getInstance(currentCaName.getParsedValue()).getNames()[0].getName());
-                    }
-                }
+        X509CRLEntryObject[] entries;
 
-                if (certs[i].getUserCertificate().getValue().equals(serial))
-                {
-                    X500Name issuer;
+        if (o instanceof X509CRLEntryObject)
+        {
+            entries = new X509CRLEntryObject[] { (X509CRLEntryObject)o };
+        }
+        else
+        {
+            entries = (X509CRLEntryObject[])o;
+        }
 
-                    if (cert instanceof  X509Certificate)
-                    {
-                        issuer = X500Name.getInstance(((X509Certificate)cert).getIssuerX500Principal().getEncoded());
-                    }
-                    else
-                    {
-                        try
-                        {
-                            issuer = org.spongycastle.asn1.x509.Certificate.getInstance(cert.getEncoded()).getIssuer();
-                        }
-                        catch (CertificateEncodingException e)
-                        {
-                            throw new RuntimeException("Cannot process certificate");
-                        }
-                    }
+        for (int i = 0; i != entries.length; i++)
+        {
+            X500Name caName = entries[i].getCertificateIssuerName();
 
-                    if (!caName.equals(issuer))
-                    {
-                        return false;
-                    }
+            if (caName == null)
+            {
+                caName = c.getIssuer();
+            }
 
-                    return true;
-                }
+            if (caName.equals(issuer))
+            {
+                return true;
             }
         }
 
@@ -49,11 +49,13 @@ import org.spongycastle.asn1.DERTaggedObject;
 import org.spongycastle.asn1.cms.CMSObjectIdentifiers;
 import org.spongycastle.asn1.cms.ContentInfo;
 import org.spongycastle.asn1.cms.SignedData;
+import org.spongycastle.asn1.x500.X500Name;
 import org.spongycastle.asn1.x509.AlgorithmIdentifier;
 import org.spongycastle.asn1.x509.AuthorityKeyIdentifier;
 import org.spongycastle.asn1.x509.CRLReason;
 import org.spongycastle.asn1.x509.GeneralName;
 import org.spongycastle.asn1.x509.GeneralNames;
+import org.spongycastle.asn1.x509.IssuingDistributionPoint;
 import org.spongycastle.asn1.x509.KeyPurposeId;
 import org.spongycastle.asn1.x509.X509CertificateStructure;
 import org.spongycastle.asn1.x509.X509Extension;
@@ -2070,7 +2072,104 @@ public class CertTest
             fail("wrong number of CRLs found in collection");
         }
     }
-    
+
+    /**
+     * check revocation lookups on an indirect CRL, including a serial number listed for two issuers.
+     */
+    public void checkIndirectCRL()
+        throws Exception
+    {
+        KeyPairGenerator     kpGen = KeyPairGenerator.getInstance("RSA", "SC");
+        X509V2CRLGenerator   crlGen = new X509V2CRLGenerator();
+        Date                 now = new Date();
+        KeyPair              pair = kpGen.generateKeyPair();
+        X500Principal        otherCA = new X500Principal("CN=Other CA");
+        X500Principal        thirdCA = new X500Principal("CN=Third CA");
+
+        crlGen.setIssuerDN(new X500Principal("CN=Test CA"));
+
+        crlGen.setThisUpdate(now);
+        crlGen.setNextUpdate(new Date(now.getTime() + 100000));
+        crlGen.setSignatureAlgorithm("SHA256WithRSAEncryption");
+
+        crlGen.addCRLEntry(BigInteger.valueOf(1), now, CRLReason.keyCompromise);
+        crlGen.addCRLEntry(BigInteger.valueOf(2), now, createCertificateIssuerExtensions(otherCA));
+        crlGen.addCRLEntry(BigInteger.valueOf(3), now, CRLReason.keyCompromise);
+        crlGen.addCRLEntry(BigInteger.valueOf(1), now, createCertificateIssuerExtensions(thirdCA));
+
+        crlGen.addExtension(X509Extensions.IssuingDistributionPoint, true,
+            new IssuingDistributionPoint(null, false, false, null, true, false));
+
+        X509CRL crl = (X509CRL)CertificateFactory.getInstance("X.509", "SC").generateCRL(
+            new ByteArrayInputStream(crlGen.generate(pair.getPrivate(), "SC").getEncoded()));
+
+        if (crl.getRevokedCertificates().size() != 4)
+        {
+            fail("indirect CRL wrong number of entries");
+        }
+
+        if (crl.getRevokedCertificate(BigInteger.valueOf(1)).getCertificateIssuer() != null)
+        {
+            fail("indirect CRL first entry has certificate issuer");
+        }
+
+        if (!otherCA.equals(crl.getRevokedCertificate(BigInteger.valueOf(3)).getCertificateIssuer()))
+        {
+            fail("indirect CRL certificate issuer not carried forward");
+        }
+
+        if (crl.getRevokedCertificate(BigInteger.valueOf(4)) != null)
+        {
+            fail("indirect CRL entry found for unrevoked serial number");
+        }
+
+        KeyPair certPair = kpGen.generateKeyPair();
+
+        if (!crl.isRevoked(createV1Certificate(certPair, new X500Principal("CN=Test CA"), 1))
+            || !crl.isRevoked(createV1Certificate(certPair, thirdCA, 1))
+            || !crl.isRevoked(createV1Certificate(certPair, otherCA, 3)))
+        {
+            fail("indirect CRL revoked certificate not found");
+        }
+
+        if (crl.isRevoked(createV1Certificate(certPair, otherCA, 1))
+            || crl.isRevoked(createV1Certificate(certPair, new X500Principal("CN=Test CA"), 3))
+            || crl.isRevoked(createV1Certificate(certPair, thirdCA, 4)))
+        {
+            fail("indirect CRL certificate wrongly revoked");
+        }
+    }
+
+    private X509Extensions createCertificateIssuerExtensions(X500Principal issuer)
+        throws IOException
+    {
+        Vector extOids = new Vector();
+        Vector extValues = new Vector();
+
+        GeneralNames names = new GeneralNames(new GeneralName(X500Name.getInstance(issuer.getEncoded())));
+
+        extOids.addElement(X509Extensions.CertificateIssuer);
+        extValues.addElement(new X509Extension(true, new DEROctetString(names.getEncoded())));
+
+        return new X509Extensions(extOids, extValues);
+    }
+
+    private X509Certificate createV1Certificate(KeyPair pair, X500Principal issuer, int serialNumber)
+        throws Exception
+    {
+        X509V1CertificateGenerator  certGen = new X509V1CertificateGenerator();
+
+        certGen.setSerialNumber(BigInteger.valueOf(serialNumber));
+        certGen.setIssuerDN(issuer);
+        certGen.setNotBefore(new Date(System.currentTimeMillis() - 50000));
+        certGen.setNotAfter(new Date(System.currentTimeMillis() + 50000));
+        certGen.setSubjectDN(new X500Principal("CN=Subject"));
+        certGen.setPublicKey(pair.getPublic());
+        certGen.setSignatureAlgorithm("SHA256WithRSAEncryption");
+
+        return certGen.generate(pair.getPrivate(), "SC");
+    }
+
     /**
      * we generate a self signed certificate for the sake of testing - GOST3410
      */
@@ -2677,6 +2776,7 @@ public class CertTest
         checkCRLCreation1();
         checkCRLCreation2();
         checkCRLCreation3();
+        checkIndirectCRL();
 
         pemTest();
         pkcs7Test();